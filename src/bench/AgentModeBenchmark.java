@@ -0,0 +1,128 @@
+package bench;
+
+import graph.Agent;
+import graph.AgentScheduler;
+import graph.Message;
+import graph.OverflowPolicy;
+import graph.ParallelAgent;
+
+/**
+ * Compares {@link ParallelAgent}'s thread mode with its scheduled mode on a
+ * graph with many mostly idle agents.
+ * 
+ * <p>Creates {@value #AGENTS} agents in each mode, reports the number of live
+ * threads and the heap they take, and measures the cost per delivery of
+ * spreading messages round-robin over all agents and waiting until every
+ * one has been processed.</p>
+ * 
+ * <p>Run with:</p>
+ * <pre>
+ * java -cp bin bench.AgentModeBenchmark
+ * </pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see AgentScheduler
+ */
+public class AgentModeBenchmark {
+
+    /** Number of agents per mode */
+    private static final int AGENTS = 2_000;
+
+    /** Number of deliveries per measured iteration */
+    private static final int OPS = 200_000;
+
+    /**
+     * Runs both modes.
+     * 
+     * @param args ignored
+     */
+    public static void main(String[] args) {
+        measure("thread", null);
+        measure("scheduled", AgentScheduler.shared());
+    }
+
+    /**
+     * Builds the agents in one mode, measures them and closes them.
+     * 
+     * @param mode the label of the mode
+     * @param scheduler the scheduler, or null for thread mode
+     */
+    private static void measure(String mode, AgentScheduler scheduler) {
+        int threadsBefore = Thread.activeCount();
+        long heapBefore = Bench.usedHeap();
+        ParallelAgent[] agents = new ParallelAgent[AGENTS];
+        for (int i = 0; i < AGENTS; i++) {
+            agents[i] = new ParallelAgent(new NoOpAgent("agent" + i), 10, OverflowPolicy.BLOCK, 0, scheduler);
+        }
+        System.out.printf("%-10s %d agents: +%d threads, +%d KB heap%n", mode, AGENTS,
+                          Thread.activeCount() - threadsBefore, (Bench.usedHeap() - heapBefore) / 1024);
+
+        Message msg = new Message(1.0);
+        Bench.run(mode + " fan-out delivery", 2, 5, OPS, ops -> {
+            long target = processed(agents) + ops;
+            for (int i = 0; i < ops; i++) {
+                agents[i % AGENTS].callback("In", msg);
+            }
+            while (processed(agents) < target) {
+                Thread.onSpinWait();
+            }
+            return target;
+        });
+
+        for (ParallelAgent agent : agents) {
+            agent.close();
+        }
+    }
+
+    /**
+     * Sums the processed counts of all agents.
+     * 
+     * @param agents the agents
+     * @return the total number of processed deliveries
+     */
+    private static long processed(ParallelAgent[] agents) {
+        long total = 0;
+        for (ParallelAgent agent : agents) {
+            total += agent.getProcessedCount();
+        }
+        return total;
+    }
+
+    /**
+     * An agent that does nothing, so only the delivery cost is measured.
+     */
+    private static final class NoOpAgent implements Agent {
+
+        /** The agent name */
+        private final String name;
+
+        /**
+         * Creates the agent.
+         * 
+         * @param name the agent name
+         */
+        NoOpAgent(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void callback(String topic, Message msg) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Minimal microbenchmark harness used by the benchmarks in this package.
+ * 
+ * <p>The project is built with plain {@code javac} and has no dependency
+ * management, so the benchmarks follow the JMH structure (warmup iterations,
+ * measured iterations, a consumed result to defeat dead-code elimination)
+ * without depending on JMH itself. Numbers are indicative; run each
+ * benchmark in a fresh JVM for comparisons.</p>
+ * 
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>{@code
+ * Bench.run("text parse", 5, 10, 1_000_000, n -> {
+ *     long acc = 0;
+ *     for (long i = 0; i < n; i++) acc += (long) new Message("1.5").asDouble();
+ *     return acc;
+ * });
+ * }</pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ */
+public final class Bench {
+
+    /** Sink for benchmark results so the JIT cannot discard the measured work */
+    private static volatile long blackhole;
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private Bench() {
+    }
+
+    /**
+     * Runs a benchmark body and prints the mean time per operation.
+     * 
+     * @param label the name printed with the result
+     * @param warmups the number of unmeasured warmup iterations
+     * @param iterations the number of measured iterations
+     * @param opsPerIteration how many operations one call of the body performs
+     * @param body the benchmark body; receives opsPerIteration and returns a
+     *             value derived from the work performed
+     * @return the mean nanoseconds per operation over the measured iterations
+     */
+    public static double run(String label, int warmups, int iterations, long opsPerIteration,
+                             LongUnaryOperator body) {
+        for (int i = 0; i < warmups; i++) {
+            blackhole += body.applyAsLong(opsPerIteration);
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            blackhole += body.applyAsLong(opsPerIteration);
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            best = Math.min(best, elapsed);
+        }
+        double mean = (double) total / iterations / opsPerIteration;
+        System.out.printf("%-40s %12.2f ns/op (best %.2f ns/op)%n",
+                          label, mean, (double) best / opsPerIteration);
+        return mean;
+    }
+
+    /**
+     * Returns the approximate heap currently in use, after requesting a GC.
+     * 
+     * @return used heap in bytes
+     */
+    public static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,200 @@
+package bench;
+
+import configs.BinOpAgent;
+import configs.CompiledGraph;
+import configs.GeneratedGraph;
+import configs.IncAgent;
+import configs.PlusAgent;
+import graph.Agent;
+import graph.Message;
+import graph.NumericAgent;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares generated code with interpreted dispatch and with the compiled
+ * schedule on chains, diamonds and graphs of {@link BinOpAgent}s.
+ * 
+ * <p>Each graph is built in code, once per variant, and values are published
+ * to its first topic one after another:</p>
+ * <ul>
+ *   <li><strong>interpreted:</strong> the agents stay subscribed to their
+ *       topics and run inline, so every hop goes through {@link Topic} and
+ *       the megamorphic {@link Agent#callback} call site</li>
+ *   <li><strong>compiled direct:</strong> a detached {@link CompiledGraph},
+ *       one {@code compute} call per agent</li>
+ *   <li><strong>generated direct:</strong> a detached {@link GeneratedGraph},
+ *       one generated method for the whole graph</li>
+ * </ul>
+ * 
+ * <p>A chain is {@code IncAgent} after {@code IncAgent}. A diamond layer
+ * splits a topic into two {@code IncAgent}s and joins them with a
+ * {@code PlusAgent}; interpreted, a join fires once per arriving input, so
+ * the number of diamond layers is kept small. A mixed layer increments a topic and averages the
+ * result with the topic through a {@code BinOpAgent}, whose boxed operator
+ * the generated code calls directly. The last value of every variant is
+ * checked against the others.</p>
+ * 
+ * <p>Run with:</p>
+ * <pre>
+ * java -cp bin bench.CodegenBenchmark [size] [diamondLayers]
+ * </pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see GeneratedGraph
+ */
+public class CodegenBenchmark {
+
+    /** Values published per measured iteration */
+    private static final int OPS = 10_000;
+
+    /** Default chain length and number of mixed layers */
+    private static final int DEFAULT_SIZE = 32;
+
+    /** Default number of diamond layers */
+    private static final int DEFAULT_LAYERS = 4;
+
+    /** Counter making topic and agent names unique per built graph */
+    private static int graphs = 0;
+
+    /**
+     * Runs every graph with every variant.
+     * 
+     * @param args optional chain length and number of diamond layers
+     */
+    public static void main(String[] args) {
+        int chain = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        int layers = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_LAYERS;
+        for (String shape : List.of("chain", "diamond", "mixed")) {
+            int size = "diamond".equals(shape) ? layers : chain;
+            double interpreted = measure(shape + size + " interpreted", shape, size, "interpreted");
+            double compiled = measure(shape + size + " compiled direct", shape, size, "compiled");
+            double generated = measure(shape + size + " generated direct", shape, size, "generated");
+            if (interpreted != compiled || compiled != generated) {
+                throw new IllegalStateException(shape + ": results differ, interpreted " + interpreted
+                                                + ", compiled " + compiled + ", generated " + generated);
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Builds a graph, publishes to it repeatedly and closes it.
+     * 
+     * @param label the printed name
+     * @param shape "chain", "diamond" or "mixed"
+     * @param size the chain length or number of layers
+     * @param variant "interpreted", "compiled" or "generated"
+     * @return the last value of the graph's last topic
+     */
+    private static double measure(String label, String shape, int size, String variant) {
+        String prefix = "Cg" + (++graphs) + "_";
+        List<Agent> agents = new ArrayList<>();
+        String last = build(prefix, shape, size, agents);
+        Probe probe = new Probe();
+        Topic head = TopicManagerSingleton.get().getTopic(prefix + "0");
+        TopicManagerSingleton.get().getTopic(last).subscribe(probe);
+        try {
+            CompiledGraph compiled = "compiled".equals(variant) ? CompiledGraph.compile(agents) : null;
+            GeneratedGraph generated = "generated".equals(variant) ? GeneratedGraph.generate(agents) : null;
+            int compiledSlot = compiled != null ? compiled.slotOf(head.name) : -1;
+            int generatedSlot = generated != null ? generated.slotOf(head.name) : -1;
+            Bench.run(label, 3, 5, OPS, ops -> {
+                for (int i = 0; i < ops; i++) {
+                    if (compiled != null) {
+                        compiled.publish(compiledSlot, i, 0L);
+                    } else if (generated != null) {
+                        generated.publish(generatedSlot, i, 0L);
+                    } else {
+                        head.publishDouble(i);
+                    }
+                }
+                return ops;
+            });
+            if (compiled != null) {
+                return compiled.getValue(last);
+            }
+            if (generated != null) {
+                return generated.getValue(last);
+            }
+            return probe.value;
+        } finally {
+            TopicManagerSingleton.get().getTopic(last).unsubscribe(probe);
+            for (Agent agent : agents) {
+                agent.close();
+            }
+        }
+    }
+
+    /**
+     * Creates the agents of a graph, subscribed inline to their topics.
+     * 
+     * @param prefix the topic name prefix, unique per graph; the first topic
+     *               is prefix + "0"
+     * @param shape "chain", "diamond" or "mixed"
+     * @param size the chain length or number of layers
+     * @param agents receives the agents
+     * @return the name of the last topic
+     */
+    private static String build(String prefix, String shape, int size, List<Agent> agents) {
+        String in = prefix + "0";
+        for (int i = 1; i <= size; i++) {
+            String out = prefix + i;
+            switch (shape) {
+                case "chain":
+                    agents.add(new IncAgent(new String[] {in}, new String[] {out}));
+                    break;
+                case "diamond":
+                    agents.add(new IncAgent(new String[] {in}, new String[] {out + "L"}));
+                    agents.add(new IncAgent(new String[] {in}, new String[] {out + "R"}));
+                    agents.add(new PlusAgent(new String[] {out + "L", out + "R"}, new String[] {out}));
+                    break;
+                default:
+                    agents.add(new IncAgent(new String[] {in}, new String[] {out + "I"}));
+                    agents.add(new BinOpAgent(out + "Avg", in, out + "I", out, (x, y) -> (x + y) * 0.5));
+                    break;
+            }
+            in = out;
+        }
+        return in;
+    }
+
+    /**
+     * Keeps the last value of the topic it is subscribed to.
+     */
+    private static final class Probe implements NumericAgent {
+
+        /** The last value received */
+        volatile double value;
+
+        @Override
+        public String getName() {
+            return "CodegenProbe";
+        }
+
+        @Override
+        public void reset() {
+            value = 0.0;
+        }
+
+        @Override
+        public void callback(String topic, Message msg) {
+            value = msg.asDouble();
+        }
+
+        @Override
+        public void callbackDouble(String topic, double value, long originNanos) {
+            this.value = value;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package bench;
+
+import configs.CompiledGraph;
+import configs.GenericConfig;
+import graph.Quiescence;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Compares the engines of {@link GenericConfig} on chains and diamonds of
+ * agents.
+ * 
+ * <p>Each topology is loaded from a generated configuration file once per
+ * engine, and values are published to its first topic one after another:</p>
+ * <ul>
+ *   <li><strong>topics scheduled:</strong> the default, every agent in a
+ *       {@link graph.ParallelAgent} on the shared scheduler; the time
+ *       includes waiting until the last value has propagated</li>
+ *   <li><strong>topics inline:</strong> every agent called synchronously from
+ *       {@link Topic#publish}, so only the topic routing remains</li>
+ *   <li><strong>topics fused:</strong> {@code fuse=true}, chains of agents
+ *       fused into one scheduled agent each, the rest as scheduled</li>
+ *   <li><strong>compiled:</strong> a {@link CompiledGraph} triggered through
+ *       the first topic, including publishing every computed value to its
+ *       topic</li>
+ *   <li><strong>compiled direct:</strong> the same schedule called with
+ *       {@link CompiledGraph#publish(int, double, long)} while detached, so
+ *       no topic is involved at all</li>
+ * </ul>
+ * 
+ * <p>A chain is {@code IncAgent} after {@code IncAgent}. A diamond layer
+ * splits a topic into two {@code IncAgent}s and joins them with a
+ * {@code PlusAgent}. On topics a join fires once per arriving input, so every
+ * layer doubles the number of values reaching the next one; the compiled
+ * engine fires each join once per value.</p>
+ * 
+ * <p>Run with:</p>
+ * <pre>
+ * java -cp bin bench.DagBenchmark [chainLength] [diamondLayers]
+ * </pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see CompiledGraph
+ */
+public class DagBenchmark {
+
+    /** Values published per measured iteration */
+    private static final int OPS = 10_000;
+
+    /** Default number of agents in the chain */
+    private static final int DEFAULT_CHAIN = 32;
+
+    /** Default number of diamond layers */
+    private static final int DEFAULT_LAYERS = 4;
+
+    /**
+     * Runs both topologies on every engine.
+     * 
+     * @param args optional chain length and number of diamond layers
+     * @throws IOException if a configuration file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int chain = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CHAIN;
+        int layers = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_LAYERS;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+        measure("chain" + chain, chain, false);
+        measure("diamond" + layers, layers, true);
+        System.exit(0);
+    }
+
+    /**
+     * Measures one topology on every engine.
+     * 
+     * @param label the topology name
+     * @param size the chain length or number of diamond layers
+     * @param diamond whether to build diamonds instead of a chain
+     * @throws IOException if a configuration file cannot be written
+     */
+    private static void measure(String label, int size, boolean diamond) throws IOException {
+        measure(label + " topics scheduled", write(label + "s", size, diamond, ""), false);
+        measure(label + " topics inline", write(label + "i", size, diamond, "@mode=inline"), false);
+        measure(label + " topics fused", write(label + "f", size, diamond, "@fuse=true"), false);
+        measure(label + " compiled", write(label + "c", size, diamond, "@engine=compiled"), false);
+        measure(label + " compiled direct", write(label + "d", size, diamond, "@engine=compiled"), true);
+    }
+
+    /**
+     * Loads a configuration, publishes to its first topic and closes it.
+     * 
+     * @param label the printed name
+     * @param file the configuration file
+     * @param direct whether to call the compiled graph directly
+     */
+    private static void measure(String label, File file, boolean direct) {
+        GenericConfig config = new GenericConfig();
+        config.setConfFile(file.getPath());
+        config.create();
+        try {
+            String head = file.getName().replace(".conf", "") + "0";
+            Topic topic = TopicManagerSingleton.get().getTopic(head);
+            CompiledGraph compiled = config.getCompiledGraph();
+            int slot = compiled != null ? compiled.slotOf(head) : -1;
+            if (direct) {
+                // Keep the results in the compiled graph instead of publishing them
+                compiled.detach();
+            }
+            Bench.run(label, 2, 5, OPS, ops -> {
+                for (int i = 0; i < ops; i++) {
+                    if (direct) {
+                        compiled.publish(slot, i, 0L);
+                    } else {
+                        topic.publishDouble(i);
+                    }
+                }
+                try {
+                    Quiescence.awaitQuiescent(60_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ops;
+            });
+        } finally {
+            config.close();
+            file.delete();
+        }
+    }
+
+    /**
+     * Writes the configuration file of a topology.
+     * 
+     * @param prefix the topic name prefix, unique per run
+     * @param size the chain length or number of diamond layers
+     * @param diamond whether to build diamonds instead of a chain
+     * @param directive the directive line of every agent, or empty
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    private static File write(String prefix, int size, boolean diamond, String directive) throws IOException {
+        File file = new File(System.getProperty("java.io.tmpdir"), prefix + ".conf");
+        boolean fileWide = directive.startsWith("@engine") || directive.startsWith("@fuse");
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            for (int i = 0; i < size; i++) {
+                String in = prefix + i;
+                String next = prefix + (i + 1);
+                if (!directive.isEmpty() && (!fileWide || i == 0)) {
+                    out.println(directive);
+                }
+                if (!diamond) {
+                    agent(out, "configs.IncAgent", in, next);
+                    continue;
+                }
+                agent(out, "configs.IncAgent", in, in + "L");
+                if (!fileWide && !directive.isEmpty()) {
+                    out.println(directive);
+                }
+                agent(out, "configs.IncAgent", in, in + "R");
+                if (!fileWide && !directive.isEmpty()) {
+                    out.println(directive);
+                }
+                agent(out, "configs.PlusAgent", in + "L," + in + "R", next);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Writes one agent block.
+     * 
+     * @param out the configuration file
+     * @param className the agent class
+     * @param subs the input topics, comma-separated
+     * @param pubs the output topic
+     */
+    private static void agent(PrintWriter out, String className, String subs, String pubs) {
+        out.println(className);
+        out.println(subs);
+        out.println(pubs);
+    }
+}
@@ -0,0 +1,185 @@
+package bench;
+
+import graph.Message;
+import graph.NumericAgent;
+import graph.OverflowPolicy;
+import graph.ParallelAgent;
+import graph.WaitStrategy;
+
+import java.util.Arrays;
+
+/**
+ * Compares {@link ParallelAgent}'s locking mailbox with the lock-free ring
+ * mailbox under each {@link WaitStrategy}.
+ * 
+ * <p>For each variant the benchmark measures:</p>
+ * <ul>
+ *   <li><strong>Throughput:</strong> {@value #PRODUCERS} threads publish
+ *       numeric values into one agent as fast as they can; reported as
+ *       nanoseconds per delivery until all are processed.</li>
+ *   <li><strong>Handoff latency:</strong> a single producer sends one value,
+ *       waits until it has been processed and sends the next one, so the
+ *       agent is idle between deliveries and has to be woken up each time;
+ *       reported as the p50 and p99 time from enqueue to callback.</li>
+ * </ul>
+ * 
+ * <p>{@link WaitStrategy#BUSY_SPIN} and {@link WaitStrategy#YIELD} keep a
+ * core busy while the agent is idle; on machines with fewer cores than
+ * producers plus one their numbers mostly measure time slicing.</p>
+ * 
+ * <p>Run with:</p>
+ * <pre>
+ * java -cp bin bench.MailboxBenchmark
+ * </pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see WaitStrategy
+ */
+public class MailboxBenchmark {
+
+    /** Number of publishing threads in the throughput run */
+    private static final int PRODUCERS = 4;
+
+    /** Deliveries per measured throughput iteration */
+    private static final int OPS = 400_000;
+
+    /** Mailbox capacity */
+    private static final int CAPACITY = 1024;
+
+    /** Number of measured ping-pong round trips in the latency run */
+    private static final int LATENCY_SAMPLES = 10_000;
+
+    /**
+     * Runs every variant.
+     * 
+     * @param args ignored
+     * @throws InterruptedException if interrupted while joining producers
+     */
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+        measure("locking", null);
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            measure("ring " + strategy, strategy);
+        }
+    }
+
+    /**
+     * Measures one mailbox variant.
+     * 
+     * @param label the variant name
+     * @param strategy the ring wait strategy, or null for the locking mailbox
+     * @throws InterruptedException if interrupted while joining producers
+     */
+    private static void measure(String label, WaitStrategy strategy) throws InterruptedException {
+        LatencyAgent sink = new LatencyAgent();
+        ParallelAgent agent = ParallelAgent.create(sink, CAPACITY, OverflowPolicy.BLOCK, 0,
+                                                   ParallelAgent.Mode.THREAD, strategy);
+        try {
+            Bench.run(label + " " + PRODUCERS + " producers", 2, 5, OPS, ops -> {
+                long target = agent.getProcessedCount() + ops;
+                Thread[] producers = new Thread[PRODUCERS];
+                for (int p = 0; p < PRODUCERS; p++) {
+                    producers[p] = new Thread(() -> {
+                        for (long i = 0; i < ops / PRODUCERS; i++) {
+                            agent.callbackDouble("In", i, 0L);
+                        }
+                    });
+                    producers[p].start();
+                }
+                for (Thread producer : producers) {
+                    try {
+                        producer.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                while (agent.getProcessedCount() < target) {
+                    Thread.onSpinWait();
+                }
+                return target;
+            });
+
+            pingPong(agent, sink, LATENCY_SAMPLES / 10);
+            long[] samples = pingPong(agent, sink, LATENCY_SAMPLES);
+            Arrays.sort(samples);
+            System.out.printf("%-40s p50 %8d ns  p99 %8d ns%n", label + " handoff latency",
+                              samples[samples.length / 2], samples[(int) (samples.length * 0.99)]);
+        } finally {
+            agent.close();
+        }
+    }
+
+    /**
+     * Sends values one at a time, waiting for each to be processed.
+     * 
+     * @param agent the agent under test
+     * @param sink the wrapped agent that records latencies
+     * @param count the number of round trips
+     * @return the recorded handoff latencies
+     */
+    private static long[] pingPong(ParallelAgent agent, LatencyAgent sink, int count) {
+        sink.reset();
+        for (int i = 0; i < count; i++) {
+            long target = agent.getProcessedCount() + 1;
+            agent.callbackDouble("In", i, System.nanoTime());
+            while (agent.getProcessedCount() < target) {
+                Thread.onSpinWait();
+            }
+        }
+        return sink.samples();
+    }
+
+    /**
+     * Records the time from each value's origin stamp to its callback.
+     */
+    private static final class LatencyAgent implements NumericAgent {
+
+        /** Recorded latencies */
+        private long[] latencies = new long[1024];
+
+        /** Number of recorded latencies */
+        private int count;
+
+        @Override
+        public void callbackDouble(String topic, double value, long originNanos) {
+            if (originNanos == 0L) {
+                return;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - originNanos;
+        }
+
+        /**
+         * Returns a copy of the recorded latencies.
+         * 
+         * @return the latencies in nanoseconds
+         */
+        long[] samples() {
+            return Arrays.copyOf(latencies, count);
+        }
+
+        @Override
+        public String getName() {
+            return "latency";
+        }
+
+        @Override
+        public void reset() {
+            count = 0;
+        }
+
+        @Override
+        public void callback(String topic, Message msg) {
+            callbackDouble(topic, msg.asDouble(), msg.getOriginNanos());
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
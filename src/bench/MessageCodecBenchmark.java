@@ -0,0 +1,107 @@
+package bench;
+
+import java.nio.ByteBuffer;
+
+import graph.Message;
+import graph.MessageCodec;
+
+/**
+ * Compares the binary {@link MessageCodec} with the text path for moving
+ * messages in and out of a byte buffer.
+ * 
+ * <p>The text path is what persisting a message looked like before the codec:
+ * render {@link Message#asText()}, write its bytes, then rebuild a message from
+ * the bytes and parse it back with {@link Message#asDouble()}.</p>
+ * 
+ * <p>Run with:</p>
+ * <pre>
+ * java -cp bin bench.MessageCodecBenchmark
+ * </pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see Bench
+ */
+public class MessageCodecBenchmark {
+
+    /** Number of round trips per measured iteration */
+    private static final int OPS = 1_000_000;
+
+    /**
+     * Runs the double and vector round-trip comparisons.
+     * 
+     * @param args ignored
+     */
+    public static void main(String[] args) {
+        ByteBuffer heap = ByteBuffer.allocate(64 * 1024);
+        ByteBuffer direct = ByteBuffer.allocateDirect(64 * 1024);
+
+        Bench.run("double: text round trip", 5, 10, OPS, n -> {
+            long acc = 0;
+            for (long i = 0; i < n; i++) {
+                heap.clear();
+                heap.put(new Message(i * 0.5).asText().getBytes());
+                heap.flip();
+                byte[] raw = new byte[heap.remaining()];
+                heap.get(raw);
+                acc += (long) new Message(raw).asDouble();
+            }
+            return acc;
+        });
+
+        Bench.run("double: codec round trip (heap)", 5, 10, OPS, n -> {
+            long acc = 0;
+            for (long i = 0; i < n; i++) {
+                heap.clear();
+                MessageCodec.encode(new Message(i * 0.5), heap);
+                heap.flip();
+                acc += (long) MessageCodec.decode(heap).asDouble();
+            }
+            return acc;
+        });
+
+        Bench.run("double: codec decodeDouble (direct)", 5, 10, OPS, n -> {
+            long acc = 0;
+            for (long i = 0; i < n; i++) {
+                direct.clear();
+                MessageCodec.encode(new Message(i * 0.5), direct);
+                direct.flip();
+                acc += (long) MessageCodec.decodeDouble(direct);
+            }
+            return acc;
+        });
+
+        double[] vector = new double[1000];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = i * 0.25;
+        }
+        Message vectorMsg = new Message(vector);
+
+        Bench.run("vector[1000]: text round trip", 3, 5, 2_000, n -> {
+            long acc = 0;
+            for (long i = 0; i < n; i++) {
+                String text = vectorMsg.asText();
+                String[] parts = text.substring(1, text.length() - 1).split(", ");
+                double[] back = new double[parts.length];
+                for (int j = 0; j < parts.length; j++) {
+                    back[j] = Double.parseDouble(parts[j]);
+                }
+                acc += back.length;
+            }
+            return acc;
+        });
+
+        Bench.run("vector[1000]: codec round trip (direct)", 3, 5, 2_000, n -> {
+            long acc = 0;
+            for (long i = 0; i < n; i++) {
+                direct.clear();
+                MessageCodec.encode(vectorMsg, direct);
+                direct.flip();
+                acc += MessageCodec.decode(direct).asVector().length;
+            }
+            return acc;
+        });
+    }
+}
@@ -0,0 +1,262 @@
+package bench;
+
+import graph.Agent;
+import graph.Message;
+import graph.OverflowPolicy;
+import graph.ParallelAgent;
+import graph.VirtualThreads;
+import server.MyHTTPServer;
+import server.RequestParser.RequestInfo;
+import servlets.Servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares platform threads, virtual threads and the shared scheduler for
+ * agents, and a fixed pool against virtual threads for HTTP connections.
+ * 
+ * <p>The agent part creates N {@link ParallelAgent}s in each
+ * {@link ParallelAgent.Mode}, reports live threads and heap, and measures
+ * round-robin delivery throughput. The HTTP part opens N concurrent
+ * connections to a {@link MyHTTPServer} whose servlet blocks for
+ * {@value #SERVLET_SLEEP_MILLIS} ms, once with a pool of
+ * {@value #POOL_THREADS} threads and once with virtual threads, and reports
+ * the time until every response has arrived.</p>
+ * 
+ * <p>Virtual threads need Java 21 or later; on older runtimes the virtual
+ * rows run on platform threads and are labelled accordingly. Large counts
+ * may need a higher open file limit ({@code ulimit -n}).</p>
+ * 
+ * <p>Run with:</p>
+ * <pre>
+ * java -cp bin bench.VirtualThreadBenchmark [agents] [connections]
+ * </pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see VirtualThreads
+ */
+public class VirtualThreadBenchmark {
+
+    /** Default number of agents and of concurrent connections */
+    private static final int DEFAULT_COUNT = 10_000;
+
+    /** Number of deliveries per measured iteration */
+    private static final int OPS = 200_000;
+
+    /** How long the benchmark servlet blocks per request */
+    private static final int SERVLET_SLEEP_MILLIS = 10;
+
+    /** Size of the fixed pool in the pooled HTTP run */
+    private static final int POOL_THREADS = 200;
+
+    /**
+     * Runs the agent and HTTP comparisons.
+     * 
+     * @param args optional agent count and connection count
+     * @throws Exception if the HTTP run fails
+     */
+    public static void main(String[] args) throws Exception {
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_COUNT;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COUNT;
+        System.out.println("virtual threads available: " + VirtualThreads.isAvailable());
+
+        for (ParallelAgent.Mode mode : ParallelAgent.Mode.values()) {
+            measureAgents(mode, agents);
+        }
+        measureHttp(false, connections);
+        measureHttp(true, connections);
+    }
+
+    /**
+     * Builds the agents in one mode, measures them and closes them.
+     * 
+     * @param mode the requested mode
+     * @param count the number of agents
+     */
+    private static void measureAgents(ParallelAgent.Mode mode, int count) {
+        int threadsBefore = Thread.activeCount();
+        long heapBefore = Bench.usedHeap();
+        ParallelAgent[] agents = new ParallelAgent[count];
+        for (int i = 0; i < count; i++) {
+            agents[i] = ParallelAgent.create(new NoOpAgent("agent" + i), 10, OverflowPolicy.BLOCK, 0, mode);
+        }
+        String label = mode + (agents[0].getMode() == mode ? "" : "->" + agents[0].getMode());
+        System.out.printf("%-16s %d agents: +%d platform threads, +%d KB heap%n", label, count,
+                          Thread.activeCount() - threadsBefore, (Bench.usedHeap() - heapBefore) / 1024);
+
+        Message msg = new Message(1.0);
+        Bench.run(label + " fan-out delivery", 2, 5, OPS, ops -> {
+            long target = processed(agents) + ops;
+            for (int i = 0; i < ops; i++) {
+                agents[i % count].callback("In", msg);
+            }
+            while (processed(agents) < target) {
+                Thread.onSpinWait();
+            }
+            return target;
+        });
+
+        for (ParallelAgent agent : agents) {
+            agent.close();
+        }
+    }
+
+    /**
+     * Opens all connections at once against a fresh server and waits for
+     * every response.
+     * 
+     * @param virtual whether the server uses virtual threads
+     * @param connections the number of concurrent connections
+     * @throws Exception if the server cannot be reached
+     */
+    private static void measureHttp(boolean virtual, int connections) throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        MyHTTPServer server = new MyHTTPServer(port, POOL_THREADS, virtual);
+        server.addServlet("GET", "/sleep", new SleepServlet());
+        server.start();
+        try {
+            awaitListening(port);
+            AtomicInteger ok = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(connections);
+            long start = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                VirtualThreads.newThread("client-" + i, () -> {
+                    if (request(port)) {
+                        ok.incrementAndGet();
+                    }
+                    done.countDown();
+                }).start();
+            }
+            done.await();
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            String label = virtual && VirtualThreads.isAvailable() ? "virtual" : "pool(" + POOL_THREADS + ")";
+            out.printf("http %-10s %d connections: %d ok in %d ms%n", label, connections, ok.get(), elapsedMillis);
+        } finally {
+            server.close();
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * Waits until the server accepts connections.
+     * 
+     * @param port the server port
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void awaitListening(int port) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try {
+                new Socket("localhost", port).close();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(20);
+            }
+        }
+        throw new IllegalStateException("Server did not start on port " + port);
+    }
+
+    /**
+     * Sends one request and reads the whole response.
+     * 
+     * @param port the server port
+     * @return true if the response was a 200
+     */
+    private static boolean request(int port) {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(120_000);
+            socket.getOutputStream().write("GET /sleep HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                                           .getBytes(StandardCharsets.US_ASCII));
+            InputStream in = socket.getInputStream();
+            String response = new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+            return response.startsWith("HTTP/1.1 200");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sums the processed counts of all agents.
+     * 
+     * @param agents the agents
+     * @return the total number of processed deliveries
+     */
+    private static long processed(ParallelAgent[] agents) {
+        long total = 0;
+        for (ParallelAgent agent : agents) {
+            total += agent.getProcessedCount();
+        }
+        return total;
+    }
+
+    /**
+     * A servlet that blocks like a slow backend call, then answers.
+     */
+    private static final class SleepServlet implements Servlet {
+
+        @Override
+        public void handle(RequestInfo ri, OutputStream toClient) throws IOException {
+            try {
+                Thread.sleep(SERVLET_SLEEP_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            toClient.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\nok"
+                           .getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * An agent that does nothing, so only the delivery cost is measured.
+     */
+    private static final class NoOpAgent implements Agent {
+
+        /** The agent name */
+        private final String name;
+
+        /**
+         * Creates the agent.
+         * 
+         * @param name the agent name
+         */
+        NoOpAgent(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void callback(String topic, Message msg) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package bench;
+
+import configs.CompiledGraph;
+import configs.GenericConfig;
+import configs.IncAgent;
+import graph.Quiescence;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Compares level-parallel fork/join evaluation with a sequential schedule and
+ * with one thread per agent on wide graphs.
+ * 
+ * <p>Each graph fans one input topic out to {@code N} {@link WorkAgent}s and
+ * sums their outputs back up with a tree of {@code PlusAgent}s, so the
+ * schedule has one level of width {@code N} followed by levels of width
+ * {@code N/2}, {@code N/4} and so on. For each fan-out the benchmark
+ * reports the time per evaluation:</p>
+ * <ul>
+ *   <li><strong>thread per agent:</strong> the topic engine with
+ *       {@code mode=thread}, waiting until the evaluation has settled; each
+ *       sum fires once per arriving input, so the tree does more work</li>
+ *   <li><strong>sequential:</strong> {@code engine=compiled}</li>
+ *   <li><strong>forkjoin:</strong> {@code engine=forkjoin}, the wide levels on
+ *       the common {@link java.util.concurrent.ForkJoinPool}</li>
+ * </ul>
+ * 
+ * <p>Both compiled variants are run detached from the topics, so the numbers
+ * compare evaluation only. The work per agent is set with
+ * {@code -Dbench.work=N} (iterations of a small arithmetic loop, default
+ * {@value #DEFAULT_WORK}); with no work, fork/join overhead dominates.</p>
+ * 
+ * <p>Run with:</p>
+ * <pre>
+ * java -cp bin bench.WideGraphBenchmark [fanOut ...]  (powers of two)
+ * </pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see CompiledGraph#setPool(java.util.concurrent.ForkJoinPool, int)
+ */
+public class WideGraphBenchmark {
+
+    /** Evaluations per measured iteration */
+    private static final int EVALUATIONS = 20;
+
+    /** Default fan-outs */
+    private static final int[] DEFAULT_FAN_OUTS = {64, 256, 1024};
+
+    /** Default work per agent */
+    private static final int DEFAULT_WORK = 1000;
+
+    /** Work per agent, from {@code -Dbench.work} */
+    static final int WORK = Integer.getInteger("bench.work", DEFAULT_WORK);
+
+    /**
+     * Runs every fan-out with all three engines.
+     * 
+     * @param args optional fan-outs
+     * @throws IOException if a configuration file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int[] fanOuts = DEFAULT_FAN_OUTS;
+        if (args.length > 0) {
+            fanOuts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                fanOuts[i] = Integer.parseInt(args[i]);
+                if (Integer.bitCount(fanOuts[i]) != 1 || fanOuts[i] < 2) {
+                    throw new IllegalArgumentException("Fan-out must be a power of two, got: " + args[i]);
+                }
+            }
+        }
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors() + ", work: " + WORK);
+        for (int fanOut : fanOuts) {
+            double expected = fanOut * (1.0 + 1.0);
+            measure("wide" + fanOut + " thread per agent", write("wt" + fanOut, fanOut, null), expected);
+            measure("wide" + fanOut + " sequential", write("ws" + fanOut, fanOut, "compiled"), expected);
+            measure("wide" + fanOut + " forkjoin", write("wf" + fanOut, fanOut, "forkjoin"), expected);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Loads a graph, evaluates it repeatedly, checks the result and closes it.
+     * 
+     * @param label the printed name
+     * @param file the configuration file
+     * @param expected the sum expected for an input of 1.0
+     */
+    private static void measure(String label, File file, double expected) {
+        GenericConfig config = new GenericConfig();
+        config.setConfFile(file.getPath());
+        config.create();
+        try {
+            String prefix = file.getName().replace(".conf", "");
+            Topic input = TopicManagerSingleton.get().getTopic(prefix + "In");
+            CompiledGraph compiled = config.getCompiledGraph();
+            int slot = -1;
+            if (compiled != null) {
+                compiled.detach();
+                slot = compiled.slotOf(prefix + "In");
+            }
+            int in = slot;
+            Bench.run(label, 2, 5, EVALUATIONS, ops -> {
+                for (int i = 0; i < ops; i++) {
+                    if (compiled != null) {
+                        compiled.publish(in, 1.0, 0L);
+                    } else {
+                        input.publishDouble(1.0);
+                    }
+                }
+                try {
+                    Quiescence.awaitQuiescent(60_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ops;
+            });
+            if (compiled != null && compiled.getValue(prefix + "Sum") != expected) {
+                throw new IllegalStateException(label + ": expected " + expected + ", got "
+                                                + compiled.getValue(prefix + "Sum"));
+            }
+        } finally {
+            config.close();
+            file.delete();
+        }
+    }
+
+    /**
+     * Writes the configuration of a wide graph.
+     * 
+     * @param prefix the topic name prefix, unique per run
+     * @param fanOut the number of agents reading the input topic, a power of two
+     * @param engine the engine directive, or null for thread-per-agent topics
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    private static File write(String prefix, int fanOut, String engine) throws IOException {
+        File file = new File(System.getProperty("java.io.tmpdir"), prefix + ".conf");
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            if (engine != null) {
+                out.println("@engine=" + engine);
+            }
+            String[] level = new String[fanOut];
+            for (int i = 0; i < fanOut; i++) {
+                level[i] = prefix + "W" + i;
+                agent(out, engine, WorkAgent.class.getName(), prefix + "In", level[i]);
+            }
+            int depth = 0;
+            while (level.length > 1) {
+                String[] next = new String[level.length / 2];
+                for (int i = 0; i < next.length; i++) {
+                    next[i] = level.length == 2 ? prefix + "Sum" : prefix + "S" + depth + "_" + i;
+                    agent(out, engine, "configs.PlusAgent", level[2 * i] + "," + level[2 * i + 1], next[i]);
+                }
+                level = next;
+                depth++;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Writes one agent block.
+     * 
+     * @param out the configuration file
+     * @param engine the engine directive, or null to give the agent its own thread
+     * @param className the agent class
+     * @param subs the input topics, comma-separated
+     * @param pubs the output topic
+     */
+    private static void agent(PrintWriter out, String engine, String className, String subs, String pubs) {
+        if (engine == null) {
+            out.println("@mode=thread");
+        }
+        out.println(className);
+        out.println(subs);
+        out.println(pubs);
+    }
+
+    /**
+     * An {@link IncAgent} that does {@link WideGraphBenchmark#WORK} iterations
+     * of busy work per value, in both engines.
+     */
+    public static class WorkAgent extends IncAgent {
+
+        /**
+         * Creates the agent.
+         * 
+         * @param subs the input topic
+         * @param pubs the output topic
+         */
+        public WorkAgent(String[] subs, String[] pubs) {
+            super(subs, pubs);
+        }
+
+        @Override
+        public void callbackDouble(String topic, double value, long originNanos) {
+            super.callbackDouble(topic, value + work(), originNanos);
+        }
+
+        @Override
+        public double compute(double[] inputs) {
+            return super.compute(inputs) + work();
+        }
+
+        /**
+         * Spins for a while.
+         * 
+         * @return 0.0, computed so the loop cannot be removed
+         */
+        private static double work() {
+            long x = 1;
+            for (int i = 0; i < WORK; i++) {
+                x = x * 6364136223846793005L + 1442695040888963407L;
+            }
+            return x == 0 ? 1.0 : 0.0;
+        }
+    }
+}
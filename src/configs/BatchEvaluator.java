@@ -0,0 +1,655 @@
+package configs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+
+import graph.Agent;
+import graph.CompilableAgent;
+import graph.SinkAgent;
+import graph.SourceAgent;
+
+/**
+ * Evaluates a graph over a whole table of inputs, one column at a time.
+ * 
+ * <p>Publishing every row of a table through the topics costs a message,
+ * a lookup and a callback per agent and row. A batch evaluator instead
+ * treats every topic as a {@code double[]} column and every agent as a
+ * column kernel: the agents are ordered topologically once, and each one
+ * computes its whole output column from its input columns before the next
+ * one runs. {@link PlusAgent} and {@link IncAgent} use the loops of
+ * {@link VectorKernels}, which the JIT vectorizes; {@link BinOpAgent} applies
+ * its operator in a loop; any other {@link CompilableAgent} is called through
+ * {@link CompilableAgent#compute(double[])} once per row.</p>
+ * 
+ * <p><strong>Chunks:</strong> rows are processed in chunks of
+ * {@link #getChunkRows()} rows, sized so the columns of one chunk stay in the
+ * CPU cache while the kernels pass over them. A chunk's columns are reused
+ * for the next one, so memory stays bounded however many rows are
+ * evaluated: a CSV is streamed from input to output chunk by chunk.</p>
+ * 
+ * <p><strong>Semantics:</strong> each row is one evaluation, with a value
+ * for every input topic, and every agent is evaluated as a function of the
+ * row's values, like {@link CompilableAgent#compute(double[])}. Agents with
+ * an unconnected input and agents without an output are left out, and so
+ * are {@link SourceAgent}s and {@link SinkAgent}s: the table takes the
+ * place of the sources, whose topics become input columns, and the output
+ * CSV takes the place of the sinks. A {@link ConstAgent} is the exception:
+ * its topics are constant columns, holding its value in every row, so
+ * graphs the optimizer has folded evaluate as before. The
+ * topics themselves are not touched: nothing is published and the agents'
+ * own state does not change.</p>
+ * 
+ * <p><strong>CSV Format:</strong> the first line names the columns; every
+ * column named after an input topic is read and the others are ignored. The
+ * output has a header line naming the output topics, then one line per
+ * input row. Empty lines are skipped.</p>
+ * 
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>{@code
+ * GenericConfig config = new GenericConfig();
+ * config.setConfFile("config_files/simple.conf");
+ * config.create();
+ * BatchEvaluator batch = new BatchEvaluator(config.getDeclaredAgents());
+ * try (Reader in = Files.newBufferedReader(Paths.get("pairs.csv"));
+ *      Writer out = Files.newBufferedWriter(Paths.get("results.csv"))) {
+ *     long rows = batch.evaluate(in, out, List.of("Result"));
+ * }
+ * }</pre>
+ * 
+ * <p>From the command line:</p>
+ * <pre>
+ * java -cp bin configs.BatchEvaluator graph.conf input.csv output.csv [Topic,...]
+ * </pre>
+ * 
+ * <p><strong>Thread Safety:</strong> evaluations are serialized; concurrent
+ * callers wait for each other.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see VectorKernels
+ * @see GenericConfig#getDeclaredAgents()
+ */
+public class BatchEvaluator {
+
+    /** Bytes of column data per chunk, overridable with {@code -Dgraph.batch.cache} */
+    public static final int DEFAULT_CACHE_BYTES = Integer.getInteger("graph.batch.cache", 256 * 1024);
+
+    /** Fewest rows per chunk, so kernels run long enough to pay for their setup */
+    private static final int MIN_CHUNK_ROWS = 256;
+
+    /** Most rows per chunk */
+    private static final int MAX_CHUNK_ROWS = 16384;
+
+    /** Kind of agent: {@link PlusAgent} */
+    private static final int PLUS = 0;
+
+    /** Kind of agent: {@link IncAgent} */
+    private static final int INC = 1;
+
+    /** Kind of agent: {@link BinOpAgent} */
+    private static final int BIN_OP = 2;
+
+    /** Kind of agent: any other, called per row */
+    private static final int CALL = 3;
+
+    /** Slot of each topic */
+    private final Map<String, Integer> slotByTopic = new LinkedHashMap<>();
+
+    /** Whether each slot is an input column rather than computed */
+    private final boolean[] source;
+
+    /** Whether each slot is consumed by an agent */
+    private final boolean[] consumed;
+
+    /** The agents, in topological order */
+    private final CompilableAgent[] steps;
+
+    /** Kind of each agent */
+    private final int[] kinds;
+
+    /** Input slots of each agent */
+    private final int[][] inputs;
+
+    /** Output slot of each agent */
+    private final int[] outputs;
+
+    /** Operator of each {@link BinOpAgent}, null for other agents */
+    private final BinaryOperator<Double>[] operators;
+
+    /** Rows per chunk */
+    private final int chunkRows;
+
+    /** One column per slot, {@link #chunkRows} long */
+    private final double[][] columns;
+
+    /**
+     * Creates a batch evaluator with chunks of {@link #DEFAULT_CACHE_BYTES}.
+     * 
+     * @param agents the agents of the graph, in any order
+     * @throws NullPointerException if agents is null
+     * @throws IllegalArgumentException if an agent does not implement
+     *                                  {@link CompilableAgent}, or the agents
+     *                                  form a cycle
+     */
+    public BatchEvaluator(List<? extends Agent> agents) {
+        this(agents, 0);
+    }
+
+    /**
+     * Creates a batch evaluator.
+     * 
+     * @param agents the agents of the graph, in any order
+     * @param chunkRows the rows per chunk, or 0 to fit the columns of one
+     *                  chunk into {@link #DEFAULT_CACHE_BYTES}
+     * @throws NullPointerException if agents is null
+     * @throws IllegalArgumentException if chunkRows is negative, an agent does
+     *                                  not implement {@link CompilableAgent},
+     *                                  or the agents form a cycle
+     */
+    @SuppressWarnings("unchecked")
+    public BatchEvaluator(List<? extends Agent> agents, int chunkRows) {
+        if (agents == null) {
+            throw new NullPointerException("Agents cannot be null");
+        }
+        if (chunkRows < 0) {
+            throw new IllegalArgumentException("Chunk rows cannot be negative, got: " + chunkRows);
+        }
+        List<CompilableAgent> order = sort(agents);
+        Map<String, Double> constants = new LinkedHashMap<>();
+        for (Agent agent : agents) {
+            if (agent instanceof ConstAgent) {
+                for (String topic : ((ConstAgent) agent).getOutputTopics()) {
+                    constants.put(topic, ((ConstAgent) agent).getValue());
+                    slotByTopic.putIfAbsent(topic, slotByTopic.size());
+                }
+            }
+        }
+        for (CompilableAgent agent : order) {
+            for (String topic : agent.getInputTopics()) {
+                slotByTopic.putIfAbsent(topic, slotByTopic.size());
+            }
+            slotByTopic.putIfAbsent(agent.getOutputTopic(), slotByTopic.size());
+        }
+        int slots = slotByTopic.size();
+        this.source = new boolean[slots];
+        this.consumed = new boolean[slots];
+        Arrays.fill(source, true);
+        for (String topic : constants.keySet()) {
+            source[slotByTopic.get(topic)] = false;
+        }
+        this.steps = order.toArray(new CompilableAgent[0]);
+        this.kinds = new int[steps.length];
+        this.inputs = new int[steps.length][];
+        this.outputs = new int[steps.length];
+        this.operators = (BinaryOperator<Double>[]) new BinaryOperator<?>[steps.length];
+        for (int s = 0; s < steps.length; s++) {
+            String[] in = steps[s].getInputTopics();
+            inputs[s] = new int[in.length];
+            for (int i = 0; i < in.length; i++) {
+                inputs[s][i] = slotByTopic.get(in[i]);
+                consumed[inputs[s][i]] = true;
+            }
+            outputs[s] = slotByTopic.get(steps[s].getOutputTopic());
+            source[outputs[s]] = false;
+            // Exact classes only: a subclass may override compute
+            if (steps[s].getClass() == PlusAgent.class) {
+                kinds[s] = PLUS;
+            } else if (steps[s].getClass() == IncAgent.class) {
+                kinds[s] = INC;
+            } else if (steps[s].getClass() == BinOpAgent.class) {
+                kinds[s] = BIN_OP;
+                operators[s] = ((BinOpAgent) steps[s]).getOperation();
+            } else {
+                kinds[s] = CALL;
+            }
+        }
+        this.chunkRows = chunkRows > 0 ? chunkRows
+                : Math.max(MIN_CHUNK_ROWS, Math.min(MAX_CHUNK_ROWS, DEFAULT_CACHE_BYTES / (8 * Math.max(1, slots))));
+        this.columns = new double[slots][this.chunkRows];
+        // No agent writes a constant's column, so it is filled once for all chunks
+        for (Map.Entry<String, Double> constant : constants.entrySet()) {
+            Arrays.fill(columns[slotByTopic.get(constant.getKey())], constant.getValue());
+        }
+    }
+
+    /**
+     * Orders the agents that can fire topologically (Kahn's algorithm),
+     * from what they declare to consume and produce.
+     * 
+     * @param agents the agents
+     * @return the agents with all inputs connected and an output, producers
+     *         first; ties keep the order given; sources and sinks are skipped
+     * @throws IllegalArgumentException if an agent that is neither a source
+     *                                  nor a sink does not implement
+     *                                  {@link CompilableAgent}, or the agents
+     *                                  form a cycle
+     */
+    private static List<CompilableAgent> sort(List<? extends Agent> agents) {
+        List<CompilableAgent> live = new ArrayList<>();
+        Map<String, List<Integer>> producers = new HashMap<>();
+        for (Agent agent : agents) {
+            if (agent instanceof SourceAgent || agent instanceof SinkAgent) {
+                continue;
+            }
+            if (!(agent instanceof CompilableAgent)) {
+                throw new IllegalArgumentException("Agent " + agent.getName() + " ("
+                                                   + agent.getClass().getName() + ") cannot be evaluated in batch");
+            }
+            CompilableAgent compilable = (CompilableAgent) agent;
+            if (compilable.getOutputTopic() == null || Arrays.asList(compilable.getInputTopics()).contains(null)) {
+                continue;
+            }
+            producers.computeIfAbsent(compilable.getOutputTopic(), t -> new ArrayList<>()).add(live.size());
+            live.add(compilable);
+        }
+        int[] inDegree = new int[live.size()];
+        List<List<Integer>> successors = new ArrayList<>();
+        for (int a = 0; a < live.size(); a++) {
+            successors.add(new ArrayList<>());
+        }
+        for (int a = 0; a < live.size(); a++) {
+            for (String topic : live.get(a).getInputTopics()) {
+                for (int producer : producers.getOrDefault(topic, List.of())) {
+                    successors.get(producer).add(a);
+                    inDegree[a]++;
+                }
+            }
+        }
+        ArrayDeque<Integer> ready = new ArrayDeque<>();
+        for (int a = 0; a < live.size(); a++) {
+            if (inDegree[a] == 0) {
+                ready.add(a);
+            }
+        }
+        List<CompilableAgent> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            int a = ready.poll();
+            order.add(live.get(a));
+            for (int next : successors.get(a)) {
+                if (--inDegree[next] == 0) {
+                    ready.add(next);
+                }
+            }
+        }
+        if (order.size() < live.size()) {
+            List<String> cyclic = new ArrayList<>();
+            for (int a = 0; a < live.size(); a++) {
+                if (inDegree[a] > 0) {
+                    cyclic.add(live.get(a).getName());
+                }
+            }
+            throw new IllegalArgumentException("Agents form a cycle: " + cyclic);
+        }
+        return order;
+    }
+
+    /**
+     * Returns the topics every row must give a value for.
+     * 
+     * @return the input topic names
+     */
+    public List<String> getInputTopics() {
+        return topics(true, false);
+    }
+
+    /**
+     * Returns the topics computed by the agents.
+     * 
+     * @return the computed topic names, in topological order
+     */
+    public List<String> getComputedTopics() {
+        return topics(false, false);
+    }
+
+    /**
+     * Returns the computed topics no agent consumes, the default outputs.
+     * 
+     * @return the result topic names
+     */
+    public List<String> getResultTopics() {
+        return topics(false, true);
+    }
+
+    /**
+     * Lists topics by role.
+     * 
+     * @param inputs true for the input topics, false for the computed ones
+     * @param unconsumed whether to list only topics no agent consumes
+     * @return the topic names, in slot order
+     */
+    private List<String> topics(boolean inputs, boolean unconsumed) {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : slotByTopic.entrySet()) {
+            int slot = entry.getValue();
+            if (source[slot] == inputs && !(unconsumed && consumed[slot])) {
+                names.add(entry.getKey());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the number of rows evaluated per chunk.
+     * 
+     * @return the chunk size in rows
+     */
+    public int getChunkRows() {
+        return chunkRows;
+    }
+
+    /**
+     * Evaluates the graph on in-memory columns.
+     * 
+     * @param inputColumns a column for each input topic, all of the same length;
+     *                     other columns are ignored
+     * @param outputTopics the computed topics to return, or null for
+     *                     {@link #getResultTopics()}
+     * @return a column for each output topic, in the order requested
+     * @throws NullPointerException if inputColumns is null
+     * @throws IllegalArgumentException if an input column is missing, the
+     *                                  columns differ in length, or an output
+     *                                  topic is not computed
+     * @throws RuntimeException if an agent fails to compute its output
+     */
+    public synchronized Map<String, double[]> evaluate(Map<String, double[]> inputColumns,
+                                                       List<String> outputTopics) {
+        if (inputColumns == null) {
+            throw new NullPointerException("Input columns cannot be null");
+        }
+        int[] outSlots = outputSlots(outputTopics);
+        List<String> inputTopics = getInputTopics();
+        int rows = -1;
+        double[][] given = new double[inputTopics.size()][];
+        int[] givenSlots = new int[inputTopics.size()];
+        for (int i = 0; i < given.length; i++) {
+            given[i] = inputColumns.get(inputTopics.get(i));
+            if (given[i] == null) {
+                throw new IllegalArgumentException("Missing input column: " + inputTopics.get(i));
+            }
+            if (rows >= 0 && given[i].length != rows) {
+                throw new IllegalArgumentException("Column " + inputTopics.get(i) + " has " + given[i].length
+                                                   + " rows, expected " + rows);
+            }
+            rows = given[i].length;
+            givenSlots[i] = slotByTopic.get(inputTopics.get(i));
+        }
+        rows = Math.max(rows, 0);
+
+        Map<String, double[]> results = new LinkedHashMap<>();
+        double[][] outColumns = new double[outSlots.length][];
+        String[] names = slotByTopic.keySet().toArray(new String[0]);
+        for (int o = 0; o < outSlots.length; o++) {
+            outColumns[o] = new double[rows];
+            results.put(names[outSlots[o]], outColumns[o]);
+        }
+        for (int from = 0; from < rows; from += chunkRows) {
+            int n = Math.min(chunkRows, rows - from);
+            for (int i = 0; i < given.length; i++) {
+                System.arraycopy(given[i], from, columns[givenSlots[i]], 0, n);
+            }
+            run(n);
+            for (int o = 0; o < outSlots.length; o++) {
+                System.arraycopy(columns[outSlots[o]], 0, outColumns[o], from, n);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Evaluates the graph on every row of a CSV table, streaming the results.
+     * 
+     * @param csv the input table, with a header line; not closed
+     * @param out receives the output table, with a header line; flushed but
+     *            not closed
+     * @param outputTopics the computed topics to write, or null for
+     *                     {@link #getResultTopics()}
+     * @return the number of rows evaluated
+     * @throws IOException if reading or writing fails
+     * @throws IllegalArgumentException if the header lacks an input column, a
+     *                                  row is malformed, or an output topic is
+     *                                  not computed
+     * @throws RuntimeException if an agent fails to compute its output
+     */
+    public synchronized long evaluate(Reader csv, Writer out, List<String> outputTopics) throws IOException {
+        int[] outSlots = outputSlots(outputTopics);
+        BufferedReader reader = csv instanceof BufferedReader ? (BufferedReader) csv : new BufferedReader(csv);
+        String header = reader.readLine();
+        while (header != null && header.trim().isEmpty()) {
+            header = reader.readLine();
+        }
+        if (header == null) {
+            throw new IllegalArgumentException("CSV has no header line");
+        }
+
+        // Slot of each CSV column, -1 for columns that are not inputs
+        String[] names = header.split(",", -1);
+        int[] columnSlots = new int[names.length];
+        int[] found = new int[slotByTopic.size()];
+        for (int c = 0; c < names.length; c++) {
+            Integer slot = slotByTopic.get(names[c].trim());
+            columnSlots[c] = slot != null && source[slot] ? slot : -1;
+            if (columnSlots[c] >= 0) {
+                found[slot]++;
+            }
+        }
+        for (String input : getInputTopics()) {
+            if (found[slotByTopic.get(input)] != 1) {
+                throw new IllegalArgumentException("CSV header must name input column " + input
+                                                   + " exactly once: " + header);
+            }
+        }
+
+        String[] slotNames = slotByTopic.keySet().toArray(new String[0]);
+        StringBuilder line = new StringBuilder();
+        for (int o = 0; o < outSlots.length; o++) {
+            line.append(o > 0 ? "," : "").append(slotNames[outSlots[o]]);
+        }
+        out.write(line.append('\n').toString());
+
+        long rows = 0;
+        long lineNumber = 1;
+        int n = 0;
+        String row;
+        while ((row = reader.readLine()) != null) {
+            lineNumber++;
+            if (row.trim().isEmpty()) {
+                continue;
+            }
+            parseRow(row, columnSlots, n, lineNumber);
+            if (++n == chunkRows) {
+                run(n);
+                write(out, outSlots, n, line);
+                rows += n;
+                n = 0;
+            }
+        }
+        if (n > 0) {
+            run(n);
+            write(out, outSlots, n, line);
+            rows += n;
+        }
+        out.flush();
+        return rows;
+    }
+
+    /**
+     * Evaluates the graph on every row of a CSV file and writes the results
+     * to another.
+     * 
+     * @param input the input table
+     * @param output the output table, replaced if it exists
+     * @param outputTopics the computed topics to write, or null for
+     *                     {@link #getResultTopics()}
+     * @return the number of rows evaluated
+     * @throws IOException if reading or writing fails
+     * @see #evaluate(Reader, Writer, List)
+     */
+    public long evaluate(Path input, Path output, List<String> outputTopics) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            return evaluate(in, out, outputTopics);
+        }
+    }
+
+    /**
+     * Resolves the requested output topics.
+     * 
+     * @param outputTopics the topic names, or null for the result topics
+     * @return their slots
+     * @throws IllegalArgumentException if a topic is not computed by the agents
+     */
+    private int[] outputSlots(List<String> outputTopics) {
+        List<String> names = outputTopics != null ? outputTopics : getResultTopics();
+        int[] slots = new int[names.size()];
+        for (int o = 0; o < slots.length; o++) {
+            Integer slot = slotByTopic.get(names.get(o));
+            if (slot == null || source[slot]) {
+                throw new IllegalArgumentException("Topic " + names.get(o) + " is not computed by the graph");
+            }
+            slots[o] = slot;
+        }
+        return slots;
+    }
+
+    /**
+     * Parses one CSV row into the input columns of the current chunk.
+     * 
+     * @param row the line
+     * @param columnSlots the slot of each CSV column, -1 to skip it
+     * @param index the row's index in the chunk
+     * @param lineNumber the line number, for error messages
+     * @throws IllegalArgumentException if the row has too few cells or a
+     *                                  value is not a number
+     */
+    private void parseRow(String row, int[] columnSlots, int index, long lineNumber) {
+        int start = 0;
+        for (int c = 0; c < columnSlots.length; c++) {
+            int end = row.indexOf(',', start);
+            if (end < 0) {
+                if (c < columnSlots.length - 1) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " has " + (c + 1) + " cells, expected "
+                                                       + columnSlots.length);
+                }
+                end = row.length();
+            }
+            if (columnSlots[c] >= 0) {
+                try {
+                    columns[columnSlots[c]][index] = Double.parseDouble(row.substring(start, end).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ", column " + (c + 1)
+                                                       + ": not a number: " + row.substring(start, end), e);
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Appends the output columns of the current chunk to the output table.
+     * 
+     * @param out the output table
+     * @param outSlots the slots to write
+     * @param n the number of rows in the chunk
+     * @param line a reusable buffer
+     * @throws IOException if writing fails
+     */
+    private void write(Writer out, int[] outSlots, int n, StringBuilder line) throws IOException {
+        for (int r = 0; r < n; r++) {
+            line.setLength(0);
+            for (int o = 0; o < outSlots.length; o++) {
+                if (o > 0) {
+                    line.append(',');
+                }
+                line.append(columns[outSlots[o]][r]);
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+
+    /**
+     * Runs every agent as a kernel over the first rows of the columns.
+     * 
+     * @param n the number of rows in the chunk
+     * @throws RuntimeException if an agent fails to compute its output
+     */
+    private void run(int n) {
+        for (int s = 0; s < steps.length; s++) {
+            double[] out = columns[outputs[s]];
+            int[] in = inputs[s];
+            try {
+                switch (kinds[s]) {
+                    case PLUS:
+                        // Whole columns: the tail past n is never read
+                        VectorKernels.add(columns[in[0]], columns[in[1]], out);
+                        break;
+                    case INC:
+                        VectorKernels.offset(columns[in[0]], 1.0, out);
+                        break;
+                    case BIN_OP:
+                        BinaryOperator<Double> operator = operators[s];
+                        double[] x = columns[in[0]];
+                        double[] y = columns[in[1]];
+                        for (int r = 0; r < n; r++) {
+                            out[r] = operator.apply(x[r], y[r]);
+                        }
+                        break;
+                    default:
+                        double[] args = new double[in.length];
+                        for (int r = 0; r < n; r++) {
+                            for (int i = 0; i < in.length; i++) {
+                                args[i] = columns[in[i]][r];
+                            }
+                            out[r] = steps[s].compute(args);
+                        }
+                        break;
+                }
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Error computing " + steps[s].getName() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Evaluates a configuration over a CSV file.
+     * 
+     * @param args the configuration file, the input CSV, the output CSV and
+     *             optionally the output topics, comma-separated
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: java configs.BatchEvaluator graph.conf input.csv output.csv [Topic,...]");
+            System.exit(2);
+        }
+        GenericConfig config = new GenericConfig();
+        config.setConfFile(args[0]);
+        config.create();
+        try {
+            BatchEvaluator batch = new BatchEvaluator(config.getDeclaredAgents());
+            List<String> outputs = args.length > 3 ? Arrays.asList(args[3].split(",")) : null;
+            long start = System.nanoTime();
+            long rows = batch.evaluate(Paths.get(args[1]), Paths.get(args[2]), outputs);
+            System.out.printf("%d rows in %.1f ms%n", rows, (System.nanoTime() - start) / 1e6);
+        } finally {
+            config.close();
+        }
+        System.exit(0);
+    }
+}
@@ -3,7 +3,10 @@ package configs;
 import java.util.function.BinaryOperator;
 
 import graph.Agent;
+import graph.CompilableAgent;
+import graph.JoinTable;
 import graph.Message;
+import graph.NumericAgent;
 import graph.Topic;
 import graph.TopicManagerSingleton;
 import graph.TopicManagerSingleton.TopicManager;
@@ -58,7 +61,7 @@ import graph.TopicManagerSingleton.TopicManager;
  * @see BinaryOperator
  * @see TopicManagerSingleton
  */
-public class BinOpAgent implements Agent {
+public class BinOpAgent implements NumericAgent, CompilableAgent {
     
     /** The unique name of this agent instance */
     private String name;
@@ -79,16 +82,19 @@ public class BinOpAgent implements Agent {
     private TopicManager tm;
     
     /** The value from the first input topic */
-    private Double input1;
+    private double input1;
     
     /** The value from the second input topic */
-    private Double input2;
+    private double input2;
     
     /** Flag indicating whether a value has been received from the first input topic */
     private boolean inFound1 = false;
     
     /** Flag indicating whether a value has been received from the second input topic */
     private boolean inFound2 = false;
+    
+    /** Inputs of correlated evaluations waiting for their other operand */
+    private final JoinTable joins = new JoinTable(2, JoinTable.DEFAULT_CAPACITY);
 
     /**
      * Constructs a new BinOpAgent that performs binary operations on two input topics.
@@ -179,6 +185,7 @@ public class BinOpAgent implements Agent {
         this.input2 = 0.0;
         this.inFound1 = false;
         this.inFound2 = false;
+        joins.clear();
     }
 
     /**
@@ -197,9 +204,13 @@ public class BinOpAgent implements Agent {
      *   <li>Reset input flags for the next computation</li>
      * </ol>
      * 
+     * <p>Correlated messages (see {@link Message#getCorrelationId()}) are
+     * joined per id in a bounded {@link JoinTable} instead, so operands of
+     * different evaluations are never combined; the result carries the id.</p>
+     * 
      * @param topic the name of the topic that published the message
      * @param msg the message containing the data. Only messages with valid
-     *           numeric values (where {@code !Double.isNaN(msg.asDouble)}) 
+     *           numeric values (where {@code !Double.isNaN(msg.asDouble())}) 
      *           are processed
      * 
      * @throws RuntimeException if an error occurs during operation computation
@@ -210,36 +221,135 @@ public class BinOpAgent implements Agent {
      */
     @Override
     public void callback(String topic, Message msg) {
-        if (!Double.isNaN(msg.asDouble)) {
-            if (topic.equals(inputTopicName1)) {
-                input1 = msg.asDouble;
-                inFound1 = true;
-            } else if (topic.equals(inputTopicName2)) {
-                input2 = msg.asDouble;
-                inFound2 = true;
+        if (Double.isNaN(msg.asDouble())) {
+            return;
+        }
+        if (!msg.isCorrelated()) {
+            callbackDouble(topic, msg.asDouble(), msg.getOriginNanos());
+            return;
+        }
+        int input = topic.equals(inputTopicName1) ? 0 : topic.equals(inputTopicName2) ? 1 : -1;
+        if (input < 0) {
+            return;
+        }
+        double[] operands = joins.offer(msg.getCorrelationId(), input, msg.asDouble());
+        if (operands != null) {
+            double result;
+            try {
+                result = operation.apply(operands[0], operands[1]);
+            } catch (Exception e) {
+                throw new RuntimeException("Error computing binary operation: " + e.getMessage(), e);
             }
-            
-            // Perform computation when both inputs are available
-            if (input1 != null && input2 != null && inFound1 && inFound2) {
-                try {
-                    Double result = operation.apply(input1, input2);
-                    Message outputMsg = new Message(result);
-                    Topic outputTopic = tm.getTopic(outputTopicName);
-                    outputTopic.publish(outputMsg);
-                    
-                    // Reset flags for next computation
-                    inFound1 = false;
-                    inFound2 = false;
-                } catch (Exception e) {
-                    // Reset flags even if operation fails
-                    inFound1 = false;
-                    inFound2 = false;
-                    throw new RuntimeException("Error computing binary operation: " + e.getMessage(), e);
-                }
+            tm.getTopic(outputTopicName).publishDouble(result, msg.getOriginNanos(), msg.getCorrelationId());
+        }
+    }
+
+    /**
+     * Returns the pending joins of correlated evaluations.
+     * 
+     * @return the join table
+     */
+    public JoinTable getJoinTable() {
+        return joins;
+    }
+
+    /**
+     * Handles incoming numeric values from subscribed topics.
+     * 
+     * <p>Same logic as {@link #callback(String, Message)}, with the value
+     * received as a primitive and the result published through
+     * {@link Topic#publishDouble(double, long)}.</p>
+     * 
+     * @param topic the name of the topic that published the value
+     * @param value the numeric value
+     * @param originNanos the origin stamp of this input, propagated to the result
+     * 
+     * @throws RuntimeException if an error occurs during operation computation
+     *                         or result publishing
+     */
+    @Override
+    public void callbackDouble(String topic, double value, long originNanos) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (topic.equals(inputTopicName1)) {
+            input1 = value;
+            inFound1 = true;
+        } else if (topic.equals(inputTopicName2)) {
+            input2 = value;
+            inFound2 = true;
+        }
+        
+        // Perform computation when both inputs are available
+        if (inFound1 && inFound2) {
+            try {
+                double result = operation.apply(input1, input2);
+                Topic outputTopic = tm.getTopic(outputTopicName);
+                outputTopic.publishDouble(result, originNanos);
+                
+                // Reset flags for next computation
+                inFound1 = false;
+                inFound2 = false;
+            } catch (Exception e) {
+                // Reset flags even if operation fails
+                inFound1 = false;
+                inFound2 = false;
+                throw new RuntimeException("Error computing binary operation: " + e.getMessage(), e);
             }
         }
     }
 
+    /**
+     * Returns the two input topics, as passed to the operation.
+     * 
+     * @return the first and second input topic names
+     */
+    @Override
+    public String[] getInputTopics() {
+        return new String[] {inputTopicName1, inputTopicName2};
+    }
+
+    /**
+     * Returns the topic results are published to.
+     * 
+     * @return the output topic name
+     */
+    @Override
+    public String getOutputTopic() {
+        return outputTopicName;
+    }
+
+    /**
+     * Applies the operation to a pair of inputs.
+     * 
+     * @param inputs the first and second input values
+     * @return the result of the operation
+     */
+    @Override
+    public double compute(double[] inputs) {
+        return operation.apply(inputs[0], inputs[1]);
+    }
+
+    /**
+     * Returns the operation, for engines that call it directly.
+     * 
+     * @return the binary operation
+     */
+    BinaryOperator<Double> getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns false: the agent clears both flags after each result and waits
+     * for a new value on each input.
+     * 
+     * @return false
+     */
+    @Override
+    public boolean retainsInputs() {
+        return false;
+    }
+
     /**
      * Cleanly shuts down the agent and releases all resources.
      * 
@@ -0,0 +1,1282 @@
+package configs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import graph.Agent;
+import graph.CompilableAgent;
+import graph.JoinTable;
+import graph.Message;
+import graph.NumericAgent;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import graph.TopicManagerSingleton.TopicManager;
+
+/**
+ * Runs an acyclic group of agents as a static schedule on the publishing
+ * thread, without topics, mailboxes or handoffs between them.
+ * 
+ * <p>{@link #compile(List)} orders the agents topologically using the
+ * {@link Graph} built by {@link Graph#createFromTopics()}, gives every topic
+ * they touch an index into a flat value array and resolves each agent's
+ * inputs and output to such indexes. A value arriving on a topic is then
+ * propagated by one pass over the topic's cone of influence, taken from a
+ * {@link DependencyIndex} of the same graph: every agent of the cone whose
+ * inputs changed is evaluated through
+ * {@link CompilableAgent#compute(double[])}, in schedule order, and stores
+ * its result for the agents after it. Agents the topic cannot reach are not
+ * even looked at. No topic is looked up, nothing is queued and nothing is
+ * published until the pass is complete.</p>
+ * 
+ * <p><strong>Semantics:</strong> an agent fires when at least one of its
+ * inputs changed in the pass and every input has delivered a value, as its
+ * callbacks would. Because agents run after all of their producers, an agent
+ * fires at most once per incoming value; in a diamond the join sees both new
+ * inputs at once, where the topic engine would deliver them one by one.</p>
+ * 
+ * <p><strong>Glitch Freedom:</strong> propagation is ordered by topological
+ * rank, like the propagation queue of a reactive runtime: no agent fires
+ * before every changed input it depends on has settled, so no agent ever
+ * computes with one fresh and one stale operand, and results are published
+ * to topics only once the pass is complete, so listeners never see an
+ * intermediate state either. Inputs that change together, such as both
+ * operands of {@link MathExampleConfig}, are propagated in a single pass
+ * with {@link #batch(Runnable)}, so every agent downstream of any of them
+ * still fires only once.</p>
+ * 
+ * <p><strong>Incremental:</strong> a topic that is
+ * {@linkplain Topic#isIncremental() incremental} when the graph is compiled
+ * keeps that behaviour inside the schedule: a value equal to the slot's
+ * previous value, whether it arrives from outside or is computed by an
+ * agent, does not count as a change, so agents downstream of it are skipped
+ * and nothing is published for it. An unchanged input thus costs no
+ * evaluation at all, and a recomputed but identical result stops the pass
+ * at that agent. See {@link #getSuppressedCount()}.</p>
+ * 
+ * <p><strong>Levels:</strong> every agent is assigned a topological level,
+ * one more than the highest level of the agents it consumes from, and the
+ * schedule is ordered by level. Agents of one level never depend on each
+ * other, so with {@link #setPool(ForkJoinPool, int)} the agents of a wide
+ * level are evaluated in parallel fork/join tasks, and their results are
+ * stored in schedule order once the level is complete. Narrow levels still
+ * run on the publishing thread. Results are the same either way.</p>
+ * 
+ * <p><strong>Correlation:</strong> values carrying a correlation id (see
+ * {@link Message#getCorrelationId()}) are evaluated against separate slot
+ * values per id, so concurrent evaluations never combine each other's
+ * operands, and their results are published with the id. As with a
+ * {@link JoinTable}, each agent fires once per evaluation, and the state of
+ * an evaluation is dropped as soon as no agent waits for more of its inputs;
+ * beyond {@link JoinTable#DEFAULT_CAPACITY} incomplete evaluations, the least
+ * recently used one is dropped.</p>
+ * 
+ * <p><strong>Integration:</strong> {@link #attach()} takes over the agents'
+ * subscriptions: the compiled graph subscribes to every topic the agents
+ * consume, and after each pass publishes the values it computed to their
+ * topics, so listeners, the topics table and agents outside the group
+ * still see every result. Values published back to it during a pass are
+ * recognized as its own and ignored.</p>
+ * 
+ * <p><strong>Fusion:</strong> with {@link #setFused(boolean)} the compiled
+ * graph stands for a chain of agents fused into one, see
+ * {@link GenericConfig}. Topics the agents both publish and consume are then
+ * internal wires: the compiled graph publishes their values only while
+ * something else {@linkplain Topic#isObservedBesides(Agent) observes} them.
+ * It still subscribes to them itself, outside its wrapper, so a value
+ * published to one from outside the chain enters the schedule there.</p>
+ * 
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>{@code
+ * CompiledGraph compiled = CompiledGraph.compile(List.of(inc, plus));
+ * compiled.attach();
+ * int a = compiled.slotOf("A");
+ * compiled.publish(a, 2.0, System.nanoTime()); // runs inc, then plus
+ * double sum = compiled.getValue("Sum");
+ * compiled.close();
+ * }</pre>
+ * 
+ * <p><strong>Thread Safety:</strong> passes are serialized; concurrent
+ * publishers wait for each other.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see CompilableAgent
+ * @see GenericConfig
+ */
+public class CompiledGraph implements NumericAgent {
+
+    /** Default largest number of agents evaluated by one fork/join task */
+    public static final int DEFAULT_GRAIN = 64;
+
+    /** Static counter for generating unique names */
+    private static int instanceCounter = 0;
+
+    /** The unique name of this compiled graph */
+    private final String name;
+
+    /** Topic name of each slot */
+    private final String[] slotNames;
+
+    /** Slot of each topic name */
+    private final Map<String, Integer> slotByTopic;
+
+    /** Whether each slot is written by an agent of the schedule */
+    private final boolean[] computed;
+
+    /** Whether each slot is an input of an agent of the schedule */
+    private final boolean[] consumed;
+
+    /** Agents in the cone of influence of each slot, in schedule order */
+    private final int[][] cones;
+
+    /** Whether each slot ignores values equal to its previous value */
+    private final boolean[] incremental;
+
+    /** Whether each incremental slot has an uncorrelated value to compare with */
+    private final boolean[] known;
+
+    /** Number of values ignored as unchanged */
+    private long suppressed;
+
+    /** The agents, in topological order */
+    private final CompilableAgent[] steps;
+
+    /** Input slots of each agent, -1 for an unconnected input */
+    private final int[][] inputs;
+
+    /** Output slot of each agent, -1 if it has none */
+    private final int[] outputs;
+
+    /** Whether each agent keeps its inputs after firing */
+    private final boolean[] retains;
+
+    /** Topological level of each agent */
+    private final int[] stepLevel;
+
+    /** Index of the first agent of each level, followed by the schedule length */
+    private final int[] levelStart;
+
+    /** Latest value of each slot, in the evaluation being run */
+    private double[] values;
+
+    /** Whether each slot changed in the current pass */
+    private final boolean[] changed;
+
+    /** Whether each agent input has delivered since the agent last consumed it, in the evaluation being run */
+    private boolean[][] seen;
+
+    /** Values and inputs seen of uncorrelated evaluations */
+    private final State shared;
+
+    /** Whether the current pass belongs to a correlated evaluation */
+    private boolean joining;
+
+    /** Values and inputs seen of incomplete correlated evaluations, least recently used first */
+    private final LinkedHashMap<Long, State> correlated;
+
+    /** Reusable argument array of each agent */
+    private final double[][] args;
+
+    /** Latest result of each agent */
+    private final double[] results;
+
+    /** Whether each agent fired in the level being evaluated in parallel */
+    private final boolean[] fired;
+
+    /** Slots changed in the current pass, in the order they changed */
+    private final int[] touched;
+
+    /** Number of entries in {@link #touched} */
+    private int touchedCount;
+
+    /** Values that arrived from outside the schedule during a pass */
+    private final ArrayDeque<Deferred> deferred = new ArrayDeque<>();
+
+    /** Topic of each slot while attached, null while detached */
+    private Topic[] topics;
+
+    /** The thread running a pass, or null */
+    private volatile Thread runner;
+
+    /** Whether topics computed and consumed by the agents are internal */
+    private boolean fused;
+
+    /** The thread collecting a batch, or null */
+    private Thread batcher;
+
+    /** Slots set in the current batch, in the order they were first set */
+    private final int[] batchSlots;
+
+    /** Number of entries in {@link #batchSlots} */
+    private int batchCount;
+
+    /** Latest value of each slot in the current batch */
+    private final double[] batchValues;
+
+    /** Whether each slot was set in the current batch */
+    private final boolean[] batched;
+
+    /** Origin stamp of the first value of the current batch */
+    private long batchOrigin;
+
+    /** Agents of the cones of a batch, merged in schedule order */
+    private final int[] merged;
+
+    /** Whether each agent is in {@link #merged} */
+    private final boolean[] inMerged;
+
+    /** The pool evaluating wide levels, or null to run every level on the publishing thread */
+    private ForkJoinPool pool;
+
+    /** Largest number of agents evaluated by one fork/join task */
+    private int grain = DEFAULT_GRAIN;
+
+    /**
+     * Creates a compiled graph from a resolved schedule.
+     * 
+     * @param steps the agents ordered by level
+     * @param levels the level of each agent
+     * @param slotByTopic the slot of each topic touched by the agents
+     * @param cones the agents downstream of each slot, in schedule order
+     * @param incremental whether each slot ignores unchanged values
+     */
+    private CompiledGraph(CompilableAgent[] steps, int[] levels, Map<String, Integer> slotByTopic,
+                          int[][] cones, boolean[] incremental) {
+        synchronized (CompiledGraph.class) {
+            instanceCounter++;
+            this.name = "CompiledGraph_" + instanceCounter;
+        }
+        int slots = slotByTopic.size();
+        this.steps = steps;
+        this.slotByTopic = slotByTopic;
+        this.slotNames = slotByTopic.keySet().toArray(new String[0]);
+        this.computed = new boolean[slots];
+        this.consumed = new boolean[slots];
+        this.cones = cones;
+        this.incremental = incremental;
+        this.known = new boolean[slots];
+        this.inputs = new int[steps.length][];
+        this.outputs = new int[steps.length];
+        this.retains = new boolean[steps.length];
+        this.seen = new boolean[steps.length][];
+        this.args = new double[steps.length][];
+        this.results = new double[steps.length];
+        this.fired = new boolean[steps.length];
+        this.stepLevel = levels;
+        int levelCount = levels.length > 0 ? levels[levels.length - 1] + 1 : 0;
+        this.levelStart = new int[levelCount + 1];
+        for (int s = steps.length - 1; s >= 0; s--) {
+            levelStart[levels[s]] = s;
+        }
+        levelStart[levelCount] = steps.length;
+        this.values = new double[slots];
+        this.changed = new boolean[slots];
+        this.touched = new int[slots];
+        this.batchSlots = new int[slots];
+        this.batchValues = new double[slots];
+        this.batched = new boolean[slots];
+        this.merged = new int[steps.length];
+        this.inMerged = new boolean[steps.length];
+
+        for (int s = 0; s < steps.length; s++) {
+            String[] in = steps[s].getInputTopics();
+            inputs[s] = new int[in.length];
+            for (int i = 0; i < in.length; i++) {
+                inputs[s][i] = in[i] != null ? slotByTopic.get(in[i]) : -1;
+                if (in[i] != null) {
+                    consumed[inputs[s][i]] = true;
+                }
+            }
+            String out = steps[s].getOutputTopic();
+            outputs[s] = out != null ? slotByTopic.get(out) : -1;
+            if (out != null) {
+                computed[outputs[s]] = true;
+            }
+            retains[s] = steps[s].retainsInputs();
+            seen[s] = new boolean[in.length];
+            args[s] = new double[in.length];
+        }
+        this.shared = new State(values, seen);
+        this.correlated = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, State> eldest) {
+                return size() > JoinTable.DEFAULT_CAPACITY;
+            }
+        };
+    }
+
+    /**
+     * Compiles a group of agents into a schedule.
+     * 
+     * <p>The agents must still be subscribed to their input topics, since
+     * the order is taken from the current topics. Agents outside the group
+     * are not part of the schedule; the topics they publish to are inputs of
+     * the compiled graph like any other. Whether each topic is
+     * {@linkplain Topic#isIncremental() incremental} is read now.</p>
+     * 
+     * @param agents the agents to compile
+     * @return the compiled graph, not yet attached
+     * @throws NullPointerException if agents is null
+     * @throws IllegalArgumentException if an agent does not implement
+     *                                  {@link CompilableAgent}, or the agents
+     *                                  form a cycle
+     */
+    public static CompiledGraph compile(List<? extends Agent> agents) {
+        Graph graph = new Graph();
+        graph.createFromTopics();
+        List<CompilableAgent> order = schedule(agents, graph);
+        int[] levels = new int[order.size()];
+        Map<String, Integer> topicLevel = new HashMap<>();
+        for (int s = 0; s < levels.length; s++) {
+            levels[s] = level(order.get(s), topicLevel);
+        }
+
+        Map<String, Integer> slotByTopic = new LinkedHashMap<>();
+        for (CompilableAgent agent : order) {
+            for (String topic : agent.getInputTopics()) {
+                if (topic != null) {
+                    slotByTopic.putIfAbsent(topic, slotByTopic.size());
+                }
+            }
+            if (agent.getOutputTopic() != null) {
+                slotByTopic.putIfAbsent(agent.getOutputTopic(), slotByTopic.size());
+            }
+        }
+
+        // Cone of influence of each slot, as schedule indexes
+        Map<String, Integer> stepOf = new HashMap<>();
+        for (int s = 0; s < order.size(); s++) {
+            stepOf.put(order.get(s).getName(), s);
+        }
+        DependencyIndex index = new DependencyIndex(graph);
+        TopicManager tm = TopicManagerSingleton.get();
+        int[][] cones = new int[slotByTopic.size()][];
+        boolean[] incremental = new boolean[slotByTopic.size()];
+        for (Map.Entry<String, Integer> entry : slotByTopic.entrySet()) {
+            cones[entry.getValue()] = index.getAffectedAgents(entry.getKey()).stream()
+                    .filter(stepOf::containsKey).mapToInt(stepOf::get).sorted().toArray();
+            incremental[entry.getValue()] = tm.getTopic(entry.getKey()).isIncremental();
+        }
+        return new CompiledGraph(order.toArray(new CompilableAgent[0]), levels, slotByTopic, cones, incremental);
+    }
+
+    /**
+     * Orders a group of agents topologically and by level.
+     * 
+     * @param agents the agents to order
+     * @param graph the graph of the current topics
+     * @return the agents ordered by level, and within a level in the order given
+     * @throws NullPointerException if agents is null
+     * @throws IllegalArgumentException if an agent does not implement
+     *                                  {@link CompilableAgent}, or the agents
+     *                                  form a cycle
+     */
+    static List<CompilableAgent> schedule(List<? extends Agent> agents, Graph graph) {
+        if (agents == null) {
+            throw new NullPointerException("Agents cannot be null");
+        }
+        Map<String, CompilableAgent> byNode = new LinkedHashMap<>();
+        for (Agent agent : agents) {
+            if (!(agent instanceof CompilableAgent)) {
+                throw new IllegalArgumentException("Agent " + agent.getName() + " ("
+                                                   + agent.getClass().getName() + ") cannot be compiled");
+            }
+            byNode.put("A" + agent.getName(), (CompilableAgent) agent);
+        }
+        List<CompilableAgent> order = sort(graph, byNode);
+
+        // Level = one more than the highest level of any producer of an input
+        Map<String, Integer> topicLevel = new HashMap<>();
+        Map<CompilableAgent, Integer> levelOf = new HashMap<>();
+        for (CompilableAgent agent : order) {
+            levelOf.put(agent, level(agent, topicLevel));
+        }
+        order.sort((a, b) -> Integer.compare(levelOf.get(a), levelOf.get(b)));
+        return order;
+    }
+
+    /**
+     * Computes the level of an agent from the levels of its input topics
+     * and records the level of its output topic.
+     * 
+     * @param agent the agent, after all agents it consumes from
+     * @param topicLevel the level of each topic produced so far; updated
+     * @return one more than the highest level of any producer of an input
+     */
+    private static int level(CompilableAgent agent, Map<String, Integer> topicLevel) {
+        int level = 0;
+        for (String topic : agent.getInputTopics()) {
+            if (topic != null) {
+                level = Math.max(level, topicLevel.getOrDefault(topic, 0));
+            }
+        }
+        if (agent.getOutputTopic() != null) {
+            topicLevel.merge(agent.getOutputTopic(), level + 1, Math::max);
+        }
+        return level;
+    }
+
+    /**
+     * Orders the agents of the group topologically (Kahn's algorithm).
+     * 
+     * <p>An agent depends on another if it consumes a topic the other
+     * publishes to, as recorded by the graph's agent to topic to agent
+     * edges. Ties keep the order in which the agents were given.</p>
+     * 
+     * @param graph the graph of the current topics
+     * @param byNode the agents of the group by graph node name
+     * @return the agents in topological order
+     * @throws IllegalArgumentException if the agents form a cycle
+     */
+    private static List<CompilableAgent> sort(Graph graph, Map<String, CompilableAgent> byNode) {
+        Map<String, Node> nodes = new HashMap<>();
+        for (Node node : graph) {
+            nodes.put(node.getName(), node);
+        }
+        Map<String, List<String>> successors = new LinkedHashMap<>();
+        Map<String, Integer> inDegree = new HashMap<>();
+        for (String agentNode : byNode.keySet()) {
+            successors.put(agentNode, new ArrayList<>());
+            inDegree.put(agentNode, 0);
+        }
+        for (String agentNode : byNode.keySet()) {
+            Node node = nodes.get(agentNode);
+            if (node == null) {
+                continue;
+            }
+            for (Node topicNode : node.getEdges()) {
+                for (Node consumer : topicNode.getEdges()) {
+                    if (byNode.containsKey(consumer.getName())) {
+                        successors.get(agentNode).add(consumer.getName());
+                        inDegree.merge(consumer.getName(), 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        ArrayDeque<String> ready = new ArrayDeque<>();
+        for (String agentNode : byNode.keySet()) {
+            if (inDegree.get(agentNode) == 0) {
+                ready.add(agentNode);
+            }
+        }
+        List<CompilableAgent> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String agentNode = ready.poll();
+            order.add(byNode.get(agentNode));
+            for (String next : successors.get(agentNode)) {
+                if (inDegree.merge(next, -1, Integer::sum) == 0) {
+                    ready.add(next);
+                }
+            }
+        }
+        if (order.size() < byNode.size()) {
+            List<String> cyclic = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : inDegree.entrySet()) {
+                if (entry.getValue() > 0) {
+                    cyclic.add(entry.getKey().substring(1));
+                }
+            }
+            throw new IllegalArgumentException("Agents form a cycle: " + cyclic);
+        }
+        return order;
+    }
+
+    /**
+     * Takes over the subscriptions of the compiled agents.
+     * 
+     * <p>Unsubscribes every agent from its input topics and subscribes this
+     * compiled graph to all of them instead. The agents stay registered as
+     * publishers.</p>
+     * 
+     * @throws IllegalStateException if already attached
+     */
+    public synchronized void attach() {
+        if (topics != null) {
+            throw new IllegalStateException(name + " is already attached");
+        }
+        TopicManager tm = TopicManagerSingleton.get();
+        Topic[] resolved = new Topic[slotNames.length];
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            resolved[slot] = tm.getTopic(slotNames[slot]);
+        }
+        for (CompilableAgent agent : steps) {
+            for (String topic : agent.getInputTopics()) {
+                if (topic != null) {
+                    tm.getTopic(topic).unsubscribe(agent);
+                }
+            }
+        }
+        topics = resolved;
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            if (isSubscribed(slot)) {
+                resolved[slot].subscribe(this);
+            }
+        }
+    }
+
+    /**
+     * Unsubscribes this compiled graph from its topics. The agents are not
+     * resubscribed.
+     */
+    public synchronized void detach() {
+        if (topics == null) {
+            return;
+        }
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            if (isSubscribed(slot)) {
+                topics[slot].unsubscribe(this);
+            }
+        }
+        topics = null;
+    }
+
+    /**
+     * Returns whether the compiled graph subscribes to a slot's topic while
+     * attached.
+     * 
+     * @param slot the slot
+     * @return true if an agent consumes the slot
+     */
+    private boolean isSubscribed(int slot) {
+        return consumed[slot];
+    }
+
+    /**
+     * Returns whether a slot is an internal wire of a fused chain.
+     * 
+     * @param slot the slot
+     * @return true if fused and the agents both publish and consume the slot
+     */
+    private boolean isInternal(int slot) {
+        return fused && consumed[slot] && computed[slot];
+    }
+
+    /**
+     * Makes the topics that the agents both publish and consume internal.
+     * 
+     * <p>A fused compiled graph publishes the values of such a topic only
+     * while something other than itself
+     * {@linkplain Topic#isObservedBesides(Agent) observes} the topic, and
+     * leaves the topic out of {@link #getInputTopics()}, so a wrapper placed
+     * on the input topics does not take it over. The compiled graph stays
+     * subscribed to it directly: a value published to it from outside the
+     * chain, for example over HTTP, runs a pass on the publishing thread,
+     * while its own publications are recognized and ignored. The topics the
+     * agents only publish to always receive their values.</p>
+     * 
+     * @param fused true to treat the intermediate topics as internal
+     * @throws IllegalStateException if attached
+     */
+    public synchronized void setFused(boolean fused) {
+        if (topics != null) {
+            throw new IllegalStateException(name + " is attached");
+        }
+        this.fused = fused;
+    }
+
+    /**
+     * Returns the names of the topics that feed the compiled graph from
+     * outside. In fused mode the internal topics are left out, although the
+     * compiled graph subscribes to them as well.
+     * 
+     * @return the topic names, in slot order
+     */
+    public synchronized List<String> getInputTopics() {
+        List<String> names = new ArrayList<>();
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            if (isSubscribed(slot) && !isInternal(slot)) {
+                names.add(slotNames[slot]);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the slot of a topic, for use with {@link #publish(int, double, long)}.
+     * 
+     * @param topic the topic name
+     * @return the slot, or -1 if no compiled agent consumes or publishes the topic
+     */
+    public int slotOf(String topic) {
+        Integer slot = slotByTopic.get(topic);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Propagates a new value of a topic through the schedule.
+     * 
+     * <p>Runs on the calling thread and returns once every affected agent has
+     * fired and, if attached, every computed value has been published to its
+     * topic.</p>
+     * 
+     * @param slot the topic's slot, see {@link #slotOf(String)}
+     * @param value the new value
+     * @param originNanos the origin stamp, passed on to the published results
+     * @throws IndexOutOfBoundsException if the slot does not exist
+     * @throws RuntimeException if an agent fails to compute its output
+     */
+    public void publish(int slot, double value, long originNanos) {
+        publish(slot, value, originNanos, Message.NO_CORRELATION);
+    }
+
+    /**
+     * Propagates a new value of a topic through the schedule, within one
+     * evaluation.
+     * 
+     * @param slot the topic's slot, see {@link #slotOf(String)}
+     * @param value the new value
+     * @param originNanos the origin stamp, passed on to the published results
+     * @param correlationId the evaluation, or {@link Message#NO_CORRELATION}
+     *                      for the shared latest values
+     * @throws IndexOutOfBoundsException if the slot does not exist
+     * @throws RuntimeException if an agent fails to compute its output
+     */
+    public synchronized void publish(int slot, double value, long originNanos, long correlationId) {
+        if (batcher == Thread.currentThread() && correlationId == Message.NO_CORRELATION) {
+            if (!batched[slot]) {
+                batched[slot] = true;
+                batchSlots[batchCount++] = slot;
+                if (batchCount == 1) {
+                    batchOrigin = originNanos;
+                }
+            }
+            batchValues[slot] = value;
+            return;
+        }
+        runner = Thread.currentThread();
+        try {
+            run(slot, value, originNanos, correlationId);
+            runDeferred();
+        } finally {
+            endPasses();
+        }
+    }
+
+    /**
+     * Propagates several values that change together in a single pass.
+     * 
+     * <p>Uncorrelated values given to this compiled graph by the updates,
+     * through {@link #publish(int, double, long)} or through a subscribed
+     * topic, are collected instead of being propagated one by one; a later
+     * value of the same topic replaces an earlier one. Once the updates
+     * return, the collected values are stored together and one pass over the
+     * union of their cones of influence follows, so an agent depending on
+     * several of them fires once, with all of them. Correlated values are
+     * propagated immediately. A nested call just runs its updates as part of
+     * the enclosing batch.</p>
+     * 
+     * <p>Other publishers wait until the batch has been propagated, so the
+     * updates must not wait for them.</p>
+     * 
+     * <p><strong>Usage Example:</strong></p>
+     * <pre>{@code
+     * compiled.batch(() -> {
+     *     tm.getTopic("A").publishDouble(5.0);
+     *     tm.getTopic("B").publishDouble(3.0);
+     * }); // plus, minus and mul each fire once
+     * }</pre>
+     * 
+     * @param updates publishes the values that change together
+     * @throws NullPointerException if updates is null
+     * @throws RuntimeException if an agent fails to compute its output; if
+     *                          the updates throw, nothing is propagated
+     */
+    public synchronized void batch(Runnable updates) {
+        if (updates == null) {
+            throw new NullPointerException("Updates cannot be null");
+        }
+        Thread current = Thread.currentThread();
+        if (batcher == current) {
+            updates.run();
+            return;
+        }
+        batcher = current;
+        try {
+            updates.run();
+        } catch (RuntimeException | Error e) {
+            clearBatch();
+            throw e;
+        } finally {
+            batcher = null;
+        }
+        if (batchCount == 0) {
+            return;
+        }
+        runner = current;
+        try {
+            runBatch();
+            runDeferred();
+        } finally {
+            clearBatch();
+            endPasses();
+        }
+    }
+
+    /**
+     * Forgets the values collected for a batch.
+     */
+    private void clearBatch() {
+        for (int i = 0; i < batchCount; i++) {
+            batched[batchSlots[i]] = false;
+        }
+        batchCount = 0;
+    }
+
+    /**
+     * Runs the values that arrived from outside the schedule during the
+     * passes, until none is left.
+     */
+    private void runDeferred() {
+        Deferred next;
+        while ((next = deferred.poll()) != null) {
+            run(next.slot, next.value, next.originNanos, next.correlationId);
+        }
+    }
+
+    /**
+     * Restores the uncorrelated state after the passes of one call.
+     */
+    private void endPasses() {
+        deferred.clear();
+        values = shared.values;
+        seen = shared.seen;
+        runner = null;
+    }
+
+    /**
+     * Runs one pass of the schedule for the values of a batch and publishes
+     * its results.
+     */
+    private void runBatch() {
+        enter(shared);
+        try {
+            int count = 0;
+            for (int i = 0; i < batchCount; i++) {
+                int slot = batchSlots[i];
+                if (!set(slot, batchValues[slot])) {
+                    continue;
+                }
+                for (int s : cones[slot]) {
+                    if (!inMerged[s]) {
+                        inMerged[s] = true;
+                        merged[count++] = s;
+                    }
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                inMerged[merged[k]] = false;
+            }
+            Arrays.sort(merged, 0, count);
+            int given = touchedCount;
+            propagate(merged, count);
+            mirror(given, batchOrigin, Message.NO_CORRELATION);
+        } finally {
+            clearChanged();
+        }
+    }
+
+    /**
+     * Runs one pass of the schedule and publishes its results.
+     * 
+     * @param slot the slot that changed
+     * @param value its new value
+     * @param originNanos the origin stamp
+     * @param correlationId the evaluation
+     */
+    private void run(int slot, double value, long originNanos, long correlationId) {
+        State state = shared;
+        if (correlationId != Message.NO_CORRELATION) {
+            state = correlated.get(correlationId);
+            if (state == null) {
+                state = new State(new double[values.length], new boolean[steps.length][]);
+                for (int s = 0; s < steps.length; s++) {
+                    state.seen[s] = new boolean[inputs[s].length];
+                }
+                correlated.put(correlationId, state);
+            }
+        }
+        enter(state);
+        try {
+            if (!set(slot, value)) {
+                return;
+            }
+            propagate(cones[slot], cones[slot].length);
+            if (joining && !isWaiting(state)) {
+                correlated.remove(correlationId);
+            }
+            mirror(1, originNanos, correlationId);
+        } finally {
+            clearChanged();
+        }
+    }
+
+    /**
+     * Makes an evaluation's values and inputs seen the current ones and
+     * starts a pass in it.
+     * 
+     * @param state the evaluation
+     */
+    private void enter(State state) {
+        values = state.values;
+        seen = state.seen;
+        joining = state != shared;
+        touchedCount = 0;
+    }
+
+    /**
+     * Evaluates agents level by level, storing the outputs of those that
+     * fire.
+     * 
+     * @param cone the agents to consider, in schedule order
+     * @param length the number of agents in the cone
+     */
+    private void propagate(int[] cone, int length) {
+        for (int from = 0, to; from < length; from = to) {
+            // The agents of the cone on the same level as cone[from]
+            to = from + 1;
+            while (to < length && stepLevel[cone[to]] == stepLevel[cone[from]]) {
+                to++;
+            }
+            ForkJoinPool p = pool;
+            if (p != null && to - from > grain) {
+                runParallel(p, cone, from, to);
+                continue;
+            }
+            for (int k = from; k < to; k++) {
+                int s = cone[k];
+                if (evaluate(s) && outputs[s] >= 0) {
+                    set(outputs[s], results[s]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes the values computed in the pass to their topics, if attached.
+     * 
+     * @param given the number of changed slots that were given to the pass
+     *              rather than computed; they come first and are skipped
+     * @param originNanos the origin stamp
+     * @param correlationId the evaluation
+     */
+    private void mirror(int given, long originNanos, long correlationId) {
+        Topic[] attached = topics;
+        if (attached != null) {
+            for (int i = given; i < touchedCount; i++) {
+                int slot = touched[i];
+                if (isInternal(slot) && !attached[slot].isObservedBesides(this)) {
+                    continue;
+                }
+                attached[slot].publishDouble(values[slot], originNanos, correlationId);
+            }
+        }
+    }
+
+    /**
+     * Clears the changed marks of the pass.
+     */
+    private void clearChanged() {
+        for (int i = 0; i < touchedCount; i++) {
+            changed[touched[i]] = false;
+        }
+    }
+
+    /**
+     * Returns whether any agent has received some of its inputs in an
+     * evaluation.
+     * 
+     * @param state the evaluation
+     * @return true if an agent waits for more inputs
+     */
+    private static boolean isWaiting(State state) {
+        for (boolean[] inSeen : state.seen) {
+            for (boolean seenInput : inSeen) {
+                if (seenInput) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates agents of one level in fork/join tasks, then stores their
+     * results in schedule order.
+     * 
+     * @param p the pool
+     * @param cone the agents being evaluated, in schedule order
+     * @param from the position in the cone of the first agent of the level
+     * @param to the position in the cone of the end of the level, exclusive
+     */
+    private void runParallel(ForkJoinPool p, int[] cone, int from, int to) {
+        try {
+            p.invoke(new LevelTask(cone, from, to));
+        } catch (RuntimeException e) {
+            for (int k = from; k < to; k++) {
+                fired[cone[k]] = false;
+            }
+            throw e;
+        }
+        for (int k = from; k < to; k++) {
+            int s = cone[k];
+            if (fired[s]) {
+                fired[s] = false;
+                if (outputs[s] >= 0) {
+                    set(outputs[s], results[s]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fires an agent if one of its inputs changed in this pass and all of
+     * them have delivered, storing its output in {@link #results}.
+     * 
+     * <p>Only reads the shared slot state, so the agents of one level can be
+     * evaluated concurrently.</p>
+     * 
+     * @param s the agent's index in the schedule
+     * @return true if the agent fired
+     * @throws RuntimeException if the agent fails to compute its output
+     */
+    private boolean evaluate(int s) {
+        int[] in = inputs[s];
+        boolean[] inSeen = seen[s];
+        boolean fire = false;
+        boolean ready = true;
+        for (int i = 0; i < in.length; i++) {
+            int input = in[i];
+            if (input < 0) {
+                ready = false;
+            } else if (changed[input]) {
+                inSeen[i] = true;
+                fire = true;
+            } else if (!inSeen[i]) {
+                ready = false;
+            }
+        }
+        if (!fire || !ready) {
+            return false;
+        }
+        double[] a = args[s];
+        for (int i = 0; i < in.length; i++) {
+            a[i] = values[in[i]];
+        }
+        if (!retains[s] || joining) {
+            Arrays.fill(inSeen, false);
+        }
+        try {
+            results[s] = steps[s].compute(a);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Error computing " + steps[s].getName() + ": " + e.getMessage(), e);
+        }
+        return true;
+    }
+
+    /**
+     * Stores a slot value and marks the slot as changed in this pass, unless
+     * the slot is incremental and the value is the one it already holds.
+     * 
+     * <p>Correlated evaluations start without values, so nothing is ignored
+     * in them.</p>
+     * 
+     * @param slot the slot
+     * @param value the value
+     * @return false if the value was ignored as unchanged
+     */
+    private boolean set(int slot, double value) {
+        if (incremental[slot] && !joining) {
+            if (known[slot] && Double.compare(values[slot], value) == 0) {
+                suppressed++;
+                return false;
+            }
+            known[slot] = true;
+        }
+        values[slot] = value;
+        if (!changed[slot]) {
+            changed[slot] = true;
+            touched[touchedCount++] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of values ignored because an incremental slot
+     * already held them.
+     * 
+     * @return the count since the graph was compiled
+     */
+    public synchronized long getSuppressedCount() {
+        return suppressed;
+    }
+
+    /**
+     * Returns the latest value of a slot.
+     * 
+     * @param slot the slot
+     * @return the latest uncorrelated value, 0.0 if it has never been set
+     */
+    public synchronized double getValue(int slot) {
+        return shared.values[slot];
+    }
+
+    /**
+     * Returns the latest value of a topic.
+     * 
+     * @param topic the topic name
+     * @return the latest uncorrelated value, or NaN if the topic is not part
+     *         of the schedule
+     */
+    public double getValue(String topic) {
+        int slot = slotOf(topic);
+        return slot >= 0 ? getValue(slot) : Double.NaN;
+    }
+
+    /**
+     * Evaluates levels wider than the grain in parallel on a fork/join pool.
+     * 
+     * @param pool the pool, or null to run every level on the publishing thread
+     * @param grain the largest number of agents evaluated by one task; levels
+     *              with no more agents than this run on the publishing thread
+     * @throws IllegalArgumentException if grain is not positive
+     */
+    public synchronized void setPool(ForkJoinPool pool, int grain) {
+        if (grain <= 0) {
+            throw new IllegalArgumentException("Grain must be positive, got: " + grain);
+        }
+        this.pool = pool;
+        this.grain = grain;
+    }
+
+    /**
+     * Returns the pool evaluating wide levels.
+     * 
+     * @return the pool, or null if every level runs on the publishing thread
+     */
+    public synchronized ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the agents grouped by topological level.
+     * 
+     * @return one list per level, in order; agents of one level never depend
+     *         on each other
+     */
+    public List<List<CompilableAgent>> getLevels() {
+        List<List<CompilableAgent>> levels = new ArrayList<>();
+        for (int level = 0; level < levelStart.length - 1; level++) {
+            levels.add(List.of(Arrays.copyOfRange(steps, levelStart[level], levelStart[level + 1])));
+        }
+        return levels;
+    }
+
+    /**
+     * Returns the agents in the order they are evaluated.
+     * 
+     * @return the schedule
+     */
+    public List<CompilableAgent> getSchedule() {
+        return List.of(steps);
+    }
+
+    /**
+     * Returns the unique name of this compiled graph.
+     * 
+     * @return the name, e.g. "CompiledGraph_1"
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Forgets all values and which inputs each agent has seen, including
+     * those of correlated evaluations.
+     */
+    @Override
+    public synchronized void reset() {
+        Arrays.fill(shared.values, 0.0);
+        Arrays.fill(known, false);
+        for (boolean[] inSeen : shared.seen) {
+            Arrays.fill(inSeen, false);
+        }
+        correlated.clear();
+    }
+
+    /**
+     * Processes a message from a subscribed topic; non-numeric messages are
+     * ignored, like the compiled agents would.
+     * 
+     * @param topic the name of the topic
+     * @param msg the message
+     */
+    @Override
+    public void callback(String topic, Message msg) {
+        if (!Double.isNaN(msg.asDouble())) {
+            receive(topic, msg.asDouble(), msg.getOriginNanos(), msg.getCorrelationId());
+        }
+    }
+
+    /**
+     * Processes a numeric value from a subscribed topic by running a pass.
+     * 
+     * <p>During a pass on this thread, results this compiled graph publishes
+     * come back here and are ignored; values of other topics, published by
+     * agents outside the group in reaction to a result, are run after the
+     * current pass.</p>
+     * 
+     * @param topic the name of the topic
+     * @param value the value
+     * @param originNanos the origin stamp
+     */
+    @Override
+    public void callbackDouble(String topic, double value, long originNanos) {
+        if (!Double.isNaN(value)) {
+            receive(topic, value, originNanos, Message.NO_CORRELATION);
+        }
+    }
+
+    /**
+     * Runs a pass for a value from a subscribed topic, or defers it if it
+     * arrived during a pass on this thread.
+     * 
+     * @param topic the name of the topic
+     * @param value the value
+     * @param originNanos the origin stamp
+     * @param correlationId the evaluation, or {@link Message#NO_CORRELATION}
+     */
+    private void receive(String topic, double value, long originNanos, long correlationId) {
+        int slot = slotOf(topic);
+        if (slot < 0) {
+            return;
+        }
+        if (runner == Thread.currentThread()) {
+            if (!computed[slot]) {
+                deferred.add(new Deferred(slot, value, originNanos, correlationId));
+            }
+            return;
+        }
+        publish(slot, value, originNanos, correlationId);
+    }
+
+    /**
+     * Detaches from the topics; the compiled agents are closed by their owner.
+     */
+    @Override
+    public void close() {
+        detach();
+    }
+
+    /**
+     * Evaluates a range of agents of one level, splitting it in halves until
+     * no more than {@link #grain} agents are left.
+     */
+    private final class LevelTask extends RecursiveAction {
+
+        /** Serialization version identifier */
+        private static final long serialVersionUID = 1L;
+
+        /** The agents being evaluated, in schedule order */
+        private final int[] cone;
+
+        /** Position in the cone of the first agent of the range */
+        private final int from;
+
+        /** Position in the cone of the end of the range, exclusive */
+        private final int to;
+
+        /**
+         * Creates a task.
+         * 
+         * @param cone the agents being evaluated, in schedule order
+         * @param from the position of the first agent of the range
+         * @param to the position of the end of the range, exclusive
+         */
+        LevelTask(int[] cone, int from, int to) {
+            this.cone = cone;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                for (int k = from; k < to; k++) {
+                    fired[cone[k]] = evaluate(cone[k]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new LevelTask(cone, from, mid), new LevelTask(cone, mid, to));
+        }
+    }
+
+    /**
+     * A value that arrived from outside the schedule during a pass.
+     */
+    private static final class Deferred {
+
+        /** The slot */
+        final int slot;
+
+        /** The value */
+        final double value;
+
+        /** The origin stamp */
+        final long originNanos;
+
+        /** The evaluation */
+        final long correlationId;
+
+        /**
+         * Creates a deferred value.
+         * 
+         * @param slot the slot
+         * @param value the value
+         * @param originNanos the origin stamp
+         * @param correlationId the evaluation
+         */
+        Deferred(int slot, double value, long originNanos, long correlationId) {
+            this.slot = slot;
+            this.value = value;
+            this.originNanos = originNanos;
+            this.correlationId = correlationId;
+        }
+    }
+
+    /**
+     * The values and inputs seen of one evaluation.
+     */
+    private static final class State {
+
+        /** Latest value of each slot */
+        final double[] values;
+
+        /** Whether each agent input has delivered since the agent last consumed it */
+        final boolean[][] seen;
+
+        /**
+         * Creates a state.
+         * 
+         * @param values the slot values
+         * @param seen the inputs seen, by agent
+         */
+        State(double[] values, boolean[][] seen) {
+            this.values = values;
+            this.seen = seen;
+        }
+    }
+}
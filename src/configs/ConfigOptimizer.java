@@ -0,0 +1,491 @@
+package configs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import graph.CompilableAgent;
+import graph.SinkAgent;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+
+/**
+ * Shrinks a parsed configuration before any of its agents is created.
+ * 
+ * <p>The pass works on the declared blocks, seen as a {@link Graph} with a
+ * node per agent and per topic, and only touches pure agents: those
+ * implementing {@link CompilableAgent}, and {@link ConstAgent}s. Until
+ * nothing changes, it</p>
+ * <ul>
+ *   <li><strong>folds</strong> a {@link PlusAgent} or {@link IncAgent} whose
+ *       every input is published only by a {@link ConstAgent} into a
+ *       {@link ConstAgent} of its result, computed here from the declared
+ *       lines without creating the agent;</li>
+ *   <li><strong>merges</strong> a pure agent into an earlier one of the same
+ *       class with the same inputs, in the same order, and makes the
+ *       consumers of its output read the earlier agent's output;</li>
+ * </ul>
+ * <p>and then <strong>removes</strong> every pure agent whose outputs, and
+ * whose consumers' outputs, nothing uses.</p>
+ * 
+ * <p>A topic is used if it has a subscriber from outside the file, is read
+ * by an agent that is not pure, such as a {@link SinkAgent}, is an output
+ * of a block with the {@code keep=true} directive, or is one of the
+ * declared results. A file that declares neither results nor sinks is
+ * taken to leave its results unread: there, every topic no agent of the
+ * file reads is used too, so an agent is only removed if its outputs feed
+ * nothing but other removable agents. An output that is used is never
+ * merged away. Values published to a merged or folded topic from outside
+ * the file are no longer seen by its former consumers.</p>
+ * 
+ * <p>Every fold, merge and removal is recorded in {@link #getReport()}.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see GenericConfig
+ */
+final class ConfigOptimizer {
+
+    /**
+     * One declared agent: its three lines and whether it is kept.
+     */
+    static final class Block {
+
+        /** Position of the block in the file */
+        final int index;
+
+        /** Fully qualified class name */
+        String className;
+
+        /** Input line */
+        String[] subs;
+
+        /** Output line */
+        final String[] pubs;
+
+        /** Whether the block's outputs count as used */
+        final boolean keep;
+
+        /**
+         * Creates a block.
+         * 
+         * @param index the position of the block in the file
+         * @param className the fully qualified class name
+         * @param subs the input line
+         * @param pubs the output line
+         * @param keep whether the block's outputs count as used
+         */
+        Block(int index, String className, String[] subs, String[] pubs, boolean keep) {
+            this.index = index;
+            this.className = className;
+            this.subs = subs;
+            this.pubs = pubs;
+            this.keep = keep;
+        }
+
+        /**
+         * Describes the block for the report.
+         * 
+         * @return e.g. "PlusAgent A,B -> Sum"
+         */
+        @Override
+        public String toString() {
+            String simpleName = className.substring(className.lastIndexOf('.') + 1);
+            return simpleName + " " + String.join(",", subs) + " -> " + String.join(",", pubs);
+        }
+    }
+
+    /** The blocks still declared, in file order */
+    private final List<Block> blocks;
+
+    /** The declared result topics, or null if the file declares none */
+    private final Set<String> results;
+
+    /** The classes of the blocks, null where a class cannot be loaded */
+    private final Map<String, Class<?>> classes = new HashMap<>();
+
+    /** Topics that count as used */
+    private final Set<String> used = new HashSet<>();
+
+    /** What was folded, merged and removed, in order */
+    private final List<String> report = new ArrayList<>();
+
+    /** Number of agents folded into constants */
+    private int folded;
+
+    /** Number of agents merged or removed */
+    private int eliminated;
+
+    /** Consumers of every topic */
+    private Map<String, List<Block>> consumers;
+
+    /** Publishers of every topic */
+    private Map<String, List<Block>> publishers;
+
+    /**
+     * Creates a pass over parsed blocks.
+     * 
+     * @param blocks the blocks in file order; not modified
+     * @param results the topics the file declares as its results, or null
+     *                to treat its unread topics as results when it has no
+     *                sinks
+     */
+    ConfigOptimizer(List<Block> blocks, Set<String> results) {
+        this.blocks = new ArrayList<>(blocks);
+        this.results = results;
+    }
+
+    /**
+     * Runs the pass.
+     * 
+     * @return the remaining blocks, in file order, with rewritten lines
+     */
+    List<Block> optimize() {
+        index();
+        findUsed();
+        boolean changed = true;
+        while (changed) {
+            changed = fold();
+            changed |= merge();
+        }
+        removeDead();
+        return blocks;
+    }
+
+    /**
+     * Returns what the pass folded, merged and removed, one line per agent.
+     * 
+     * @return e.g. "merged PlusAgent A,B -> D into PlusAgent A,B -> C"
+     */
+    List<String> getReport() {
+        return Collections.unmodifiableList(report);
+    }
+
+    /**
+     * Returns the number of agents replaced by a constant. They are still
+     * created, as {@link ConstAgent}s.
+     * 
+     * @return the fold count
+     */
+    int getFoldedCount() {
+        return folded;
+    }
+
+    /**
+     * Returns the number of agents that are no longer created.
+     * 
+     * @return the number of merged and removed agents
+     */
+    int getEliminatedCount() {
+        return eliminated;
+    }
+
+    /**
+     * Builds the {@link Graph} of the blocks and indexes the publishers and
+     * consumers of every topic from its edges.
+     */
+    private void index() {
+        Graph graph = new Graph();
+        Map<String, Node> topics = new HashMap<>();
+        Map<Node, Block> agents = new IdentityHashMap<>();
+        for (Block block : blocks) {
+            Node agent = new Node("A" + block.index);
+            agents.put(agent, block);
+            graph.add(agent);
+            for (String sub : block.subs) {
+                topicNode(sub, topics, graph).addEdge(agent);
+            }
+            for (String pub : block.pubs) {
+                agent.addEdge(topicNode(pub, topics, graph));
+            }
+        }
+        consumers = new HashMap<>();
+        publishers = new HashMap<>();
+        for (Node node : graph) {
+            Block agent = agents.get(node);
+            for (Node edge : node.getEdges()) {
+                if (agent != null) {
+                    publishers.computeIfAbsent(edge.getName().substring(1), k -> new ArrayList<>()).add(agent);
+                } else {
+                    consumers.computeIfAbsent(node.getName().substring(1), k -> new ArrayList<>())
+                             .add(agents.get(edge));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the node of a topic, adding it to the graph on first use.
+     * 
+     * @param name the topic name
+     * @param topics the topic nodes by name
+     * @param graph the graph
+     * @return the node
+     */
+    private static Node topicNode(String name, Map<String, Node> topics, Graph graph) {
+        return topics.computeIfAbsent(name, k -> {
+            Node node = new Node("T" + k);
+            graph.add(node);
+            return node;
+        });
+    }
+
+    /**
+     * Collects the topics that count as used.
+     */
+    private void findUsed() {
+        for (Topic topic : TopicManagerSingleton.get().getTopics()) {
+            if (!topic.subs.isEmpty()) {
+                used.add(topic.name);
+            }
+        }
+        boolean sinks = false;
+        if (results != null) {
+            used.addAll(results);
+        }
+        for (Block block : blocks) {
+            if (block.keep) {
+                used.addAll(Arrays.asList(block.pubs));
+            }
+            Class<?> type = classOf(block);
+            sinks |= type != null && SinkAgent.class.isAssignableFrom(type);
+        }
+        if (results == null && !sinks) {
+            for (String topic : publishers.keySet()) {
+                if (!consumers.containsKey(topic)) {
+                    used.add(topic);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces every foldable agent fed only by constants with a constant.
+     * 
+     * @return whether any agent was folded
+     */
+    private boolean fold() {
+        boolean changed = false;
+        for (Block block : blocks) {
+            if (isConst(block) || block.pubs.length != 1 || block.subs.length == 0) {
+                continue;
+            }
+            Map<String, Double> inputs = new HashMap<>();
+            for (String sub : block.subs) {
+                List<Block> sources = publishers.get(sub);
+                if (sources == null || sources.size() != 1 || !isConst(sources.get(0))) {
+                    inputs = null;
+                    break;
+                }
+                inputs.put(sub, Double.parseDouble(sources.get(0).subs[0].trim()));
+            }
+            Double value = inputs != null ? evaluate(block, inputs) : null;
+            if (value == null) {
+                continue;
+            }
+            String before = block.toString();
+            block.className = ConstAgent.class.getName();
+            block.subs = new String[] {Double.toString(value)};
+            report.add("folded " + before + " into " + block);
+            folded++;
+            changed = true;
+        }
+        if (changed) {
+            index();
+        }
+        return changed;
+    }
+
+    /**
+     * Computes the result of an agent for constant inputs from its block
+     * alone, the way its {@link CompilableAgent#compute(double[])} would.
+     * 
+     * <p>Creating the agent instead would subscribe it, create its topics and
+     * advance its name counter, so only the built-in agents whose results
+     * are known here are folded; other classes, including subclasses of the
+     * built-in ones, which may override compute, are left alone.</p>
+     * 
+     * @param block the agent's block
+     * @param inputs the value of every input topic
+     * @return the result, or null if the agent cannot be folded
+     */
+    private static Double evaluate(Block block, Map<String, Double> inputs) {
+        String[] subs = block.subs;
+        if (PlusAgent.class.getName().equals(block.className)) {
+            // A repeated input never completes the pair, see PlusAgent.getInputTopics()
+            if (subs.length < 2 || subs[0].equals(subs[1])) {
+                return null;
+            }
+            return inputs.get(subs[0]) + inputs.get(subs[1]);
+        }
+        if (IncAgent.class.getName().equals(block.className)) {
+            return inputs.get(subs[0]) + 1.0;
+        }
+        return null;
+    }
+
+    /**
+     * Merges every pure agent into the first one of the same class with the
+     * same inputs.
+     * 
+     * @return whether any agent was merged
+     */
+    private boolean merge() {
+        Map<String, Block> first = new HashMap<>();
+        Set<Block> merged = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Block block : blocks) {
+            if (!isPure(block) || block.pubs.length != 1) {
+                continue;
+            }
+            String key = keyOf(block);
+            Block canonical = first.putIfAbsent(key, block);
+            if (canonical == null) {
+                continue;
+            }
+            String from = block.pubs[0];
+            String to = canonical.pubs[0];
+            if (from.equals(to) || used.contains(from) || Arrays.asList(block.subs).contains(from)
+                    || publishers.get(from).size() != 1 || publishers.get(to).size() != 1) {
+                continue;
+            }
+            List<Block> readers = consumers.getOrDefault(from, List.of());
+            boolean clash = false;
+            for (Block reader : readers) {
+                // An agent reading both topics would read one of them twice
+                clash |= Arrays.asList(reader.subs).contains(to);
+            }
+            if (clash) {
+                continue;
+            }
+            for (Block reader : readers) {
+                // Its key changes, so it is no longer the first of the old one
+                first.remove(keyOf(reader), reader);
+                String[] subs = reader.subs.clone();
+                for (int i = 0; i < subs.length; i++) {
+                    if (subs[i].equals(from)) {
+                        subs[i] = to;
+                    }
+                }
+                reader.subs = subs;
+            }
+            consumers.computeIfAbsent(to, k -> new ArrayList<>()).addAll(readers);
+            consumers.remove(from);
+            merged.add(block);
+            report.add("merged " + block + " into " + canonical);
+            eliminated++;
+        }
+        if (merged.isEmpty()) {
+            return false;
+        }
+        blocks.removeIf(merged::contains);
+        index();
+        return true;
+    }
+
+    /**
+     * Returns what makes two pure agents identical.
+     * 
+     * @param block the agent's block
+     * @return the class and inputs, with constants compared by value
+     */
+    private String keyOf(Block block) {
+        if (isConst(block)) {
+            try {
+                return block.className + "(" + Double.parseDouble(block.subs[0].trim()) + ")";
+            } catch (NumberFormatException e) {
+                // Reported when the configuration creates it
+            }
+        }
+        return block.className + "(" + String.join(",", block.subs) + ")";
+    }
+
+    /**
+     * Removes every pure agent that contributes to no used topic.
+     */
+    private void removeDead() {
+        Set<Block> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<String> topics = new ArrayDeque<>(used);
+        for (Block block : blocks) {
+            if (!isPure(block) || block.keep) {
+                live.add(block);
+                topics.addAll(Arrays.asList(block.subs));
+            }
+        }
+        Set<String> seen = new LinkedHashSet<>();
+        while (!topics.isEmpty()) {
+            String topic = topics.poll();
+            if (!seen.add(topic)) {
+                continue;
+            }
+            for (Block publisher : publishers.getOrDefault(topic, List.of())) {
+                if (live.add(publisher)) {
+                    topics.addAll(Arrays.asList(publisher.subs));
+                }
+            }
+        }
+        for (Block block : blocks) {
+            if (!live.contains(block)) {
+                report.add("removed " + block + ": no output is used");
+                eliminated++;
+            }
+        }
+        blocks.removeIf(block -> !live.contains(block));
+    }
+
+    /**
+     * Tells whether an agent's outputs depend only on its inputs.
+     * 
+     * @param block the agent's block
+     * @return whether it is a {@link CompilableAgent} or a {@link ConstAgent}
+     */
+    private boolean isPure(Block block) {
+        Class<?> type = classOf(block);
+        return type != null && (CompilableAgent.class.isAssignableFrom(type) || type == ConstAgent.class);
+    }
+
+    /**
+     * Tells whether a block declares a {@link ConstAgent} with one value.
+     * 
+     * @param block the block
+     * @return whether it is a valid constant
+     */
+    private static boolean isConst(Block block) {
+        if (!ConstAgent.class.getName().equals(block.className) || block.subs.length != 1) {
+            return false;
+        }
+        try {
+            Double.parseDouble(block.subs[0].trim());
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads the class of a block.
+     * 
+     * @param block the block
+     * @return the class, or null if it cannot be loaded
+     */
+    private Class<?> classOf(Block block) {
+        return classes.computeIfAbsent(block.className, name -> {
+            try {
+                return Class.forName(name);
+            } catch (ClassNotFoundException | LinkageError e) {
+                // Reported when the configuration creates it
+                return null;
+            }
+        });
+    }
+}
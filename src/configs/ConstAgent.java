@@ -0,0 +1,143 @@
+package configs;
+
+import graph.Message;
+import graph.SourceAgent;
+import graph.TopicManagerSingleton;
+import graph.TopicManagerSingleton.TopicManager;
+
+/**
+ * A source agent that publishes one constant value to its output topics.
+ * 
+ * <p>The value is published once, when the agent is started, which
+ * {@link GenericConfig} does once the whole graph is in place. Agents fed
+ * only by constants can therefore be folded into a constant at load time,
+ * see the {@code optimize} directive of {@link GenericConfig}.</p>
+ * 
+ * <p><strong>Configuration File Usage:</strong> the subscription line holds
+ * the value instead of topics:</p>
+ * <pre>
+ * configs.ConstAgent
+ * 2.5
+ * Rate,Scale
+ * </pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see SourceAgent
+ */
+public class ConstAgent implements SourceAgent {
+
+    /** Static counter for generating unique agent names */
+    private static int instanceCounter = 0;
+
+    /** The unique name of this agent instance */
+    private final String name;
+
+    /** The value */
+    private final double value;
+
+    /** Names of the output topics */
+    private final String[] pubs;
+
+    /** Reference to the singleton topic manager */
+    private final TopicManager tm;
+
+    /**
+     * Creates a constant source.
+     * 
+     * @param subs the value, as the only element
+     * @param pubs the output topics
+     * @throws IllegalArgumentException if there is not exactly one value, it
+     *                                  is not a number, or no output topic is
+     *                                  given
+     */
+    public ConstAgent(String[] subs, String[] pubs) {
+        if (subs == null || subs.length != 1) {
+            throw new IllegalArgumentException("ConstAgent needs exactly one value as its input");
+        }
+        if (pubs == null || pubs.length == 0) {
+            throw new IllegalArgumentException("ConstAgent needs at least one output topic");
+        }
+        try {
+            this.value = Double.parseDouble(subs[0].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("ConstAgent value is not a number: " + subs[0], e);
+        }
+        this.pubs = pubs.clone();
+        synchronized (ConstAgent.class) {
+            instanceCounter++;
+            this.name = "ConstAgent_" + instanceCounter;
+        }
+        this.tm = TopicManagerSingleton.get();
+        for (String pub : pubs) {
+            tm.getTopic(pub).addPublisher(this);
+        }
+    }
+
+    /**
+     * Returns the value.
+     * 
+     * @return the constant
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the topics the value is published to.
+     * 
+     * @return a copy of the output topic names
+     */
+    public String[] getOutputTopics() {
+        return pubs.clone();
+    }
+
+    /**
+     * Publishes the value to every output topic.
+     */
+    @Override
+    public void start() {
+        for (String pub : pubs) {
+            tm.getTopic(pub).publishDouble(value);
+        }
+    }
+
+    /**
+     * Returns the unique name of this agent.
+     * 
+     * @return the name, e.g. "ConstAgent_1"
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Does nothing: the value never changes.
+     */
+    @Override
+    public void reset() {
+    }
+
+    /**
+     * Ignores messages; a constant subscribes to no topic.
+     * 
+     * @param topic the name of the topic
+     * @param msg the message
+     */
+    @Override
+    public void callback(String topic, Message msg) {
+    }
+
+    /**
+     * Removes the agent as a publisher from its output topics.
+     */
+    @Override
+    public void close() {
+        for (String pub : pubs) {
+            tm.getTopic(pub).removePublisher(this);
+        }
+    }
+}
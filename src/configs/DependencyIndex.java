@@ -0,0 +1,121 @@
+package configs;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Precomputed cones of influence of the topics of a {@link Graph}.
+ * 
+ * <p>The cone of influence of a topic is everything a new value on it can
+ * reach by following the graph's edges: the agents subscribed to it, the
+ * topics those agents publish to, the agents subscribed to those, and so on.
+ * Nothing outside the cone can change when the topic changes, so an engine
+ * that knows the cone only needs to re-evaluate the agents in it.</p>
+ * 
+ * <p>The index is computed once, when it is created, with one traversal per
+ * topic; lookups are then a single map access. It reflects the graph as it
+ * was at that time and must be rebuilt after the configuration changes.
+ * Cycles are allowed: an agent on a cycle through the topic is part of its
+ * cone.</p>
+ * 
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>{@code
+ * Graph graph = new Graph();
+ * graph.createFromTopics();
+ * DependencyIndex index = new DependencyIndex(graph);
+ * Set<String> affected = index.getAffectedAgents("A"); // e.g. [PlusAgent_1, IncAgent_2]
+ * }</pre>
+ * 
+ * <p><strong>Thread Safety:</strong> immutable once created.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see Graph
+ * @see CompiledGraph
+ */
+public class DependencyIndex {
+
+    /** Names of the agents downstream of each topic, in traversal order */
+    private final Map<String, Set<String>> agentsByTopic = new HashMap<>();
+
+    /** Names of the topics downstream of each topic, in traversal order */
+    private final Map<String, Set<String>> topicsByTopic = new HashMap<>();
+
+    /**
+     * Builds the index of a graph.
+     * 
+     * @param graph the graph, with topic nodes named "T" + topic name and
+     *              agent nodes named "A" + agent name
+     * @throws NullPointerException if graph is null
+     */
+    public DependencyIndex(Graph graph) {
+        if (graph == null) {
+            throw new NullPointerException("Graph cannot be null");
+        }
+        for (Node node : graph) {
+            if (node.getName().startsWith("T")) {
+                index(node);
+            }
+        }
+    }
+
+    /**
+     * Collects the cone of influence of one topic (breadth first).
+     * 
+     * @param topicNode the topic's node
+     */
+    private void index(Node topicNode) {
+        Set<String> agents = new LinkedHashSet<>();
+        Set<String> topics = new LinkedHashSet<>();
+        Set<Node> visited = new HashSet<>();
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        visited.add(topicNode);
+        pending.add(topicNode);
+        while (!pending.isEmpty()) {
+            for (Node next : pending.poll().getEdges()) {
+                if (!visited.add(next)) {
+                    continue;
+                }
+                String name = next.getName().substring(1);
+                if (next.getName().startsWith("A")) {
+                    agents.add(name);
+                } else {
+                    topics.add(name);
+                }
+                pending.add(next);
+            }
+        }
+        String topic = topicNode.getName().substring(1);
+        agentsByTopic.put(topic, Collections.unmodifiableSet(agents));
+        topicsByTopic.put(topic, Collections.unmodifiableSet(topics));
+    }
+
+    /**
+     * Returns the agents a new value of a topic can reach.
+     * 
+     * @param topic the topic name
+     * @return the agent names, nearest first; empty if the topic is unknown
+     *         or has no subscribers
+     */
+    public Set<String> getAffectedAgents(String topic) {
+        return agentsByTopic.getOrDefault(topic, Collections.emptySet());
+    }
+
+    /**
+     * Returns the topics a new value of a topic can reach through agents.
+     * 
+     * @param topic the topic name
+     * @return the topic names, nearest first, never the topic itself; empty
+     *         if the topic is unknown
+     */
+    public Set<String> getAffectedTopics(String topic) {
+        return topicsByTopic.getOrDefault(topic, Collections.emptySet());
+    }
+}
@@ -0,0 +1,438 @@
+package configs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import graph.BatchAgent;
+import graph.Message;
+import graph.NumericAgent;
+import graph.SinkAgent;
+import graph.TopicManagerSingleton;
+import graph.TopicManagerSingleton.TopicManager;
+
+/**
+ * A sink agent that appends the values of its input topics to a file.
+ * 
+ * <p>Every value becomes one line: {@code topic,value} when the agent
+ * records several topics, just {@code value} when it records one. Lines are
+ * appended to an in-memory buffer and written by a committer thread in
+ * groups, so a burst of values costs one {@link FileChannel#write} rather
+ * than one per value. A group is committed when the flush interval has
+ * passed or the buffer holds {@link #COMMIT_BYTES}; a writer that finds the
+ * buffer much fuller than that commits it itself, which slows producers
+ * down to the speed of the disk instead of letting the buffer grow.</p>
+ * 
+ * <p><strong>Configuration File Usage:</strong> the publication line gives
+ * the file and options instead of topics:</p>
+ * <pre>
+ * configs.FileSinkAgent
+ * Sum,Diff
+ * /data/results.csv, flush=50, sync=true
+ * </pre>
+ * <ul>
+ *   <li>{@code append=true|false} - keep the existing content of the file
+ *       (default {@code true}) or truncate it</li>
+ *   <li>{@code flush=ms} - longest time a value waits in the buffer
+ *       (default 100)</li>
+ *   <li>{@code sync=true|false} - force every commit to the storage device
+ *       (default {@code false})</li>
+ * </ul>
+ * <p>A path cannot contain a comma. Everything still buffered is written
+ * when the agent is closed.</p>
+ * 
+ * <p><strong>Thread Safety:</strong> values may arrive from any number of
+ * threads.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see FileSourceAgent
+ * @see SinkAgent
+ */
+public class FileSinkAgent implements SinkAgent, NumericAgent, BatchAgent {
+
+    /** Buffered bytes at which a group is committed before the interval ends */
+    static final int COMMIT_BYTES = 64 << 10;
+
+    /** Buffered bytes at which the writer commits the group itself */
+    private static final int BACKLOG_BYTES = 16 * COMMIT_BYTES;
+
+    /** Default flush interval in milliseconds */
+    private static final long DEFAULT_FLUSH_MILLIS = 100;
+
+    /** Static counter for generating unique agent names */
+    private static int instanceCounter = 0;
+
+    /** The unique name of this agent instance */
+    private final String name;
+
+    /** The file */
+    private final Path path;
+
+    /** Names of the recorded topics */
+    private final String[] subs;
+
+    /** Whether lines are prefixed with the topic name */
+    private final boolean prefixed;
+
+    /** Longest time a value waits in the buffer */
+    private final long flushMillis;
+
+    /** Whether every commit is forced to the storage device */
+    private final boolean sync;
+
+    /** Reference to the singleton topic manager */
+    private final TopicManager tm;
+
+    /** The open file */
+    private final FileChannel channel;
+
+    /** Guards {@link #buffer} and the committer's wake-ups */
+    private final Object lock = new Object();
+
+    /** Serializes commits, so groups reach the file in order */
+    private final Object commitLock = new Object();
+
+    /** Lines not yet committed */
+    private StringBuilder buffer = new StringBuilder();
+
+    /** Values appended to the buffer */
+    private long written;
+
+    /** Groups written to the file */
+    private volatile long commits;
+
+    /** The first write error, reported by {@link #flush()} */
+    private volatile IOException failure;
+
+    /** Whether the agent has been closed */
+    private volatile boolean closed;
+
+    /** The committer thread */
+    private final Thread committer;
+
+    /**
+     * Creates a sink for a file and subscribes it to its input topics.
+     * 
+     * @param subs the topics to record
+     * @param pubs the file path, followed by {@code key=value} options
+     * @throws IllegalArgumentException if no topic is given, the path or an
+     *                                  option is missing or invalid
+     * @throws UncheckedIOException if the file cannot be opened
+     */
+    public FileSinkAgent(String[] subs, String[] pubs) {
+        if (subs == null || subs.length == 0) {
+            throw new IllegalArgumentException("FileSinkAgent needs at least one input topic");
+        }
+        if (pubs == null || pubs.length == 0 || pubs[0].isEmpty()) {
+            throw new IllegalArgumentException("FileSinkAgent needs a file path as its first output");
+        }
+        boolean append = true;
+        long flushMillis = DEFAULT_FLUSH_MILLIS;
+        boolean sync = false;
+        for (int i = 1; i < pubs.length; i++) {
+            int eq = pubs[i].indexOf('=');
+            String key = eq > 0 ? pubs[i].substring(0, eq).trim().toLowerCase() : pubs[i];
+            String value = eq > 0 ? pubs[i].substring(eq + 1).trim().toLowerCase() : "";
+            switch (key) {
+                case "append":
+                    append = parseBoolean(key, value);
+                    break;
+                case "flush":
+                    try {
+                        flushMillis = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid number in FileSinkAgent option: " + pubs[i], e);
+                    }
+                    if (flushMillis <= 0) {
+                        throw new IllegalArgumentException("flush must be positive, got: " + value);
+                    }
+                    break;
+                case "sync":
+                    sync = parseBoolean(key, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown FileSinkAgent option: " + pubs[i]);
+            }
+        }
+        this.path = Paths.get(pubs[0]);
+        this.subs = subs.clone();
+        this.prefixed = subs.length > 1;
+        this.flushMillis = flushMillis;
+        this.sync = sync;
+        try {
+            this.channel = append
+                    ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                       StandardOpenOption.APPEND)
+                    : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                       StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open file: " + path, e);
+        }
+        synchronized (FileSinkAgent.class) {
+            instanceCounter++;
+            this.name = "FileSinkAgent_" + instanceCounter;
+        }
+        this.committer = new Thread(this::commitLoop, name);
+        this.committer.setDaemon(true);
+        this.committer.start();
+        this.tm = TopicManagerSingleton.get();
+        for (String sub : subs) {
+            tm.getTopic(sub).subscribe(this);
+        }
+    }
+
+    /**
+     * Parses a boolean option strictly.
+     * 
+     * @param key the option
+     * @param value the value
+     * @return the boolean
+     * @throws IllegalArgumentException if the value is neither true nor false
+     */
+    private static boolean parseBoolean(String key, String value) {
+        if (!"true".equals(value) && !"false".equals(value)) {
+            throw new IllegalArgumentException(key + " must be true or false, got: " + value);
+        }
+        return "true".equals(value);
+    }
+
+    /**
+     * Appends the text of a message.
+     * 
+     * @param topic the name of the topic
+     * @param msg the message
+     */
+    @Override
+    public void callback(String topic, Message msg) {
+        String text = msg.asText();
+        boolean backlog;
+        synchronized (lock) {
+            backlog = appendLine(topic, text);
+        }
+        afterAppend(backlog);
+    }
+
+    /**
+     * Appends a value.
+     * 
+     * @param topic the name of the topic
+     * @param value the value
+     * @param originNanos ignored
+     */
+    @Override
+    public void callbackDouble(String topic, double value, long originNanos) {
+        boolean backlog;
+        synchronized (lock) {
+            backlog = appendLine(topic, Double.toString(value));
+        }
+        afterAppend(backlog);
+    }
+
+    /**
+     * Appends the text of several messages under one lock acquisition.
+     * 
+     * @param topic the name of the topic
+     * @param msgs the messages in publish order
+     */
+    @Override
+    public void callbackBatch(String topic, List<Message> msgs) {
+        boolean backlog = false;
+        synchronized (lock) {
+            for (Message msg : msgs) {
+                backlog = appendLine(topic, msg.asText());
+            }
+        }
+        afterAppend(backlog);
+    }
+
+    /**
+     * Appends one line to the buffer; the caller holds {@link #lock}.
+     * 
+     * @param topic the name of the topic
+     * @param text the value
+     * @return whether the buffer is now too full to wait for the committer
+     */
+    private boolean appendLine(String topic, String text) {
+        if (prefixed) {
+            buffer.append(topic).append(',');
+        }
+        buffer.append(text).append('\n');
+        written++;
+        if (buffer.length() >= COMMIT_BYTES) {
+            lock.notify();
+        }
+        return buffer.length() >= BACKLOG_BYTES;
+    }
+
+    /**
+     * Commits on the writer's thread if the committer has fallen behind.
+     * 
+     * @param backlog whether the buffer is too full
+     */
+    private void afterAppend(boolean backlog) {
+        if (backlog && !closed) {
+            try {
+                commit();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Commits a group whenever the buffer fills up or the flush interval
+     * passes, until the agent is closed.
+     */
+    private void commitLoop() {
+        while (!closed) {
+            synchronized (lock) {
+                if (buffer.length() < COMMIT_BYTES) {
+                    try {
+                        lock.wait(flushMillis);
+                    } catch (InterruptedException e) {
+                        // Woken by close()
+                    }
+                }
+            }
+            try {
+                commit();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Takes the buffered lines and writes them to the file as one group.
+     * 
+     * @throws IOException if writing fails
+     */
+    private void commit() throws IOException {
+        synchronized (commitLock) {
+            StringBuilder group;
+            synchronized (lock) {
+                if (buffer.length() == 0) {
+                    return;
+                }
+                group = buffer;
+                buffer = new StringBuilder(group.capacity());
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(group.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+            commits++;
+        }
+    }
+
+    /**
+     * Records the first write error.
+     * 
+     * @param e the error
+     */
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+            System.err.println("Warning: " + name + " cannot write " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every value received so far to the file.
+     * 
+     * @throws UncheckedIOException if writing fails, now or in an earlier
+     *                              commit
+     */
+    @Override
+    public void flush() {
+        try {
+            commit();
+        } catch (IOException e) {
+            fail(e);
+        }
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException("Cannot write " + path, e);
+        }
+    }
+
+    /**
+     * Returns the number of values received.
+     * 
+     * @return the value count
+     */
+    public long getWrittenCount() {
+        synchronized (lock) {
+            return written;
+        }
+    }
+
+    /**
+     * Returns the number of groups written to the file.
+     * 
+     * @return the commit count
+     */
+    public long getCommitCount() {
+        return commits;
+    }
+
+    /**
+     * Returns the unique name of this agent.
+     * 
+     * @return the name, e.g. "FileSinkAgent_1"
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Does nothing: what has been received stays in the file.
+     */
+    @Override
+    public void reset() {
+    }
+
+    /**
+     * Unsubscribes the agent, stops the committer, writes what is still
+     * buffered and closes the file.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        for (String sub : subs) {
+            tm.getTopic(sub).unsubscribe(this);
+        }
+        closed = true;
+        committer.interrupt();
+        try {
+            committer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            commit();
+        } catch (IOException e) {
+            fail(e);
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package configs;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import graph.Message;
+import graph.SourceAgent;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import graph.TopicManagerSingleton.TopicManager;
+
+/**
+ * A source agent that streams the rows of a CSV or line-delimited file into
+ * topics.
+ * 
+ * <p>The file is read through memory-mapped windows of a {@link FileChannel},
+ * so its bytes go from the page cache straight to the parser, without
+ * copying through stream buffers, and files larger than memory are mapped
+ * one window at a time. Cell {@code i} of every line is published to the
+ * {@code i}-th output topic; extra cells are ignored and empty cells publish
+ * nothing. A file with one value per line thus feeds a single topic.</p>
+ * 
+ * <p>Rows are published in batches with {@link Topic#publishBatch(List)}, so
+ * a {@link graph.ParallelAgent} subscriber enqueues a whole batch under one
+ * lock. With several output topics every row gets its own correlation id
+ * (see {@link Message#getCorrelationId()}), so multi-input agents join the
+ * cells of one row even though each topic receives its batch as a
+ * whole. The generated engine ignores correlation ids, so
+ * {@link GenericConfig} compiles a file with such a source instead of
+ * generating it.</p>
+ * 
+ * <p><strong>Configuration File Usage:</strong> the subscription line gives
+ * the file and options instead of topics:</p>
+ * <pre>
+ * configs.FileSourceAgent
+ * /data/pairs.csv, rate=1000, batch=1
+ * A,B
+ * </pre>
+ * <ul>
+ *   <li>{@code rate=N|max} - rows per second, or {@code max} to publish as
+ *       fast as the subscribers accept them (default {@code max})</li>
+ *   <li>{@code batch=N} - rows per published batch (default 64, or 1 with a
+ *       rate)</li>
+ *   <li>{@code header=true|false|auto} - whether the first line names the
+ *       columns; {@code auto} skips it if a cell is not a number (default
+ *       {@code auto})</li>
+ *   <li>{@code correlate=true|false} - whether to give every row its own
+ *       correlation id (default: true with more than one output topic)</li>
+ * </ul>
+ * <p>A path cannot contain a comma. Rows with a cell that is not a number
+ * are skipped and counted in {@link #getMalformedCount()}.</p>
+ * 
+ * <p>The agent starts reading when {@link #start()} is called, which
+ * {@link GenericConfig} does once the whole graph is in place, and stops at
+ * the end of the file.</p>
+ * 
+ * <p><strong>Thread Safety:</strong> reads and publishes on a thread of its
+ * own; the other methods may be called from any thread.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see FileSinkAgent
+ * @see SourceAgent
+ */
+public class FileSourceAgent implements SourceAgent {
+
+    /** Largest part of the file mapped at once, and so the longest line allowed */
+    static final int WINDOW = 64 << 20;
+
+    /** Rows per batch when publishing as fast as possible */
+    private static final int DEFAULT_BATCH = 64;
+
+    /** Static counter for generating unique agent names */
+    private static int instanceCounter = 0;
+
+    /** The unique name of this agent instance */
+    private final String name;
+
+    /** The file */
+    private final Path path;
+
+    /** Names of the output topics, by column */
+    private final String[] pubs;
+
+    /** Rows per second, or 0 for as fast as possible */
+    private final double rate;
+
+    /** Rows per published batch */
+    private final int batch;
+
+    /** Whether the first line is a header: TRUE, FALSE, or null to detect it */
+    private final Boolean header;
+
+    /** Whether every row gets its own correlation id */
+    private final boolean correlate;
+
+    /** Reference to the singleton topic manager */
+    private final TopicManager tm;
+
+    /** The reading thread, null until started */
+    private Thread reader;
+
+    /** Whether the agent has been closed */
+    private volatile boolean closed;
+
+    /** Rows published */
+    private volatile long rows;
+
+    /** Rows skipped because a cell is not a number */
+    private volatile long malformed;
+
+    /** Why reading stopped early, or null */
+    private volatile Exception failure;
+
+    /** Released when reading has ended */
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    /** Messages of the current batch, by column */
+    private List<List<Message>> pending;
+
+    /** Rows in the current batch */
+    private int pendingRows;
+
+    /** Copy of the line being parsed */
+    private byte[] line = new byte[256];
+
+    /**
+     * Creates a source for a file.
+     * 
+     * @param subs the file path, followed by {@code key=value} options
+     * @param pubs the output topics, one per column
+     * @throws IllegalArgumentException if the path or an option is missing or
+     *                                  invalid, the file cannot be read, or no
+     *                                  output topic is given
+     */
+    public FileSourceAgent(String[] subs, String[] pubs) {
+        if (subs == null || subs.length == 0 || subs[0].isEmpty()) {
+            throw new IllegalArgumentException("FileSourceAgent needs a file path as its first input");
+        }
+        if (pubs == null || pubs.length == 0) {
+            throw new IllegalArgumentException("FileSourceAgent needs at least one output topic");
+        }
+        this.path = Paths.get(subs[0]);
+        if (!Files.isReadable(path) || Files.isDirectory(path)) {
+            throw new IllegalArgumentException("Cannot read file: " + path);
+        }
+        double rate = 0;
+        int batch = -1;
+        Boolean header = null;
+        boolean correlate = pubs.length > 1;
+        for (int i = 1; i < subs.length; i++) {
+            int eq = subs[i].indexOf('=');
+            String key = eq > 0 ? subs[i].substring(0, eq).trim().toLowerCase() : subs[i];
+            String value = eq > 0 ? subs[i].substring(eq + 1).trim().toLowerCase() : "";
+            try {
+                switch (key) {
+                    case "rate":
+                        rate = "max".equals(value) ? 0 : Double.parseDouble(value);
+                        if (rate < 0 || Double.isNaN(rate)) {
+                            throw new IllegalArgumentException("rate must be positive or max, got: " + value);
+                        }
+                        break;
+                    case "batch":
+                        batch = Integer.parseInt(value);
+                        if (batch <= 0) {
+                            throw new IllegalArgumentException("batch must be positive, got: " + value);
+                        }
+                        break;
+                    case "header":
+                        header = "auto".equals(value) ? null : parseBoolean(key, value);
+                        break;
+                    case "correlate":
+                        correlate = parseBoolean(key, value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown FileSourceAgent option: " + subs[i]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number in FileSourceAgent option: " + subs[i], e);
+            }
+        }
+        this.rate = rate;
+        this.batch = batch > 0 ? batch : rate > 0 ? 1 : DEFAULT_BATCH;
+        this.header = header;
+        this.correlate = correlate;
+        this.pubs = pubs.clone();
+        synchronized (FileSourceAgent.class) {
+            instanceCounter++;
+            this.name = "FileSourceAgent_" + instanceCounter;
+        }
+        this.tm = TopicManagerSingleton.get();
+        for (String pub : pubs) {
+            tm.getTopic(pub).addPublisher(this);
+        }
+    }
+
+    /**
+     * Parses a boolean option strictly.
+     * 
+     * @param key the option
+     * @param value the value
+     * @return the boolean
+     * @throws IllegalArgumentException if the value is neither true nor false
+     */
+    private static boolean parseBoolean(String key, String value) {
+        if (!"true".equals(value) && !"false".equals(value)) {
+            throw new IllegalArgumentException(key + " must be true or false, got: " + value);
+        }
+        return "true".equals(value);
+    }
+
+    /**
+     * Starts reading the file on a daemon thread.
+     * 
+     * @throws IllegalStateException if already started or closed
+     */
+    @Override
+    public synchronized void start() {
+        if (closed) {
+            throw new IllegalStateException(name + " is closed");
+        }
+        if (reader != null) {
+            throw new IllegalStateException(name + " is already started");
+        }
+        reader = new Thread(this::read, name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Reads the file window by window and publishes its rows.
+     */
+    private void read() {
+        Topic[] topics = new Topic[pubs.length];
+        pending = new ArrayList<>();
+        for (int c = 0; c < pubs.length; c++) {
+            topics[c] = tm.getTopic(pubs[c]);
+            pending.add(new ArrayList<>(batch));
+        }
+        long startNanos = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            boolean first = true;
+            while (position < size && !closed) {
+                int length = (int) Math.min(WINDOW, size - position);
+                boolean last = position + length == size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int start = 0;
+                for (int i = 0; i < length && !closed; i++) {
+                    if (window.get(i) != '\n') {
+                        continue;
+                    }
+                    row(window, start, i, first, topics, startNanos);
+                    first = false;
+                    start = i + 1;
+                }
+                if (last && start < length && !closed) {
+                    row(window, start, length, first, topics, startNanos);
+                    start = length;
+                }
+                if (start == 0 && !last) {
+                    throw new IOException("Line at byte " + position + " is longer than " + WINDOW + " bytes");
+                }
+                // A line cut by the end of the window is read again from the next one
+                position += start;
+            }
+            publish(topics, startNanos);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            if (!closed) {
+                System.err.println("Warning: " + name + " stopped reading " + path + ": " + e.getMessage());
+            }
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Parses one line and adds its cells to the current batch, publishing the
+     * batch once it is full.
+     * 
+     * @param window the mapped window
+     * @param from the index of the line's first byte
+     * @param to the index past its last byte
+     * @param first whether it is the first line of the file
+     * @param topics the output topics
+     * @param startNanos when reading started, for the rate
+     */
+    private void row(MappedByteBuffer window, int from, int to, boolean first, Topic[] topics, long startNanos) {
+        if (to > from && window.get(to - 1) == '\r') {
+            to--;
+        }
+        int length = to - from;
+        if (length == 0) {
+            return;
+        }
+        if (line.length < length) {
+            line = new byte[Math.max(length, line.length * 2)];
+        }
+        window.get(from, line, 0, length);
+
+        double[] cells = new double[pubs.length];
+        boolean[] present = new boolean[pubs.length];
+        int start = 0;
+        for (int c = 0; c < pubs.length && start <= length; c++) {
+            int end = start;
+            while (end < length && line[end] != ',') {
+                end++;
+            }
+            String cell = new String(line, start, end - start, StandardCharsets.ISO_8859_1).trim();
+            if (!cell.isEmpty()) {
+                try {
+                    cells[c] = Double.parseDouble(cell);
+                    present[c] = true;
+                } catch (NumberFormatException e) {
+                    if (!(first && !Boolean.FALSE.equals(header))) {
+                        malformed++;
+                    }
+                    return;
+                }
+            }
+            start = end + 1;
+        }
+        if (first && Boolean.TRUE.equals(header)) {
+            return;
+        }
+
+        long origin = System.nanoTime();
+        long correlationId = correlate ? Message.nextCorrelationId() : Message.NO_CORRELATION;
+        for (int c = 0; c < pubs.length; c++) {
+            if (present[c]) {
+                pending.get(c).add(new Message(cells[c], origin, correlationId));
+            }
+        }
+        if (++pendingRows == batch) {
+            publish(topics, startNanos);
+        }
+    }
+
+    /**
+     * Publishes the current batch, once its rows are due at the configured
+     * rate.
+     * 
+     * @param topics the output topics
+     * @param startNanos when reading started
+     */
+    private void publish(Topic[] topics, long startNanos) {
+        if (pendingRows == 0) {
+            return;
+        }
+        if (rate > 0) {
+            long due = startNanos + (long) (rows * 1e9 / rate);
+            long wait;
+            while (!closed && (wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+        for (int c = 0; c < topics.length; c++) {
+            List<Message> messages = pending.get(c);
+            if (!messages.isEmpty()) {
+                // A fresh list each time: subscribers may keep the one they were given
+                pending.set(c, new ArrayList<>(batch));
+                topics[c].publishBatch(messages);
+            }
+        }
+        rows += pendingRows;
+        pendingRows = 0;
+    }
+
+    /**
+     * Returns whether every row gets its own correlation id.
+     * 
+     * @return true with several output topics, unless {@code correlate=false}
+     */
+    @Override
+    public boolean isCorrelating() {
+        return correlate;
+    }
+
+    /**
+     * Waits until the whole file has been published.
+     * 
+     * @param timeoutMillis the longest time to wait
+     * @return true if reading has ended, false on timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitFinished(long timeoutMillis) throws InterruptedException {
+        return finished.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of rows published so far.
+     * 
+     * @return the row count
+     */
+    public long getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of rows skipped because a cell is not a number.
+     * 
+     * @return the malformed row count
+     */
+    public long getMalformedCount() {
+        return malformed;
+    }
+
+    /**
+     * Returns why reading stopped before the end of the file.
+     * 
+     * @return the error, or null if none occurred
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the unique name of this agent.
+     * 
+     * @return the name, e.g. "FileSourceAgent_1"
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Does nothing: a source keeps its position in the file.
+     */
+    @Override
+    public void reset() {
+    }
+
+    /**
+     * Ignores messages; a source subscribes to no topic.
+     * 
+     * @param topic the name of the topic
+     * @param msg the message
+     */
+    @Override
+    public void callback(String topic, Message msg) {
+    }
+
+    /**
+     * Stops reading, waits briefly for the reading thread and removes the
+     * agent as a publisher from its output topics.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            thread = reader;
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.interrupt();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (String pub : pubs) {
+            tm.getTopic(pub).removePublisher(this);
+        }
+    }
+}
@@ -0,0 +1,666 @@
+package configs;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import graph.Agent;
+import graph.CompilableAgent;
+import graph.Message;
+import graph.NumericAgent;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import graph.TopicManagerSingleton.TopicManager;
+
+/**
+ * Runs an acyclic group of agents as one generated class with a single
+ * straight-line method, so the JIT compiles the whole graph as one unit.
+ * 
+ * <p>The topic engine calls every agent through {@link Agent#callback}, a
+ * call site with many implementations that the JIT cannot inline, and even
+ * a {@link CompiledGraph} calls each agent through
+ * {@link CompilableAgent#compute(double[])}. {@link #generate(List)} orders
+ * the agents like {@link CompiledGraph#compile(List)}, gives every topic a
+ * slot of a {@code double[]} and writes the bytecode of a method that
+ * evaluates the whole schedule on that array, one agent after another (see
+ * {@link KernelWriter}). The class is defined as a hidden class, so it can be
+ * unloaded with this graph:</p>
+ * <ul>
+ *   <li>{@link PlusAgent} and {@link IncAgent} become primitive additions on
+ *       the array, with no call at all</li>
+ *   <li>{@link BinOpAgent} calls its operator directly, a monomorphic call
+ *       site per agent that the JIT can inline</li>
+ *   <li>any other {@link CompilableAgent}, including subclasses of the
+ *       built-in agents, is called through
+ *       {@link CompilableAgent#compute(double[])} as usual</li>
+ * </ul>
+ * 
+ * <p>Agents with an unconnected input never fire and are left out, and so
+ * are agents without an output.</p>
+ * 
+ * <p><strong>Semantics:</strong> every agent is treated as a function of the
+ * latest values of its inputs. A value arriving on an input topic runs the
+ * whole method, then publishes the values computed in the topic's cone of
+ * influence, in schedule order. A topic is published to only once every
+ * input its value depends on has delivered a value. Unlike
+ * {@link CompiledGraph}, agents that wait for all of their inputs again
+ * after firing (see {@link CompilableAgent#retainsInputs()}) fire on every
+ * new value, and correlation ids (see {@link Message#getCorrelationId()})
+ * are ignored: use the compiled engine where evaluations must be joined.
+ * {@linkplain Topic#isIncremental() Incremental} topics are honoured at the
+ * boundary: an unchanged input runs nothing, and an unchanged result is not
+ * published.</p>
+ * 
+ * <p><strong>Integration:</strong> {@link #attach()} takes over the agents'
+ * subscriptions and subscribes to the topics the agents consume but do not
+ * compute; values published to the other topics from outside are ignored,
+ * since the generated method overwrites them. Values published back to it
+ * by agents outside the group during a run are run afterwards.</p>
+ * 
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>{@code
+ * GeneratedGraph generated = GeneratedGraph.generate(List.of(inc, plus));
+ * generated.attach();
+ * int a = generated.slotOf("A");
+ * generated.publish(a, 2.0, System.nanoTime()); // one call runs inc and plus
+ * double sum = generated.getValue("Sum");
+ * generated.close();
+ * }</pre>
+ * 
+ * <p><strong>Thread Safety:</strong> runs are serialized; concurrent
+ * publishers wait for each other.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see KernelWriter
+ * @see CompiledGraph
+ */
+public class GeneratedGraph implements NumericAgent {
+
+    /** Internal name of every generated class, in this package */
+    private static final String KERNEL_NAME = "configs/GeneratedKernel";
+
+    /** Internal name of {@link Kernel} */
+    private static final String KERNEL_INTERFACE = "configs/GeneratedGraph$Kernel";
+
+    /** Static counter for generating unique names */
+    private static int instanceCounter = 0;
+
+    /** The unique name of this generated graph */
+    private final String name;
+
+    /** Topic name of each slot */
+    private final String[] slotNames;
+
+    /** Slot of each topic name */
+    private final Map<String, Integer> slotByTopic;
+
+    /** Whether each slot is an input of the agents rather than computed by them */
+    private final boolean[] source;
+
+    /** Whether each slot ignores values equal to its previous value */
+    private final boolean[] incremental;
+
+    /** Computed slots in the cone of influence of each source slot, in schedule order */
+    private final int[][] cones;
+
+    /** All agents of the group, for taking over their subscriptions */
+    private final List<CompilableAgent> agents;
+
+    /** The generated agents, in the order they are evaluated */
+    private final CompilableAgent[] steps;
+
+    /** Input slots of each generated agent */
+    private final int[][] inputs;
+
+    /** Output slot of each generated agent */
+    private final int[] outputs;
+
+    /** The generated agents called through {@link CompilableAgent#compute(double[])} */
+    private final List<CompilableAgent> fallbacks;
+
+    /** The generated code */
+    private final Kernel kernel;
+
+    /** Objects the generated code uses: operators, agents and their argument arrays */
+    private final Object[] operands;
+
+    /** Latest value of each slot */
+    private final double[] values;
+
+    /** Whether each slot has a value every one of its inputs has delivered to */
+    private final boolean[] known;
+
+    /** Last value published to each incremental slot */
+    private final double[] last;
+
+    /** Whether each incremental slot has been published to */
+    private final boolean[] published;
+
+    /** Number of values ignored as unchanged */
+    private long suppressed;
+
+    /** Values that arrived from outside the group during a run */
+    private final ArrayDeque<Deferred> deferred = new ArrayDeque<>();
+
+    /** Topic of each slot while attached, null while detached */
+    private Topic[] topics;
+
+    /** The thread running the generated code, or null */
+    private volatile Thread runner;
+
+    /**
+     * The generated code of a graph.
+     */
+    interface Kernel {
+
+        /**
+         * Evaluates every generated agent once, in schedule order.
+         * 
+         * @param values the value of each slot; the outputs are overwritten
+         * @param operands the objects the code was generated against
+         */
+        void run(double[] values, Object[] operands);
+    }
+
+    /**
+     * Creates a generated graph from its generated code.
+     * 
+     * @param agents all agents of the group
+     * @param steps the generated agents, in schedule order
+     * @param slotByTopic the slot of each topic touched by the generated agents
+     * @param source whether each slot is an input
+     * @param incremental whether each slot ignores unchanged values
+     * @param cones the computed slots downstream of each source slot
+     * @param fallbacks the agents called through compute
+     * @param kernel the generated code
+     * @param operands the objects the code uses
+     */
+    private GeneratedGraph(List<CompilableAgent> agents, CompilableAgent[] steps, Map<String, Integer> slotByTopic,
+                           boolean[] source, boolean[] incremental, int[][] cones, List<CompilableAgent> fallbacks,
+                           Kernel kernel, Object[] operands) {
+        synchronized (GeneratedGraph.class) {
+            instanceCounter++;
+            this.name = "GeneratedGraph_" + instanceCounter;
+        }
+        int slots = slotByTopic.size();
+        this.agents = agents;
+        this.steps = steps;
+        this.slotByTopic = slotByTopic;
+        this.slotNames = slotByTopic.keySet().toArray(new String[0]);
+        this.source = source;
+        this.incremental = incremental;
+        this.cones = cones;
+        this.fallbacks = fallbacks;
+        this.kernel = kernel;
+        this.operands = operands;
+        this.values = new double[slots];
+        this.known = new boolean[slots];
+        this.last = new double[slots];
+        this.published = new boolean[slots];
+        this.inputs = new int[steps.length][];
+        this.outputs = new int[steps.length];
+        for (int s = 0; s < steps.length; s++) {
+            String[] in = steps[s].getInputTopics();
+            inputs[s] = new int[in.length];
+            for (int i = 0; i < in.length; i++) {
+                inputs[s][i] = slotByTopic.get(in[i]);
+            }
+            outputs[s] = slotByTopic.get(steps[s].getOutputTopic());
+        }
+    }
+
+    /**
+     * Generates the code of a group of agents.
+     * 
+     * <p>The agents must still be subscribed to their input topics, since
+     * the order is taken from the current topics, as for
+     * {@link CompiledGraph#compile(List)}. Whether each topic is
+     * {@linkplain Topic#isIncremental() incremental} is read now.</p>
+     * 
+     * @param agents the agents to generate code for
+     * @return the generated graph, not yet attached
+     * @throws NullPointerException if agents is null
+     * @throws IllegalArgumentException if an agent does not implement
+     *                                  {@link CompilableAgent}, the agents
+     *                                  form a cycle, or the generated method
+     *                                  would exceed the class file limits
+     * @throws IllegalStateException if the generated class cannot be defined
+     */
+    public static GeneratedGraph generate(List<? extends Agent> agents) {
+        Graph graph = new Graph();
+        graph.createFromTopics();
+        List<CompilableAgent> order = CompiledGraph.schedule(agents, graph);
+
+        // Agents that can fire and have an observable result
+        List<CompilableAgent> live = new ArrayList<>();
+        Map<String, Integer> slotByTopic = new LinkedHashMap<>();
+        for (CompilableAgent agent : order) {
+            if (agent.getOutputTopic() == null || Arrays.asList(agent.getInputTopics()).contains(null)) {
+                continue;
+            }
+            live.add(agent);
+            for (String topic : agent.getInputTopics()) {
+                slotByTopic.putIfAbsent(topic, slotByTopic.size());
+            }
+            slotByTopic.putIfAbsent(agent.getOutputTopic(), slotByTopic.size());
+        }
+        if (slotByTopic.size() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many topics to generate code for: " + slotByTopic.size());
+        }
+
+        int slots = slotByTopic.size();
+        boolean[] source = new boolean[slots];
+        Arrays.fill(source, true);
+        for (CompilableAgent agent : live) {
+            source[slotByTopic.get(agent.getOutputTopic())] = false;
+        }
+
+        KernelWriter writer = new KernelWriter();
+        List<Object> operands = new ArrayList<>();
+        List<CompilableAgent> fallbacks = new ArrayList<>();
+        for (CompilableAgent agent : live) {
+            String[] in = agent.getInputTopics();
+            int[] ins = new int[in.length];
+            for (int i = 0; i < in.length; i++) {
+                ins[i] = slotByTopic.get(in[i]);
+            }
+            int out = slotByTopic.get(agent.getOutputTopic());
+            // Exact classes only: a subclass may override compute
+            if (agent.getClass() == PlusAgent.class) {
+                writer.plus(out, ins[0], ins[1]);
+            } else if (agent.getClass() == IncAgent.class) {
+                writer.inc(out, ins[0]);
+            } else if (agent.getClass() == BinOpAgent.class) {
+                writer.binOp(out, ins[0], ins[1], operands.size());
+                operands.add(((BinOpAgent) agent).getOperation());
+            } else {
+                writer.call(out, ins, operands.size(), operands.size() + 1);
+                operands.add(agent);
+                operands.add(new double[ins.length]);
+                fallbacks.add(agent);
+            }
+            if (writer.codeSize() >= KernelWriter.MAX_CODE) {
+                throw new IllegalArgumentException("Generated code exceeds " + KernelWriter.MAX_CODE
+                                                   + " bytes at agent " + agent.getName());
+            }
+        }
+
+        // Computed slots a value of each source can change, in schedule order
+        TopicManager tm = TopicManagerSingleton.get();
+        int[][] cones = new int[slots][];
+        boolean[] incremental = new boolean[slots];
+        for (Map.Entry<String, Integer> entry : slotByTopic.entrySet()) {
+            int slot = entry.getValue();
+            incremental[slot] = tm.getTopic(entry.getKey()).isIncremental();
+            cones[slot] = source[slot] ? cone(slot, live, slotByTopic) : new int[0];
+        }
+
+        Kernel kernel = define(writer.toByteArray(KERNEL_NAME, KERNEL_INTERFACE));
+        return new GeneratedGraph(order, live.toArray(new CompilableAgent[0]), slotByTopic, source, incremental,
+                                  cones, Collections.unmodifiableList(fallbacks), kernel, operands.toArray());
+    }
+
+    /**
+     * Collects the computed slots downstream of a source slot.
+     * 
+     * @param slot the source slot
+     * @param live the generated agents, in schedule order
+     * @param slotByTopic the slot of each topic
+     * @return the output slots of the agents reached, in schedule order
+     */
+    private static int[] cone(int slot, List<CompilableAgent> live, Map<String, Integer> slotByTopic) {
+        boolean[] reached = new boolean[slotByTopic.size()];
+        reached[slot] = true;
+        int[] cone = new int[live.size()];
+        int length = 0;
+        for (CompilableAgent agent : live) {
+            int out = slotByTopic.get(agent.getOutputTopic());
+            if (reached[out]) {
+                continue;
+            }
+            for (String in : agent.getInputTopics()) {
+                if (reached[slotByTopic.get(in)]) {
+                    reached[out] = true;
+                    cone[length++] = out;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(cone, length);
+    }
+
+    /**
+     * Defines a generated class as a hidden class of this package and
+     * creates its instance.
+     * 
+     * @param classFile the class file
+     * @return the kernel
+     * @throws IllegalStateException if the class is rejected
+     */
+    private static Kernel define(byte[] classFile) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return (Kernel) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Generated class cannot be defined: " + e, e);
+        }
+    }
+
+    /**
+     * Takes over the subscriptions of the agents.
+     * 
+     * <p>Unsubscribes every agent of the group from its input topics and
+     * subscribes this generated graph to the topics the agents consume but
+     * do not compute. The agents stay registered as publishers.</p>
+     * 
+     * @throws IllegalStateException if already attached
+     */
+    public synchronized void attach() {
+        if (topics != null) {
+            throw new IllegalStateException(name + " is already attached");
+        }
+        TopicManager tm = TopicManagerSingleton.get();
+        Topic[] resolved = new Topic[slotNames.length];
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            resolved[slot] = tm.getTopic(slotNames[slot]);
+        }
+        for (CompilableAgent agent : agents) {
+            for (String topic : agent.getInputTopics()) {
+                if (topic != null) {
+                    tm.getTopic(topic).unsubscribe(agent);
+                }
+            }
+        }
+        topics = resolved;
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            if (source[slot]) {
+                resolved[slot].subscribe(this);
+            }
+        }
+    }
+
+    /**
+     * Unsubscribes this generated graph from its topics. The agents are not
+     * resubscribed.
+     */
+    public synchronized void detach() {
+        if (topics == null) {
+            return;
+        }
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            if (source[slot]) {
+                topics[slot].unsubscribe(this);
+            }
+        }
+        topics = null;
+    }
+
+    /**
+     * Returns the names of the topics the generated graph subscribes to while
+     * attached.
+     * 
+     * @return the topic names, in slot order
+     */
+    public List<String> getInputTopics() {
+        List<String> names = new ArrayList<>();
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            if (source[slot]) {
+                names.add(slotNames[slot]);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the slot of a topic, for use with {@link #publish(int, double, long)}.
+     * 
+     * @param topic the topic name
+     * @return the slot, or -1 if no generated agent consumes or publishes the topic
+     */
+    public int slotOf(String topic) {
+        Integer slot = slotByTopic.get(topic);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Runs the generated code for a new value of an input topic.
+     * 
+     * <p>Runs on the calling thread and returns once, if attached, every
+     * value the input affects has been published to its topic.</p>
+     * 
+     * @param slot the topic's slot, see {@link #slotOf(String)}
+     * @param value the new value
+     * @param originNanos the origin stamp, passed on to the published results
+     * @throws IndexOutOfBoundsException if the slot does not exist
+     * @throws IllegalArgumentException if the slot is computed by the agents
+     * @throws RuntimeException if an agent fails to compute its output
+     */
+    public synchronized void publish(int slot, double value, long originNanos) {
+        if (!source[slot]) {
+            throw new IllegalArgumentException("Topic " + slotNames[slot] + " is computed by " + name);
+        }
+        runner = Thread.currentThread();
+        try {
+            run(slot, value, originNanos);
+            while (!deferred.isEmpty()) {
+                Deferred next = deferred.poll();
+                run(next.slot, next.value, next.originNanos);
+            }
+        } finally {
+            deferred.clear();
+            runner = null;
+        }
+    }
+
+    /**
+     * Stores a value of an input slot, runs the generated code and publishes
+     * the results.
+     * 
+     * @param slot the input slot
+     * @param value the new value
+     * @param originNanos the origin stamp
+     */
+    private void run(int slot, double value, long originNanos) {
+        if (incremental[slot] && known[slot]
+                && Double.doubleToRawLongBits(values[slot]) == Double.doubleToRawLongBits(value)) {
+            suppressed++;
+            return;
+        }
+        values[slot] = value;
+        if (!known[slot]) {
+            known[slot] = true;
+            updateKnown();
+        }
+        try {
+            kernel.run(values, operands);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Error computing " + name + " for " + slotNames[slot] + ": "
+                                       + e.getMessage(), e);
+        }
+        Topic[] attached = topics;
+        for (int out : cones[slot]) {
+            if (!known[out]) {
+                continue;
+            }
+            if (incremental[out]) {
+                if (published[out] && Double.doubleToRawLongBits(last[out]) == Double.doubleToRawLongBits(values[out])) {
+                    suppressed++;
+                    continue;
+                }
+                published[out] = true;
+                last[out] = values[out];
+            }
+            if (attached != null) {
+                attached[out].publishDouble(values[out], originNanos);
+            }
+        }
+    }
+
+    /**
+     * Marks the outputs of the agents whose inputs all have values as known,
+     * in schedule order.
+     */
+    private void updateKnown() {
+        for (int s = 0; s < steps.length; s++) {
+            if (known[outputs[s]]) {
+                continue;
+            }
+            boolean ready = true;
+            for (int in : inputs[s]) {
+                ready &= known[in];
+            }
+            known[outputs[s]] = ready;
+        }
+    }
+
+    /**
+     * Returns the number of values ignored as unchanged on incremental topics.
+     * 
+     * @return the count since the graph was generated
+     */
+    public synchronized long getSuppressedCount() {
+        return suppressed;
+    }
+
+    /**
+     * Returns the latest value of a slot.
+     * 
+     * @param slot the slot
+     * @return the latest value, 0.0 if it has never been set
+     */
+    public synchronized double getValue(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Returns the latest value of a topic.
+     * 
+     * @param topic the topic name
+     * @return the latest value, or NaN if the topic is not part of the
+     *         generated code
+     */
+    public double getValue(String topic) {
+        int slot = slotOf(topic);
+        return slot >= 0 ? getValue(slot) : Double.NaN;
+    }
+
+    /**
+     * Returns the agents in the order the generated code evaluates them.
+     * 
+     * @return the generated agents, without those that can never fire
+     */
+    public List<CompilableAgent> getSchedule() {
+        return List.of(steps);
+    }
+
+    /**
+     * Returns the agents the generated code calls through
+     * {@link CompilableAgent#compute(double[])} rather than inline.
+     * 
+     * @return the agents of classes the generator does not know, in schedule order
+     */
+    public List<CompilableAgent> getFallbackAgents() {
+        return fallbacks;
+    }
+
+    /**
+     * Returns the unique name of this generated graph.
+     * 
+     * @return the name, e.g. "GeneratedGraph_1"
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Forgets all values.
+     */
+    @Override
+    public synchronized void reset() {
+        Arrays.fill(values, 0.0);
+        Arrays.fill(known, false);
+        Arrays.fill(published, false);
+    }
+
+    /**
+     * Processes a message from a subscribed topic; non-numeric messages are
+     * ignored, like the agents would, and the correlation id is dropped.
+     * 
+     * @param topic the name of the topic
+     * @param msg the message
+     */
+    @Override
+    public void callback(String topic, Message msg) {
+        if (!Double.isNaN(msg.asDouble())) {
+            callbackDouble(topic, msg.asDouble(), msg.getOriginNanos());
+        }
+    }
+
+    /**
+     * Processes a numeric value from a subscribed topic by running the
+     * generated code, or after the current run if one is in progress on
+     * this thread.
+     * 
+     * @param topic the name of the topic
+     * @param value the value
+     * @param originNanos the origin stamp
+     */
+    @Override
+    public void callbackDouble(String topic, double value, long originNanos) {
+        int slot = slotOf(topic);
+        if (slot < 0 || !source[slot] || Double.isNaN(value)) {
+            return;
+        }
+        if (runner == Thread.currentThread()) {
+            deferred.add(new Deferred(slot, value, originNanos));
+            return;
+        }
+        publish(slot, value, originNanos);
+    }
+
+    /**
+     * Detaches from the topics; the agents are closed by their owner.
+     */
+    @Override
+    public void close() {
+        detach();
+    }
+
+    /**
+     * A value that arrived from outside the group during a run.
+     */
+    private static final class Deferred {
+
+        /** The slot */
+        final int slot;
+
+        /** The value */
+        final double value;
+
+        /** The origin stamp */
+        final long originNanos;
+
+        /**
+         * Creates a deferred value.
+         * 
+         * @param slot the slot
+         * @param value the value
+         * @param originNanos the origin stamp
+         */
+        Deferred(int slot, double value, long originNanos) {
+            this.slot = slot;
+            this.value = value;
+            this.originNanos = originNanos;
+        }
+    }
+}
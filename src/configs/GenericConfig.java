@@ -5,10 +5,24 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import graph.Agent;
+import graph.AgentScheduler;
+import graph.CompilableAgent;
+import graph.OverflowPolicy;
 import graph.ParallelAgent;
+import graph.SinkAgent;
+import graph.SourceAgent;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import graph.WaitStrategy;
 
 /**
  * A generic configuration loader that creates computational graph agents from configuration files.
@@ -26,6 +40,110 @@ import graph.ParallelAgent;
  * Line 3: Comma-separated output topic names (e.g., "Result" or "Output1,Output2")
  * </pre>
  * 
+ * <p><strong>Directives:</strong></p>
+ * <p>An agent block may be preceded by directive lines starting with {@code @},
+ * each holding whitespace-separated {@code key=value} pairs that tune how that
+ * one agent is executed. Files without directives keep their meaning.</p>
+ * <ul>
+ *   <li>{@code capacity=N} - mailbox capacity (default 10)</li>
+ *   <li>{@code overflow=POLICY} - an {@link OverflowPolicy} such as {@code block},
+ *       {@code drop_newest} or {@code conflate} (default {@code block})</li>
+ *   <li>{@code timeout=MS} - wait of {@code overflow=block_timeout} in milliseconds</li>
+ *   <li>{@code wait=STRATEGY} - use the lock-free ring mailbox with this
+ *       {@link WaitStrategy}, such as {@code park} or {@code busy_spin}</li>
+ *   <li>{@code mode=MODE} - {@code inline} runs the agent synchronously inside
+ *       {@link Topic#publish}, without a mailbox or handoff; {@code thread},
+ *       {@code virtual} and {@code scheduled} select a {@link ParallelAgent.Mode}
+ *       (default: the {@code graph.agent.mode} system property, else {@code thread})</li>
+ *   <li>{@code group=LABEL} - run on a dedicated scheduler shared by all agents
+ *       with the same label, isolated from the rest of the graph</li>
+ *   <li>{@code threads=N} - worker count of the group's scheduler (default 1)</li>
+ *   <li>{@code incremental=BOOL} - {@code true} makes the agent's output topics
+ *       {@linkplain Topic#setIncremental(boolean) incremental}: a result equal to
+ *       the previous one is not published, so nothing downstream recomputes
+ *       (default: the {@code graph.incremental} system property, else {@code false})</li>
+ *   <li>{@code engine=ENGINE} - applies to the whole file and may only precede
+ *       the first agent: {@code topics} connects the agents through topics as
+ *       described above, {@code compiled} runs them as one {@link CompiledGraph}
+ *       on the publishing thread, {@code forkjoin} does the same but evaluates
+ *       wide levels of the graph in parallel on the common {@link ForkJoinPool},
+ *       {@code generated} runs them as one {@link GeneratedGraph}, generated
+ *       code with the built-in agents inlined, falling back to {@code compiled}
+ *       if the code cannot be generated (default: the {@code graph.engine} system property, else {@code topics})</li>
+ *   <li>{@code fuse=BOOL} - applies to the whole file and may only precede the
+ *       first agent: {@code true} fuses chains of agents on the topics engine,
+ *       see below (default: the {@code graph.fuse} system property, else
+ *       {@code false})</li>
+ *   <li>{@code optimize=BOOL} - applies to the whole file and may only
+ *       precede the first agent: {@code true} shrinks the file before any
+ *       agent is created, see below (default: the {@code graph.optimize}
+ *       system property, else {@code false})</li>
+ *   <li>{@code keep=BOOL} - {@code true} makes the agent's outputs count as
+ *       used, so the optimizer never removes the agent (default {@code false})</li>
+ *   <li>{@code results=TOPICS} - applies to the whole file and may only
+ *       precede the first agent: the comma-separated topics the optimizer
+ *       treats as the file's results, see below (default: none declared)</li>
+ * </ul>
+ * <pre>
+ * &#64;mode=inline
+ * configs.IncAgent
+ * A
+ * B
+ * &#64;capacity=1000 wait=spin_then_park
+ * &#64;group=sink threads=2
+ * configs.PlusAgent
+ * B,C
+ * Sum
+ * </pre>
+ * 
+ * <p><strong>Operator Fusion:</strong></p>
+ * <p>With {@code fuse=true}, a load-time pass over the {@link Graph} of the
+ * created agents finds every topic with exactly one publisher and one
+ * subscriber, both agents of this file implementing
+ * {@link CompilableAgent} (and therefore pure). Agents linked by such
+ * topics are fused into one {@link CompiledGraph}, which is placed like a
+ * single agent according to the directives of its first agent, so a chain
+ * of N agents costs one mailbox handoff and one function call per value
+ * instead of N hops. The topics inside a fused chain are only published to
+ * while they are {@linkplain Topic#isObserved() observed}, for example by
+ * the web interface. They remain entry points: a value published to one
+ * from outside, such as by a {@link FileSourceAgent} or over HTTP, still
+ * reaches the rest of the chain. All other agents are placed as usual.</p>
+ * 
+ * <p><strong>Optimization:</strong></p>
+ * <p>With {@code optimize=true}, the parsed blocks go through a
+ * load-time pass that only touches pure agents, those implementing
+ * {@link CompilableAgent}, and {@link ConstAgent}s: an agent fed only by
+ * constants is folded into a {@link ConstAgent} of its result, an agent of
+ * the same class with the same inputs as an earlier one is merged into it,
+ * and an agent whose outputs nothing uses is removed. A topic is used if
+ * it has a subscriber from outside the file, is read by an agent that is
+ * not pure, such as a sink, is an output of a {@code keep=true} agent, or
+ * is listed by the {@code results} directive. In a file that declares
+ * neither results nor sinks, every topic no agent reads counts as a result,
+ * so an agent is only removed when its outputs feed nothing but other
+ * removable agents; declare the results to let the optimizer drop the rest.
+ * Merged and removed agents are never created, and
+ * {@link #getOptimizationReport()} lists every fold, merge and removal.</p>
+ * 
+ * <p><strong>Sources and Sinks:</strong></p>
+ * <p>The input line of a {@link SourceAgent}, such as {@link FileSourceAgent},
+ * and the output line of a {@link SinkAgent}, such as {@link FileSinkAgent},
+ * describe where values come from or go to instead of naming topics. Both
+ * stay on topics when the other agents are compiled or generated, and
+ * sources start publishing once every agent of the file is in place.</p>
+ * <pre>
+ * configs.FileSourceAgent
+ * /data/pairs.csv, rate=max
+ * A,B
+ * configs.PlusAgent
+ * A,B
+ * Sum
+ * configs.FileSinkAgent
+ * Sum
+ * /data/sums.txt, flush=50
+ * </pre>
+ * 
  * <p><strong>Example Configuration File:</strong></p>
  * <pre>{@code
  * configs.PlusAgent
@@ -84,8 +202,38 @@ public class GenericConfig implements Config {
     /** The path to the configuration file */
     private String confFile;
     
-    /** List of parallel agents created from the configuration */
-    private List<ParallelAgent> agents;
+    /** Prefix of directive lines */
+    private static final String DIRECTIVE_PREFIX = "@";
+    
+    /** Names of the engines a file can select */
+    private static final List<String> ENGINES = List.of("topics", "compiled", "forkjoin", "generated");
+    
+    /** Default mailbox capacity of every ParallelAgent */
+    private static final int DEFAULT_CAPACITY = 10;
+    
+    /** Agents created from the configuration, in file order */
+    private List<Placement> agents;
+    
+    /** The agents as declared, before any wrapping or fusion, in file order */
+    private final List<Agent> declared = new ArrayList<>();
+    
+    /** Dedicated schedulers of the agent groups, by label */
+    private final Map<String, AgentScheduler> groups = new LinkedHashMap<>();
+    
+    /** The compiled graph running the agents, or null if they use topics */
+    private CompiledGraph compiled;
+    
+    /** The generated graph running the agents, or null if they use another engine */
+    private GeneratedGraph generated;
+    
+    /** Chains of agents fused into one compiled graph each */
+    private final List<CompiledGraph> fusedChains = new ArrayList<>();
+    
+    /** Topics made incremental by this configuration */
+    private final List<Topic> incrementalTopics = new ArrayList<>();
+    
+    /** What the optimizer folded, merged and removed, empty unless {@code optimize=true} */
+    private final List<String> report = new ArrayList<>();
     
     /**
      * Constructs a new GenericConfig instance.
@@ -124,17 +272,26 @@ public class GenericConfig implements Config {
      * <p>This method performs the following operations:</p>
      * <ol>
      *   <li>Reads and validates the configuration file format</li>
-     *   <li>Parses agent definitions (class name, inputs, outputs)</li>
+     *   <li>Parses agent definitions (class name, inputs, outputs) and their directives</li>
+     *   <li>With {@code optimize=true}, folds, merges and removes agents
+     *       before any is created, see {@link ConfigOptimizer}</li>
      *   <li>Creates agent instances using reflection</li>
-     *   <li>Wraps each agent in a {@link ParallelAgent} for thread safety</li>
+     *   <li>Wraps each agent in a {@link ParallelAgent} for thread safety, unless
+     *       it is declared inline, and subscribes the wrapper in its place; with
+     *       {@code engine=compiled} or {@code engine=forkjoin}, compiles all
+     *       agents into one {@link CompiledGraph} instead, with
+     *       {@code engine=generated} into one {@link GeneratedGraph}; with {@code fuse=true},
+     *       fuses chains of agents first</li>
      *   <li>Stores all created agents for later cleanup</li>
+     *   <li>Starts every {@link SourceAgent}, once the whole graph is in place</li>
      * </ol>
      * 
      * <p><strong>File Format Validation:</strong></p>
      * <ul>
      *   <li>Empty lines are ignored</li>
-     *   <li>Total number of non-empty lines must be divisible by 3</li>
+     *   <li>Total number of non-empty, non-directive lines must be divisible by 3</li>
      *   <li>Each group of 3 lines defines one agent</li>
+     *   <li>Directive lines may only appear directly before a group</li>
      * </ul>
      * 
      * <p><strong>Agent Creation Process:</strong></p>
@@ -142,7 +299,9 @@ public class GenericConfig implements Config {
      *   <li>Uses reflection to load the specified class</li>
      *   <li>Looks for a constructor with signature {@code (String[], String[])}</li>
      *   <li>Creates the agent with parsed input/output topic arrays</li>
-     *   <li>Wraps in ParallelAgent with queue capacity of 10</li>
+     *   <li>Wraps in ParallelAgent with queue capacity of 10, run on its own
+     *       thread unless {@code -Dgraph.agent.mode} or the agent's directives
+     *       say otherwise</li>
      * </ul>
      * 
      * @throws RuntimeException if any of the following occurs:
@@ -150,13 +309,14 @@ public class GenericConfig implements Config {
      *           <li>Configuration file is null (call {@link #setConfFile(String)} first)</li>
      *           <li>Configuration file cannot be read</li>
      *           <li>File format is invalid (not divisible by 3 lines)</li>
+     *           <li>A directive is misplaced, unknown or has an invalid value</li>
      *           <li>Agent class cannot be found or loaded</li>
      *           <li>Agent class doesn't have required constructor</li>
      *           <li>Agent instantiation fails</li>
      *         </ul>
      * 
      * @see #setConfFile(String)
-     * @see ParallelAgent#ParallelAgent(Agent, int)
+     * @see ParallelAgent#create(Agent, int, OverflowPolicy, long, ParallelAgent.Mode, WaitStrategy)
      */
     @Override
     public void create() {
@@ -167,12 +327,33 @@ public class GenericConfig implements Config {
         try {
             List<String> lines = readAllLines(confFile);
             List<String> infoLines = new ArrayList<>();
+            List<AgentOptions> blockOptions = new ArrayList<>();
+            AgentOptions pending = null;
             
-            // Filter out empty lines
+            // Filter out empty lines; collect directives for the block that follows them
             for (String line : lines) {
-                if (!line.trim().isEmpty()) {
-                    infoLines.add(line);
+                String trimmed = line.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                if (trimmed.startsWith(DIRECTIVE_PREFIX)) {
+                    if (infoLines.size() % 3 != 0) {
+                        throw new RuntimeException("Directive '" + trimmed + "' must precede an agent's class name line");
+                    }
+                    if (pending == null) {
+                        pending = new AgentOptions();
+                    }
+                    pending.parse(trimmed.substring(DIRECTIVE_PREFIX.length()));
+                    continue;
                 }
+                if (infoLines.size() % 3 == 0) {
+                    blockOptions.add(pending != null ? pending : new AgentOptions());
+                    pending = null;
+                }
+                infoLines.add(line);
+            }
+            if (pending != null) {
+                throw new RuntimeException("Directives at the end of the file are not followed by an agent");
             }
             
             // Validate file format - must have groups of 3 lines
@@ -184,18 +365,106 @@ public class GenericConfig implements Config {
                 );
             }
             
-            // Process each group of 3 lines to create agents
+            String engine = blockOptions.isEmpty() || blockOptions.get(0).engine == null
+                    ? System.getProperty("graph.engine", "topics").trim().toLowerCase()
+                    : blockOptions.get(0).engine;
+            if (!ENGINES.contains(engine)) {
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+            }
+            boolean fuse = blockOptions.isEmpty() || blockOptions.get(0).fuse == null
+                    ? Boolean.getBoolean("graph.fuse") : blockOptions.get(0).fuse;
+            boolean optimize = blockOptions.isEmpty() || blockOptions.get(0).optimize == null
+                    ? Boolean.getBoolean("graph.optimize") : blockOptions.get(0).optimize;
+            boolean deferPlacement = !"topics".equals(engine) || fuse;
+            
+            // Parse each group of 3 lines
+            List<ConfigOptimizer.Block> blocks = new ArrayList<>();
             for (int i = 0; i < infoLines.size(); i += 3) {
-                String className = infoLines.get(i).trim();
-                String subsLine = infoLines.get(i + 1).trim();
-                String pubsLine = infoLines.get(i + 2).trim();
-                
-                String[] subs = parseLine(subsLine);
-                String[] pubs = parseLine(pubsLine);
-                
+                AgentOptions options = blockOptions.get(i / 3);
+                if (i > 0 && options.engine != null) {
+                    throw new IllegalArgumentException("engine applies to the whole file and must precede the first agent");
+                }
+                if (i > 0 && options.fuse != null) {
+                    throw new IllegalArgumentException("fuse applies to the whole file and must precede the first agent");
+                }
+                if (i > 0 && options.optimize != null) {
+                    throw new IllegalArgumentException("optimize applies to the whole file and must precede the first agent");
+                }
+                if (i > 0 && options.results != null) {
+                    throw new IllegalArgumentException("results applies to the whole file and must precede the first agent");
+                }
+                options.validate();
+                blocks.add(new ConfigOptimizer.Block(i / 3, infoLines.get(i).trim(),
+                                                     parseLine(infoLines.get(i + 1).trim()),
+                                                     parseLine(infoLines.get(i + 2).trim()), options.keep));
+            }
+            if (optimize) {
+                ConfigOptimizer optimizer = new ConfigOptimizer(blocks, blockOptions.isEmpty()
+                        ? null : blockOptions.get(0).results);
+                blocks = optimizer.optimize();
+                report.addAll(optimizer.getReport());
+                if (!report.isEmpty()) {
+                    System.out.println("Optimized " + confFile + ": eliminated " + optimizer.getEliminatedCount()
+                                       + " agents, folded " + optimizer.getFoldedCount() + " into constants");
+                    for (String line : report) {
+                        System.out.println("  " + line);
+                    }
+                }
+                // compile() and fuse() look options up by position among the created agents
+                List<AgentOptions> remaining = new ArrayList<>();
+                for (ConfigOptimizer.Block block : blocks) {
+                    remaining.add(blockOptions.get(block.index));
+                }
+                blockOptions = remaining;
+            }
+            
+            // Create the agents
+            for (int i = 0; i < blocks.size(); i++) {
+                ConfigOptimizer.Block block = blocks.get(i);
+                String className = block.className;
+                String[] subs = block.subs;
+                String[] pubs = block.pubs;
+                AgentOptions options = blockOptions.get(i);
                 Agent agent = createAgentInstance(className, subs, pubs);
-                ParallelAgent parallelAgent = new ParallelAgent(agent, 10);
-                agents.add(parallelAgent);
+                declared.add(agent);
+                // The path lines of sources and sinks name no topics
+                if (agent instanceof SourceAgent) {
+                    subs = new String[0];
+                }
+                if (agent instanceof SinkAgent) {
+                    pubs = new String[0];
+                }
+                if (options.incremental) {
+                    // Before compile(), which reads the flags
+                    for (String pub : pubs) {
+                        Topic topic = TopicManagerSingleton.get().getTopic(pub);
+                        if (!topic.isIncremental()) {
+                            topic.setIncremental(true);
+                            incrementalTopics.add(topic);
+                        }
+                    }
+                }
+                if (deferPlacement) {
+                    // Placed once all agents exist, see compile() and fuse()
+                    agents.add(new Placement(agent, subs, null));
+                    continue;
+                }
+                try {
+                    agents.add(place(agent, subs, options));
+                } catch (RuntimeException e) {
+                    agent.close();
+                    throw e;
+                }
+            }
+            if (!"topics".equals(engine)) {
+                compile(blockOptions, engine);
+            } else if (fuse) {
+                fuse(blockOptions);
+            }
+            for (Agent agent : declared) {
+                if (agent instanceof SourceAgent) {
+                    ((SourceAgent) agent).start();
+                }
             }
             
         } catch (IOException e) {
@@ -205,6 +474,352 @@ public class GenericConfig implements Config {
         }
     }
     
+    /**
+     * Places a created agent according to its directives.
+     * 
+     * <p>Inline agents stay subscribed to their input topics themselves. All
+     * other agents are wrapped in a ParallelAgent, which takes over their
+     * subscriptions, so deliveries go through the wrapper's mailbox.</p>
+     * 
+     * <p>Every agent gets its own platform thread by default. The system
+     * property {@code graph.agent.mode} selects another {@link ParallelAgent.Mode}
+     * for agents without a {@code mode} directive: {@code scheduled} runs them
+     * on the shared {@link AgentScheduler}, {@code virtual} gives each its own
+     * virtual thread (Java 21+).</p>
+     * 
+     * @param agent the agent to place
+     * @param subs the agent's input topic names
+     * @param options the agent's directives
+     * @return the placement, used to undo it on close
+     */
+    private Placement place(Agent agent, String[] subs, AgentOptions options) {
+        String mode = options.mode != null
+                ? options.mode : System.getProperty("graph.agent.mode", "thread").trim().toLowerCase();
+        if ("inline".equals(mode) || agent instanceof SourceAgent) {
+            return new Placement(agent, subs, null);
+        }
+        ParallelAgent parallelAgent;
+        if (options.group != null) {
+            parallelAgent = ParallelAgent.create(agent, options.capacity, options.overflow, options.timeoutMillis,
+                                                 groupScheduler(options.group, options.threads), options.waitStrategy);
+        } else {
+            parallelAgent = ParallelAgent.create(agent, options.capacity, options.overflow, options.timeoutMillis,
+                                                 ParallelAgent.Mode.valueOf(mode.toUpperCase()), options.waitStrategy);
+        }
+        for (String sub : subs) {
+            Topic topic = TopicManagerSingleton.get().getTopic(sub);
+            if (topic.subs.contains(agent)) {
+                topic.unsubscribe(agent);
+                topic.subscribe(parallelAgent);
+            }
+        }
+        return new Placement(parallelAgent, subs, parallelAgent);
+    }
+    
+    /**
+     * Runs the created agents as one {@link GeneratedGraph} or
+     * {@link CompiledGraph}.
+     * 
+     * <p>If the code of the agents cannot be generated, because it would be
+     * too large or a {@linkplain SourceAgent#isCorrelating() correlating}
+     * source feeds them, whose rows the generated code would mix up, a
+     * warning is printed and they are compiled instead. If the
+     * agents cannot be compiled either, because one of them does not
+     * implement {@link graph.CompilableAgent} or they form a cycle, a warning
+     * is printed and every agent is placed on topics according to its
+     * directives instead.</p>
+     * 
+     * <p>Sources and sinks are never part of the graph: they are placed on
+     * the topics it reads and publishes.</p>
+     * 
+     * @param blockOptions the directives of each agent, in file order
+     * @param engine {@code compiled}, {@code forkjoin} or {@code generated}
+     */
+    private void compile(List<AgentOptions> blockOptions, String engine) {
+        List<Agent> created = new ArrayList<>();
+        for (Placement placement : agents) {
+            if (!isBoundary(placement.agent)) {
+                created.add(placement.agent);
+            }
+        }
+        if ("generated".equals(engine)) {
+            try {
+                for (Placement placement : agents) {
+                    if (placement.agent instanceof SourceAgent && ((SourceAgent) placement.agent).isCorrelating()) {
+                        // Generated code ignores correlation ids and would join cells of different rows
+                        throw new IllegalArgumentException(placement.agent.getName()
+                                                           + " correlates its values, which generated code ignores");
+                    }
+                }
+                generated = GeneratedGraph.generate(created);
+                generated.attach();
+                placeDeferred(blockOptions, true);
+                return;
+            } catch (IllegalArgumentException e) {
+                generated = null;
+                System.err.println("Warning: " + confFile + " cannot run on the generated engine, compiling it: "
+                                   + e.getMessage());
+            }
+        }
+        try {
+            compiled = CompiledGraph.compile(created);
+            if ("forkjoin".equals(engine)) {
+                compiled.setPool(ForkJoinPool.commonPool(), CompiledGraph.DEFAULT_GRAIN);
+            }
+            compiled.attach();
+            placeDeferred(blockOptions, true);
+            return;
+        } catch (IllegalArgumentException e) {
+            compiled = null;
+            System.err.println("Warning: " + confFile + " cannot run on the compiled engine, using topics: "
+                               + e.getMessage());
+        }
+        placeDeferred(blockOptions, false);
+    }
+    
+    /**
+     * Places the agents whose placement was deferred by {@link #create()}.
+     * 
+     * @param blockOptions the directives of each agent, in file order
+     * @param boundaryOnly whether to place only sources and sinks, which run
+     *                     on topics around a compiled or generated graph
+     */
+    private void placeDeferred(List<AgentOptions> blockOptions, boolean boundaryOnly) {
+        for (int i = 0; i < agents.size(); i++) {
+            Placement placement = agents.get(i);
+            if (boundaryOnly && !isBoundary(placement.agent)) {
+                continue;
+            }
+            try {
+                agents.set(i, place(placement.agent, placement.subs, blockOptions.get(i)));
+            } catch (RuntimeException e) {
+                agents.remove(i);
+                placement.agent.close();
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Tells whether an agent moves values into or out of the graph rather
+     * than computing them.
+     * 
+     * @param agent the agent
+     * @return whether it is a {@link SourceAgent} or a {@link SinkAgent}
+     */
+    private static boolean isBoundary(Agent agent) {
+        return agent instanceof SourceAgent || agent instanceof SinkAgent;
+    }
+    
+    /**
+     * Places the created agents, fusing chains of pure agents into one
+     * {@link CompiledGraph} each.
+     * 
+     * <p>Two agents are linked when one publishes to a topic whose only
+     * publisher it is and whose only subscriber is the other, and both
+     * implement {@link CompilableAgent}. Linked agents form a group; a
+     * group of two or more agents is compiled in fused mode and placed as one
+     * agent with the directives of its first agent. A group that cannot be
+     * compiled, because its agents form a cycle, is placed agent by agent like
+     * the agents not linked to any other.</p>
+     * 
+     * @param blockOptions the directives of each agent, in file order
+     */
+    private void fuse(List<AgentOptions> blockOptions) {
+        List<Placement> created = new ArrayList<>(agents);
+        Map<String, Integer> indexOf = new HashMap<>();
+        for (int i = 0; i < created.size(); i++) {
+            indexOf.put("A" + created.get(i).agent.getName(), i);
+        }
+        
+        // Publishers of each topic node, from the agent to topic edges
+        Graph graph = new Graph();
+        graph.createFromTopics();
+        Map<Node, List<Node>> publishers = new HashMap<>();
+        for (Node node : graph) {
+            if (node.getName().startsWith("A")) {
+                for (Node topic : node.getEdges()) {
+                    publishers.computeIfAbsent(topic, k -> new ArrayList<>()).add(node);
+                }
+            }
+        }
+        
+        // Union the agents at both ends of every fusible topic
+        int[] root = new int[created.size()];
+        for (int i = 0; i < root.length; i++) {
+            root[i] = i;
+        }
+        for (Node topic : graph) {
+            List<Node> pubs = publishers.get(topic);
+            if (!topic.getName().startsWith("T") || pubs == null || pubs.size() != 1 || topic.getEdges().size() != 1) {
+                continue;
+            }
+            Integer from = indexOf.get(pubs.get(0).getName());
+            Integer to = indexOf.get(topic.getEdges().get(0).getName());
+            if (from != null && to != null && !from.equals(to)
+                    && created.get(from).agent instanceof CompilableAgent
+                    && created.get(to).agent instanceof CompilableAgent) {
+                root[find(root, from)] = find(root, to);
+            }
+        }
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < root.length; i++) {
+            groups.computeIfAbsent(find(root, i), k -> new ArrayList<>()).add(i);
+        }
+        
+        agents.clear();
+        boolean[] placed = new boolean[created.size()];
+        try {
+            for (List<Integer> group : groups.values()) {
+                if (group.size() > 1) {
+                    Placement chain = fuseGroup(group, created, blockOptions.get(group.get(0)));
+                    if (chain != null) {
+                        agents.add(chain);
+                        for (int i : group) {
+                            placed[i] = true;
+                        }
+                        continue;
+                    }
+                }
+                for (int i : group) {
+                    agents.add(place(created.get(i).agent, created.get(i).subs, blockOptions.get(i)));
+                    placed[i] = true;
+                }
+            }
+        } finally {
+            // Let close() release whatever could not be placed
+            for (int i = 0; i < placed.length; i++) {
+                if (!placed[i]) {
+                    agents.add(created.get(i));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compiles a group of linked agents in fused mode and places it.
+     * 
+     * @param group the indexes of the agents in file order
+     * @param created the created agents, in file order
+     * @param options the directives of the first agent of the group
+     * @return the placement of the fused chain, or null if the agents form a cycle
+     */
+    private Placement fuseGroup(List<Integer> group, List<Placement> created, AgentOptions options) {
+        List<Agent> members = new ArrayList<>();
+        for (int i : group) {
+            members.add(created.get(i).agent);
+        }
+        CompiledGraph chain;
+        try {
+            chain = CompiledGraph.compile(members);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Warning: " + confFile + " cannot fuse agents, placing them one by one: "
+                               + e.getMessage());
+            return null;
+        }
+        chain.setFused(true);
+        chain.attach();
+        String[] subs = chain.getInputTopics().toArray(new String[0]);
+        Placement placement;
+        try {
+            placement = place(chain, subs, options);
+        } catch (RuntimeException e) {
+            chain.close();
+            throw e;
+        }
+        fusedChains.add(chain);
+        return new Placement(placement.agent, subs, placement.wrapper, members);
+    }
+    
+    /**
+     * Finds the representative of an agent's group, halving paths on the way.
+     * 
+     * @param root the parent of each agent
+     * @param i the agent
+     * @return the group's representative
+     */
+    private static int find(int[] root, int i) {
+        while (root[i] != i) {
+            root[i] = root[root[i]];
+            i = root[i];
+        }
+        return i;
+    }
+    
+    /**
+     * Returns what the optimizer folded, merged and removed when the
+     * configuration was created, one line per agent.
+     * 
+     * @return e.g. "merged PlusAgent A,B -> D into PlusAgent A,B -> C",
+     *         empty unless {@code optimize=true}
+     */
+    public List<String> getOptimizationReport() {
+        return Collections.unmodifiableList(report);
+    }
+    
+    /**
+     * Returns the compiled graphs running fused chains of this configuration's agents.
+     * 
+     * @return the fused chains, empty unless {@code fuse=true}
+     */
+    public List<CompiledGraph> getFusedChains() {
+        return Collections.unmodifiableList(fusedChains);
+    }
+    
+    /**
+     * Returns the compiled graph running this configuration's agents.
+     * 
+     * @return the compiled graph, or null if the agents are connected through topics
+     */
+    public CompiledGraph getCompiledGraph() {
+        return compiled;
+    }
+    
+    /**
+     * Returns the agents of this configuration as declared in the file.
+     * 
+     * <p>These are the agents themselves, whatever engine runs them; a
+     * {@link BatchEvaluator} uses them to evaluate the graph on columns of
+     * inputs.</p>
+     * 
+     * @return the agents in file order, empty before {@link #create()} and
+     *         after {@link #close()}
+     */
+    public List<Agent> getDeclaredAgents() {
+        return Collections.unmodifiableList(declared);
+    }
+    
+    /**
+     * Returns the generated graph running this configuration's agents.
+     * 
+     * @return the generated graph, or null unless {@code engine=generated}
+     *         and the code could be generated
+     */
+    public GeneratedGraph getGeneratedGraph() {
+        return generated;
+    }
+    
+    /**
+     * Returns the dedicated scheduler of an agent group, creating it on first use.
+     * 
+     * @param label the group label
+     * @param threads the requested worker count, or 0 if not specified
+     * @return the group's scheduler
+     * @throws IllegalArgumentException if the group already exists with a
+     *                                  different worker count
+     */
+    private AgentScheduler groupScheduler(String label, int threads) {
+        AgentScheduler scheduler = groups.get(label);
+        if (scheduler == null) {
+            scheduler = new AgentScheduler(threads > 0 ? threads : 1, "group-" + label);
+            groups.put(label, scheduler);
+        } else if (threads > 0 && threads != scheduler.getParallelism()) {
+            throw new IllegalArgumentException("Group '" + label + "' already has " + scheduler.getParallelism()
+                                               + " threads, cannot set " + threads);
+        }
+        return scheduler;
+    }
+    
     /**
      * Reads all lines from the specified file.
      * 
@@ -342,14 +957,283 @@ public class GenericConfig implements Config {
      */
     @Override
     public void close() {
+        // Release the topics before the agents the compiled graph runs
+        if (compiled != null) {
+            compiled.close();
+            compiled = null;
+        }
+        if (generated != null) {
+            generated.close();
+            generated = null;
+        }
+        
         // Close all created agents
-        for (ParallelAgent agent : agents) {
+        for (Placement placement : agents) {
             try {
-                agent.close();
+                placement.close();
             } catch (Exception e) {
-                System.err.println("Warning: Error closing agent " + agent.getName() + ": " + e.getMessage());
+                System.err.println("Warning: Error closing agent " + placement.agent.getName() + ": " + e.getMessage());
             }
         }
         agents.clear();
+        declared.clear();
+        fusedChains.clear();
+        report.clear();
+        
+        for (Topic topic : incrementalTopics) {
+            topic.setIncremental(false);
+        }
+        incrementalTopics.clear();
+        
+        // Stop the group schedulers once their agents are gone
+        for (AgentScheduler scheduler : groups.values()) {
+            try {
+                scheduler.shutdown(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        groups.clear();
+    }
+    
+    /**
+     * An agent created from the configuration, as it was placed in the graph.
+     */
+    private static final class Placement {
+        
+        /** The agent as subscribed: the ParallelAgent wrapper, or the agent itself if inline */
+        final Agent agent;
+        
+        /** The agent's input topic names */
+        final String[] subs;
+        
+        /** The wrapper, or null if the agent runs inline */
+        final ParallelAgent wrapper;
+        
+        /** The agents fused into the placed compiled graph, empty for a single agent */
+        final List<Agent> fused;
+        
+        /**
+         * Creates a placement.
+         * 
+         * @param agent the agent as subscribed
+         * @param subs the agent's input topic names
+         * @param wrapper the wrapper, or null if inline
+         */
+        Placement(Agent agent, String[] subs, ParallelAgent wrapper) {
+            this(agent, subs, wrapper, List.of());
+        }
+        
+        /**
+         * Creates the placement of a fused chain.
+         * 
+         * @param agent the chain's compiled graph as subscribed
+         * @param subs the chain's input topic names
+         * @param wrapper the wrapper, or null if inline
+         * @param fused the agents of the chain
+         */
+        Placement(Agent agent, String[] subs, ParallelAgent wrapper, List<Agent> fused) {
+            this.agent = agent;
+            this.subs = subs;
+            this.wrapper = wrapper;
+            this.fused = fused;
+        }
+        
+        /**
+         * Unsubscribes the wrapper and closes the agent, and the agents fused
+         * into it.
+         */
+        void close() {
+            if (wrapper != null) {
+                for (String sub : subs) {
+                    TopicManagerSingleton.get().getTopic(sub).unsubscribe(wrapper);
+                }
+            }
+            agent.close();
+            for (Agent member : fused) {
+                member.close();
+            }
+        }
+    }
+    
+    /**
+     * Execution directives of one agent block.
+     */
+    private static final class AgentOptions {
+        
+        /** Mailbox capacity */
+        int capacity = DEFAULT_CAPACITY;
+        
+        /** Mailbox overflow policy */
+        OverflowPolicy overflow = OverflowPolicy.BLOCK;
+        
+        /** Wait of {@link OverflowPolicy#BLOCK_TIMEOUT} in milliseconds */
+        long timeoutMillis;
+        
+        /** Ring mailbox wait strategy, or null for the locking mailbox */
+        WaitStrategy waitStrategy;
+        
+        /** "inline" or a lower-case {@link ParallelAgent.Mode} name, or null for the default */
+        String mode;
+        
+        /** Group label, or null to run on the shared scheduler */
+        String group;
+        
+        /** Worker count of the group's scheduler, 0 if not specified */
+        int threads;
+        
+        /** One of {@link #ENGINES} for the whole file, or null if not specified */
+        String engine;
+        
+        /** Whether to fuse chains of agents, for the whole file, or null if not specified */
+        Boolean fuse;
+        
+        /** Whether to optimize the file before creating its agents, or null if not specified */
+        Boolean optimize;
+        
+        /** Whether the agent's outputs count as used by the optimizer */
+        boolean keep;
+        
+        /** The file's result topics for the optimizer, for the whole file, or null if not specified */
+        LinkedHashSet<String> results;
+        
+        /** Whether the agent's output topics drop unchanged results */
+        boolean incremental = Boolean.getBoolean("graph.incremental");
+        
+        /** Whether any mailbox directive was given */
+        boolean hasMailboxDirective;
+        
+        /**
+         * Parses one directive line without its prefix.
+         * 
+         * @param line whitespace-separated key=value pairs
+         * @throws IllegalArgumentException if a pair is malformed, the key is
+         *                                  unknown or the value is invalid
+         */
+        void parse(String line) {
+            for (String pair : line.trim().split("\\s+")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int eq = pair.indexOf('=');
+                if (eq <= 0 || eq == pair.length() - 1) {
+                    throw new IllegalArgumentException("Directive must be key=value, got: " + pair);
+                }
+                String key = pair.substring(0, eq).toLowerCase();
+                String value = pair.substring(eq + 1);
+                String constant = value.toUpperCase().replace('-', '_');
+                switch (key) {
+                    case "capacity":
+                        capacity = positive(key, value);
+                        hasMailboxDirective = true;
+                        break;
+                    case "overflow":
+                        overflow = OverflowPolicy.valueOf(constant);
+                        hasMailboxDirective = true;
+                        break;
+                    case "timeout":
+                        timeoutMillis = positive(key, value);
+                        hasMailboxDirective = true;
+                        break;
+                    case "wait":
+                        waitStrategy = WaitStrategy.valueOf(constant);
+                        hasMailboxDirective = true;
+                        break;
+                    case "mode":
+                        mode = value.toLowerCase();
+                        if (!"inline".equals(mode)) {
+                            ParallelAgent.Mode.valueOf(constant);
+                        }
+                        break;
+                    case "group":
+                        group = value;
+                        break;
+                    case "threads":
+                        threads = positive(key, value);
+                        break;
+                    case "incremental":
+                        incremental = bool(key, value);
+                        break;
+                    case "fuse":
+                        fuse = bool(key, value);
+                        break;
+                    case "optimize":
+                        optimize = bool(key, value);
+                        break;
+                    case "keep":
+                        keep = bool(key, value);
+                        break;
+                    case "results":
+                        results = new LinkedHashSet<>();
+                        for (String topic : value.split(",")) {
+                            if (!topic.trim().isEmpty()) {
+                                results.add(topic.trim());
+                            }
+                        }
+                        break;
+                    case "engine":
+                        engine = value.toLowerCase();
+                        if (!ENGINES.contains(engine)) {
+                            throw new IllegalArgumentException("engine must be one of " + ENGINES + ", got: " + value);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown directive: " + key);
+                }
+            }
+        }
+        
+        /**
+         * Rejects directive combinations that contradict each other.
+         * 
+         * @throws IllegalArgumentException if the combination is invalid
+         */
+        void validate() {
+            boolean ownThread = "thread".equals(mode) || "virtual".equals(mode);
+            if ("inline".equals(mode) && (hasMailboxDirective || group != null)) {
+                throw new IllegalArgumentException("Inline agents have no mailbox or group");
+            }
+            if (group != null && ownThread) {
+                throw new IllegalArgumentException("Group '" + group + "' requires mode=scheduled, got mode=" + mode);
+            }
+            if (threads > 0 && group == null) {
+                throw new IllegalArgumentException("threads=" + threads + " requires a group");
+            }
+        }
+        
+        /**
+         * Parses a boolean directive value.
+         * 
+         * @param key the directive key, for the error message
+         * @param value the value to parse
+         * @return the value
+         * @throws IllegalArgumentException if the value is neither true nor false
+         */
+        private static boolean bool(String key, String value) {
+            if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+                throw new IllegalArgumentException(key + " must be true or false, got: " + value);
+            }
+            return Boolean.parseBoolean(value);
+        }
+        
+        /**
+         * Parses a positive integer directive value.
+         * 
+         * @param key the directive key, for the error message
+         * @param value the value to parse
+         * @return the value
+         * @throws IllegalArgumentException if the value is not a positive integer
+         */
+        private static int positive(String key, String value) {
+            try {
+                int n = Integer.parseInt(value);
+                if (n > 0) {
+                    return n;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new IllegalArgumentException(key + " must be a positive integer, got: " + value);
+        }
     }
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package configs;
 
 import graph.Agent;
+import graph.CompilableAgent;
 import graph.Message;
+import graph.NumericAgent;
 import graph.TopicManagerSingleton;
 import graph.TopicManagerSingleton.TopicManager;
 
@@ -85,7 +87,7 @@ import graph.TopicManagerSingleton.TopicManager;
  * @see Message
  * @see TopicManagerSingleton
  */
-public class IncAgent implements Agent {
+public class IncAgent implements NumericAgent, CompilableAgent {
     
     /** Static counter for generating unique agent names */
     private static int instanceCounter = 0;
@@ -244,14 +246,13 @@ public class IncAgent implements Agent {
      * <ol>
      *   <li>Check if the message contains a valid numeric value</li>
      *   <li>If numeric: add 1 to the value</li>
-     *   <li>Create a new message with the incremented value</li>
-     *   <li>Publish the result to the output topic (if configured)</li>
+     *   <li>Publish the result to the output topic as a numeric value (if configured)</li>
      *   <li>If non-numeric: ignore the message silently</li>
      * </ol>
      * 
      * <p><strong>Numeric Value Detection:</strong></p>
      * <p>The agent uses {@link Message#asDouble} to extract numeric values.
-     * Messages are considered numeric if {@code !Double.isNaN(msg.asDouble)}
+     * Messages are considered numeric if {@code !Double.isNaN(msg.asDouble())}
      * returns true.</p>
      * 
      * <p><strong>Error Handling:</strong></p>
@@ -277,7 +278,8 @@ public class IncAgent implements Agent {
      * @param topic the name of the topic that published the message.
      *             For IncAgent, this should match the configured input topic name.
      * @param msg the message containing the data to process. The agent extracts
-     *           the numeric value using {@link Message#asDouble}.
+     *           the numeric value using {@link Message#asDouble}. The output
+     *           carries the message's correlation id, if any.
      * 
      * @throws RuntimeException if an error occurs during message publishing
      *                         (e.g., topic system failure)
@@ -288,23 +290,84 @@ public class IncAgent implements Agent {
      */
     @Override
     public void callback(String topic, Message msg) {
-        // Only process messages with valid numeric values
-        if (!Double.isNaN(msg.asDouble)) {
-            // Perform increment operation
-            double output = msg.asDouble + 1.0;
-            
-            // Publish result if output topic is configured
-            if (outputTopicName != null) {
-                try {
-                    Message outputMessage = new Message(output);
-                    tm.getTopic(outputTopicName).publish(outputMessage);
-                } catch (Exception e) {
-                    throw new RuntimeException("Error publishing incremented value to topic '" 
-                                             + outputTopicName + "': " + e.getMessage(), e);
-                }
+        // Non-numeric messages are silently ignored
+        if (Double.isNaN(msg.asDouble())) {
+            return;
+        }
+        if (msg.isCorrelated() && outputTopicName != null) {
+            tm.getTopic(outputTopicName).publishDouble(msg.asDouble() + 1.0, msg.getOriginNanos(),
+                                                        msg.getCorrelationId());
+        } else {
+            callbackDouble(topic, msg.asDouble(), msg.getOriginNanos());
+        }
+    }
+
+    /**
+     * Processes an incoming numeric value by adding 1 to it.
+     * 
+     * <p>Same behavior as {@link #callback(String, Message)}, but the value
+     * arrives and leaves as a primitive: the result is published through
+     * {@link Topic#publishDouble(double, long)}, which falls back to a regular
+     * message for subscribers that do not accept doubles.</p>
+     * 
+     * @param topic the name of the topic that published the value
+     * @param value the value to increment
+     * @param originNanos the origin stamp of the input, propagated to the result
+     * 
+     * @throws RuntimeException if an error occurs during publishing
+     * 
+     * @see NumericAgent#callbackDouble(String, double, long)
+     */
+    @Override
+    public void callbackDouble(String topic, double value, long originNanos) {
+        // Non-numeric values are silently ignored, as in callback()
+        if (Double.isNaN(value)) {
+            return;
+        }
+        
+        // Perform increment operation
+        double output = value + 1.0;
+        
+        // Publish result if output topic is configured
+        if (outputTopicName != null) {
+            try {
+                tm.getTopic(outputTopicName).publishDouble(output, originNanos);
+            } catch (Exception e) {
+                throw new RuntimeException("Error publishing incremented value to topic '" 
+                                         + outputTopicName + "': " + e.getMessage(), e);
             }
         }
-        // Non-numeric messages are silently ignored
+    }
+
+    /**
+     * Returns the single input topic.
+     * 
+     * @return the input topic name, or null if none was given
+     */
+    @Override
+    public String[] getInputTopics() {
+        return new String[] {inputTopicName};
+    }
+
+    /**
+     * Returns the topic incremented values are published to.
+     * 
+     * @return the output topic name, or null if none was given
+     */
+    @Override
+    public String getOutputTopic() {
+        return outputTopicName;
+    }
+
+    /**
+     * Computes the incremented value.
+     * 
+     * @param inputs the latest input value
+     * @return the input plus one
+     */
+    @Override
+    public double compute(double[] inputs) {
+        return inputs[0] + 1.0;
     }
 
     /**
@@ -0,0 +1,456 @@
+package configs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the class file of a {@link GeneratedGraph.Kernel}: one class with a
+ * single straight-line method that evaluates a whole schedule on a slot
+ * array.
+ * 
+ * <p>The generated method is
+ * {@code public void run(double[] values, Object[] operands)}. Each
+ * {@code plus}, {@code inc}, {@code binOp} or {@code call} appends the
+ * bytecode of one agent, which loads its inputs from {@code values}, computes
+ * and stores its output back. Built-in agents become primitive arithmetic;
+ * operators and unknown agents are taken from {@code operands}. The code has
+ * no branches, so the class needs no stack map frames.</p>
+ * 
+ * <p><strong>Thread Safety:</strong> not thread-safe; one writer per class.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see GeneratedGraph
+ */
+final class KernelWriter {
+
+    /** Largest size of a method's code allowed by the class file format */
+    static final int MAX_CODE = 65535;
+
+    /** Class file version 52 (Java 8): straight-line code needs no stack maps */
+    private static final int VERSION = 52;
+
+    /** Access flags */
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    /** Opcodes */
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int DCONST_1 = 0x0f;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int DALOAD = 0x31;
+    private static final int AALOAD = 0x32;
+    private static final int DASTORE = 0x52;
+    private static final int DADD = 0x63;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int CHECKCAST = 0xc0;
+
+    /** Constant pool tags */
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    /** Largest operand stack depth of any agent's code */
+    private static final int MAX_STACK = 6;
+
+    /** Constant pool entries, after the count */
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+
+    /** Writer of {@link #pool} */
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+
+    /** Index of each constant pool entry, by a key describing it */
+    private final Map<String, Integer> entries = new HashMap<>();
+
+    /** Number of constant pool entries plus one */
+    private int poolCount = 1;
+
+    /** Code of the run method */
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+    /** Writer of {@link #code} */
+    private final DataOutputStream codeOut = new DataOutputStream(code);
+
+    /**
+     * Appends {@code values[out] = values[in1] + values[in2]}.
+     * 
+     * @param out the output slot
+     * @param in1 the first input slot
+     * @param in2 the second input slot
+     */
+    void plus(int out, int in1, int in2) {
+        op(ALOAD_1);
+        pushInt(out);
+        load(in1);
+        load(in2);
+        op(DADD);
+        op(DASTORE);
+    }
+
+    /**
+     * Appends {@code values[out] = values[in] + 1}.
+     * 
+     * @param out the output slot
+     * @param in the input slot
+     */
+    void inc(int out, int in) {
+        op(ALOAD_1);
+        pushInt(out);
+        load(in);
+        op(DCONST_1);
+        op(DADD);
+        op(DASTORE);
+    }
+
+    /**
+     * Appends {@code values[out] = ((BinaryOperator) operands[operand]).apply(values[in1], values[in2])}.
+     * 
+     * @param out the output slot
+     * @param in1 the first input slot
+     * @param in2 the second input slot
+     * @param operand the index of the operator in the operands
+     */
+    void binOp(int out, int in1, int in2, int operand) {
+        op(ALOAD_1);
+        pushInt(out);
+        operand(operand, "java/util/function/BinaryOperator");
+        load(in1);
+        invoke(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+        load(in2);
+        invoke(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+        invokeInterface("java/util/function/BinaryOperator", "apply",
+                        "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;", 3);
+        op(CHECKCAST);
+        u2(classRef("java/lang/Double"));
+        invoke(INVOKEVIRTUAL, "java/lang/Double", "doubleValue", "()D");
+        op(DASTORE);
+    }
+
+    /**
+     * Appends a call through {@link graph.CompilableAgent#compute(double[])}:
+     * copies the inputs into {@code (double[]) operands[args]}, then stores
+     * {@code ((CompilableAgent) operands[agent]).compute(args)} in {@code values[out]}.
+     * 
+     * @param out the output slot
+     * @param ins the input slots
+     * @param agent the index of the agent in the operands
+     * @param args the index of its argument array in the operands
+     */
+    void call(int out, int[] ins, int agent, int args) {
+        for (int i = 0; i < ins.length; i++) {
+            operand(args, "[D");
+            pushInt(i);
+            load(ins[i]);
+            op(DASTORE);
+        }
+        op(ALOAD_1);
+        pushInt(out);
+        operand(agent, "graph/CompilableAgent");
+        operand(args, "[D");
+        invokeInterface("graph/CompilableAgent", "compute", "([D)D", 2);
+        op(DASTORE);
+    }
+
+    /**
+     * Returns the size of the run method's code so far.
+     * 
+     * @return the code size in bytes, without the final return
+     */
+    int codeSize() {
+        return code.size();
+    }
+
+    /**
+     * Finishes the class.
+     * 
+     * @param className the internal name of the class, in the package of
+     *                  {@link GeneratedGraph}
+     * @param kernel the internal name of the interface it implements
+     * @return the class file
+     * @throws IllegalStateException if the run method is too large
+     */
+    byte[] toByteArray(String className, String kernel) {
+        op(RETURN);
+        if (code.size() > MAX_CODE) {
+            throw new IllegalStateException("Generated code of " + code.size() + " bytes exceeds " + MAX_CODE);
+        }
+        try {
+            int thisClass = classRef(className);
+            int superClass = classRef("java/lang/Object");
+            int iface = classRef(kernel);
+            int init = utf8("<init>");
+            int initType = utf8("()V");
+            int objectInit = methodRef("java/lang/Object", "<init>", "()V", false);
+            int run = utf8("run");
+            int runType = utf8("([D[Ljava/lang/Object;)V");
+            int codeName = utf8("Code");
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(iface);
+            out.writeShort(0);
+            out.writeShort(2);
+
+            // public <init>() { super(); }
+            byte[] initCode = {(byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit,
+                               (byte) RETURN};
+            method(out, init, initType, codeName, 1, 1, initCode);
+
+            // public void run(double[] values, Object[] operands)
+            method(out, run, runType, codeName, MAX_STACK, 3, code.toByteArray());
+
+            out.writeShort(0);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes one method with a Code attribute and no exception handlers.
+     * 
+     * @param out the class file
+     * @param name the name entry
+     * @param type the descriptor entry
+     * @param codeName the "Code" entry
+     * @param maxStack the operand stack depth
+     * @param maxLocals the number of local variable slots
+     * @param body the bytecode
+     * @throws IOException never, the stream is in memory
+     */
+    private static void method(DataOutputStream out, int name, int type, int codeName,
+                               int maxStack, int maxLocals, byte[] body) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(type);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + body.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    /**
+     * Appends {@code values[slot]}.
+     * 
+     * @param slot the slot
+     */
+    private void load(int slot) {
+        op(ALOAD_1);
+        pushInt(slot);
+        op(DALOAD);
+    }
+
+    /**
+     * Appends {@code (type) operands[index]}.
+     * 
+     * @param index the index in the operands
+     * @param type the internal name of the type to cast to
+     */
+    private void operand(int index, String type) {
+        op(ALOAD_2);
+        pushInt(index);
+        op(AALOAD);
+        op(CHECKCAST);
+        u2(classRef(type));
+    }
+
+    /**
+     * Appends the shortest instruction pushing an int constant.
+     * 
+     * @param value the constant
+     */
+    private void pushInt(int value) {
+        if (value >= 0 && value <= 5) {
+            op(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op(BIPUSH);
+            op(value & 0xff);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op(SIPUSH);
+            u2(value);
+        } else {
+            op(LDC_W);
+            u2(integer(value));
+        }
+    }
+
+    /**
+     * Appends an invocation of a class method.
+     * 
+     * @param opcode the invoke instruction
+     * @param owner the internal name of the owner class
+     * @param name the method name
+     * @param type the method descriptor
+     */
+    private void invoke(int opcode, String owner, String name, String type) {
+        op(opcode);
+        u2(methodRef(owner, name, type, false));
+    }
+
+    /**
+     * Appends an invocation of an interface method.
+     * 
+     * @param owner the internal name of the interface
+     * @param name the method name
+     * @param type the method descriptor
+     * @param argSlots the number of argument slots, including the receiver
+     */
+    private void invokeInterface(String owner, String name, String type, int argSlots) {
+        op(INVOKEINTERFACE);
+        u2(methodRef(owner, name, type, true));
+        op(argSlots);
+        op(0);
+    }
+
+    /**
+     * Appends one byte of code.
+     * 
+     * @param b the byte
+     */
+    private void op(int b) {
+        code.write(b);
+    }
+
+    /**
+     * Appends a two-byte operand.
+     * 
+     * @param value the operand
+     */
+    private void u2(int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    /**
+     * Returns the constant pool index of a string.
+     * 
+     * @param value the string
+     * @return the index of its Utf8 entry
+     */
+    private int utf8(String value) {
+        return entry("U" + value, () -> {
+            poolOut.writeByte(CONSTANT_UTF8);
+            poolOut.writeUTF(value);
+        });
+    }
+
+    /**
+     * Returns the constant pool index of an int constant.
+     * 
+     * @param value the constant
+     * @return the index of its Integer entry
+     */
+    private int integer(int value) {
+        return entry("I" + value, () -> {
+            poolOut.writeByte(CONSTANT_INTEGER);
+            poolOut.writeInt(value);
+        });
+    }
+
+    /**
+     * Returns the constant pool index of a class.
+     * 
+     * @param internalName the internal name of the class or array type
+     * @return the index of its Class entry
+     */
+    private int classRef(String internalName) {
+        int name = utf8(internalName);
+        return entry("C" + internalName, () -> {
+            poolOut.writeByte(CONSTANT_CLASS);
+            poolOut.writeShort(name);
+        });
+    }
+
+    /**
+     * Returns the constant pool index of a method.
+     * 
+     * @param owner the internal name of the owner
+     * @param name the method name
+     * @param type the method descriptor
+     * @param onInterface whether the owner is an interface
+     * @return the index of its Methodref or InterfaceMethodref entry
+     */
+    private int methodRef(String owner, String name, String type, boolean onInterface) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int typeIndex = utf8(type);
+        int nameAndType = entry("N" + name + type, () -> {
+            poolOut.writeByte(CONSTANT_NAME_AND_TYPE);
+            poolOut.writeShort(nameIndex);
+            poolOut.writeShort(typeIndex);
+        });
+        return entry("M" + owner + "." + name + type, () -> {
+            poolOut.writeByte(onInterface ? CONSTANT_INTERFACE_METHODREF : CONSTANT_METHODREF);
+            poolOut.writeShort(ownerIndex);
+            poolOut.writeShort(nameAndType);
+        });
+    }
+
+    /**
+     * Returns the index of a constant pool entry, writing it the first time.
+     * 
+     * @param key a key unique to the entry
+     * @param writer writes the entry to {@link #poolOut}
+     * @return the entry's index
+     */
+    private int entry(String key, PoolWriter writer) {
+        Integer index = entries.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            writer.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        entries.put(key, poolCount);
+        return poolCount++;
+    }
+
+    /**
+     * Writes one constant pool entry.
+     */
+    @FunctionalInterface
+    private interface PoolWriter {
+
+        /**
+         * Writes the entry.
+         * 
+         * @throws IOException never, the stream is in memory
+         */
+        void write() throws IOException;
+    }
+}
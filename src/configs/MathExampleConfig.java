@@ -1,5 +1,9 @@
 package configs;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * A demonstration configuration that creates a mathematical computational graph.
  * 
@@ -32,6 +36,22 @@ package configs;
  *   <li><strong>Output Topic:</strong> R3 (final result)</li>
  * </ol>
  * 
+ * <p><strong>Glitch-Free Mode:</strong></p>
+ * <p>Connected through topics, an update of A makes "plus" and "minus"
+ * publish separately, so "mul" can see one fresh and one stale operand, and
+ * updating A and B together triggers several downstream computations. When
+ * the {@code graph.engine} system property is {@code compiled} or
+ * {@code forkjoin}, as for {@link GenericConfig}, the three agents run as one
+ * {@link CompiledGraph} instead: updates propagate in topological order, and
+ * {@link CompiledGraph#batch(Runnable)} propagates a paired update in one
+ * pass in which every agent fires at most once.</p>
+ * <pre>{@code
+ * config.getCompiledGraph().batch(() -> {
+ *     tm.getTopic("A").publishDouble(5.0);
+ *     tm.getTopic("B").publishDouble(3.0);
+ * }); // R3 = 16.0, mul fired once
+ * }</pre>
+ * 
  * <p><strong>Usage Example:</strong></p>
  * <pre>{@code
  * // Create and deploy the mathematical configuration
@@ -73,6 +93,12 @@ package configs;
  */
 public class MathExampleConfig implements Config {
     
+    /** The agents, kept only while they run as a compiled graph */
+    private final List<BinOpAgent> agents = new ArrayList<>();
+    
+    /** The compiled graph running the agents, or null if they use topics */
+    private CompiledGraph compiled;
+    
     /**
      * Creates the mathematical computational graph.
      * 
@@ -174,13 +200,33 @@ public class MathExampleConfig implements Config {
     @Override
     public void create() {
         // Create addition agent: R1 = A + B
-        new BinOpAgent("plus", "A", "B", "R1", (x, y) -> x + y);
+        BinOpAgent plus = new BinOpAgent("plus", "A", "B", "R1", (x, y) -> x + y);
         
         // Create subtraction agent: R2 = A - B  
-        new BinOpAgent("minus", "A", "B", "R2", (x, y) -> x - y);
+        BinOpAgent minus = new BinOpAgent("minus", "A", "B", "R2", (x, y) -> x - y);
         
         // Create multiplication agent: R3 = R1 * R2 = (A + B) * (A - B)
-        new BinOpAgent("mul", "R1", "R2", "R3", (x, y) -> x * y);
+        BinOpAgent mul = new BinOpAgent("mul", "R1", "R2", "R3", (x, y) -> x * y);
+        
+        String engine = System.getProperty("graph.engine", "topics").trim().toLowerCase();
+        if ("compiled".equals(engine) || "forkjoin".equals(engine)) {
+            // Glitch-free: one topologically ordered pass per update
+            agents.addAll(List.of(plus, minus, mul));
+            compiled = CompiledGraph.compile(agents);
+            if ("forkjoin".equals(engine)) {
+                compiled.setPool(ForkJoinPool.commonPool(), CompiledGraph.DEFAULT_GRAIN);
+            }
+            compiled.attach();
+        }
+    }
+    
+    /**
+     * Returns the compiled graph running this configuration's agents.
+     * 
+     * @return the compiled graph, or null if the agents are connected through topics
+     */
+    public CompiledGraph getCompiledGraph() {
+        return compiled;
     }
     
     /**
@@ -256,13 +302,24 @@ public class MathExampleConfig implements Config {
      * <p><strong>Comparison with GenericConfig:</strong></p>
      * <p>Unlike {@link GenericConfig} which explicitly tracks and closes
      * {@link graph.ParallelAgent} wrappers, this configuration relies on
-     * the natural lifecycle of the created agents.</p>
+     * the natural lifecycle of the created agents. Only when they run as a
+     * {@link CompiledGraph}, which holds their subscriptions, are the
+     * compiled graph and the agents closed here.</p>
      * 
      * @see BinOpAgent#close()
      * @see graph.TopicManagerSingleton.TopicManager#clear()
      */
     @Override
     public void close() {
+        if (compiled != null) {
+            compiled.close();
+            compiled = null;
+            for (BinOpAgent agent : agents) {
+                agent.close();
+            }
+            agents.clear();
+        }
+        
         // No explicit cleanup required for this simple configuration
         // BinOpAgent instances will be garbage collected when no longer referenced
         // Topics remain in TopicManager until explicitly cleared
@@ -47,7 +47,7 @@ import java.util.List;
  * // Retrieve and use the value
  * Message retrieved = inputTopic.getmessage();
  * if (retrieved != null) {
- *     System.out.println("Current value: " + retrieved.asText);
+ *     System.out.println("Current value: " + retrieved.asText());
  * }
  * }</pre>
  * 
@@ -266,7 +266,7 @@ public class Node {
      * // Later retrieve for display
      * Message current = topicNode.getmessage();
      * if (current != null) {
-     *     System.out.println("Current temperature: " + current.asDouble + "°C");
+     *     System.out.println("Current temperature: " + current.asDouble() + "°C");
      * }
      * 
      * // Clear the stored value
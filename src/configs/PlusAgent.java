@@ -1,7 +1,10 @@
 package configs;
 
 import graph.Agent;
+import graph.CompilableAgent;
+import graph.JoinTable;
 import graph.Message;
+import graph.NumericAgent;
 import graph.TopicManagerSingleton;
 import graph.TopicManagerSingleton.TopicManager;
 
@@ -35,19 +38,21 @@ import graph.TopicManagerSingleton.TopicManager;
  * @version 1.0
  * @since 1.0
  */
-public class PlusAgent implements Agent{
+public class PlusAgent implements NumericAgent, CompilableAgent {
     private static int instanceCounter = 0; // Static counter for unique names
 	private String name;
 	private String inputTopicName1;
 	private String inputTopicName2;
 	private String outputTopicName;
 	private TopicManager tm;
-	private Double x;
-	private Double y;
+	private double x;
+	private double y;
     private boolean xFound = false;
     private boolean yFound = false;
     private final String[] subs;
    	private final String[] pubs;
+   	/** Inputs of correlated evaluations waiting for their other operand */
+   	private final JoinTable joins = new JoinTable(2, JoinTable.DEFAULT_CAPACITY);
 	
     /**
      * Creates a new PlusAgent with the specified input and output topics.
@@ -108,6 +113,7 @@ public class PlusAgent implements Agent{
 		this.y = 0.0;
 		this.xFound = false;
 		this.yFound = false;
+		joins.clear();
 	}
 
 	/**
@@ -124,30 +130,110 @@ public class PlusAgent implements Agent{
      * <li>Publishes result and resets state for next calculation</li>
      * </ul>
      * 
+     * <p>Correlated messages (see {@link Message#getCorrelationId()}) are not
+     * paired with the latest value of the other input but joined per id: the
+     * sum is published once both operands of the same evaluation have arrived,
+     * carrying that id. Incomplete evaluations are kept in a bounded
+     * {@link JoinTable} that evicts the oldest.</p>
+     * 
      * @param topic the name of the topic that sent the message
      * @param msg the message containing the numeric data
      */
 	@Override
 	public void callback(String topic, Message msg) {
-		if (!Double.isNaN(msg.asDouble)){
-            if (subs.length > 0 && topic.equals(inputTopicName1)) {
-                x = msg.asDouble;
-                xFound = true;
-            }
-            else if (subs.length > 1 && topic.equals(inputTopicName2)) {
-                y = msg.asDouble;
-                yFound = true;
-            }
-            
-            if (xFound && yFound && x != null && y != null) {
-                double result = x + y;
-                if (pubs.length > 0) {
-                    tm.getTopic(outputTopicName).publish(new Message(result));
-                }
+		if (Double.isNaN(msg.asDouble())) {
+			return;
+		}
+		if (!msg.isCorrelated()) {
+            callbackDouble(topic, msg.asDouble(), msg.getOriginNanos());
+            return;
+        }
+		int input = subs.length > 0 && topic.equals(inputTopicName1) ? 0
+				: subs.length > 1 && topic.equals(inputTopicName2) ? 1 : -1;
+		if (input < 0) {
+			return;
+		}
+		double[] xy = joins.offer(msg.getCorrelationId(), input, msg.asDouble());
+		if (xy != null && pubs.length > 0) {
+			tm.getTopic(outputTopicName).publishDouble(xy[0] + xy[1], msg.getOriginNanos(), msg.getCorrelationId());
+		}
+	}
+
+	/**
+     * Returns the pending joins of correlated evaluations.
+     * 
+     * @return the join table
+     */
+	public JoinTable getJoinTable() {
+		return joins;
+	}
+
+	/**
+     * Processes an incoming numeric value from a subscribed topic.
+     * Same logic as {@link #callback(String, Message)}, with the value received
+     * and the sum published as primitives via {@code Topic.publishDouble}.
+     * 
+     * @param topic the name of the topic that sent the value
+     * @param value the numeric value
+     * @param originNanos the origin stamp of this input, propagated to the sum
+     */
+	@Override
+	public void callbackDouble(String topic, double value, long originNanos) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+        if (subs.length > 0 && topic.equals(inputTopicName1)) {
+            x = value;
+            xFound = true;
+        }
+        else if (subs.length > 1 && topic.equals(inputTopicName2)) {
+            y = value;
+            yFound = true;
+        }
+        
+        if (xFound && yFound) {
+            double result = x + y;
+            if (pubs.length > 0) {
+                tm.getTopic(outputTopicName).publishDouble(result, originNanos);
             }
         }
 	}
 
+	/**
+     * Returns the two input topics in the order they are added.
+     * A second input that repeats the first is reported as unconnected, since
+     * {@link #callbackDouble(String, double, long)} only ever assigns it to x.
+     * 
+     * @return the input topic names, null where an input is missing
+     */
+	@Override
+	public String[] getInputTopics() {
+		String second = inputTopicName2 != null && inputTopicName2.equals(inputTopicName1) ? null : inputTopicName2;
+		return new String[] {inputTopicName1, second};
+	}
+
+	/**
+     * Returns the topic the sum is published to.
+     * 
+     * @return the output topic name, or null if none was given
+     */
+	@Override
+	public String getOutputTopic() {
+		return outputTopicName;
+	}
+
+	/**
+     * Computes the sum the agent publishes; it keeps both values after
+     * publishing, so {@link #retainsInputs()} keeps its default.
+     * 
+     * @param inputs the latest x and y
+     * @return x + y
+     */
+	@Override
+	public double compute(double[] inputs) {
+		return inputs[0] + inputs[1];
+	}
+
 	/**
      * Closes the agent and releases all resources.
      * Unsubscribes from all input topics and removes itself from publisher lists.
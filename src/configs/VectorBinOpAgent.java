@@ -0,0 +1,276 @@
+package configs;
+
+import graph.Agent;
+import graph.Message;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import graph.TopicManagerSingleton.TopicManager;
+
+/**
+ * A binary operation agent for vector payloads: the {@code double[]}
+ * counterpart of {@link BinOpAgent}.
+ * 
+ * <p>This agent subscribes to two input topics, waits for a value on both,
+ * applies a {@link Operation} through {@link VectorKernels}, and publishes the
+ * result to an output topic. A 1,000-element vector costs one hop through the
+ * graph instead of one per element.</p>
+ * 
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>{@code
+ * // Elementwise sum of two sensor frames
+ * new VectorBinOpAgent("frameSum", "Left", "Right", "Sum", VectorBinOpAgent.Operation.ADD);
+ * 
+ * // Scale a feature vector by a scalar gain topic
+ * new VectorBinOpAgent("gain", "Features", "Gain", "Scaled", VectorBinOpAgent.Operation.SCALE);
+ * 
+ * // Similarity score
+ * new VectorBinOpAgent("score", "Features", "Weights", "Score", VectorBinOpAgent.Operation.DOT);
+ * }</pre>
+ * 
+ * <p><strong>Behavior:</strong></p>
+ * <ul>
+ *   <li>Inputs are read with {@link Message#asVector()}; for {@link Operation#SCALE}
+ *       the second input is a scalar read with {@link Message#asDouble()}</li>
+ *   <li>When both inputs are available the operation is applied and the
+ *       result published; input flags are then reset</li>
+ *   <li>{@link Operation#DOT} publishes a scalar, all other operations a vector</li>
+ *   <li>Messages that do not carry the expected payload are ignored</li>
+ * </ul>
+ * 
+ * <p><strong>Thread Safety:</strong> This class is thread-safe when used with 
+ * the ParallelAgent wrapper, which serializes callback executions.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see BinOpAgent
+ * @see VectorKernels
+ */
+public class VectorBinOpAgent implements Agent {
+
+    /**
+     * The operations supported by {@link VectorBinOpAgent}.
+     */
+    public enum Operation {
+        /** Elementwise {@code a[i] + b[i]} */
+        ADD,
+        /** Elementwise {@code a[i] - b[i]} */
+        SUB,
+        /** Elementwise {@code a[i] * b[i]} */
+        MUL,
+        /** {@code a[i] * s} where the second input is the scalar {@code s} */
+        SCALE,
+        /** Scalar {@code sum(a[i] * b[i])} */
+        DOT
+    }
+    
+    /** The unique name of this agent instance */
+    private final String name;
+    
+    /** The name of the first input topic */
+    private final String inputTopicName1;
+    
+    /** The name of the second input topic */
+    private final String inputTopicName2;
+    
+    /** The name of the output topic where results are published */
+    private final String outputTopicName;
+    
+    /** The operation to perform on the two inputs */
+    private final Operation operation;
+    
+    /** Reference to the singleton topic manager */
+    private final TopicManager tm;
+    
+    /** The vector from the first input topic */
+    private double[] input1;
+    
+    /** The vector from the second input topic (unused for SCALE) */
+    private double[] input2;
+    
+    /** The scalar from the second input topic (SCALE only) */
+    private double factor;
+    
+    /** Flag indicating whether a value has been received from the first input topic */
+    private boolean inFound1;
+    
+    /** Flag indicating whether a value has been received from the second input topic */
+    private boolean inFound2;
+
+    /**
+     * Constructs a new VectorBinOpAgent.
+     * 
+     * <p>The agent subscribes to both input topics and registers as a publisher
+     * for the output topic.</p>
+     * 
+     * @param agentName the unique name for this agent instance
+     * @param inputTopicName1 the name of the first (vector) input topic
+     * @param inputTopicName2 the name of the second input topic; a vector topic,
+     *                        or a scalar topic for {@link Operation#SCALE}
+     * @param outputTopicName the name of the output topic
+     * @param operation the operation to apply
+     * 
+     * @throws NullPointerException if any topic name or the operation is null
+     * @throws IllegalArgumentException if agentName is empty or whitespace-only
+     */
+    public VectorBinOpAgent(String agentName, String inputTopicName1, String inputTopicName2,
+                            String outputTopicName, Operation operation) {
+        if (agentName == null || agentName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Agent name cannot be null or empty");
+        }
+        if (inputTopicName1 == null) {
+            throw new NullPointerException("First input topic name cannot be null");
+        }
+        if (inputTopicName2 == null) {
+            throw new NullPointerException("Second input topic name cannot be null");
+        }
+        if (outputTopicName == null) {
+            throw new NullPointerException("Output topic name cannot be null");
+        }
+        if (operation == null) {
+            throw new NullPointerException("Vector operation cannot be null");
+        }
+        
+        this.name = agentName;
+        this.inputTopicName1 = inputTopicName1;
+        this.inputTopicName2 = inputTopicName2;
+        this.outputTopicName = outputTopicName;
+        this.operation = operation;
+        this.tm = TopicManagerSingleton.get();
+        
+        reset();
+        
+        tm.getTopic(inputTopicName1).subscribe(this);
+        tm.getTopic(inputTopicName2).subscribe(this);
+        tm.getTopic(outputTopicName).addPublisher(this);
+    }
+
+    /**
+     * Returns the unique name of this agent.
+     * 
+     * @return the agent's name as specified in the constructor
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the operation this agent applies.
+     * 
+     * @return the operation, never null
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Clears stored inputs and input flags.
+     */
+    @Override
+    public void reset() {
+        input1 = null;
+        input2 = null;
+        factor = 0.0;
+        inFound1 = false;
+        inFound2 = false;
+    }
+
+    /**
+     * Stores the incoming input and, once both are present, publishes the result.
+     * 
+     * @param topic the name of the topic that published the message
+     * @param msg the message carrying a vector (or a scalar for the SCALE factor)
+     * 
+     * <p>Vectors of different lengths are not combined: a warning is printed
+     * and the pair is dropped.</p>
+     * 
+     * @throws RuntimeException if publishing fails
+     */
+    @Override
+    public void callback(String topic, Message msg) {
+        if (topic.equals(inputTopicName1)) {
+            double[] values = msg.asVector();
+            if (values == null) {
+                return;
+            }
+            input1 = values;
+            inFound1 = true;
+        } else if (topic.equals(inputTopicName2)) {
+            if (operation == Operation.SCALE) {
+                if (Double.isNaN(msg.asDouble())) {
+                    return;
+                }
+                factor = msg.asDouble();
+            } else {
+                double[] values = msg.asVector();
+                if (values == null) {
+                    return;
+                }
+                input2 = values;
+            }
+            inFound2 = true;
+        }
+        
+        if (inFound1 && inFound2) {
+            if (operation != Operation.SCALE && input1.length != input2.length) {
+                System.err.println("Warning: " + name + " skipped vectors of lengths " + input1.length
+                                   + " and " + input2.length);
+                inFound1 = false;
+                inFound2 = false;
+                return;
+            }
+            try {
+                Topic outputTopic = tm.getTopic(outputTopicName);
+                if (operation == Operation.DOT) {
+                    outputTopic.publishDouble(VectorKernels.dot(input1, input2), msg.getOriginNanos());
+                } else {
+                    outputTopic.publish(new Message(apply(), msg.getOriginNanos()));
+                }
+            } catch (Exception e) {
+                throw new RuntimeException("Error computing vector operation: " + e.getMessage(), e);
+            } finally {
+                inFound1 = false;
+                inFound2 = false;
+            }
+        }
+    }
+
+    /**
+     * Applies an elementwise operation to the stored inputs.
+     * 
+     * @return a new array holding the result
+     */
+    private double[] apply() {
+        double[] out = new double[input1.length];
+        switch (operation) {
+            case ADD:
+                VectorKernels.add(input1, input2, out);
+                break;
+            case SUB:
+                VectorKernels.sub(input1, input2, out);
+                break;
+            case MUL:
+                VectorKernels.mul(input1, input2, out);
+                break;
+            case SCALE:
+                VectorKernels.scale(input1, factor, out);
+                break;
+            default:
+                throw new IllegalStateException("Not an elementwise operation: " + operation);
+        }
+        return out;
+    }
+
+    /**
+     * Unsubscribes from the input topics, deregisters as publisher and clears state.
+     */
+    @Override
+    public void close() {
+        tm.getTopic(inputTopicName1).unsubscribe(this);
+        tm.getTopic(inputTopicName2).unsubscribe(this);
+        tm.getTopic(outputTopicName).removePublisher(this);
+        reset();
+    }
+}
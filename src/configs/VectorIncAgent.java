@@ -0,0 +1,137 @@
+package configs;
+
+import graph.Agent;
+import graph.Message;
+import graph.TopicManagerSingleton;
+import graph.TopicManagerSingleton.TopicManager;
+
+/**
+ * An agent that adds 1 to every element of a vector: the {@code double[]}
+ * counterpart of {@link IncAgent}.
+ * 
+ * <p><strong>Mathematical Operation:</strong></p>
+ * <pre>
+ * output[i] = input[i] + 1
+ * </pre>
+ * 
+ * <p><strong>Configuration File Usage:</strong></p>
+ * <pre>
+ * configs.VectorIncAgent
+ * InputVector
+ * OutputVector
+ * </pre>
+ * 
+ * <p><strong>Behavior Characteristics:</strong></p>
+ * <ul>
+ *   <li><strong>Stateless:</strong> Each message is processed independently</li>
+ *   <li><strong>Vector Only:</strong> Messages without a vector payload are ignored</li>
+ *   <li><strong>Kernel:</strong> Uses {@link VectorKernels#offset(double[], double, double[])}</li>
+ * </ul>
+ * 
+ * <p><strong>Thread Safety:</strong> This class is thread-safe when used with the
+ * {@link graph.ParallelAgent} wrapper, which serializes all callback executions.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see IncAgent
+ * @see VectorKernels
+ */
+public class VectorIncAgent implements Agent {
+
+    /** Static counter for generating unique agent names */
+    private static int instanceCounter = 0;
+
+    /** The unique name of this agent instance */
+    private final String name;
+
+    /** The name of the input topic, or null if not configured */
+    private String inputTopicName;
+
+    /** The name of the output topic, or null if not configured */
+    private String outputTopicName;
+
+    /** Reference to the singleton topic manager */
+    private final TopicManager tm;
+
+    /**
+     * Constructs a new VectorIncAgent with the specified input and output topics.
+     * 
+     * @param subs array of subscription topic names (uses the first)
+     * @param pubs array of publication topic names (uses the first)
+     * @throws NullPointerException if subs or pubs arrays are null
+     */
+    public VectorIncAgent(String[] subs, String[] pubs) {
+        if (subs == null) {
+            throw new NullPointerException("Subscription topics array cannot be null");
+        }
+        if (pubs == null) {
+            throw new NullPointerException("Publication topics array cannot be null");
+        }
+        synchronized (VectorIncAgent.class) {
+            instanceCounter++;
+            this.name = "VectorIncAgent_" + instanceCounter;
+        }
+        this.tm = TopicManagerSingleton.get();
+        
+        if (subs.length > 0) {
+            this.inputTopicName = subs[0];
+            tm.getTopic(inputTopicName).subscribe(this);
+        }
+        if (pubs.length > 0) {
+            this.outputTopicName = pubs[0];
+            tm.getTopic(outputTopicName).addPublisher(this);
+        }
+    }
+
+    /**
+     * Returns the unique name of this agent.
+     * 
+     * @return the agent's unique name, never null
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * VectorIncAgent is stateless; nothing to reset.
+     */
+    @Override
+    public void reset() {
+        // Stateless - no internal state to reset
+    }
+
+    /**
+     * Publishes the input vector with 1 added to every element.
+     * 
+     * @param topic the name of the topic that published the message
+     * @param msg the message carrying a vector; other payloads are ignored
+     */
+    @Override
+    public void callback(String topic, Message msg) {
+        double[] values = msg.asVector();
+        if (values == null || outputTopicName == null) {
+            return;
+        }
+        double[] out = new double[values.length];
+        VectorKernels.offset(values, 1.0, out);
+        tm.getTopic(outputTopicName).publish(new Message(out, msg.getOriginNanos()));
+    }
+
+    /**
+     * Unsubscribes from the input topic and removes itself as a publisher.
+     */
+    @Override
+    public void close() {
+        if (inputTopicName != null) {
+            tm.getTopic(inputTopicName).unsubscribe(this);
+        }
+        if (outputTopicName != null) {
+            tm.getTopic(outputTopicName).removePublisher(this);
+        }
+        inputTopicName = null;
+        outputTopicName = null;
+    }
+}
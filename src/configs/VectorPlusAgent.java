@@ -0,0 +1,160 @@
+package configs;
+
+import graph.Agent;
+import graph.Message;
+import graph.TopicManagerSingleton;
+import graph.TopicManagerSingleton.TopicManager;
+
+/**
+ * An agent that adds two vector inputs elementwise: the {@code double[]}
+ * counterpart of {@link PlusAgent}.
+ * 
+ * <p>The agent waits for a vector on both input topics, computes
+ * {@code out[i] = x[i] + y[i]} with {@link VectorKernels#add(double[], double[], double[])}
+ * and publishes the resulting vector. Like PlusAgent it keeps the latest value
+ * of each input, so a new value on either input produces a new sum.</p>
+ * 
+ * <p>Configuration file usage:
+ * <pre>
+ * configs.VectorPlusAgent
+ * FrameA,FrameB
+ * FrameSum
+ * </pre>
+ * 
+ * <p>Thread Safety: This class is thread-safe when used with the ParallelAgent wrapper.
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see PlusAgent
+ * @see VectorKernels
+ */
+public class VectorPlusAgent implements Agent {
+
+    /** Static counter for generating unique agent names */
+    private static int instanceCounter = 0;
+
+    /** The unique name of this agent instance */
+    private final String name;
+
+    /** The first input topic, or null if not configured */
+    private String inputTopicName1;
+
+    /** The second input topic, or null if not configured */
+    private String inputTopicName2;
+
+    /** The output topic, or null if not configured */
+    private String outputTopicName;
+
+    /** Reference to the singleton topic manager */
+    private final TopicManager tm;
+
+    /** Latest vector from the first input */
+    private double[] x;
+
+    /** Latest vector from the second input */
+    private double[] y;
+
+    /**
+     * Creates a new VectorPlusAgent with the specified input and output topics.
+     * 
+     * @param subs array of input topic names (uses the first two)
+     * @param pubs array of output topic names (uses the first)
+     * @throws NullPointerException if subs or pubs is null
+     */
+    public VectorPlusAgent(String[] subs, String[] pubs) {
+        if (subs == null) {
+            throw new NullPointerException("Subscription topics array cannot be null");
+        }
+        if (pubs == null) {
+            throw new NullPointerException("Publication topics array cannot be null");
+        }
+        synchronized (VectorPlusAgent.class) {
+            instanceCounter++;
+            this.name = "VectorPlusAgent_" + instanceCounter;
+        }
+        this.tm = TopicManagerSingleton.get();
+        
+        if (subs.length > 0) {
+            this.inputTopicName1 = subs[0];
+            tm.getTopic(inputTopicName1).subscribe(this);
+        }
+        if (subs.length > 1) {
+            this.inputTopicName2 = subs[1];
+            tm.getTopic(inputTopicName2).subscribe(this);
+        }
+        if (pubs.length > 0) {
+            this.outputTopicName = pubs[0];
+            tm.getTopic(outputTopicName).addPublisher(this);
+        }
+    }
+
+    /**
+     * Returns the unique name of this agent instance.
+     * 
+     * @return the agent's unique name
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Clears the stored input vectors.
+     */
+    @Override
+    public void reset() {
+        x = null;
+        y = null;
+    }
+
+    /**
+     * Stores the incoming vector and publishes the sum when both inputs are present.
+     * 
+     * <p>Inputs of different lengths are not added: a warning is printed
+     * and the agent waits for a matching pair, since a text payload such
+     * as {@code "5"} easily arrives as a one-element vector.</p>
+     * 
+     * @param topic the name of the topic that sent the message
+     * @param msg the message carrying a vector; other payloads are ignored
+     */
+    @Override
+    public void callback(String topic, Message msg) {
+        double[] values = msg.asVector();
+        if (values == null) {
+            return;
+        }
+        if (topic.equals(inputTopicName1)) {
+            x = values;
+        } else if (topic.equals(inputTopicName2)) {
+            y = values;
+        }
+        if (x != null && y != null && outputTopicName != null) {
+            if (x.length != y.length) {
+                System.err.println("Warning: " + name + " skipped vectors of lengths " + x.length
+                                   + " and " + y.length);
+                return;
+            }
+            double[] sum = new double[x.length];
+            VectorKernels.add(x, y, sum);
+            tm.getTopic(outputTopicName).publish(new Message(sum, msg.getOriginNanos()));
+        }
+    }
+
+    /**
+     * Unsubscribes from all input topics and removes itself from publisher lists.
+     */
+    @Override
+    public void close() {
+        if (inputTopicName1 != null) {
+            tm.getTopic(inputTopicName1).unsubscribe(this);
+        }
+        if (inputTopicName2 != null) {
+            tm.getTopic(inputTopicName2).unsubscribe(this);
+        }
+        if (outputTopicName != null) {
+            tm.getTopic(outputTopicName).removePublisher(this);
+        }
+    }
+}
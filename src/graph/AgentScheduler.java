@@ -0,0 +1,155 @@
+package graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded worker pool that runs the mailboxes of scheduled {@link ParallelAgent}s.
+ * 
+ * <p>In thread mode every ParallelAgent owns a platform thread that mostly sits
+ * idle; a graph with thousands of agents then reserves thousands of stacks. In
+ * scheduled mode an agent is just a mailbox: when a delivery arrives the agent
+ * is submitted to this pool, a worker drains the mailbox into the wrapped
+ * agent, and the agent is released again. Each agent is submitted at most once
+ * at a time, so an agent never runs concurrently with itself.</p>
+ * 
+ * <p><strong>Blocking:</strong></p>
+ * <p>The pool is a FIFO {@link ForkJoinPool} sized to the number of cores. When
+ * a worker has to wait for space in a full {@link OverflowPolicy#BLOCK} mailbox,
+ * the wait is announced as a {@link ForkJoinPool.ManagedBlocker}, and the pool
+ * temporarily adds a spare worker so that the downstream agent can still run.</p>
+ * 
+ * <p>Example usage:
+ * <pre>{@code
+ * AgentScheduler scheduler = AgentScheduler.shared();
+ * ParallelAgent a = new ParallelAgent(agent, 100, OverflowPolicy.BLOCK, 0, scheduler);
+ * }</pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see ParallelAgent
+ */
+public final class AgentScheduler {
+
+    /** The process-wide scheduler, created on first use */
+    private static volatile AgentScheduler shared;
+
+    /** The worker pool */
+    private final ForkJoinPool pool;
+
+    /** Prefix of the worker thread names */
+    private final String name;
+
+    /**
+     * Creates a scheduler with the given number of workers.
+     * 
+     * @param parallelism the number of worker threads, must be positive
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public AgentScheduler(int parallelism) {
+        this(parallelism, "AgentScheduler");
+    }
+
+    /**
+     * Creates a named scheduler, for example one dedicated to a group of agents
+     * that should not share workers with the rest of the graph.
+     * 
+     * @param parallelism the number of worker threads, must be positive
+     * @param name the prefix of the worker thread names, not null
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public AgentScheduler(int parallelism, String name) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive, got: " + parallelism);
+        }
+        if (name == null) {
+            throw new NullPointerException("Scheduler name cannot be null");
+        }
+        this.name = name;
+        this.pool = new ForkJoinPool(parallelism, this::newWorker, null, true);
+    }
+
+    /**
+     * Returns the process-wide scheduler, sized to the number of available cores.
+     * 
+     * @return the shared scheduler, never null
+     */
+    public static AgentScheduler shared() {
+        AgentScheduler result = shared;
+        if (result == null) {
+            synchronized (AgentScheduler.class) {
+                result = shared;
+                if (result == null) {
+                    result = new AgentScheduler(Runtime.getRuntime().availableProcessors());
+                    shared = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a named daemon worker thread.
+     * 
+     * @param pool the pool the worker belongs to
+     * @return the new worker
+     */
+    private ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        worker.setName(name + "-" + worker.getPoolIndex());
+        worker.setDaemon(true);
+        return worker;
+    }
+
+    /**
+     * Submits a mailbox run.
+     * 
+     * @param task the task to run
+     */
+    void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    /**
+     * Returns the prefix of the worker thread names.
+     * 
+     * @return the scheduler name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of worker threads the pool aims to keep busy.
+     * 
+     * @return the target parallelism
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Returns the number of worker threads currently started.
+     * 
+     * @return the pool size, which may briefly exceed the parallelism while
+     *         workers are blocked
+     */
+    public int getPoolSize() {
+        return pool.getPoolSize();
+    }
+
+    /**
+     * Stops accepting new work and waits briefly for running agents to finish.
+     * The shared scheduler should not be shut down.
+     * 
+     * @param timeoutMillis the maximum time to wait
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,55 @@
+package graph;
+
+import java.util.List;
+
+/**
+ * An optional extension of {@link Agent} for agents that can consume several
+ * messages from the same topic in one call.
+ * 
+ * <p>{@link Topic#publishBatch(List)} hands the whole batch to subscribers
+ * implementing this interface, and {@link ParallelAgent} drains its mailbox
+ * into batches for wrapped agents implementing it. Bulk ingestion thus pays
+ * for locking, wake-ups and dispatch once per batch instead of once per
+ * message. Agents that do not implement it receive the messages one by one
+ * through {@link Agent#callback(String, Message)}.</p>
+ * 
+ * <p>Example usage:
+ * <pre>{@code
+ * public class SumAgent implements BatchAgent {
+ *     public void callback(String topic, Message msg) {
+ *         total += msg.asDouble();
+ *     }
+ *     public void callbackBatch(String topic, List<Message> msgs) {
+ *         for (Message msg : msgs) {
+ *             total += msg.asDouble();
+ *         }
+ *         out.publishDouble(total);
+ *     }
+ *     // ...
+ * }
+ * }</pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see Topic#publishBatch(List)
+ */
+public interface BatchAgent extends Agent {
+
+    /**
+     * Callback method invoked with several messages published to the same topic.
+     * 
+     * <p>The messages are in publish order. An agent may process them as a
+     * whole (e.g. publish one result per batch), but the outcome should be
+     * one that calling {@link #callback(String, Message)} for each message in
+     * turn could also have produced.</p>
+     * 
+     * <p>The list is only valid for the duration of the call and must not be
+     * modified or kept; copy it if needed.</p>
+     * 
+     * @param topic the name of the topic that published the messages, not null
+     * @param msgs the messages in publish order, not null and not empty
+     */
+    void callbackBatch(String topic, List<Message> msgs);
+}
@@ -0,0 +1,146 @@
+package graph;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of fixed-size direct buffers handed out as {@link SharedBuffer}s.
+ * 
+ * <p>Allocating direct memory is slow and is only reclaimed by the garbage
+ * collector, so producers of large payloads should reuse buffers instead of
+ * allocating one per message. {@link #acquire(int)} returns a recycled buffer
+ * when one is free; the buffer comes back to the pool automatically when its
+ * last reference is released.</p>
+ * 
+ * <p>Requests larger than the pool's buffer size are served with a dedicated
+ * direct buffer that is not recycled. At most {@code maxPooled} idle buffers
+ * are kept; extra ones are left to the garbage collector.</p>
+ * 
+ * <p><strong>Thread Safety:</strong> All methods may be called concurrently.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see SharedBuffer
+ */
+public class BufferPool {
+
+    /** Capacity of each pooled buffer in bytes */
+    private final int bufferSize;
+
+    /** Maximum number of idle buffers kept for reuse */
+    private final int maxPooled;
+
+    /** Idle buffers ready for reuse */
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+    /** Number of buffers currently in {@link #free} */
+    private final AtomicInteger idle = new AtomicInteger();
+
+    /** Number of direct buffers allocated by this pool */
+    private final AtomicLong allocated = new AtomicLong();
+
+    /** Number of acquisitions served from a recycled buffer */
+    private final AtomicLong reused = new AtomicLong();
+
+    /**
+     * Creates an empty pool.
+     * 
+     * @param bufferSize the capacity of each pooled buffer in bytes, must be positive
+     * @param maxPooled the maximum number of idle buffers to keep, must not be negative
+     * @throws IllegalArgumentException if either argument is out of range
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive, got: " + bufferSize);
+        }
+        if (maxPooled < 0) {
+            throw new IllegalArgumentException("Pool size cannot be negative, got: " + maxPooled);
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Acquires a buffer with room for {@code size} bytes.
+     * 
+     * <p>The returned buffer holds one reference owned by the caller; its
+     * {@link SharedBuffer#writableView()} spans exactly {@code size} bytes.
+     * Recycled buffers are not cleared.</p>
+     * 
+     * @param size the payload size in bytes, must not be negative
+     * @return a shared buffer of the requested size
+     * @throws IllegalArgumentException if size is negative
+     */
+    public SharedBuffer acquire(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size cannot be negative, got: " + size);
+        }
+        if (size > bufferSize) {
+            allocated.incrementAndGet();
+            return new SharedBuffer(ByteBuffer.allocateDirect(size), null, null);
+        }
+        ByteBuffer root = free.poll();
+        if (root != null) {
+            idle.decrementAndGet();
+            reused.incrementAndGet();
+        } else {
+            root = ByteBuffer.allocateDirect(bufferSize);
+            allocated.incrementAndGet();
+        }
+        root.clear().limit(size);
+        return new SharedBuffer(root.slice(), root, this);
+    }
+
+    /**
+     * Returns a buffer to the pool. Called by {@link SharedBuffer#release()}.
+     * 
+     * @param root the buffer to recycle
+     */
+    void recycle(ByteBuffer root) {
+        if (idle.incrementAndGet() <= maxPooled) {
+            free.offer(root);
+        } else {
+            idle.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the capacity of each pooled buffer.
+     * 
+     * @return the buffer size in bytes
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns the number of idle buffers ready for reuse.
+     * 
+     * @return the idle count
+     */
+    public int getIdleCount() {
+        return idle.get();
+    }
+
+    /**
+     * Returns the number of direct buffers this pool has allocated.
+     * 
+     * @return the allocation count, including oversized one-off buffers
+     */
+    public long getAllocatedCount() {
+        return allocated.get();
+    }
+
+    /**
+     * Returns the number of acquisitions served by a recycled buffer.
+     * 
+     * @return the reuse count
+     */
+    public long getReusedCount() {
+        return reused.get();
+    }
+}
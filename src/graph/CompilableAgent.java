@@ -0,0 +1,67 @@
+package graph;
+
+/**
+ * An optional extension of {@link Agent} for agents that compute one numeric
+ * output from their latest numeric inputs and can therefore be run without
+ * topics.
+ * 
+ * <p>Engines that know the whole graph, such as {@link configs.CompiledGraph},
+ * use this view to evaluate the agent directly: they collect the current
+ * value of each input topic, call {@link #compute(double[])} and store the
+ * result for the agents downstream, instead of going through
+ * {@link Topic#publish(Message)} and the agent's callbacks.</p>
+ * 
+ * <p>An implementation must describe exactly what its callbacks do:</p>
+ * <ul>
+ *   <li>The agent publishes once every input has delivered a value, and
+ *       {@link #compute(double[])} returns the value it publishes</li>
+ *   <li>{@link #retainsInputs()} tells whether it keeps publishing on every
+ *       later input (like {@link configs.PlusAgent}) or waits for all inputs
+ *       again (like {@link configs.BinOpAgent})</li>
+ * </ul>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see configs.CompiledGraph
+ */
+public interface CompilableAgent extends Agent {
+
+    /**
+     * Returns the names of the topics this agent consumes, in the order
+     * {@link #compute(double[])} expects their values.
+     * 
+     * @return the input topic names; an element is null for an input that is
+     *         not connected, which keeps the agent from ever publishing
+     */
+    String[] getInputTopics();
+
+    /**
+     * Returns the name of the topic this agent publishes to.
+     * 
+     * @return the output topic name, or null if the agent publishes nothing
+     */
+    String getOutputTopic();
+
+    /**
+     * Computes the value the agent would publish for the given inputs.
+     * 
+     * <p>Must not publish, block or depend on anything but its arguments.</p>
+     * 
+     * @param inputs the latest value of each input topic, in
+     *               {@link #getInputTopics()} order; must not be modified
+     * @return the output value
+     */
+    double compute(double[] inputs);
+
+    /**
+     * Returns whether the agent keeps its inputs after publishing.
+     * 
+     * @return true if every later input triggers a new output, false if the
+     *         agent waits until every input has delivered again
+     */
+    default boolean retainsInputs() {
+        return true;
+    }
+}
@@ -0,0 +1,169 @@
+package graph;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pending inputs of a multi-input agent, joined per correlation id.
+ * 
+ * <p>Each correlated input is recorded under the evaluation it belongs to
+ * (see {@link Message#getCorrelationId()}). Once every input of an
+ * evaluation has arrived, {@link #offer(long, int, double)} returns the
+ * complete set of values and forgets the evaluation, so values of different
+ * evaluations are never combined, whatever order they arrive in.</p>
+ * 
+ * <p><strong>Bounded Memory:</strong> an evaluation whose inputs never all
+ * arrive would otherwise stay forever. The table holds at most
+ * {@code capacity} incomplete evaluations; when a new one would exceed the
+ * limit, the oldest incomplete evaluation is evicted and counted in
+ * {@link #getEvictedCount()}. A value arriving later for an evicted
+ * evaluation starts it over.</p>
+ * 
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>{@code
+ * JoinTable joins = new JoinTable(2, 1024);
+ * joins.offer(7, 0, 3.0);                   // null, waiting for input 1
+ * double[] xy = joins.offer(7, 1, 4.0);     // {3.0, 4.0}
+ * }</pre>
+ * 
+ * <p><strong>Thread Safety:</strong> all methods are synchronized, so an agent
+ * running inline can be called by several publishers at once.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see Message#getCorrelationId()
+ */
+public final class JoinTable {
+
+    /** Default capacity, overridable with {@code -Dgraph.join.capacity} */
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("graph.join.capacity", 1024);
+
+    /** Number of inputs per evaluation */
+    private final int inputs;
+
+    /** Largest number of incomplete evaluations kept */
+    private final int capacity;
+
+    /** Incomplete evaluations by correlation id, oldest first */
+    private final LinkedHashMap<Long, Pending> pending = new LinkedHashMap<>();
+
+    /** Number of incomplete evaluations evicted */
+    private long evicted;
+
+    /**
+     * Creates a join table.
+     * 
+     * @param inputs the number of inputs of each evaluation, 1 to 32
+     * @param capacity the largest number of incomplete evaluations to keep
+     * @throws IllegalArgumentException if inputs or capacity is out of range
+     */
+    public JoinTable(int inputs, int capacity) {
+        if (inputs < 1 || inputs > 32) {
+            throw new IllegalArgumentException("Inputs must be between 1 and 32, got: " + inputs);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got: " + capacity);
+        }
+        this.inputs = inputs;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Records one input of an evaluation.
+     * 
+     * <p>A second value for the same input of an incomplete evaluation
+     * replaces the first.</p>
+     * 
+     * @param correlationId the evaluation
+     * @param input the index of the input, from 0
+     * @param value the value
+     * @return the values of all inputs, indexed like the inputs, if this
+     *         completed the evaluation; null otherwise
+     * @throws IndexOutOfBoundsException if input is out of range
+     */
+    public synchronized double[] offer(long correlationId, int input, double value) {
+        if (input < 0 || input >= inputs) {
+            throw new IndexOutOfBoundsException("Input " + input + " of " + inputs);
+        }
+        Pending entry = pending.get(correlationId);
+        if (entry == null) {
+            if (inputs == 1) {
+                return new double[] {value};
+            }
+            if (pending.size() >= capacity) {
+                Iterator<Map.Entry<Long, Pending>> oldest = pending.entrySet().iterator();
+                oldest.next();
+                oldest.remove();
+                evicted++;
+            }
+            entry = new Pending(inputs);
+            pending.put(correlationId, entry);
+        }
+        entry.values[input] = value;
+        entry.arrived |= 1 << input;
+        if (entry.arrived != (int) ((1L << inputs) - 1)) {
+            return null;
+        }
+        pending.remove(correlationId);
+        return entry.values;
+    }
+
+    /**
+     * Returns the number of incomplete evaluations.
+     * 
+     * @return the number of evaluations waiting for inputs
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the number of incomplete evaluations evicted to stay within
+     * the capacity.
+     * 
+     * @return the eviction count
+     */
+    public synchronized long getEvictedCount() {
+        return evicted;
+    }
+
+    /**
+     * Returns the largest number of incomplete evaluations kept.
+     * 
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Forgets all incomplete evaluations.
+     */
+    public synchronized void clear() {
+        pending.clear();
+    }
+
+    /**
+     * The inputs of one incomplete evaluation.
+     */
+    private static final class Pending {
+
+        /** Values received so far, by input */
+        final double[] values;
+
+        /** Bit i set once input i has arrived */
+        int arrived;
+
+        /**
+         * Creates an empty evaluation.
+         * 
+         * @param inputs the number of inputs
+         */
+        Pending(int inputs) {
+            this.values = new double[inputs];
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded FIFO {@link Mailbox} guarded by a single lock; the default mailbox
+ * of {@link ParallelAgent}.
+ * 
+ * <p>Each slot holds a topic name together with either a {@link Message} or a
+ * primitive double value and its origin stamp, plus the {@link System#nanoTime()}
+ * at which the slot was filled so queue wait can be measured. Slots are stored in preallocated parallel arrays, so
+ * enqueuing a numeric value allocates nothing, and messages and numbers from
+ * the same publisher keep their relative order.</p>
+ * 
+ * <p>Buffered {@link Message.Kind#BUFFER} messages hold their own reference to
+ * the shared buffer from enqueue until the target's callback returns, so the
+ * publisher may release its reference as soon as publishing completes.</p>
+ * 
+ * <p><strong>Overflow:</strong> When the mailbox is full, the configured
+ * {@link OverflowPolicy} decides whether a producer waits, or which delivery is
+ * dropped or conflated. Every such event is counted.</p>
+ * 
+ * <p><strong>Batching:</strong> {@link #putAll(String, List)} enqueues a batch
+ * under one lock acquisition, and {@link #drainTo(Agent, LongConsumer)} takes
+ * every buffered delivery at once, handing runs of messages from the same
+ * topic to a {@link BatchAgent} target in a single call.</p>
+ * 
+ * <p>Every enqueued delivery is counted in {@link Quiescence} until it has
+ * been delivered or evicted; a conflated delivery reuses the count of the
+ * one it replaces.</p>
+ * 
+ * <p><strong>Thread Safety:</strong> Any number of producers may call the put
+ * methods concurrently; a single consumer calls {@link #drainTo(Agent, LongConsumer)} or
+ * {@link #drainAvailable(Agent, LongConsumer)}.
+ * Blocking follows {@link java.util.concurrent.ArrayBlockingQueue}: one lock
+ * with "not empty" and "not full" conditions. It supports every
+ * {@link OverflowPolicy}; see {@link RingMailbox} for a lock-free alternative.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see ParallelAgent
+ * @see RingMailbox
+ */
+class LockingMailbox implements Mailbox {
+
+    /** Topic name of each slot */
+    private final String[] topics;
+
+    /** Message of each slot, or null if the slot carries a numeric value */
+    private final Message[] messages;
+
+    /** Numeric value of each slot, meaningful when the message is null */
+    private final double[] values;
+
+    /** Origin stamp of each numeric slot */
+    private final long[] origins;
+
+    /** {@link System#nanoTime()} at which each slot was filled */
+    private final long[] enqueuedAt;
+
+    /** Index of the next slot to dequeue */
+    private int head;
+
+    /** Index of the next slot to fill */
+    private int tail;
+
+    /** Number of occupied slots */
+    private int count;
+
+    /** Consumer-side copy of drained topic names */
+    private final String[] drainedTopics;
+
+    /** Consumer-side copy of drained messages */
+    private final Message[] drainedMessages;
+
+    /** Consumer-side copy of drained numeric values */
+    private final double[] drainedValues;
+
+    /** Consumer-side copy of drained origin stamps */
+    private final long[] drainedOrigins;
+
+    /** Consumer-side copy of drained queue waits */
+    private final long[] drainedWaits;
+
+    /** Reusable list handed to {@link BatchAgent} targets */
+    private final ArrayList<Message> batch = new ArrayList<>();
+
+    /** What to do when a delivery arrives at a full mailbox */
+    private final OverflowPolicy policy;
+
+    /** Maximum wait for {@link OverflowPolicy#BLOCK_TIMEOUT} */
+    private final long timeoutNanos;
+
+    /** Sequence of the newest pending slot per topic, maintained for {@link OverflowPolicy#CONFLATE} */
+    private final HashMap<String, Long> pendingByTopic = new HashMap<>();
+
+    /** Number of deliveries ever enqueued; slot of sequence s is s % capacity */
+    private long enqueuedSeq;
+
+    /** Number of deliveries ever removed (drained or evicted) */
+    private long dequeuedSeq;
+
+    /** Number of deliveries that found the mailbox full */
+    private volatile long overflowCount;
+
+    /** Number of deliveries lost: rejected, timed out or evicted */
+    private volatile long droppedCount;
+
+    /** Number of pending deliveries replaced by a newer one from the same topic */
+    private volatile long conflatedCount;
+
+    /** Number of deliveries whose callback failed, written by the consumer only */
+    private volatile long failedCount;
+
+    /** Guards all slot state */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when a slot is filled */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** Signalled when a slot is freed */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Waits on {@link #notFull} with the lock held. Used through
+     * {@link ForkJoinPool#managedBlock}, so a blocked {@link AgentScheduler}
+     * worker is compensated by a spare one.
+     */
+    private final ForkJoinPool.ManagedBlocker notFullBlocker = new ForkJoinPool.ManagedBlocker() {
+        @Override
+        public boolean block() throws InterruptedException {
+            if (count == topics.length) {
+                notFull.await();
+            }
+            return count < topics.length;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return count < topics.length;
+        }
+    };
+
+    /**
+     * Creates a blocking mailbox with the given fixed capacity.
+     * 
+     * @param capacity the maximum number of buffered deliveries, must be positive
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    LockingMailbox(int capacity) {
+        this(capacity, OverflowPolicy.BLOCK, 0L);
+    }
+
+    /**
+     * Creates a mailbox with the given fixed capacity and overflow policy.
+     * 
+     * @param capacity the maximum number of buffered deliveries, must be positive
+     * @param policy the overflow policy, not null
+     * @param timeoutNanos the maximum wait for {@link OverflowPolicy#BLOCK_TIMEOUT};
+     *                     ignored by other policies
+     * @throws IllegalArgumentException if capacity is not positive or the
+     *         timeout is negative
+     */
+    LockingMailbox(int capacity, OverflowPolicy policy, long timeoutNanos) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got: " + capacity);
+        }
+        if (policy == null) {
+            throw new NullPointerException("Overflow policy cannot be null");
+        }
+        if (timeoutNanos < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative, got: " + timeoutNanos);
+        }
+        this.policy = policy;
+        this.timeoutNanos = timeoutNanos;
+        this.topics = new String[capacity];
+        this.messages = new Message[capacity];
+        this.values = new double[capacity];
+        this.origins = new long[capacity];
+        this.enqueuedAt = new long[capacity];
+        this.drainedTopics = new String[capacity];
+        this.drainedMessages = new Message[capacity];
+        this.drainedValues = new double[capacity];
+        this.drainedOrigins = new long[capacity];
+        this.drainedWaits = new long[capacity];
+    }
+
+    /**
+     * Enqueues a message, applying the overflow policy if the mailbox is full.
+     * 
+     * @param topic the publishing topic name
+     * @param msg the message, not null
+     * @return true if the message was enqueued or conflated, false if dropped
+     * @throws InterruptedException if interrupted while waiting for space
+     */
+    @Override
+    public boolean put(String topic, Message msg) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            return offer(topic, msg, 0.0, 0L);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enqueues a numeric value, applying the overflow policy if the mailbox is full.
+     * 
+     * @param topic the publishing topic name
+     * @param value the value
+     * @param originNanos the origin stamp of the value
+     * @return true if the value was enqueued or conflated, false if dropped
+     * @throws InterruptedException if interrupted while waiting for space
+     */
+    @Override
+    public boolean putDouble(String topic, double value, long originNanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            return offer(topic, null, value, originNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enqueues a batch of messages from one topic under a single lock
+     * acquisition, applying the overflow policy to each message.
+     * 
+     * <p>With a blocking policy, batches larger than the free space are
+     * enqueued in parts as the consumer frees slots; their order is preserved.</p>
+     * 
+     * @param topic the publishing topic name
+     * @param msgs the messages, not null, elements not null
+     * @return the number of messages enqueued or conflated
+     * @throws InterruptedException if interrupted while waiting for space;
+     *         messages enqueued so far stay enqueued
+     */
+    @Override
+    public int putAll(String topic, List<Message> msgs) throws InterruptedException {
+        int accepted = 0;
+        lock.lockInterruptibly();
+        try {
+            for (Message msg : msgs) {
+                if (offer(topic, msg, 0.0, 0L)) {
+                    accepted++;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return accepted;
+    }
+
+    /**
+     * Applies the overflow policy and enqueues one delivery. Caller must hold the lock.
+     * 
+     * @param topic the publishing topic name
+     * @param msg the message, or null for a numeric slot
+     * @param value the numeric value, ignored when msg is not null
+     * @param originNanos the origin stamp, ignored when msg is not null
+     * @return true if the delivery was enqueued or conflated, false if dropped
+     * @throws InterruptedException if interrupted while waiting for space
+     */
+    private boolean offer(String topic, Message msg, double value, long originNanos)
+            throws InterruptedException {
+        if (policy == OverflowPolicy.CONFLATE && replacePending(topic, msg, value, originNanos)) {
+            return true;
+        }
+        if (count == topics.length) {
+            overflowCount++;
+            switch (policy) {
+                case BLOCK:
+                    ForkJoinPool.managedBlock(notFullBlocker);
+                    break;
+                case BLOCK_TIMEOUT: {
+                    long nanos = timeoutNanos;
+                    while (count == topics.length) {
+                        if (nanos <= 0L) {
+                            droppedCount++;
+                            return false;
+                        }
+                        nanos = notFull.awaitNanos(nanos);
+                    }
+                    break;
+                }
+                case DROP_NEWEST:
+                    droppedCount++;
+                    return false;
+                default:
+                    evictOldest();
+                    droppedCount++;
+                    break;
+            }
+        }
+        enqueue(topic, msg, value, originNanos);
+        return true;
+    }
+
+    /**
+     * Overwrites the pending delivery of the same topic, if there is one.
+     * Caller must hold the lock.
+     * 
+     * @param topic the publishing topic name
+     * @param msg the message, or null for a numeric slot
+     * @param value the numeric value, ignored when msg is not null
+     * @param originNanos the origin stamp, ignored when msg is not null
+     * @return true if a pending delivery was replaced
+     */
+    private boolean replacePending(String topic, Message msg, double value, long originNanos) {
+        Long seq = pendingByTopic.get(topic);
+        if (seq == null || seq < dequeuedSeq) {
+            return false;
+        }
+        int slot = (int) (seq % topics.length);
+        Message old = messages[slot];
+        messages[slot] = msg == null ? null : msg.retain();
+        values[slot] = value;
+        origins[slot] = originNanos;
+        if (old != null) {
+            old.release();
+        }
+        conflatedCount++;
+        return true;
+    }
+
+    /**
+     * Discards the oldest delivery. Caller must hold the lock and the mailbox
+     * must not be empty.
+     */
+    private void evictOldest() {
+        Message old = messages[head];
+        topics[head] = null;
+        messages[head] = null;
+        if (++head == topics.length) {
+            head = 0;
+        }
+        count--;
+        dequeuedSeq++;
+        if (old != null) {
+            old.release();
+        }
+        Quiescence.exit(1);
+    }
+
+    /**
+     * Fills the tail slot, retaining buffer messages. Caller must hold the
+     * lock and have checked for space.
+     * 
+     * @param topic the publishing topic name
+     * @param msg the message, or null for a numeric slot
+     * @param value the numeric value, ignored when msg is not null
+     * @param originNanos the origin stamp, ignored when msg is not null
+     */
+    private void enqueue(String topic, Message msg, double value, long originNanos) {
+        if (policy == OverflowPolicy.CONFLATE) {
+            pendingByTopic.put(topic, enqueuedSeq);
+        }
+        enqueuedSeq++;
+        Quiescence.enter(1);
+        topics[tail] = topic;
+        messages[tail] = msg == null ? null : msg.retain();
+        values[tail] = value;
+        origins[tail] = originNanos;
+        enqueuedAt[tail] = System.nanoTime();
+        if (++tail == topics.length) {
+            tail = 0;
+        }
+        count++;
+        notEmpty.signal();
+    }
+
+    /**
+     * Removes every buffered delivery, blocking while the mailbox is empty,
+     * and hands them to the target agent outside the lock.
+     * 
+     * <p>Consecutive messages from the same topic are passed to a
+     * {@link BatchAgent} target in one {@link BatchAgent#callbackBatch} call;
+     * everything else is delivered one by one as in {@link Mailbox#deliver}. Buffer
+     * messages are released once delivered, even if the target throws.</p>
+     * 
+     * @param target the agent that receives the deliveries
+     * @param waits receives the queue wait of each delivery in nanoseconds
+     * @return the number of deliveries drained
+     * @throws InterruptedException if interrupted while waiting for a delivery
+     */
+    @Override
+    public int drainTo(Agent target, LongConsumer waits) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return drainAvailable(target, waits);
+    }
+
+    /**
+     * Like {@link #drainTo(Agent, LongConsumer)}, but returns immediately when
+     * the mailbox is empty. Used by scheduled agents, which must not block a
+     * shared worker.
+     * 
+     * @param target the agent that receives the deliveries
+     * @param waits receives the queue wait of each delivery in nanoseconds
+     * @return the number of deliveries drained, possibly 0
+     */
+    @Override
+    public int drainAvailable(Agent target, LongConsumer waits) {
+        int n;
+        lock.lock();
+        try {
+            n = count;
+            if (n == 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                drainedTopics[i] = topics[head];
+                drainedMessages[i] = messages[head];
+                drainedValues[i] = values[head];
+                drainedOrigins[i] = origins[head];
+                drainedWaits[i] = now - enqueuedAt[head];
+                topics[head] = null;
+                messages[head] = null;
+                if (++head == topics.length) {
+                    head = 0;
+                }
+            }
+            count = 0;
+            dequeuedSeq += n;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            failedCount += Mailbox.deliverAll(target, drainedTopics, drainedMessages, drainedValues,
+                                              drainedOrigins, n, batch);
+        } finally {
+            for (int i = 0; i < n; i++) {
+                waits.accept(drainedWaits[i]);
+                if (drainedMessages[i] != null) {
+                    drainedMessages[i].release();
+                    drainedMessages[i] = null;
+                }
+                drainedTopics[i] = null;
+            }
+            Quiescence.exit(n);
+        }
+        return n;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>Also wakes producers waiting for space.</p>
+     */
+    @Override
+    public int clear() {
+        lock.lock();
+        try {
+            int n = count;
+            while (count > 0) {
+                evictOldest();
+            }
+            notFull.signalAll();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of deliveries that found the mailbox full.
+     * 
+     * @return the overflow count
+     */
+    @Override
+    public long getOverflowCount() {
+        return overflowCount;
+    }
+
+    /**
+     * Returns the number of deliveries lost to the overflow policy.
+     * 
+     * @return the number of rejected, timed-out and evicted deliveries
+     */
+    @Override
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Returns the number of pending deliveries replaced by a newer one.
+     * 
+     * @return the conflation count
+     */
+    @Override
+    public long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    /**
+     * Returns the number of deliveries whose callback threw an exception.
+     * 
+     * @return the failure count
+     */
+    @Override
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Returns the number of buffered deliveries.
+     * 
+     * @return the current size
+     */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
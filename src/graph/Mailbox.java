@@ -0,0 +1,201 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Bounded FIFO mailbox used by {@link ParallelAgent} to buffer incoming deliveries.
+ * 
+ * <p>A delivery is a topic name together with either a {@link Message} or a
+ * primitive double value and its origin stamp. Any number of producers may
+ * call the put methods concurrently; a single consumer drains the mailbox into
+ * the wrapped agent. Buffer messages are retained while queued and released
+ * once delivered.</p>
+ * 
+ * <p>Two implementations exist: {@link LockingMailbox}, a single-lock queue
+ * supporting every {@link OverflowPolicy}, and {@link RingMailbox}, a
+ * lock-free ring whose consumer waits according to a {@link WaitStrategy}.</p>
+ * 
+ * <p><strong>Buffering:</strong> a drain copies the buffered deliveries out
+ * and frees their slots before handing them to the agent, so producers can
+ * fill the mailbox again while the drained batch is processed. Up to twice
+ * the capacity may therefore be pending at once: one full batch in the
+ * consumer and one full mailbox.</p>
+ * 
+ * <p>An exception thrown by the agent is logged and only loses the delivery,
+ * or the batch, that caused it; the rest of the drained deliveries are still
+ * handed over.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see ParallelAgent
+ */
+interface Mailbox {
+
+    /**
+     * Enqueues a message, applying the overflow policy if the mailbox is full.
+     * 
+     * @param topic the publishing topic name
+     * @param msg the message, not null
+     * @return true if the message was enqueued or conflated, false if dropped
+     * @throws InterruptedException if interrupted while waiting for space
+     */
+    boolean put(String topic, Message msg) throws InterruptedException;
+
+    /**
+     * Enqueues a numeric value, applying the overflow policy if the mailbox is full.
+     * 
+     * @param topic the publishing topic name
+     * @param value the value
+     * @param originNanos the origin stamp of the value
+     * @return true if the value was enqueued or conflated, false if dropped
+     * @throws InterruptedException if interrupted while waiting for space
+     */
+    boolean putDouble(String topic, double value, long originNanos) throws InterruptedException;
+
+    /**
+     * Enqueues a batch of messages from one topic in order, applying the
+     * overflow policy to each message.
+     * 
+     * @param topic the publishing topic name
+     * @param msgs the messages, not null, elements not null
+     * @return the number of messages enqueued or conflated
+     * @throws InterruptedException if interrupted while waiting for space;
+     *         messages enqueued so far stay enqueued
+     */
+    int putAll(String topic, List<Message> msgs) throws InterruptedException;
+
+    /**
+     * Removes the buffered deliveries, waiting while the mailbox is empty, and
+     * hands them to the target agent.
+     * 
+     * @param target the agent that receives the deliveries
+     * @param waits receives the queue wait of each delivery in nanoseconds
+     * @return the number of deliveries drained
+     * @throws InterruptedException if interrupted while waiting for a delivery
+     */
+    int drainTo(Agent target, LongConsumer waits) throws InterruptedException;
+
+    /**
+     * Like {@link #drainTo(Agent, LongConsumer)}, but returns immediately when
+     * the mailbox is empty.
+     * 
+     * @param target the agent that receives the deliveries
+     * @param waits receives the queue wait of each delivery in nanoseconds
+     * @return the number of deliveries drained, possibly 0
+     */
+    int drainAvailable(Agent target, LongConsumer waits);
+
+    /**
+     * Discards every buffered delivery without delivering it, releasing
+     * buffer messages. Must not run concurrently with a drain.
+     * 
+     * @return the number of deliveries discarded
+     */
+    int clear();
+
+    /**
+     * Returns the number of deliveries that found the mailbox full.
+     * 
+     * @return the overflow count
+     */
+    long getOverflowCount();
+
+    /**
+     * Returns the number of deliveries lost to the overflow policy.
+     * 
+     * @return the number of rejected, timed-out and evicted deliveries
+     */
+    long getDroppedCount();
+
+    /**
+     * Returns the number of pending deliveries replaced by a newer one.
+     * 
+     * @return the conflation count
+     */
+    long getConflatedCount();
+
+    /**
+     * Returns the number of deliveries whose callback threw an exception.
+     * 
+     * @return the failure count
+     */
+    long getFailedCount();
+
+    /**
+     * Returns the number of buffered deliveries.
+     * 
+     * @return the current size
+     */
+    int size();
+
+    /**
+     * Delivers the first {@code n} drained slots, grouping same-topic message
+     * runs into batches for {@link BatchAgent} targets. A failing callback is
+     * logged and delivery continues with the next slot.
+     * 
+     * @param target the receiving agent
+     * @param topics the drained topic names
+     * @param msgs the drained messages, null for numeric slots
+     * @param values the drained numeric values
+     * @param origins the drained origin stamps
+     * @param n the number of drained slots
+     * @param batch a reusable list for batch deliveries, left empty
+     * @return the number of deliveries whose callback failed
+     */
+    static int deliverAll(Agent target, String[] topics, Message[] msgs, double[] values,
+                           long[] origins, int n, ArrayList<Message> batch) {
+        boolean batching = target instanceof BatchAgent;
+        int failed = 0;
+        int i = 0;
+        while (i < n) {
+            String topic = topics[i];
+            int end = i + 1;
+            if (batching && msgs[i] != null) {
+                while (end < n && msgs[end] != null && topics[end].equals(topic)) {
+                    end++;
+                }
+            }
+            try {
+                if (end - i > 1) {
+                    batch.clear();
+                    for (int k = i; k < end; k++) {
+                        batch.add(msgs[k]);
+                    }
+                    ((BatchAgent) target).callbackBatch(topic, batch);
+                } else {
+                    deliver(target, topic, msgs[i], values[i], origins[i]);
+                }
+            } catch (RuntimeException e) {
+                failed += end - i;
+                System.err.println("Error in " + target.getName() + " on topic " + topic + ": " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+            i = end;
+        }
+        return failed;
+    }
+
+    /**
+     * Delivers one slot's content to an agent.
+     * 
+     * @param target the receiving agent
+     * @param topic the publishing topic name
+     * @param msg the message, or null for a numeric slot
+     * @param value the numeric value, used when msg is null
+     * @param originNanos the origin stamp, used when msg is null
+     */
+    static void deliver(Agent target, String topic, Message msg, double value, long originNanos) {
+        if (msg != null) {
+            target.callback(topic, msg);
+        } else if (target instanceof NumericAgent) {
+            ((NumericAgent) target).callbackDouble(topic, value, originNanos);
+        } else {
+            target.callback(topic, new Message(value, originNanos));
+        }
+    }
+}
@@ -1,19 +1,34 @@
 package graph;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a message that can be passed between agents in the computational graph.
- * Messages are immutable data containers that automatically convert between different
- * data types (byte array, text, and numeric) for convenience.
+ * Messages are immutable data containers that convert between different data types
+ * (byte array, text, and numeric) for convenience.
  * 
- * <p>The Message class provides automatic type conversion:
+ * <p>The Message class provides lazy type conversion:
  * <ul>
+ *   <li>Original payload kind ({@link Kind}): double, long, text, raw bytes,
+ *       double array or shared off-heap buffer</li>
  *   <li>Raw data as byte array</li>
  *   <li>Text representation as String</li>
  *   <li>Numeric representation as double (NaN if not parsable)</li>
- *   <li>Timestamp of creation</li>
+ *   <li>Monotonic creation and origin timestamps</li>
  * </ul>
  * 
+ * <p><strong>Compact Representation:</strong></p>
+ * <p>A message keeps only the form it was constructed from. The other
+ * representations are decoded on first access and cached, so a numeric
+ * message that is only ever read with {@link #asDouble()} never builds a
+ * String or a byte array, and a text payload is never parsed unless an
+ * agent asks for its numeric value. The public fields {@code data},
+ * {@code asText}, {@code asDouble} and {@code date} of the original API are
+ * replaced by {@link #asBytes()}, {@link #asText()}, {@link #asDouble()}
+ * and {@link #getDate()}.</p>
+ * 
  * <p>Example usage:
  * <pre>{@code
  * Message textMsg = new Message("Hello World");
@@ -21,66 +36,647 @@ import java.util.Date;
  * Message dataMsg = new Message(new byte[]{1, 2, 3});
  * 
  * // Access different representations
- * String text = numMsg.asText;        // "42.5"
- * double value = numMsg.asDouble;     // 42.5
- * Date created = numMsg.date;         // creation timestamp
+ * String text = numMsg.asText();      // "42.5"
+ * double value = numMsg.asDouble();   // 42.5
+ * Date created = numMsg.getDate();    // wall-clock creation time
  * }</pre>
  * 
+ * <p><strong>Timestamps:</strong></p>
+ * <p>Every message carries two {@link System#nanoTime()} stamps: its own
+ * creation time and the origin time of the external input it was derived
+ * from. Agents that compute a new value pass the origin of the triggering
+ * input on (see {@link #Message(double, long)}), so
+ * {@link #getLatencyNanos()} measures end-to-end latency across the graph
+ * and {@link #getAgeNanos()} measures time since this hop was published,
+ * both at nanosecond resolution. Wall-clock time is only computed when
+ * {@link #getDate()} is called.</p>
+ * 
+ * <p><strong>Correlation:</strong></p>
+ * <p>A message may carry a correlation id naming the evaluation it belongs
+ * to. Multi-input agents such as {@code configs.PlusAgent} join correlated
+ * inputs per id instead of pairing whatever arrived last, and agents pass the
+ * id of their inputs on to their outputs, so several evaluations can travel
+ * through the graph at once without mixing their operands. Messages created
+ * without an id have {@link #NO_CORRELATION} and keep the latest-value
+ * behavior.</p>
+ * 
+ * <p><strong>Buffer Messages:</strong></p>
+ * <p>A {@link Kind#BUFFER} message carries a {@link SharedBuffer} by reference,
+ * so multi-megabyte payloads can stay off-heap from publisher to subscriber.
+ * Subscribers read them through {@link #asBuffer()}. The message shares the
+ * buffer's reference count: {@link #retain()} and {@link #release()} let
+ * holders that outlive a callback keep the buffer alive, and are no-ops for
+ * all other kinds.</p>
+ * 
+ * <p><strong>Thread Safety:</strong> Messages are shared between publisher and
+ * subscriber threads. Lazily decoded values are published through volatile
+ * fields, so concurrent readers may at worst decode the same value twice.</p>
+ * 
  * @author Ariella Noy
  * @version 1.0
  * @since 1.0
  */
 public class Message {
 
-    /** The raw data as a byte array */
-    public final byte[] data;
-    
-    /** The data interpreted as a UTF-8 string */
-    public final String asText;
-    
-    /** The data interpreted as a double, or NaN if not parsable */
-    public final double asDouble;
-    
-    /** The timestamp when this message was created */
-    public final Date date;
-    
+    /**
+     * The form a message was constructed from. The kind determines how the
+     * other representations are derived and how {@link MessageCodec} tags
+     * the payload on the wire.
+     */
+    public enum Kind {
+        /** A double value, see {@link #Message(double)} */
+        DOUBLE,
+        /** A long value, see {@link #ofLong(long)} */
+        LONG,
+        /** A string, see {@link #Message(String)} */
+        TEXT,
+        /** Raw bytes, see {@link #Message(byte[])} */
+        BYTES,
+        /** A double array, see {@link #Message(double[])} */
+        VECTOR,
+        /** A shared, typically off-heap buffer, see {@link #Message(SharedBuffer)} */
+        BUFFER
+    }
+
+    /** The form this message was constructed from */
+    private final Kind kind;
+
+    /** The value of a {@link Kind#LONG} message */
+    private final long integral;
+
+    /** The values of a {@link Kind#VECTOR} message, null for other kinds */
+    private final double[] vector;
+
+    /** The payload of a {@link Kind#BUFFER} message, null for other kinds */
+    private final SharedBuffer buffer;
+
+    /** Values parsed from a text or byte payload, or null until first requested */
+    private volatile double[] parsedVector;
+
+    /** Whether {@link #parsedVector} has been computed (it may legitimately be null) */
+    private volatile boolean vectorDecoded;
+
+    /** The raw data as a byte array, or null until first requested */
+    private volatile byte[] bytes;
+
+    /** The data interpreted as a string, or null until first requested */
+    private volatile String text;
+
+    /** The data interpreted as a double, valid once {@link #numericDecoded} is set */
+    private double number;
+
+    /** Whether {@link #number} holds the decoded numeric value */
+    private volatile boolean numericDecoded;
+
+    /** {@link System#nanoTime()} when this message was created */
+    private final long createdNanos;
+
+    /** {@link System#nanoTime()} when the input this message derives from entered the graph */
+    private final long originNanos;
+
+    /** The evaluation this message belongs to, or {@link #NO_CORRELATION} */
+    private final long correlationId;
+
+    /** Correlation id of messages that do not belong to a particular evaluation */
+    public static final long NO_CORRELATION = 0L;
+
+    /** Source of {@link #nextCorrelationId()} */
+    private static final AtomicLong CORRELATION_IDS = new AtomicLong();
+
+    /**
+     * Buffer payloads longer than this are never parsed as a number; no
+     * numeric literal is that long, and it keeps {@link #asDouble()} from
+     * copying large buffers onto the heap.
+     */
+    private static final int MAX_NUMERIC_BUFFER = 64;
+
+    /** Wall-clock millis captured together with {@link #NANO_ANCHOR} */
+    private static final long WALL_ANCHOR_MILLIS = System.currentTimeMillis();
+
+    /** Monotonic nanos captured together with {@link #WALL_ANCHOR_MILLIS} */
+    private static final long NANO_ANCHOR = System.nanoTime();
+
     /**
      * Constructs a message from raw byte data.
      * 
      * @param data the raw byte data, not null
      */
     public Message(byte[] data){
-        this.data = data;
-        this.asText = new String(data);
-        this.asDouble = tryDouble(asText);
-        this.date = new Date();
+        this(data, System.nanoTime());
     }
-    
+
+    /**
+     * Constructs a message from raw byte data derived from an earlier input.
+     * 
+     * @param data the raw byte data, not null
+     * @param originNanos the origin stamp to propagate, from {@link #getOriginNanos()}
+     */
+    public Message(byte[] data, long originNanos){
+        if (data == null) {
+            throw new NullPointerException("Message data cannot be null");
+        }
+        this.kind = Kind.BYTES;
+        this.integral = 0L;
+        this.vector = null;
+        this.buffer = null;
+        this.bytes = data;
+        this.createdNanos = System.nanoTime();
+        this.originNanos = originNanos;
+        this.correlationId = NO_CORRELATION;
+    }
+
     /**
      * Constructs a message from string data.
      * 
      * @param data the string data, not null
      */
     public Message(String data){
-        this(data.getBytes());
+        this(data, System.nanoTime());
     }
-    
+
+    /**
+     * Constructs a message from string data derived from an earlier input.
+     * 
+     * @param data the string data, not null
+     * @param originNanos the origin stamp to propagate, from {@link #getOriginNanos()}
+     */
+    public Message(String data, long originNanos){
+        this(data, originNanos, NO_CORRELATION);
+    }
+
+    /**
+     * Constructs a message from string data that belongs to one evaluation.
+     * 
+     * @param data the string data, not null
+     * @param originNanos the origin stamp to propagate, from {@link #getOriginNanos()}
+     * @param correlationId the evaluation the value belongs to, or
+     *                      {@link #NO_CORRELATION}; see {@link #getCorrelationId()}
+     */
+    public Message(String data, long originNanos, long correlationId){
+        if (data == null) {
+            throw new NullPointerException("Message data cannot be null");
+        }
+        this.kind = Kind.TEXT;
+        this.integral = 0L;
+        this.vector = null;
+        this.buffer = null;
+        this.text = data;
+        this.createdNanos = System.nanoTime();
+        this.originNanos = originNanos;
+        this.correlationId = correlationId;
+    }
+
     /**
      * Constructs a message from numeric data.
      * 
+     * <p>The value is stored as-is; {@link #asDouble()} never parses
+     * text.</p>
+     * 
      * @param data the numeric value
      */
     public Message(double data){
-        this(Double.toString(data));
+        this(data, System.nanoTime());
+    }
+
+    /**
+     * Constructs a message from numeric data derived from an earlier input.
+     * 
+     * <p>Agents use this constructor to keep the origin stamp of the input
+     * that triggered the computation.</p>
+     * 
+     * @param data the numeric value
+     * @param originNanos the origin stamp to propagate, from {@link #getOriginNanos()}
+     */
+    public Message(double data, long originNanos){
+        this(data, originNanos, NO_CORRELATION);
+    }
+
+    /**
+     * Constructs a numeric message that belongs to one evaluation.
+     * 
+     * @param data the numeric value
+     * @param originNanos the origin stamp to propagate, from {@link #getOriginNanos()}
+     * @param correlationId the evaluation the value belongs to, or
+     *                      {@link #NO_CORRELATION}; see {@link #getCorrelationId()}
+     */
+    public Message(double data, long originNanos, long correlationId){
+        this.kind = Kind.DOUBLE;
+        this.integral = 0L;
+        this.vector = null;
+        this.buffer = null;
+        this.number = data;
+        this.numericDecoded = true;
+        this.createdNanos = System.nanoTime();
+        this.originNanos = originNanos;
+        this.correlationId = correlationId;
+    }
+
+    /**
+     * Constructs a message carrying an array of doubles.
+     * 
+     * <p>The array is not copied; publishers must not modify it after
+     * publishing, and subscribers must treat {@link #asVector()} as read-only.</p>
+     * 
+     * @param data the values, not null
+     */
+    public Message(double[] data){
+        this(data, System.nanoTime());
+    }
+
+    /**
+     * Constructs a message carrying an array of doubles derived from an earlier input.
+     * 
+     * @param data the values, not null
+     * @param originNanos the origin stamp to propagate, from {@link #getOriginNanos()}
+     */
+    public Message(double[] data, long originNanos){
+        if (data == null) {
+            throw new NullPointerException("Message data cannot be null");
+        }
+        this.kind = Kind.VECTOR;
+        this.integral = 0L;
+        this.vector = data;
+        this.buffer = null;
+        this.number = Double.NaN;
+        this.numericDecoded = true;
+        this.createdNanos = System.nanoTime();
+        this.originNanos = originNanos;
+        this.correlationId = NO_CORRELATION;
+    }
+
+    /**
+     * Constructs a message carrying a shared buffer by reference.
+     * 
+     * <p>The message takes over the caller's reference: publish it, then call
+     * {@link #release()} once the publisher no longer needs it. Queues that hold
+     * the message past the publish call retain their own reference.</p>
+     * 
+     * @param data the buffer, not null and not yet released
+     */
+    public Message(SharedBuffer data){
+        this(data, System.nanoTime());
+    }
+
+    /**
+     * Constructs a message carrying a shared buffer derived from an earlier input.
+     * 
+     * @param data the buffer, not null and not yet released
+     * @param originNanos the origin stamp to propagate, from {@link #getOriginNanos()}
+     */
+    public Message(SharedBuffer data, long originNanos){
+        if (data == null) {
+            throw new NullPointerException("Message data cannot be null");
+        }
+        this.kind = Kind.BUFFER;
+        this.integral = 0L;
+        this.vector = null;
+        this.buffer = data;
+        this.createdNanos = System.nanoTime();
+        this.originNanos = originNanos;
+        this.correlationId = NO_CORRELATION;
+    }
+
+    /**
+     * Constructs a long-valued message. Private so that int arguments keep
+     * resolving to {@link #Message(double)}; use {@link #ofLong(long)}.
+     * 
+     * @param data the value
+     * @param originNanos the origin stamp
+     */
+    private Message(long data, long originNanos){
+        this.kind = Kind.LONG;
+        this.integral = data;
+        this.vector = null;
+        this.buffer = null;
+        this.number = (double) data;
+        this.numericDecoded = true;
+        this.createdNanos = System.nanoTime();
+        this.originNanos = originNanos;
+        this.correlationId = NO_CORRELATION;
+    }
+
+    /**
+     * Creates a message carrying an exact long value.
+     * 
+     * @param data the value
+     * @return a new {@link Kind#LONG} message
+     */
+    public static Message ofLong(long data) {
+        return new Message(data, System.nanoTime());
+    }
+
+    /**
+     * Creates a message carrying an exact long value derived from an earlier input.
+     * 
+     * @param data the value
+     * @param originNanos the origin stamp to propagate, from {@link #getOriginNanos()}
+     * @return a new {@link Kind#LONG} message
+     */
+    public static Message ofLong(long data, long originNanos) {
+        return new Message(data, originNanos);
+    }
+
+    /**
+     * Returns the form this message was constructed from.
+     * 
+     * @return the payload kind, never null
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the data interpreted as a long.
+     * 
+     * <p>Exact for {@link Kind#LONG} messages; otherwise the numeric value
+     * truncated as by a {@code (long)} cast (0 for NaN).</p>
+     * 
+     * @return the long value
+     */
+    public long asLong() {
+        return kind == Kind.LONG ? integral : (long) asDouble();
+    }
+
+    /**
+     * Returns the payload as a read-only byte buffer.
+     * 
+     * <p>For {@link Kind#BUFFER} messages this is a fresh view of the shared
+     * buffer with its own position, so each subscriber can read it
+     * independently without copying. For other kinds the {@link #asBytes()}
+     * array is wrapped.</p>
+     * 
+     * @return a read-only buffer positioned at the start of the payload
+     * @throws IllegalStateException if the shared buffer has been released
+     */
+    public ByteBuffer asBuffer() {
+        if (kind == Kind.BUFFER) {
+            return buffer.slice();
+        }
+        return ByteBuffer.wrap(asBytes()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the size of the payload in bytes without materializing it.
+     * 
+     * @return the buffer size for {@link Kind#BUFFER} messages, otherwise the
+     *         length of {@link #asBytes()}
+     */
+    public int byteSize() {
+        return kind == Kind.BUFFER ? buffer.size() : asBytes().length;
+    }
+
+    /**
+     * Takes an additional reference to a {@link Kind#BUFFER} payload.
+     * 
+     * <p>Call this before keeping the message beyond the callback that received
+     * it, and {@link #release()} when done. No-op for other kinds.</p>
+     * 
+     * @return this message
+     * @throws IllegalStateException if the buffer has already been released
+     */
+    public Message retain() {
+        if (buffer != null) {
+            buffer.retain();
+        }
+        return this;
+    }
+
+    /**
+     * Gives back one reference to a {@link Kind#BUFFER} payload, recycling the
+     * buffer when none are left. No-op for other kinds.
+     */
+    public void release() {
+        if (buffer != null) {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Returns the data interpreted as an array of doubles.
+     * 
+     * <p>For {@link Kind#VECTOR} messages the backing array is returned without
+     * copying. Text and byte payloads holding a comma-separated list of
+     * numbers, optionally in square brackets (e.g. {@code "1, 2.5, 3"} or
+     * {@code "[1.0, 2.0]"}), are parsed on first access and cached, so vectors
+     * can also be published from the web interface. Buffer payloads are
+     * binary and never parsed. The returned array must not be modified.</p>
+     * 
+     * @return the values, or null if the message does not carry a vector
+     */
+    public double[] asVector() {
+        if (kind == Kind.VECTOR) {
+            return vector;
+        }
+        if (kind == Kind.DOUBLE || kind == Kind.LONG || kind == Kind.BUFFER) {
+            return null;
+        }
+        if (!vectorDecoded) {
+            parsedVector = tryVector(asText());
+            vectorDecoded = true;
+        }
+        return parsedVector;
+    }
+
+    /**
+     * Attempts to parse a comma-separated list of doubles.
+     * 
+     * @param text the text to parse
+     * @return the parsed values, or null if any element is not numeric
+     */
+    private static double[] tryVector(String text) {
+        String body = text.trim();
+        if (body.startsWith("[") && body.endsWith("]")) {
+            body = body.substring(1, body.length() - 1);
+        }
+        if (body.trim().isEmpty()) {
+            return null;
+        }
+        String[] parts = body.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = tryDouble(parts[i].trim());
+            if (Double.isNaN(values[i]) && !parts[i].trim().equals("NaN")) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the monotonic creation stamp of this message.
+     * 
+     * @return the {@link System#nanoTime()} value at construction
+     */
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    /**
+     * Returns the monotonic origin stamp of this message.
+     * 
+     * <p>Equal to {@link #getCreatedNanos()} for messages that entered the
+     * graph directly; for derived messages it is the stamp of the original input.</p>
+     * 
+     * @return the {@link System#nanoTime()} value when the originating input was created
+     */
+    public long getOriginNanos() {
+        return originNanos;
+    }
+
+    /**
+     * Returns the evaluation this message belongs to.
+     * 
+     * @return the correlation id, or {@link #NO_CORRELATION}
+     */
+    public long getCorrelationId() {
+        return correlationId;
+    }
+
+    /**
+     * Returns whether this message belongs to a particular evaluation.
+     * 
+     * @return true if the correlation id is not {@link #NO_CORRELATION}
+     */
+    public boolean isCorrelated() {
+        return correlationId != NO_CORRELATION;
+    }
+
+    /**
+     * Returns a new correlation id, unique within this process.
+     * 
+     * @return a positive id, never {@link #NO_CORRELATION}
+     */
+    public static long nextCorrelationId() {
+        return CORRELATION_IDS.incrementAndGet();
+    }
+
+    /**
+     * Returns the time elapsed since this message was created.
+     * 
+     * @return nanoseconds since creation
+     */
+    public long getAgeNanos() {
+        return System.nanoTime() - createdNanos;
+    }
+
+    /**
+     * Returns the time elapsed since the originating input entered the graph.
+     * 
+     * @return end-to-end latency in nanoseconds
+     */
+    public long getLatencyNanos() {
+        return System.nanoTime() - originNanos;
+    }
+
+    /**
+     * Returns the wall-clock creation time of this message.
+     * 
+     * <p>Computed on demand from the monotonic stamp; millisecond resolution.</p>
+     * 
+     * @return a new Date for the creation time
+     */
+    public Date getDate() {
+        return new Date(toWallMillis(createdNanos));
+    }
+
+    /**
+     * Converts a {@link System#nanoTime()} stamp to wall-clock milliseconds.
+     * 
+     * @param nanos a monotonic stamp from this JVM
+     * @return the corresponding epoch milliseconds
+     */
+    public static long toWallMillis(long nanos) {
+        return WALL_ANCHOR_MILLIS + (nanos - NANO_ANCHOR) / 1_000_000L;
+    }
+
+    /**
+     * Returns the raw data as a byte array.
+     * 
+     * <p>For messages not constructed from bytes, the array is encoded from
+     * the text representation on first access and cached. Buffer messages are
+     * copied onto the heap; prefer {@link #asBuffer()} for those.</p>
+     * 
+     * @return the raw byte data, never null
+     */
+    public byte[] asBytes() {
+        byte[] result = bytes;
+        if (result == null) {
+            if (kind == Kind.BUFFER) {
+                ByteBuffer view = buffer.slice();
+                result = new byte[view.remaining()];
+                view.get(result);
+            } else {
+                result = asText().getBytes();
+            }
+            bytes = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the data interpreted as a string.
+     * 
+     * <p>Decoded from the original payload on first access and cached. Vectors
+     * render as {@code [1.0, 2.0, ...]}.</p>
+     * 
+     * @return the text representation, never null
+     */
+    public String asText() {
+        String result = text;
+        if (result == null) {
+            switch (kind) {
+                case BYTES:
+                    result = new String(bytes);
+                    break;
+                case BUFFER:
+                    result = new String(asBytes());
+                    break;
+                case LONG:
+                    result = Long.toString(integral);
+                    break;
+                case VECTOR:
+                    result = Arrays.toString(vector);
+                    break;
+                default:
+                    result = Double.toString(number);
+                    break;
+            }
+            text = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the data interpreted as a double.
+     * 
+     * <p>Parsed from the text representation on first access and cached.
+     * Vector messages have no scalar value.</p>
+     * 
+     * @return the numeric value, or NaN if the data is not parsable or is a vector
+     */
+    public double asDouble() {
+        if (!numericDecoded) {
+            number = kind == Kind.BUFFER && buffer.size() > MAX_NUMERIC_BUFFER
+                ? Double.NaN : tryDouble(asText());
+            numericDecoded = true;
+        }
+        return number;
     }
 
     /**
      * Attempts to parse the given text as a double value.
      * 
+     * <p>Text that cannot start a Java floating-point literal is rejected
+     * up front, so ordinary non-numeric payloads do not pay for a thrown
+     * and caught {@link NumberFormatException}.</p>
+     * 
      * @param text the text to parse
      * @return the parsed double value, or NaN if parsing fails
      */
-    private double tryDouble(String text) {
+    private static double tryDouble(String text) {
+        if (!mayBeNumeric(text)) {
+            return Double.NaN;
+        }
         try {
             return Double.parseDouble(text);
         }
@@ -88,4 +684,23 @@ public class Message {
             return Double.NaN;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Cheap pre-check for {@link Double#parseDouble(String)}: looks at the
+     * first non-whitespace character only.
+     * 
+     * @param text the text to inspect
+     * @return false if the text certainly does not parse as a double
+     */
+    private static boolean mayBeNumeric(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c <= ' ') {
+                continue;
+            }
+            return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.'
+                || c == 'I' || c == 'N';
+        }
+        return false;
+    }
+}
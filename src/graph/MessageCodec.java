@@ -0,0 +1,365 @@
+package graph;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Versioned binary encoding of {@link Message} payloads.
+ * 
+ * <p>This is the common wire and disk format for anything that needs to persist
+ * or ship messages outside the JVM (logging, snapshots, transports). Every
+ * encoded message is a small header followed by a payload whose layout is
+ * selected by a type tag derived from {@link Message#getKind()}:</p>
+ * 
+ * <pre>
+ * +---------+-----+----------------------------------------------+
+ * | version | tag | payload                                      |
+ * | 1 byte  | 1 B |                                              |
+ * +---------+-----+----------------------------------------------+
+ *   TAG_DOUBLE  : 8-byte IEEE 754 double
+ *   TAG_LONG    : 8-byte two's complement long
+ *   TAG_TEXT    : 4-byte length N, N bytes of UTF-8
+ *   TAG_BYTES   : 4-byte length N, N raw bytes (also written for BUFFER)
+ *   TAG_VECTOR  : 4-byte count N, N 8-byte doubles
+ * </pre>
+ * 
+ * <p>All multi-byte values are big-endian, which is the default order of every
+ * {@link ByteBuffer}; buffers with another order are rejected. Monotonic
+ * timestamps are process-local and are not encoded; decoded messages are new
+ * inputs with a fresh origin stamp. {@link Message.Kind#BUFFER} payloads are
+ * copied buffer to buffer and decode as {@link Message.Kind#BYTES}.</p>
+ * 
+ * <p><strong>Copying:</strong> Encoding writes straight into the caller's
+ * buffer (heap or direct) without building intermediate strings or arrays;
+ * text is UTF-8 encoded character by character, with unpaired surrogates
+ * written as {@code '?'} like the JDK's UTF-8 encoder does, so decoding
+ * gives back exactly what {@link String#getBytes} would. Decoding reads
+ * numbers directly from the buffer, and {@link #decodeDouble(ByteBuffer)}
+ * reads a numeric payload without creating a Message at all; text, byte
+ * and vector payloads are copied once into the new message, so it does not
+ * keep the caller's buffer alive or see later writes to it. Both advance
+ * the buffer position past the encoded message, so several messages can be
+ * written back to back.</p>
+ * 
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>{@code
+ * ByteBuffer buf = ByteBuffer.allocateDirect(4096);
+ * MessageCodec.encode(new Message(42.5), buf);
+ * MessageCodec.encode(new Message("hello"), buf);
+ * buf.flip();
+ * Message first = MessageCodec.decode(buf);   // 42.5
+ * Message second = MessageCodec.decode(buf);  // "hello"
+ * }</pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see Message
+ */
+public final class MessageCodec {
+
+    /** Current format version, written as the first byte of every message */
+    public static final byte VERSION = 1;
+
+    /** Tag for {@link Message.Kind#DOUBLE} payloads */
+    public static final byte TAG_DOUBLE = 1;
+
+    /** Tag for {@link Message.Kind#LONG} payloads */
+    public static final byte TAG_LONG = 2;
+
+    /** Tag for {@link Message.Kind#TEXT} payloads */
+    public static final byte TAG_TEXT = 3;
+
+    /** Tag for {@link Message.Kind#BYTES} payloads */
+    public static final byte TAG_BYTES = 4;
+
+    /** Tag for {@link Message.Kind#VECTOR} payloads */
+    public static final byte TAG_VECTOR = 5;
+
+    /** Size of the version and tag header in bytes */
+    public static final int HEADER_SIZE = 2;
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private MessageCodec() {
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode(Message, ByteBuffer)} will write.
+     * 
+     * @param msg the message to measure, not null
+     * @return the encoded size including the header
+     */
+    public static int encodedSize(Message msg) {
+        switch (msg.getKind()) {
+            case DOUBLE:
+            case LONG:
+                return HEADER_SIZE + 8;
+            case TEXT:
+                return HEADER_SIZE + 4 + utf8Length(msg.asText());
+            case BYTES:
+            case BUFFER:
+                return HEADER_SIZE + 4 + msg.byteSize();
+            case VECTOR:
+                return HEADER_SIZE + 4 + 8 * msg.asVector().length;
+            default:
+                throw new IllegalArgumentException("Unsupported message kind: " + msg.getKind());
+        }
+    }
+
+    /**
+     * Encodes a message into the buffer at its current position.
+     * 
+     * @param msg the message to encode, not null
+     * @param buf the target buffer, big-endian
+     * @throws BufferOverflowException if the buffer has less than
+     *         {@link #encodedSize(Message)} bytes remaining; nothing is
+     *         written then
+     * @throws IllegalArgumentException if the buffer is not big-endian
+     */
+    public static void encode(Message msg, ByteBuffer buf) {
+        checkOrder(buf);
+        int size = encodedSize(msg);
+        if (buf.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        buf.put(VERSION);
+        switch (msg.getKind()) {
+            case DOUBLE:
+                buf.put(TAG_DOUBLE);
+                buf.putDouble(msg.asDouble());
+                break;
+            case LONG:
+                buf.put(TAG_LONG);
+                buf.putLong(msg.asLong());
+                break;
+            case TEXT: {
+                String text = msg.asText();
+                buf.put(TAG_TEXT);
+                buf.putInt(size - HEADER_SIZE - 4);
+                putUtf8(text, buf);
+                break;
+            }
+            case BYTES: {
+                byte[] data = msg.asBytes();
+                buf.put(TAG_BYTES);
+                buf.putInt(data.length);
+                buf.put(data);
+                break;
+            }
+            case BUFFER: {
+                buf.put(TAG_BYTES);
+                buf.putInt(msg.byteSize());
+                buf.put(msg.asBuffer());
+                break;
+            }
+            case VECTOR: {
+                double[] values = msg.asVector();
+                buf.put(TAG_VECTOR);
+                buf.putInt(values.length);
+                for (int i = 0; i < values.length; i++) {
+                    buf.putDouble(values[i]);
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported message kind: " + msg.getKind());
+        }
+    }
+
+    /**
+     * Decodes the message at the buffer's current position.
+     * 
+     * @param buf the source buffer, big-endian
+     * @return the decoded message, of the same kind it was encoded from
+     * @throws IllegalArgumentException if the version or tag is unknown, a
+     *         length is negative, or the buffer is not big-endian
+     * @throws BufferUnderflowException if the buffer ends mid-message
+     */
+    public static Message decode(ByteBuffer buf) {
+        checkOrder(buf);
+        checkVersion(buf.get());
+        byte tag = buf.get();
+        switch (tag) {
+            case TAG_DOUBLE:
+                return new Message(buf.getDouble());
+            case TAG_LONG:
+                return Message.ofLong(buf.getLong());
+            case TAG_TEXT: {
+                int length = readLength(buf, 1);
+                return new Message(getUtf8(buf, length));
+            }
+            case TAG_BYTES: {
+                byte[] data = new byte[readLength(buf, 1)];
+                buf.get(data);
+                return new Message(data);
+            }
+            case TAG_VECTOR: {
+                double[] values = new double[readLength(buf, 8)];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = buf.getDouble();
+                }
+                return new Message(values);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown message tag: " + tag);
+        }
+    }
+
+    /**
+     * Reads a numeric payload without allocating a Message.
+     * 
+     * <p>Intended for hot paths that only carry numbers, such as feeding
+     * {@link Topic#publishDouble(double)} from a stream of encoded values.</p>
+     * 
+     * @param buf the source buffer, positioned at a {@link #TAG_DOUBLE} or
+     *            {@link #TAG_LONG} message
+     * @return the value
+     * @throws IllegalArgumentException if the message is not numeric or the
+     *         version is unknown
+     */
+    public static double decodeDouble(ByteBuffer buf) {
+        checkOrder(buf);
+        checkVersion(buf.get());
+        byte tag = buf.get();
+        if (tag == TAG_DOUBLE) {
+            return buf.getDouble();
+        }
+        if (tag == TAG_LONG) {
+            return (double) buf.getLong();
+        }
+        throw new IllegalArgumentException("Message tag " + tag + " is not numeric");
+    }
+
+    /**
+     * Rejects buffers whose byte order differs from the format's.
+     * 
+     * @param buf the buffer to check
+     */
+    private static void checkOrder(ByteBuffer buf) {
+        if (buf.order() != ByteOrder.BIG_ENDIAN) {
+            throw new IllegalArgumentException("MessageCodec requires a big-endian buffer");
+        }
+    }
+
+    /**
+     * Rejects unknown format versions.
+     * 
+     * @param version the version byte read from the buffer
+     */
+    private static void checkVersion(byte version) {
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported message format version: " + version);
+        }
+    }
+
+    /**
+     * Reads and validates a 4-byte length prefix.
+     * 
+     * <p>Checks the remaining bytes before the caller allocates, so a corrupt
+     * length cannot trigger a huge allocation.</p>
+     * 
+     * @param buf the source buffer
+     * @param elementSize the encoded size of one element in bytes
+     * @return the non-negative element count
+     */
+    private static int readLength(ByteBuffer buf, int elementSize) {
+        int length = buf.getInt();
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative payload length: " + length);
+        }
+        if ((long) length * elementSize > buf.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+
+    /**
+     * Computes the UTF-8 encoded length of a string without encoding it.
+     * 
+     * @param text the string to measure
+     * @return the number of UTF-8 bytes
+     */
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                       && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes a string as UTF-8 directly into the buffer.
+     * 
+     * <p>Unpaired surrogates are written as {@code '?'}, as the JDK encoder
+     * does; they have no UTF-8 form.</p>
+     * 
+     * @param text the string to write
+     * @param buf the target buffer
+     */
+    private static void putUtf8(String text, ByteBuffer buf) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buf.put((byte) c);
+            } else if (c < 0x800) {
+                buf.put((byte) (0xC0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                       && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                buf.put((byte) (0xF0 | (cp >> 18)));
+                buf.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buf.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buf.put((byte) '?');
+            } else {
+                buf.put((byte) (0xE0 | (c >> 12)));
+                buf.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Reads UTF-8 bytes from the buffer into a string.
+     * 
+     * <p>Heap buffers are decoded in place from their backing array; other
+     * buffers are copied once into a temporary array.</p>
+     * 
+     * @param buf the source buffer
+     * @param length the number of bytes to read
+     * @return the decoded string
+     */
+    private static String getUtf8(ByteBuffer buf, int length) {
+        String text;
+        if (buf.hasArray()) {
+            text = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buf.get(bytes);
+            text = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,49 @@
+package graph;
+
+/**
+ * An optional extension of {@link Agent} for agents that can consume primitive
+ * double values directly.
+ * 
+ * <p>Topics that carry numbers can deliver them through
+ * {@link Topic#publishDouble(double)}. When every subscriber of a topic implements
+ * this interface, the value travels from publisher to subscriber as a primitive,
+ * without allocating a {@link Message}. Agents that do not implement it keep
+ * receiving regular messages through {@link Agent#callback(String, Message)}.</p>
+ * 
+ * <p>Example usage:
+ * <pre>{@code
+ * public class DoublerAgent implements NumericAgent {
+ *     public void callback(String topic, Message msg) {
+ *         callbackDouble(topic, msg.asDouble(), msg.getOriginNanos());
+ *     }
+ *     public void callbackDouble(String topic, double value, long originNanos) {
+ *         out.publishDouble(value * 2, originNanos);
+ *     }
+ *     // ...
+ * }
+ * }</pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see Topic#publishDouble(double)
+ */
+public interface NumericAgent extends Agent {
+
+    /**
+     * Callback method invoked when a numeric value is published to a subscribed topic.
+     * 
+     * <p>Must behave exactly like {@link #callback(String, Message)} would for a
+     * message whose {@link Message#asDouble()} is {@code value}.</p>
+     * 
+     * <p>The origin stamp plays the role of {@link Message#getOriginNanos()}; agents
+     * that publish a derived value should pass it on to
+     * {@link Topic#publishDouble(double, long)}.</p>
+     * 
+     * @param topic the name of the topic that published the value, not null
+     * @param value the published value
+     * @param originNanos {@link System#nanoTime()} when the originating input entered the graph
+     */
+    void callbackDouble(String topic, double value, long originNanos);
+}
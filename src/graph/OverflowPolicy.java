@@ -0,0 +1,48 @@
+package graph;
+
+/**
+ * What a {@link ParallelAgent} does with a new delivery when its mailbox is full.
+ * 
+ * <p>The default, {@link #BLOCK}, never loses data but stalls the publisher
+ * until the agent catches up; since publishers are often HTTP worker threads or
+ * upstream agents, one slow agent can then freeze the whole graph. The other
+ * policies bound that stall or avoid it, and each one is accounted for in the
+ * agent's overflow counters ({@link ParallelAgent#getOverflowCount()},
+ * {@link ParallelAgent#getDroppedCount()}, {@link ParallelAgent#getConflatedCount()}).</p>
+ * 
+ * <p><strong>Choosing a Policy:</strong></p>
+ * <ul>
+ *   <li><strong>Every value matters:</strong> {@link #BLOCK} or {@link #BLOCK_TIMEOUT}</li>
+ *   <li><strong>Old data is worthless:</strong> {@link #DROP_OLDEST}</li>
+ *   <li><strong>Only the current state matters</strong> (e.g. sensor readings):
+ *       {@link #CONFLATE}</li>
+ *   <li><strong>Protect the agent's backlog:</strong> {@link #DROP_NEWEST}</li>
+ * </ul>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see ParallelAgent#ParallelAgent(Agent, int, OverflowPolicy, long)
+ */
+public enum OverflowPolicy {
+
+    /** Wait until space is available; nothing is ever dropped */
+    BLOCK,
+
+    /** Wait up to the configured timeout, then drop the new delivery */
+    BLOCK_TIMEOUT,
+
+    /** Drop the new delivery immediately */
+    DROP_NEWEST,
+
+    /** Discard the oldest buffered delivery to make room for the new one */
+    DROP_OLDEST,
+
+    /**
+     * Keep at most one pending delivery per topic: a new delivery replaces the
+     * one still waiting from the same topic, in place. If the mailbox is full
+     * with other topics, the oldest delivery is discarded.
+     */
+    CONFLATE
+}
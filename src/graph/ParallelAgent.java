@@ -1,7 +1,8 @@
 package graph;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
 
 /**
  * A thread-safe wrapper that provides asynchronous message processing for agents.
@@ -16,10 +17,34 @@ import java.util.concurrent.BlockingQueue;
  *   <li><strong>Thread Safety:</strong> Serializes all agent callbacks to prevent race conditions</li>
  *   <li><strong>Asynchronous Processing:</strong> Non-blocking message submission with background processing</li>
  *   <li><strong>Message Ordering:</strong> Guarantees FIFO processing of messages</li>
+ *   <li><strong>Batching:</strong> Accepts whole batches and drains the queue in bulk,
+ *       passing same-topic runs to wrapped {@link BatchAgent}s in one call</li>
  *   <li><strong>Resource Management:</strong> Automatic thread lifecycle management</li>
  *   <li><strong>Error Isolation:</strong> Prevents agent errors from affecting the topic system</li>
  * </ul>
  * 
+ * <p><strong>Execution Modes:</strong></p>
+ * <ul>
+ *   <li><strong>Thread mode</strong> (default constructors): a dedicated daemon
+ *       thread blocks on the mailbox and processes deliveries as they arrive</li>
+ *   <li><strong>Virtual mode</strong> ({@link #create} with {@link Mode#VIRTUAL}): like
+ *       thread mode, but on a virtual thread where the runtime supports them
+ *       (Java 21+; see {@link VirtualThreads}), so a blocked agent holds no OS thread</li>
+ *   <li><strong>Scheduled mode</strong> (constructor taking an {@link AgentScheduler}):
+ *       no thread of its own; whenever deliveries are pending the agent is
+ *       submitted once to a shared, core-sized worker pool, which drains the
+ *       mailbox and releases the agent again. Thousands of agents then cost
+ *       a few threads instead of one each.</li>
+ * </ul>
+ * <p>All modes process deliveries in FIFO order and never run the wrapped
+ * agent concurrently with itself.</p>
+ * 
+ * <p><strong>Mailboxes:</strong> By default deliveries are buffered in a
+ * single-lock queue that supports every {@link OverflowPolicy}. Passing a
+ * {@link WaitStrategy} to {@link #create(Agent, int, OverflowPolicy, long, Mode, WaitStrategy)}
+ * selects a lock-free ring with preallocated slots instead, whose processing
+ * thread waits as the strategy says; it suits hot agents with many publishers.</p>
+ * 
  * <p><strong>Usage Examples:</strong></p>
  * <pre>{@code
  * // Wrap a regular agent for thread-safe operation
@@ -61,50 +86,61 @@ import java.util.concurrent.BlockingQueue;
  * 
  * @see Agent
  * @see configs.GenericConfig
- * @see java.util.concurrent.BlockingQueue
+ * @see NumericAgent
+ * @see BatchAgent
  */
-public class ParallelAgent implements Agent{
+public class ParallelAgent implements NumericAgent, BatchAgent{
+    
+    /**
+     * How a ParallelAgent runs its mailbox.
+     */
+    public enum Mode {
+        /** A dedicated platform thread per agent */
+        THREAD,
+        /** A dedicated virtual thread per agent; platform thread if unsupported */
+        VIRTUAL,
+        /** Runs on the shared {@link AgentScheduler} */
+        SCHEDULED
+    }
     
     /** The wrapped agent that performs the actual computation */
 	private final Agent agent; 
 	
-    /** Thread-safe queue for buffering incoming messages */
-    private final BlockingQueue<TopicMessage> messageQueue;
+    /** Thread-safe mailbox buffering incoming messages and numeric values */
+    private final Mailbox mailbox;
+    
+    /** Wait strategy of the ring mailbox, or null for the locking mailbox */
+    private final WaitStrategy waitStrategy;
     
-    /** Background thread that processes messages from the queue */
+    /** Background thread that processes messages from the mailbox, null in scheduled mode */
     private final Thread processThread;
     
+    /** Worker pool that runs this agent in scheduled mode, null in thread mode */
+    private final AgentScheduler scheduler;
+    
+    /** The mode this agent actually runs in */
+    private final Mode mode;
+    
+    /** Whether a mailbox run is submitted or in progress (scheduled mode only) */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    
+    /** The mailbox run submitted to the scheduler */
+    private final Runnable drainTask = this::runScheduled;
+    
     /** Flag indicating whether the agent is running and should process messages */
     private volatile boolean running;
     
-    /**
-     * Internal container class for pairing topics with their messages.
-     * 
-     * <p>This immutable data structure ensures that each message is processed
-     * with the correct topic context, maintaining the semantics of the original
-     * agent callback interface.</p>
-     * 
-     * <p><strong>Immutability:</strong> Both fields are final to prevent
-     * accidental modification during queue operations and ensure thread safety.</p>
-     */
-    private static class TopicMessage {
-        /** The name of the topic that published this message */
-        final String topic;
-        
-        /** The message content to be processed */
-        final Message message;
-        
-        /**
-         * Creates a new topic-message pair.
-         * 
-         * @param topic the name of the publishing topic
-         * @param message the message to be processed
-         */
-        TopicMessage(String topic, Message message) {
-            this.topic = topic;
-            this.message = message;
-        }
-    }
+    /** Number of deliveries handed to the wrapped agent (written by the processing thread only) */
+    private volatile long processedCount;
+    
+    /** Sum of mailbox wait times in nanoseconds (written by the processing thread only) */
+    private volatile long totalQueueWaitNanos;
+    
+    /** Longest single mailbox wait in nanoseconds (written by the processing thread only) */
+    private volatile long maxQueueWaitNanos;
+    
+    /** Receives the queue wait of each drained delivery */
+    private final LongConsumer waitRecorder = this::recordQueueWait;
     
     /**
      * Creates a new ParallelAgent wrapping the specified agent.
@@ -138,7 +174,8 @@ public class ParallelAgent implements Agent{
      *             The agent's existing state and configuration are preserved.
      * @param capacity the maximum number of messages that can be queued for
      *                processing. Must be positive. When the queue is full,
-     *                calling threads will block until space becomes available.
+     *                calling threads block until space becomes available
+     *                (see the {@link OverflowPolicy} constructor for alternatives).
      * 
      * @throws NullPointerException if agent is null
      * @throws IllegalArgumentException if capacity is not positive
@@ -158,23 +195,258 @@ public class ParallelAgent implements Agent{
      * ParallelAgent lowMemory = new ParallelAgent(calculator, 10);
      * }</pre>
      * 
-     * @see ArrayBlockingQueue#ArrayBlockingQueue(int)
      * @see Thread#setDaemon(boolean)
      */
 	public ParallelAgent(Agent agent, int capacity) {
+		this(agent, capacity, OverflowPolicy.BLOCK, 0L);
+	}
+
+	/**
+	 * Creates a new ParallelAgent with an explicit overflow policy.
+	 * 
+	 * <p>The policy decides what happens to a delivery that arrives while the
+	 * queue is full, so a slow agent can be kept from stalling its publishers
+	 * (see {@link OverflowPolicy}). Dropped and conflated deliveries are
+	 * counted in {@link #getDroppedCount()} and {@link #getConflatedCount()}.</p>
+	 * 
+	 * @param agent the agent to wrap for parallel processing. Cannot be null.
+	 * @param capacity the maximum number of queued deliveries. Must be positive.
+	 * @param policy what to do when the queue is full. Cannot be null.
+	 * @param timeoutMillis how long {@link OverflowPolicy#BLOCK_TIMEOUT} waits
+	 *                      before dropping; ignored by other policies
+	 * 
+	 * @throws NullPointerException if agent or policy is null
+	 * @throws IllegalArgumentException if capacity is not positive or the
+	 *                                  timeout is negative
+	 * 
+	 * @example
+	 * <pre>{@code
+	 * // A dashboard feed only needs the latest reading per topic
+	 * new ParallelAgent(display, 16, OverflowPolicy.CONFLATE, 0);
+	 * 
+	 * // Never stall an HTTP worker for more than 50 ms
+	 * new ParallelAgent(calculator, 100, OverflowPolicy.BLOCK_TIMEOUT, 50);
+	 * }</pre>
+	 */
+	public ParallelAgent(Agent agent, int capacity, OverflowPolicy policy, long timeoutMillis) {
+		this(agent, capacity, policy, timeoutMillis, null);
+	}
+
+	/**
+	 * Creates a new ParallelAgent in scheduled mode, or in thread mode if no
+	 * scheduler is given.
+	 * 
+	 * <p>In scheduled mode no thread is started; the agent's mailbox is drained
+	 * by the scheduler's workers whenever deliveries are pending, one run at a
+	 * time per agent.</p>
+	 * 
+	 * @param agent the agent to wrap for parallel processing. Cannot be null.
+	 * @param capacity the maximum number of queued deliveries. Must be positive.
+	 * @param policy what to do when the queue is full. Cannot be null.
+	 * @param timeoutMillis how long {@link OverflowPolicy#BLOCK_TIMEOUT} waits
+	 *                      before dropping; ignored by other policies
+	 * @param scheduler the worker pool to run on, or null for a dedicated thread
+	 * 
+	 * @throws NullPointerException if agent or policy is null
+	 * @throws IllegalArgumentException if capacity is not positive or the
+	 *                                  timeout is negative
+	 * 
+	 * @example
+	 * <pre>{@code
+	 * ParallelAgent pa = new ParallelAgent(agent, 10, OverflowPolicy.BLOCK, 0,
+	 *                                      AgentScheduler.shared());
+	 * }</pre>
+	 * 
+	 * @see AgentScheduler#shared()
+	 */
+	public ParallelAgent(Agent agent, int capacity, OverflowPolicy policy, long timeoutMillis,
+						 AgentScheduler scheduler) {
+		this(agent, capacity, policy, timeoutMillis, scheduler, false, null);
+	}
+
+	/**
+	 * Creates a new ParallelAgent in the given mode.
+	 * 
+	 * <p>{@link Mode#SCHEDULED} uses {@link AgentScheduler#shared()}.
+	 * {@link Mode#VIRTUAL} falls back to a platform thread on runtimes without
+	 * virtual threads; {@link #getMode()} reports the mode actually used.</p>
+	 * 
+	 * @param agent the agent to wrap for parallel processing. Cannot be null.
+	 * @param capacity the maximum number of queued deliveries. Must be positive.
+	 * @param policy what to do when the queue is full. Cannot be null.
+	 * @param timeoutMillis how long {@link OverflowPolicy#BLOCK_TIMEOUT} waits
+	 *                      before dropping; ignored by other policies
+	 * @param mode how to run the mailbox. Cannot be null.
+	 * @return the new, running ParallelAgent
+	 * 
+	 * @throws NullPointerException if agent, policy or mode is null
+	 * @throws IllegalArgumentException if capacity is not positive or the
+	 *                                  timeout is negative
+	 */
+	public static ParallelAgent create(Agent agent, int capacity, OverflowPolicy policy,
+									   long timeoutMillis, Mode mode) {
+		return create(agent, capacity, policy, timeoutMillis, mode, null);
+	}
+
+	/**
+	 * Creates a new ParallelAgent in the given mode, optionally with a
+	 * lock-free ring mailbox.
+	 * 
+	 * <p>With a wait strategy, deliveries go through a preallocated
+	 * multi-producer ring instead of the locking queue: publishers never
+	 * contend on a lock, and the processing thread waits for deliveries as the
+	 * strategy says (scheduled agents never wait, so the strategy only matters
+	 * in the thread modes). The ring rounds its capacity up to a power of two
+	 * and supports {@link OverflowPolicy#BLOCK}, {@link OverflowPolicy#BLOCK_TIMEOUT}
+	 * and {@link OverflowPolicy#DROP_NEWEST}.</p>
+	 * 
+	 * @param agent the agent to wrap for parallel processing. Cannot be null.
+	 * @param capacity the maximum number of queued deliveries. Must be positive.
+	 * @param policy what to do when the queue is full. Cannot be null.
+	 * @param timeoutMillis how long {@link OverflowPolicy#BLOCK_TIMEOUT} waits
+	 *                      before dropping; ignored by other policies
+	 * @param mode how to run the mailbox. Cannot be null.
+	 * @param waitStrategy how to wait on the ring mailbox, or null for the
+	 *                     locking mailbox
+	 * @return the new, running ParallelAgent
+	 * 
+	 * @throws NullPointerException if agent, policy or mode is null
+	 * @throws IllegalArgumentException if capacity is not positive, the
+	 *                                  timeout is negative, or the policy is
+	 *                                  not supported by the ring mailbox
+	 * 
+	 * @example
+	 * <pre>{@code
+	 * // A hot aggregation point with four publishers, one spare core
+	 * ParallelAgent.create(sum, 1024, OverflowPolicy.BLOCK, 0,
+	 *                      ParallelAgent.Mode.THREAD, WaitStrategy.BUSY_SPIN);
+	 * }</pre>
+	 */
+	public static ParallelAgent create(Agent agent, int capacity, OverflowPolicy policy,
+									   long timeoutMillis, Mode mode, WaitStrategy waitStrategy) {
+		if (mode == null) {
+			throw new NullPointerException("Mode cannot be null");
+		}
+		switch (mode) {
+			case SCHEDULED:
+				return new ParallelAgent(agent, capacity, policy, timeoutMillis, AgentScheduler.shared(),
+										 false, waitStrategy);
+			case VIRTUAL:
+				return new ParallelAgent(agent, capacity, policy, timeoutMillis, null, true, waitStrategy);
+			default:
+				return new ParallelAgent(agent, capacity, policy, timeoutMillis, null, false, waitStrategy);
+		}
+	}
+
+	/**
+	 * Creates a new ParallelAgent on the given scheduler, optionally with a
+	 * lock-free ring mailbox.
+	 * 
+	 * <p>Use this to place a group of agents on a dedicated
+	 * {@link AgentScheduler} instead of the shared one.</p>
+	 * 
+	 * @param agent the agent to wrap for parallel processing. Cannot be null.
+	 * @param capacity the maximum number of queued deliveries. Must be positive.
+	 * @param policy what to do when the queue is full. Cannot be null.
+	 * @param timeoutMillis how long {@link OverflowPolicy#BLOCK_TIMEOUT} waits
+	 *                      before dropping; ignored by other policies
+	 * @param scheduler the worker pool to run on. Cannot be null.
+	 * @param waitStrategy selects the ring mailbox, or null for the locking mailbox
+	 * @return the new, running ParallelAgent
+	 * 
+	 * @throws NullPointerException if agent, policy or scheduler is null
+	 * @throws IllegalArgumentException if capacity is not positive, the
+	 *                                  timeout is negative, or the policy is
+	 *                                  not supported by the ring mailbox
+	 */
+	public static ParallelAgent create(Agent agent, int capacity, OverflowPolicy policy,
+									   long timeoutMillis, AgentScheduler scheduler, WaitStrategy waitStrategy) {
+		if (scheduler == null) {
+			throw new NullPointerException("Scheduler cannot be null");
+		}
+		return new ParallelAgent(agent, capacity, policy, timeoutMillis, scheduler, false, waitStrategy);
+	}
+
+	/**
+	 * Common constructor behind all modes.
+	 * 
+	 * @param agent the agent to wrap
+	 * @param capacity the mailbox capacity
+	 * @param policy the overflow policy
+	 * @param timeoutMillis the {@link OverflowPolicy#BLOCK_TIMEOUT} wait
+	 * @param scheduler the worker pool, or null for a dedicated thread
+	 * @param virtual whether the dedicated thread should be virtual
+	 * @param waitStrategy the ring mailbox wait strategy, or null for the locking mailbox
+	 */
+	private ParallelAgent(Agent agent, int capacity, OverflowPolicy policy, long timeoutMillis,
+						  AgentScheduler scheduler, boolean virtual, WaitStrategy waitStrategy) {
 		if (agent == null) {
 			throw new NullPointerException("Agent cannot be null");
 		}
 		if (capacity <= 0) {
 			throw new IllegalArgumentException("Capacity must be positive, got: " + capacity);
 		}
+		if (timeoutMillis < 0) {
+			throw new IllegalArgumentException("Timeout cannot be negative, got: " + timeoutMillis);
+		}
 		
-		this.messageQueue = new ArrayBlockingQueue<>(capacity);
+		this.mailbox = waitStrategy == null
+				? new LockingMailbox(capacity, policy, timeoutMillis * 1_000_000L)
+				: new RingMailbox(capacity, policy, timeoutMillis * 1_000_000L, waitStrategy);
+		this.waitStrategy = waitStrategy;
 		this.agent = agent; 
+		this.scheduler = scheduler;
         this.running = true;
-        this.processThread = new Thread(this::processMessages, "ParallelAgent-" + agent.getName());
-        this.processThread.setDaemon(true); 
-        this.processThread.start();
+        if (scheduler != null) {
+            this.mode = Mode.SCHEDULED;
+            this.processThread = null;
+        } else if (virtual && VirtualThreads.isAvailable()) {
+            this.mode = Mode.VIRTUAL;
+            this.processThread = VirtualThreads.newThread("ParallelAgent-" + agent.getName(), this::processMessages);
+            this.processThread.start();
+        } else {
+            this.mode = Mode.THREAD;
+            this.processThread = new Thread(this::processMessages, "ParallelAgent-" + agent.getName());
+            this.processThread.setDaemon(true); 
+            this.processThread.start();
+        }
+	}
+
+	/**
+	 * Returns the mode this agent runs in.
+	 * 
+	 * @return the actual mode; {@link Mode#THREAD} if {@link Mode#VIRTUAL}
+	 *         was requested on a runtime without virtual threads
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Returns the wait strategy of this agent's ring mailbox.
+	 * 
+	 * @return the wait strategy, or null if the agent uses the locking mailbox
+	 */
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	/**
+	 * Returns whether this agent runs on a shared {@link AgentScheduler}.
+	 * 
+	 * @return true in scheduled mode, false in thread mode
+	 */
+	public boolean isScheduled() {
+		return scheduler != null;
+	}
+
+	/**
+	 * Returns the scheduler this agent runs on.
+	 * 
+	 * @return the scheduler, or null if the agent has its own thread
+	 */
+	public AgentScheduler getScheduler() {
+		return scheduler;
 	}
 
 	/**
@@ -224,8 +496,7 @@ public class ParallelAgent implements Agent{
 	 * 
 	 * <p><strong>Asynchronous Processing Flow:</strong></p>
 	 * <ol>
-	 *   <li>Create TopicMessage wrapper with topic and message</li>
-	 *   <li>Attempt to add message to queue (may block if queue is full)</li>
+	 *   <li>Store topic and message in the next mailbox slot (may block or drop if the mailbox is full, per the overflow policy)</li>
 	 *   <li>Return immediately to caller</li>
 	 *   <li>Background thread later dequeues and processes message</li>
 	 * </ol>
@@ -261,14 +532,16 @@ public class ParallelAgent implements Agent{
 	 * agent.callback("Pressure", new Message(1013.25));
 	 * }</pre>
 	 * 
-	 * @see BlockingQueue#put(Object)
 	 * @see Thread#interrupt()
 	 */
 	@Override
 	public void callback(String topic, Message msg) {
+		if (!running) {
+			return;
+		}
 		try {
-            TopicMessage topicMessage = new TopicMessage(topic, msg);
-            messageQueue.put(topicMessage);
+            mailbox.put(topic, msg);
+            schedule();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Interrupted while adding message to queue", e);
@@ -276,6 +549,66 @@ public class ParallelAgent implements Agent{
 		
 	}
 
+	/**
+	 * Queues a numeric value for asynchronous processing by the wrapped agent.
+	 * 
+	 * <p>The value is stored in a primitive slot of the mailbox, so no
+	 * {@link Message} or wrapper object is allocated. When the value is
+	 * processed, it is passed to the wrapped agent's
+	 * {@link NumericAgent#callbackDouble(String, double, long)} if the agent
+	 * implements {@link NumericAgent}, or wrapped in a {@link Message}
+	 * otherwise. Blocking and interruption behave as in
+	 * {@link #callback(String, Message)}.</p>
+	 * 
+	 * @param topic the name of the topic publishing this value
+	 * @param value the value to be processed
+	 * @param originNanos the origin stamp of the value
+	 * 
+	 * @throws RuntimeException if the thread is interrupted while waiting
+	 *                         to add the value to the queue
+	 */
+	@Override
+	public void callbackDouble(String topic, double value, long originNanos) {
+		if (!running) {
+			return;
+		}
+		try {
+            mailbox.putDouble(topic, value, originNanos);
+            schedule();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while adding value to queue", e);
+        }
+	}
+
+	/**
+	 * Queues a batch of messages under a single mailbox lock acquisition.
+	 * 
+	 * <p>The processing thread later drains the mailbox in bulk; if the wrapped
+	 * agent implements {@link BatchAgent}, consecutive messages from the same
+	 * topic reach it as one batch. Blocking and interruption behave as in
+	 * {@link #callback(String, Message)}.</p>
+	 * 
+	 * @param topic the name of the topic publishing these messages
+	 * @param msgs the messages to be processed, in order
+	 * 
+	 * @throws RuntimeException if the thread is interrupted while waiting
+	 *                         to add the messages to the queue
+	 */
+	@Override
+	public void callbackBatch(String topic, List<Message> msgs) {
+		if (!running) {
+			return;
+		}
+		try {
+            mailbox.putAll(topic, msgs);
+            schedule();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while adding batch to queue", e);
+        }
+	}
+
 	/**
 	 * Stops the background processing thread and closes the wrapped agent.
 	 * 
@@ -293,8 +626,11 @@ public class ParallelAgent implements Agent{
 	 * 
 	 * <p><strong>Message Queue Handling:</strong></p>
 	 * <p>Any messages remaining in the queue when close() is called will not
-	 * be processed. For guaranteed message processing, ensure all expected
-	 * messages have been sent before calling close().</p>
+	 * be processed; they are discarded, so they no longer count as in flight
+	 * for {@link Quiescence}. Deliveries arriving after close() are ignored.
+	 * For guaranteed message processing, ensure all expected messages have
+	 * been processed (see {@link Quiescence#awaitQuiescent(long)}) before
+	 * calling close().</p>
 	 * 
 	 * <p><strong>Thread Termination:</strong></p>
 	 * <p>The method waits up to 5 seconds for the background thread to
@@ -336,15 +672,155 @@ public class ParallelAgent implements Agent{
 	@Override
 	public void close() {
 		running = false;
-		processThread.interrupt();
-		try {
-			processThread.join(5000);
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
+		if (processThread != null) {
+			processThread.interrupt();
+			try {
+				processThread.join(5000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} else {
+			awaitIdle(5000);
 		}
+		mailbox.clear();
 		agent.close();
 	}
 
+	/**
+	 * Waits for an in-progress scheduled run to finish (scheduled mode only).
+	 * 
+	 * @param timeoutMillis the maximum time to wait
+	 */
+	private void awaitIdle(long timeoutMillis) {
+		long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+		while (scheduled.get() && System.nanoTime() < deadline) {
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of deliveries processed by the wrapped agent so far.
+	 * 
+	 * @return the processed delivery count
+	 */
+	public long getProcessedCount() {
+		return processedCount;
+	}
+
+	/**
+	 * Returns how many deliveries arrived while the queue was full.
+	 * 
+	 * <p>Counted under every policy, including {@link OverflowPolicy#BLOCK},
+	 * where it is the number of times a publisher had to wait.</p>
+	 * 
+	 * @return the overflow count
+	 */
+	public long getOverflowCount() {
+		return mailbox.getOverflowCount();
+	}
+
+	/**
+	 * Returns how many deliveries were lost to the overflow policy.
+	 * 
+	 * @return the number of rejected, timed-out and evicted deliveries
+	 */
+	public long getDroppedCount() {
+		return mailbox.getDroppedCount();
+	}
+
+	/**
+	 * Returns how many queued deliveries were replaced by a newer delivery from
+	 * the same topic under {@link OverflowPolicy#CONFLATE}.
+	 * 
+	 * @return the conflation count
+	 */
+	public long getConflatedCount() {
+		return mailbox.getConflatedCount();
+	}
+
+	/**
+	 * Returns how many deliveries the wrapped agent failed to process because
+	 * its callback threw an exception. Each failure is also logged.
+	 * 
+	 * @return the failure count
+	 */
+	public long getFailedCount() {
+		return mailbox.getFailedCount();
+	}
+
+	/**
+	 * Returns the total time deliveries spent waiting in the mailbox.
+	 * 
+	 * <p>Measured with {@link System#nanoTime()} from enqueue to dequeue.
+	 * Divide by {@link #getProcessedCount()} for the mean queue wait.</p>
+	 * 
+	 * @return the summed queue wait in nanoseconds
+	 */
+	public long getTotalQueueWaitNanos() {
+		return totalQueueWaitNanos;
+	}
+
+	/**
+	 * Returns the longest time a single delivery spent waiting in the mailbox.
+	 * 
+	 * @return the maximum queue wait in nanoseconds
+	 */
+	public long getMaxQueueWaitNanos() {
+		return maxQueueWaitNanos;
+	}
+
+	/**
+	 * Accumulates queue wait statistics. Called only by the processing thread.
+	 * 
+	 * @param waitNanos the queue wait of the delivery just processed
+	 */
+	private void recordQueueWait(long waitNanos) {
+		processedCount++;
+		totalQueueWaitNanos += waitNanos;
+		if (waitNanos > maxQueueWaitNanos) {
+			maxQueueWaitNanos = waitNanos;
+		}
+	}
+
+	/**
+	 * Submits a mailbox run unless one is already pending (scheduled mode only).
+	 * 
+	 * <p>The flag is only cleared by the run itself, so at most one run per
+	 * agent exists at any time.</p>
+	 */
+	private void schedule() {
+		if (scheduler != null && running && scheduled.compareAndSet(false, true)) {
+			scheduler.execute(drainTask);
+		}
+	}
+
+	/**
+	 * One scheduled mailbox run: drains the pending deliveries into the wrapped
+	 * agent, then releases the agent and resubmits it if more arrived meanwhile.
+	 * 
+	 * <p>Unlike thread mode, an exception thrown by the wrapped agent is logged
+	 * and the agent keeps being scheduled.</p>
+	 */
+	private void runScheduled() {
+		try {
+			if (running) {
+				mailbox.drainAvailable(agent, waitRecorder);
+			}
+		} catch (RuntimeException e) {
+			System.err.println("Error in scheduled ParallelAgent " + agent.getName() + ": " + e.getMessage());
+		} finally {
+			scheduled.set(false);
+			if (mailbox.size() > 0) {
+				schedule();
+			}
+		}
+	}
+
 	/**
 	 * Background thread method that processes messages from the queue.
 	 * 
@@ -355,9 +831,8 @@ public class ParallelAgent implements Agent{
 	 * <p><strong>Processing Loop:</strong></p>
 	 * <ol>
 	 *   <li>Check if agent is still running</li>
-	 *   <li>Take next message from queue (blocks if queue is empty)</li>
-	 *   <li>Check running flag again (for quick shutdown)</li>
-	 *   <li>Call wrapped agent's callback method</li>
+	 *   <li>Drain all buffered deliveries from the mailbox (blocks if it is empty)</li>
+	 *   <li>Call wrapped agent's callback (or numeric or batch callback) method for each</li>
 	 *   <li>Repeat until shutdown</li>
 	 * </ol>
 	 * 
@@ -382,18 +857,13 @@ public class ParallelAgent implements Agent{
 	 *   <li>An unexpected exception occurs (logged and thread exits)</li>
 	 * </ul>
 	 * 
-	 * @see BlockingQueue#take()
 	 * @see Agent#callback(String, Message)
 	 */
 	private void processMessages() {
 		try {
 			while(running) {
 				try {
-					TopicMessage topicMessage = messageQueue.take();
-					if(!running) {
-						break;
-					}
-					agent.callback(topicMessage.topic, topicMessage.message);
+					mailbox.drainTo(agent, waitRecorder);
 				}
 				catch(InterruptedException e){
 					if(!running) {
@@ -401,6 +871,10 @@ public class ParallelAgent implements Agent{
 					}
 					Thread.currentThread().interrupt();				
 				}
+				catch(RuntimeException e) {
+					// Keep draining, so later deliveries are processed and leave Quiescence
+					System.err.println("Error in ParallelAgent " + agent.getName() + ": " + e.getMessage());
+				}
 			}
 		}
 		catch(Exception e) {
@@ -0,0 +1,394 @@
+package graph;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands publish events to the registered {@link PublishListener}s off the
+ * publishing threads.
+ * 
+ * <p>Events go through a bounded multi-producer, single-consumer ring. Each
+ * slot carries a sequence number: a producer claims a slot by advancing the
+ * tail with a CAS, fills it, and then publishes it by bumping the slot's
+ * sequence; the listener thread consumes slots in order and hands them back
+ * by bumping the sequence past the ring size. Producers never block or take
+ * a lock.</p>
+ * 
+ * <p>When the ring is full the event goes to an overflow map that keeps only
+ * the latest event of each topic, so a listener that falls behind skips
+ * intermediate values but always ends up with the newest one. An overflow
+ * entry is delivered once the ring is empty, and dropped when a newer event
+ * of its topic gets into the ring. Superseded events are counted.</p>
+ * 
+ * <p>Events count as in flight for {@link Quiescence} until every listener
+ * has seen them, so a settled graph also has up-to-date listeners.</p>
+ * 
+ * <p>The listener thread is a daemon started with the first listener. It
+ * spins briefly and then parks until a producer wakes it, so an idle
+ * dispatcher costs nothing.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see PublishListener
+ */
+class PublishDispatcher {
+
+    /** Default number of ring slots */
+    static final int DEFAULT_CAPACITY = 8192;
+
+    /** Empty polls spent spinning before the listener thread starts parking */
+    private static final int SPIN_LIMIT = 200;
+
+    /** Registered listeners */
+    private final CopyOnWriteArrayList<PublishListener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Whether any listener is registered; the only field read on the fast path */
+    private volatile boolean active;
+
+    /** Slot index mask, capacity - 1 */
+    private final int mask;
+
+    /** Per-slot sequence: equal to the claim index when free, index + 1 when filled */
+    private final AtomicLongArray sequences;
+
+    /** Topic name of each slot */
+    private final String[] topics;
+
+    /** Message of each slot, or null for a numeric event */
+    private final Message[] messages;
+
+    /** Value of each numeric slot */
+    private final double[] values;
+
+    /** Origin stamp of each numeric slot */
+    private final long[] origins;
+
+    /** Next index to claim */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Next index to consume (listener thread only) */
+    private long head;
+
+    /** Latest event of each topic that did not fit in the ring */
+    private final ConcurrentHashMap<String, Pending> overflow = new ConcurrentHashMap<>();
+
+    /** Events superseded in the overflow map */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Whether the listener thread is parked or about to park */
+    private volatile boolean parked;
+
+    /** The listener thread, started with the first listener */
+    private volatile Thread worker;
+
+    /**
+     * An event held in the overflow map.
+     */
+    private static final class Pending {
+
+        /** The message, or null for a numeric event */
+        final Message msg;
+
+        /** The numeric value, used when msg is null */
+        final double value;
+
+        /** The origin stamp, used when msg is null */
+        final long originNanos;
+
+        /**
+         * Creates an overflow event.
+         * 
+         * @param msg the retained message, or null for a numeric event
+         * @param value the numeric value
+         * @param originNanos the origin stamp
+         */
+        Pending(Message msg, double value, long originNanos) {
+            this.msg = msg;
+            this.value = value;
+            this.originNanos = originNanos;
+        }
+    }
+
+    /**
+     * Creates a dispatcher with the given ring size.
+     * 
+     * @param capacity the number of slots, must be a positive power of two
+     * @throws IllegalArgumentException if capacity is not a power of two
+     */
+    PublishDispatcher(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, got: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.topics = new String[capacity];
+        this.messages = new Message[capacity];
+        this.values = new double[capacity];
+        this.origins = new long[capacity];
+    }
+
+    /**
+     * Registers a listener, starting the listener thread if needed.
+     * 
+     * @param listener the listener, not null
+     */
+    synchronized void addListener(PublishListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("Listener cannot be null");
+        }
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+        if (worker == null) {
+            worker = new Thread(this::run, "publish-listeners");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        active = true;
+    }
+
+    /**
+     * Removes a listener. Events already in the ring are still delivered to
+     * the remaining listeners.
+     * 
+     * @param listener the listener to remove
+     */
+    synchronized void removeListener(PublishListener listener) {
+        listeners.remove(listener);
+        active = !listeners.isEmpty();
+    }
+
+    /**
+     * Returns whether any listener is registered.
+     * 
+     * @return true if publish events should be offered
+     */
+    boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Records a message event. Never blocks.
+     * 
+     * @param topic the topic name
+     * @param msg the published message
+     */
+    void offer(String topic, Message msg) {
+        long index = claim();
+        if (index >= 0) {
+            fill(index, topic, msg.retain(), 0.0, 0L);
+        } else {
+            conflate(topic, new Pending(msg.retain(), 0.0, 0L));
+        }
+        wake();
+    }
+
+    /**
+     * Records a numeric event. Never blocks and allocates nothing.
+     * 
+     * @param topic the topic name
+     * @param value the published value
+     * @param originNanos the origin stamp
+     */
+    void offerDouble(String topic, double value, long originNanos) {
+        long index = claim();
+        if (index >= 0) {
+            fill(index, topic, null, value, originNanos);
+        } else {
+            conflate(topic, new Pending(null, value, originNanos));
+        }
+        wake();
+    }
+
+    /**
+     * Claims the next free slot.
+     * 
+     * @return the claimed index, or -1 if the ring is full
+     */
+    private long claim() {
+        while (true) {
+            long index = tail.get();
+            long sequence = sequences.get((int) index & mask);
+            if (sequence == index) {
+                if (tail.compareAndSet(index, index + 1)) {
+                    Quiescence.enter(1);
+                    return index;
+                }
+            } else if (sequence < index) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Fills a claimed slot and makes it visible to the listener thread.
+     * 
+     * @param index the claimed index
+     * @param topic the topic name
+     * @param msg the message, or null for a numeric event
+     * @param value the numeric value, used when msg is null
+     * @param originNanos the origin stamp, used when msg is null
+     */
+    private void fill(long index, String topic, Message msg, double value, long originNanos) {
+        int slot = (int) index & mask;
+        topics[slot] = topic;
+        messages[slot] = msg;
+        values[slot] = value;
+        origins[slot] = originNanos;
+        sequences.set(slot, index + 1);
+        if (!overflow.isEmpty()) {
+            discard(overflow.remove(topic));
+        }
+    }
+
+    /**
+     * Stores an event that did not fit in the ring, replacing any older
+     * overflow event of the same topic.
+     * 
+     * @param topic the topic name
+     * @param event the event
+     */
+    private void conflate(String topic, Pending event) {
+        // Count the event before the listener thread can take and exit it
+        Quiescence.enter(1);
+        Pending previous = overflow.put(topic, event);
+        if (previous != null) {
+            Quiescence.exit(1);
+            dropped.incrementAndGet();
+            if (previous.msg != null) {
+                previous.msg.release();
+            }
+        }
+    }
+
+    /**
+     * Drops an overflow event superseded by a newer event in the ring.
+     * 
+     * @param event the removed event, or null if there was none
+     */
+    private void discard(Pending event) {
+        if (event != null) {
+            dropped.incrementAndGet();
+            if (event.msg != null) {
+                event.msg.release();
+            }
+            Quiescence.exit(1);
+        }
+    }
+
+    /**
+     * Wakes the listener thread if it is parked.
+     */
+    private void wake() {
+        if (parked) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * Listener thread loop: drains the ring in order, then the overflow map.
+     */
+    private void run() {
+        int idle = 0;
+        while (true) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                if (!overflow.isEmpty()) {
+                    drainOverflow();
+                    idle = 0;
+                } else if (++idle < SPIN_LIMIT) {
+                    Thread.onSpinWait();
+                } else {
+                    // Announce the park before the last check, so a producer
+                    // that fills a slot after the check sees the flag
+                    parked = true;
+                    if (sequences.get(slot) != head + 1 && overflow.isEmpty()) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                }
+                continue;
+            }
+            idle = 0;
+            String topic = topics[slot];
+            Message msg = messages[slot];
+            double value = values[slot];
+            long originNanos = origins[slot];
+            topics[slot] = null;
+            messages[slot] = null;
+            sequences.set(slot, head + mask + 1);
+            head++;
+            try {
+                notifyListeners(topic, msg, value, originNanos);
+            } finally {
+                if (msg != null) {
+                    msg.release();
+                }
+                Quiescence.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Delivers and removes every overflow event.
+     */
+    private void drainOverflow() {
+        for (Map.Entry<String, Pending> entry : overflow.entrySet()) {
+            String topic = entry.getKey();
+            Pending event = entry.getValue();
+            if (!overflow.remove(topic, event)) {
+                // Replaced or superseded meanwhile
+                continue;
+            }
+            try {
+                notifyListeners(topic, event.msg, event.value, event.originNanos);
+            } finally {
+                if (event.msg != null) {
+                    event.msg.release();
+                }
+                Quiescence.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Calls every listener with one event, isolating listener failures.
+     * 
+     * @param topic the topic name
+     * @param msg the message, or null for a numeric event
+     * @param value the numeric value, used when msg is null
+     * @param originNanos the origin stamp, used when msg is null
+     */
+    private void notifyListeners(String topic, Message msg, double value, long originNanos) {
+        for (PublishListener listener : listeners) {
+            try {
+                if (msg != null) {
+                    listener.onPublish(topic, msg);
+                } else {
+                    listener.onPublishDouble(topic, value, originNanos);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error in publish listener: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of events dropped because a newer event of the same
+     * topic replaced them while the ring was full.
+     * 
+     * @return the drop count
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,62 @@
+package graph;
+
+/**
+ * Observer of everything published to the topics of a {@link TopicManagerSingleton.TopicManager}.
+ * 
+ * <p>Listeners are the extension point for cross-cutting concerns that used to
+ * be hard-wired into {@link Topic#publish(Message)}: the last-value cache of
+ * the web interface, publish logging and metrics. They are registered with
+ * {@link TopicManagerSingleton.TopicManager#addPublishListener(PublishListener)},
+ * usually once at startup.</p>
+ * 
+ * <p><strong>Asynchronous Delivery:</strong></p>
+ * <p>Publishing threads only record the event in a lock-free ring; a single
+ * background thread calls the listeners in publish order. Listeners therefore
+ * never slow down the graph, but they observe events slightly later, and if
+ * they fall behind by a full ring further events are dropped (see
+ * {@link TopicManagerSingleton.TopicManager#getDroppedPublishEvents()}). When
+ * no listener is registered publishing does no extra work at all.</p>
+ * 
+ * <p>Example usage:
+ * <pre>{@code
+ * TopicManager tm = TopicManagerSingleton.get();
+ * tm.addPublishListener((topic, msg) -> audit.record(topic, msg.asText()));
+ * }</pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see PublishLogger
+ * @see PublishMetrics
+ */
+@FunctionalInterface
+public interface PublishListener {
+
+    /**
+     * Called after a message was published to a topic.
+     * 
+     * <p>Invoked on the listener thread. Buffer messages are kept alive until
+     * the call returns; listeners that keep a message longer must
+     * {@link Message#retain()} it.</p>
+     * 
+     * @param topic the name of the topic, not null
+     * @param msg the published message, not null
+     */
+    void onPublish(String topic, Message msg);
+
+    /**
+     * Called after a value was published through {@link Topic#publishDouble(double, long)}.
+     * 
+     * <p>The default implementation wraps the value in a {@link Message} and
+     * calls {@link #onPublish(String, Message)}; numeric listeners can
+     * override it to avoid the allocation.</p>
+     * 
+     * @param topic the name of the topic, not null
+     * @param value the published value
+     * @param originNanos the origin stamp of the value
+     */
+    default void onPublishDouble(String topic, double value, long originNanos) {
+        onPublish(topic, new Message(value, originNanos));
+    }
+}
@@ -0,0 +1,66 @@
+package graph;
+
+import java.io.PrintStream;
+
+/**
+ * A {@link PublishListener} that prints one line per published message.
+ * 
+ * <p>This is the publish log that {@link Topic#publish(Message)} used to write
+ * unconditionally. As a listener it runs on the listener thread, so publishers
+ * no longer contend for the output stream.</p>
+ * 
+ * <p>Example usage:
+ * <pre>{@code
+ * TopicManagerSingleton.get().addPublishListener(new PublishLogger(System.out));
+ * }</pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see PublishListener
+ */
+public class PublishLogger implements PublishListener {
+
+    /** The stream to write to */
+    private final PrintStream out;
+
+    /**
+     * Creates a logger writing to the given stream.
+     * 
+     * @param out the target stream, not null
+     */
+    public PublishLogger(PrintStream out) {
+        if (out == null) {
+            throw new NullPointerException("Output stream cannot be null");
+        }
+        this.out = out;
+    }
+
+    /**
+     * Prints the topic and the text of the message. Buffer payloads are
+     * summarized by size rather than decoded.
+     * 
+     * @param topic the name of the topic
+     * @param msg the published message
+     */
+    @Override
+    public void onPublish(String topic, Message msg) {
+        String value = msg.getKind() == Message.Kind.BUFFER
+            ? "<" + msg.byteSize() + " byte buffer>"
+            : msg.asText();
+        out.println("Published to topic '" + topic + "': " + value);
+    }
+
+    /**
+     * Prints the topic and the value without creating a Message.
+     * 
+     * @param topic the name of the topic
+     * @param value the published value
+     * @param originNanos the origin stamp (unused)
+     */
+    @Override
+    public void onPublishDouble(String topic, double value, long originNanos) {
+        out.println("Published to topic '" + topic + "': " + value);
+    }
+}
@@ -0,0 +1,147 @@
+package graph;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link PublishListener} that counts publications per topic and tracks
+ * end-to-end latency.
+ * 
+ * <p>Latency is measured when the listener sees the event, from the origin
+ * stamp of the published value (see {@link Message#getLatencyNanos()}), so it
+ * covers the path from the external input to the publishing agent plus the
+ * listener hand-off.</p>
+ * 
+ * <p>Example usage:
+ * <pre>{@code
+ * PublishMetrics metrics = new PublishMetrics();
+ * TopicManagerSingleton.get().addPublishListener(metrics);
+ * // ...
+ * System.out.println(metrics.getCounts());
+ * }</pre>
+ * 
+ * <p><strong>Thread Safety:</strong> Counters are updated by the listener
+ * thread and may be read from any thread.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see PublishListener
+ */
+public class PublishMetrics implements PublishListener {
+
+    /** Publication count per topic name */
+    private final ConcurrentHashMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    /** Total number of publications seen */
+    private final LongAdder total = new LongAdder();
+
+    /** Sum of observed latencies in nanoseconds */
+    private final LongAdder totalLatencyNanos = new LongAdder();
+
+    /** Largest observed latency in nanoseconds (written by the listener thread only) */
+    private volatile long maxLatencyNanos;
+
+    /**
+     * Counts a message publication.
+     * 
+     * @param topic the name of the topic
+     * @param msg the published message
+     */
+    @Override
+    public void onPublish(String topic, Message msg) {
+        record(topic, msg.getOriginNanos());
+    }
+
+    /**
+     * Counts a numeric publication without creating a Message.
+     * 
+     * @param topic the name of the topic
+     * @param value the published value (unused)
+     * @param originNanos the origin stamp of the value
+     */
+    @Override
+    public void onPublishDouble(String topic, double value, long originNanos) {
+        record(topic, originNanos);
+    }
+
+    /**
+     * Updates counters for one event.
+     * 
+     * @param topic the name of the topic
+     * @param originNanos the origin stamp of the event
+     */
+    private void record(String topic, long originNanos) {
+        counts.computeIfAbsent(topic, t -> new LongAdder()).increment();
+        total.increment();
+        long latency = System.nanoTime() - originNanos;
+        totalLatencyNanos.add(latency);
+        if (latency > maxLatencyNanos) {
+            maxLatencyNanos = latency;
+        }
+    }
+
+    /**
+     * Returns the number of publications seen on a topic.
+     * 
+     * @param topic the name of the topic
+     * @return the count, 0 for unknown topics
+     */
+    public long getCount(String topic) {
+        LongAdder count = counts.get(topic);
+        return count == null ? 0L : count.sum();
+    }
+
+    /**
+     * Returns a snapshot of all per-topic counts, sorted by topic name.
+     * 
+     * @return an unmodifiable map from topic name to count
+     */
+    public Map<String, Long> getCounts() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counts.forEach((topic, count) -> snapshot.put(topic, count.sum()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Returns the total number of publications seen.
+     * 
+     * @return the total count
+     */
+    public long getTotalCount() {
+        return total.sum();
+    }
+
+    /**
+     * Returns the mean end-to-end latency of the publications seen.
+     * 
+     * @return the mean latency in nanoseconds, or 0 if nothing was seen
+     */
+    public double getMeanLatencyNanos() {
+        long n = total.sum();
+        return n == 0 ? 0.0 : (double) totalLatencyNanos.sum() / n;
+    }
+
+    /**
+     * Returns the largest end-to-end latency seen.
+     * 
+     * @return the maximum latency in nanoseconds
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    /**
+     * Clears all counters.
+     */
+    public void reset() {
+        counts.clear();
+        total.reset();
+        totalLatencyNanos.reset();
+        maxLatencyNanos = 0L;
+    }
+}
@@ -0,0 +1,138 @@
+package graph;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tells when everything published so far has finished propagating through
+ * the graph.
+ * 
+ * <p>A single process-wide counter tracks the deliveries that are queued but
+ * not yet processed: it is incremented when a delivery enters a
+ * {@link ParallelAgent} mailbox or the publish listener ring, and decremented
+ * once the agent's callback (or the listeners) for it have returned, or the
+ * delivery has been evicted. Deliveries to inline subscribers happen inside
+ * {@link Topic#publish(Message)} and need no counting.</p>
+ * 
+ * <p>An agent publishes its outputs from within its callback, so downstream
+ * deliveries are counted before the upstream one is released; the counter can
+ * only reach zero when no work is left anywhere. Hence, once a publish call has
+ * returned, {@link #awaitQuiescent(long)} returns exactly when all effects of
+ * that publish have been applied and observed by the publish listeners.</p>
+ * 
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>{@code
+ * tm.getTopic("A").publish(new Message(1.0));
+ * if (Quiescence.awaitQuiescent(5000)) {
+ *     // all downstream topics hold their final values
+ * }
+ * }</pre>
+ * 
+ * <p>The graph is only quiescent if nothing else is publishing at the same
+ * time; with continuous input the wait ends at the first idle moment, or
+ * times out.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see ParallelAgent
+ */
+public final class Quiescence {
+
+    /** Number of deliveries queued or being processed */
+    private static final AtomicLong IN_FLIGHT = new AtomicLong();
+
+    /** Number of threads waiting in {@link #awaitQuiescent(long)} */
+    private static final AtomicLong WAITERS = new AtomicLong();
+
+    /** Guards {@link #IDLE} */
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    /** Signalled when the counter drops to zero while someone is waiting */
+    private static final Condition IDLE = LOCK.newCondition();
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private Quiescence() {
+    }
+
+    /**
+     * Records deliveries that entered a queue.
+     * 
+     * @param n the number of deliveries
+     */
+    static void enter(long n) {
+        IN_FLIGHT.addAndGet(n);
+    }
+
+    /**
+     * Records deliveries that were processed or discarded, waking waiters if
+     * nothing is left in flight.
+     * 
+     * <p>Waiters register before checking the counter, and the counter is
+     * updated before waiters are checked, so a waiter either sees zero itself
+     * or is signalled.</p>
+     * 
+     * @param n the number of deliveries
+     */
+    static void exit(long n) {
+        if (IN_FLIGHT.addAndGet(-n) == 0L && WAITERS.get() > 0L) {
+            LOCK.lock();
+            try {
+                IDLE.signalAll();
+            } finally {
+                LOCK.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of deliveries currently queued or being processed.
+     * 
+     * @return the in-flight count
+     */
+    public static long getInFlight() {
+        return IN_FLIGHT.get();
+    }
+
+    /**
+     * Returns whether no delivery is queued or being processed.
+     * 
+     * @return true if the graph is idle
+     */
+    public static boolean isQuiescent() {
+        return IN_FLIGHT.get() == 0L;
+    }
+
+    /**
+     * Waits until no delivery is queued or being processed.
+     * 
+     * @param timeoutMillis the maximum time to wait
+     * @return true if the graph became idle, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static boolean awaitQuiescent(long timeoutMillis) throws InterruptedException {
+        if (IN_FLIGHT.get() == 0L) {
+            return true;
+        }
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        WAITERS.incrementAndGet();
+        LOCK.lock();
+        try {
+            while (IN_FLIGHT.get() != 0L) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = IDLE.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            LOCK.unlock();
+            WAITERS.decrementAndGet();
+        }
+    }
+}
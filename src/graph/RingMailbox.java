@@ -0,0 +1,464 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Lock-free bounded {@link Mailbox} backed by a preallocated multi-producer,
+ * single-consumer ring.
+ * 
+ * <p>Works like the ring of {@link PublishDispatcher}: each slot carries a
+ * sequence number; a producer claims a slot by advancing the tail with a CAS,
+ * fills the slot's parallel arrays and publishes it by bumping its sequence,
+ * and the consumer takes ready slots in order and hands each back by bumping
+ * the sequence past the ring size. Slots are reused forever, so enqueuing a
+ * numeric value allocates nothing and no wrapper is created per delivery.
+ * Producers never contend on a lock with each other or with the consumer.</p>
+ * 
+ * <p><strong>Waiting:</strong> While the ring is empty the consumer waits as
+ * its {@link WaitStrategy} says. A producer only unparks it if it has actually
+ * parked, which costs one volatile read on the fast path.</p>
+ * 
+ * <p><strong>Overflow:</strong> {@link OverflowPolicy#BLOCK},
+ * {@link OverflowPolicy#BLOCK_TIMEOUT} and {@link OverflowPolicy#DROP_NEWEST}
+ * are supported. A full ring is waited on by spinning and short parks, through
+ * {@link ForkJoinPool#managedBlock} so a blocked {@link AgentScheduler} worker
+ * is compensated. Policies that rewrite queued slots
+ * ({@link OverflowPolicy#DROP_OLDEST}, {@link OverflowPolicy#CONFLATE}) would
+ * need the consumer's cooperation and are only offered by {@link LockingMailbox}.</p>
+ * 
+ * <p>Deliveries are counted in {@link Quiescence} from claim until delivered.
+ * The capacity is rounded up to a power of two.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see WaitStrategy
+ * @see LockingMailbox
+ */
+class RingMailbox implements Mailbox {
+
+    /** Empty polls spent spinning before {@link WaitStrategy#SPIN_THEN_PARK} yields */
+    private static final int SPIN_LIMIT = 200;
+
+    /** Empty polls spent yielding before {@link WaitStrategy#SPIN_THEN_PARK} parks */
+    private static final int YIELD_LIMIT = 20;
+
+    /** How long a producer parks between checks while the ring is full */
+    private static final long FULL_PARK_NANOS = 20_000L;
+
+    /** Slot index mask, capacity - 1 */
+    private final int mask;
+
+    /** Per-slot sequence: equal to the claim index when free, index + 1 when filled */
+    private final AtomicLongArray sequences;
+
+    /** Topic name of each slot */
+    private final String[] topics;
+
+    /** Message of each slot, or null if the slot carries a numeric value */
+    private final Message[] messages;
+
+    /** Numeric value of each slot, meaningful when the message is null */
+    private final double[] values;
+
+    /** Origin stamp of each numeric slot */
+    private final long[] origins;
+
+    /** {@link System#nanoTime()} at which each slot was filled */
+    private final long[] enqueuedAt;
+
+    /** Next index to claim */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Next index to consume; written by the consumer only */
+    private volatile long head;
+
+    /** Consumer-side copy of drained topic names */
+    private final String[] drainedTopics;
+
+    /** Consumer-side copy of drained messages */
+    private final Message[] drainedMessages;
+
+    /** Consumer-side copy of drained numeric values */
+    private final double[] drainedValues;
+
+    /** Consumer-side copy of drained origin stamps */
+    private final long[] drainedOrigins;
+
+    /** Consumer-side copy of drained queue waits */
+    private final long[] drainedWaits;
+
+    /** Reusable list handed to {@link BatchAgent} targets */
+    private final ArrayList<Message> batch = new ArrayList<>();
+
+    /** What to do when a delivery arrives at a full mailbox */
+    private final OverflowPolicy policy;
+
+    /** Maximum wait for {@link OverflowPolicy#BLOCK_TIMEOUT} */
+    private final long timeoutNanos;
+
+    /** How the consumer waits while the ring is empty */
+    private final WaitStrategy waitStrategy;
+
+    /** The consumer thread, recorded when it first parks */
+    private volatile Thread consumer;
+
+    /** Whether the consumer is parked or about to park */
+    private volatile boolean parked;
+
+    /** Number of deliveries that found the mailbox full */
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    /** Number of deliveries lost: rejected or timed out */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /** Number of deliveries whose callback failed, written by the consumer only */
+    private volatile long failedCount;
+
+    /**
+     * Creates a ring mailbox.
+     * 
+     * @param capacity the minimum number of buffered deliveries, must be positive;
+     *                 rounded up to a power of two
+     * @param policy the overflow policy, not null
+     * @param timeoutNanos the maximum wait for {@link OverflowPolicy#BLOCK_TIMEOUT};
+     *                     ignored by other policies
+     * @param waitStrategy how the consumer waits while the ring is empty, not null
+     * @throws IllegalArgumentException if capacity is not positive or above
+     *         2<sup>30</sup>, the timeout is negative, or the policy needs a
+     *         {@link LockingMailbox}
+     */
+    RingMailbox(int capacity, OverflowPolicy policy, long timeoutNanos, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, got: " + capacity);
+        }
+        if (policy == null) {
+            throw new NullPointerException("Overflow policy cannot be null");
+        }
+        if (waitStrategy == null) {
+            throw new NullPointerException("Wait strategy cannot be null");
+        }
+        if (policy == OverflowPolicy.DROP_OLDEST || policy == OverflowPolicy.CONFLATE) {
+            throw new IllegalArgumentException("Overflow policy " + policy + " is not supported by the ring mailbox");
+        }
+        if (timeoutNanos < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative, got: " + timeoutNanos);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.policy = policy;
+        this.timeoutNanos = timeoutNanos;
+        this.waitStrategy = waitStrategy;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.topics = new String[size];
+        this.messages = new Message[size];
+        this.values = new double[size];
+        this.origins = new long[size];
+        this.enqueuedAt = new long[size];
+        this.drainedTopics = new String[size];
+        this.drainedMessages = new Message[size];
+        this.drainedValues = new double[size];
+        this.drainedOrigins = new long[size];
+        this.drainedWaits = new long[size];
+    }
+
+    @Override
+    public boolean put(String topic, Message msg) throws InterruptedException {
+        long index = claim();
+        if (index < 0) {
+            return false;
+        }
+        fill(index, topic, msg.retain(), 0.0, 0L);
+        return true;
+    }
+
+    @Override
+    public boolean putDouble(String topic, double value, long originNanos) throws InterruptedException {
+        long index = claim();
+        if (index < 0) {
+            return false;
+        }
+        fill(index, topic, null, value, originNanos);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>Each message claims its own slot, so messages of concurrent producers
+     * may interleave with the batch.</p>
+     */
+    @Override
+    public int putAll(String topic, List<Message> msgs) throws InterruptedException {
+        int accepted = 0;
+        for (Message msg : msgs) {
+            if (put(topic, msg)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Claims the next free slot, applying the overflow policy while the ring is full.
+     * 
+     * @return the claimed index, or -1 if the delivery is dropped
+     * @throws InterruptedException if interrupted while waiting for space
+     */
+    private long claim() throws InterruptedException {
+        boolean overflowed = false;
+        long deadline = 0L;
+        while (true) {
+            long index = tail.get();
+            long sequence = sequences.get((int) index & mask);
+            if (sequence == index) {
+                if (tail.compareAndSet(index, index + 1)) {
+                    Quiescence.enter(1);
+                    return index;
+                }
+            } else if (sequence < index) {
+                if (!overflowed) {
+                    overflowed = true;
+                    overflowCount.incrementAndGet();
+                    deadline = System.nanoTime() + timeoutNanos;
+                }
+                if (policy == OverflowPolicy.DROP_NEWEST
+                    || (policy == OverflowPolicy.BLOCK_TIMEOUT && System.nanoTime() - deadline >= 0)) {
+                    droppedCount.incrementAndGet();
+                    return -1;
+                }
+                ForkJoinPool.managedBlock(new SpaceBlocker(index,
+                        policy == OverflowPolicy.BLOCK_TIMEOUT ? deadline : Long.MAX_VALUE));
+            }
+        }
+    }
+
+    /**
+     * Fills a claimed slot, makes it visible to the consumer and wakes the
+     * consumer if it is parked.
+     * 
+     * @param index the claimed index
+     * @param topic the publishing topic name
+     * @param msg the retained message, or null for a numeric slot
+     * @param value the numeric value, ignored when msg is not null
+     * @param originNanos the origin stamp, ignored when msg is not null
+     */
+    private void fill(long index, String topic, Message msg, double value, long originNanos) {
+        int slot = (int) index & mask;
+        topics[slot] = topic;
+        messages[slot] = msg;
+        values[slot] = value;
+        origins[slot] = originNanos;
+        enqueuedAt[slot] = System.nanoTime();
+        sequences.set(slot, index + 1);
+        if (parked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>While the ring is empty the calling thread waits according to the
+     * {@link WaitStrategy}.</p>
+     */
+    @Override
+    public int drainTo(Agent target, LongConsumer waits) throws InterruptedException {
+        int idle = 0;
+        while (!isReady(head)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            switch (waitStrategy) {
+                case BUSY_SPIN:
+                    Thread.onSpinWait();
+                    break;
+                case YIELD:
+                    Thread.yield();
+                    break;
+                case SPIN_THEN_PARK:
+                    if (idle < SPIN_LIMIT) {
+                        Thread.onSpinWait();
+                    } else if (idle < SPIN_LIMIT + YIELD_LIMIT) {
+                        Thread.yield();
+                    } else {
+                        park();
+                    }
+                    idle++;
+                    break;
+                default:
+                    park();
+                    break;
+            }
+        }
+        return drainAvailable(target, waits);
+    }
+
+    /**
+     * Parks the consumer until a producer fills the head slot. Producers check
+     * {@link #parked} after publishing a slot, and the consumer checks the
+     * slot after setting it, so a wake-up cannot be missed.
+     */
+    private void park() {
+        consumer = Thread.currentThread();
+        parked = true;
+        if (!isReady(head)) {
+            LockSupport.park(this);
+        }
+        parked = false;
+    }
+
+    /**
+     * Returns whether the slot for the given index has been filled.
+     * 
+     * @param index the index to check
+     * @return true if the slot is ready to be consumed
+     */
+    private boolean isReady(long index) {
+        return sequences.get((int) index & mask) == index + 1;
+    }
+
+    @Override
+    public int drainAvailable(Agent target, LongConsumer waits) {
+        long index = head;
+        int n = 0;
+        long now = System.nanoTime();
+        while (n < drainedTopics.length && isReady(index)) {
+            int slot = (int) index & mask;
+            drainedTopics[n] = topics[slot];
+            drainedMessages[n] = messages[slot];
+            drainedValues[n] = values[slot];
+            drainedOrigins[n] = origins[slot];
+            drainedWaits[n] = now - enqueuedAt[slot];
+            topics[slot] = null;
+            messages[slot] = null;
+            sequences.lazySet(slot, index + drainedTopics.length);
+            index++;
+            n++;
+        }
+        if (n == 0) {
+            return 0;
+        }
+        head = index;
+        try {
+            failedCount += Mailbox.deliverAll(target, drainedTopics, drainedMessages, drainedValues,
+                                              drainedOrigins, n, batch);
+        } finally {
+            for (int i = 0; i < n; i++) {
+                waits.accept(drainedWaits[i]);
+                if (drainedMessages[i] != null) {
+                    drainedMessages[i].release();
+                    drainedMessages[i] = null;
+                }
+                drainedTopics[i] = null;
+            }
+            Quiescence.exit(n);
+        }
+        return n;
+    }
+
+    @Override
+    public int clear() {
+        long index = head;
+        int n = 0;
+        while (isReady(index)) {
+            int slot = (int) index & mask;
+            if (messages[slot] != null) {
+                messages[slot].release();
+                messages[slot] = null;
+            }
+            topics[slot] = null;
+            sequences.lazySet(slot, index + drainedTopics.length);
+            index++;
+            n++;
+        }
+        head = index;
+        Quiescence.exit(n);
+        return n;
+    }
+
+    @Override
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return always 0; the ring does not conflate
+     */
+    @Override
+    public long getConflatedCount() {
+        return 0L;
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>Includes slots that are claimed but still being filled.</p>
+     */
+    @Override
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0L, Math.min(size, drainedTopics.length));
+    }
+
+    /**
+     * Waits for the slot at a claim index to be handed back by the consumer.
+     * Only created when a producer finds the ring full.
+     */
+    private final class SpaceBlocker implements ForkJoinPool.ManagedBlocker {
+
+        /** The claim index that found the ring full */
+        private final long index;
+
+        /** {@link System#nanoTime()} after which to give up */
+        private final long deadline;
+
+        /**
+         * Creates the blocker.
+         * 
+         * @param index the claim index that found the ring full
+         * @param deadline when to give up, or {@link Long#MAX_VALUE} to wait indefinitely
+         */
+        SpaceBlocker(long index, long deadline) {
+            this.index = index;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            return isReleasable();
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return sequences.get((int) index & mask) >= index || tail.get() != index
+                   || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package graph;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference-counted region of a {@link ByteBuffer}, used as the payload of
+ * {@link Message.Kind#BUFFER} messages.
+ * 
+ * <p>Large payloads (images, frames, file blocks) can live off-heap in a direct
+ * or memory-mapped buffer and travel through the graph by reference: neither
+ * {@link Topic#publish(Message)} nor the {@link ParallelAgent} mailbox copies
+ * them. Every subscriber reads through its own read-only {@link #slice()}, so
+ * fan-out readers never disturb each other's position.</p>
+ * 
+ * <p><strong>Lifetime:</strong></p>
+ * <p>A new SharedBuffer holds one reference, owned by its creator. Anything that
+ * keeps the buffer beyond the call that handed it over takes another reference
+ * with {@link #retain()} and gives it back with {@link #release()}. When the
+ * last reference is released the buffer is returned to the {@link BufferPool}
+ * it came from (if any) and must no longer be read.</p>
+ * 
+ * <p>Example usage:
+ * <pre>{@code
+ * BufferPool pool = new BufferPool(1 << 20, 8);
+ * SharedBuffer frame = pool.acquire(size);
+ * readFrameInto(frame.writableView());
+ * 
+ * Message msg = new Message(frame);
+ * topic.publish(msg);   // subscribers read msg.asBuffer()
+ * msg.release();        // drop the publisher's reference
+ * }</pre>
+ * 
+ * <p><strong>Thread Safety:</strong> The reference count is atomic; retain and
+ * release may be called from any thread. Content must be fully written before
+ * the buffer is published.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see BufferPool
+ * @see Message#Message(SharedBuffer)
+ */
+public final class SharedBuffer {
+
+    /** The payload region, position 0 and limit {@link #size()} */
+    private final ByteBuffer content;
+
+    /** The buffer handed back to the pool on final release */
+    private final ByteBuffer root;
+
+    /** The owning pool, or null if the buffer is not recycled */
+    private final BufferPool pool;
+
+    /** Number of outstanding references */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    /**
+     * Creates a shared buffer over the given region.
+     * 
+     * @param content the payload region
+     * @param root the pooled buffer the region was cut from
+     * @param pool the owning pool, or null
+     */
+    SharedBuffer(ByteBuffer content, ByteBuffer root, BufferPool pool) {
+        this.content = content;
+        this.root = root;
+        this.pool = pool;
+    }
+
+    /**
+     * Wraps the remaining bytes of an existing buffer without copying.
+     * 
+     * <p>Use this for memory-mapped files or buffers managed elsewhere; the
+     * wrapped buffer is not recycled on final release. Changes to the given
+     * buffer's position or limit afterwards do not affect the shared region.</p>
+     * 
+     * @param buffer the buffer to share, not null
+     * @return a new shared buffer holding one reference
+     */
+    public static SharedBuffer wrap(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new NullPointerException("Buffer cannot be null");
+        }
+        return new SharedBuffer(buffer.slice(), null, null);
+    }
+
+    /**
+     * Returns the payload size in bytes.
+     * 
+     * @return the number of readable bytes
+     */
+    public int size() {
+        return content.limit();
+    }
+
+    /**
+     * Returns whether the payload lives outside the Java heap.
+     * 
+     * @return true for direct and memory-mapped buffers
+     */
+    public boolean isDirect() {
+        return content.isDirect();
+    }
+
+    /**
+     * Returns a new read-only view of the payload.
+     * 
+     * <p>Each view has its own position and limit, starting at 0 and
+     * {@link #size()}; no bytes are copied.</p>
+     * 
+     * @return a read-only view of the payload
+     * @throws IllegalStateException if the buffer has been released
+     */
+    public ByteBuffer slice() {
+        checkLive();
+        return content.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a writable view of the payload for the creator to fill in.
+     * 
+     * <p>Only valid before the buffer is published; subscribers must use
+     * {@link #slice()}. Read-only wrapped buffers yield a read-only view.</p>
+     * 
+     * @return a view of the payload starting at position 0
+     * @throws IllegalStateException if the buffer has been released
+     */
+    public ByteBuffer writableView() {
+        checkLive();
+        return content.duplicate();
+    }
+
+    /**
+     * Takes an additional reference.
+     * 
+     * @return this buffer
+     * @throws IllegalStateException if the buffer has already been released
+     */
+    public SharedBuffer retain() {
+        int count;
+        do {
+            count = refCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Buffer already released");
+            }
+        } while (!refCount.compareAndSet(count, count + 1));
+        return this;
+    }
+
+    /**
+     * Gives back one reference, recycling the buffer when none are left.
+     * 
+     * @throws IllegalStateException if more references are released than were taken
+     */
+    public void release() {
+        int count = refCount.decrementAndGet();
+        if (count == 0) {
+            if (pool != null) {
+                pool.recycle(root);
+            }
+        } else if (count < 0) {
+            throw new IllegalStateException("Buffer released more often than retained");
+        }
+    }
+
+    /**
+     * Returns the number of outstanding references.
+     * 
+     * @return the reference count, 0 once released
+     */
+    public int refCount() {
+        return Math.max(0, refCount.get());
+    }
+
+    /**
+     * Fails fast on use after release.
+     */
+    private void checkLive() {
+        if (refCount.get() <= 0) {
+            throw new IllegalStateException("Buffer already released");
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package graph;
+
+/**
+ * An agent that takes values out of the graph rather than publishing them
+ * to topics.
+ * 
+ * <p>A sink consumes its input topics and writes what it receives somewhere
+ * else, for example to a file. Sinks may buffer; {@link #flush()} writes out
+ * everything received so far. The publication line of a sink's
+ * configuration block describes where its values go instead of naming
+ * topics.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see SourceAgent
+ */
+public interface SinkAgent extends Agent {
+
+    /**
+     * Writes out every value received so far.
+     * 
+     * @throws java.io.UncheckedIOException if writing fails
+     */
+    void flush();
+}
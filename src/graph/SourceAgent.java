@@ -0,0 +1,41 @@
+package graph;
+
+/**
+ * An agent that brings values into the graph from outside rather than
+ * reacting to topics.
+ * 
+ * <p>A source publishes to its output topics on its own, for example from a
+ * file or a socket. It must not publish before {@link #start()}, so a
+ * configuration can create and subscribe every other agent first;
+ * {@code GenericConfig} starts its sources once the whole graph is in
+ * place. The subscription line of a source's configuration block describes
+ * where its values come from instead of naming topics.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see SinkAgent
+ */
+public interface SourceAgent extends Agent {
+
+    /**
+     * Starts publishing, usually on a thread of the source's own.
+     * 
+     * @throws IllegalStateException if already started or closed
+     */
+    void start();
+
+    /**
+     * Returns whether the values the source publishes together share a
+     * correlation id (see {@link Message#getCorrelationId()}), so that
+     * multi-input agents must join them per id rather than pair the latest
+     * values. An engine that ignores correlation ids must not run the
+     * agents such a source feeds.
+     * 
+     * @return true if the source correlates its values; false by default
+     */
+    default boolean isCorrelating() {
+        return false;
+    }
+}
@@ -2,8 +2,7 @@ package graph;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
-
-import servlets.TopicDisplayer;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a communication channel for message passing between agents in a computational graph.
@@ -19,7 +18,11 @@ import servlets.TopicDisplayer;
  *   <li><strong>Many-to-Many:</strong> Multiple publishers can send to multiple subscribers</li>
  *   <li><strong>Immediate Delivery:</strong> Messages are delivered synchronously to all subscribers</li>
  *   <li><strong>Duplicate Prevention:</strong> Agents cannot subscribe or publish multiple times</li>
- *   <li><strong>Visualization Integration:</strong> Automatically updates UI displays</li>
+ *   <li><strong>History:</strong> Optional lock-free ring of recent values (see {@link TopicHistory})</li>
+ *   <li><strong>Publish Listeners:</strong> Optional, asynchronous observers such as the UI
+ *       last-value cache (see {@link PublishListener})</li>
+ *   <li><strong>Incremental:</strong> Optionally drops numbers equal to the previous one
+ *       (see {@link #setIncremental(boolean)})</li>
  * </ul>
  * 
  * <p><strong>Computational Graph Integration:</strong></p>
@@ -33,9 +36,12 @@ import servlets.TopicDisplayer;
  *   <li><strong>Broadcast:</strong> Data distributed to all interested parties</li>
  * </ul>
  * 
- * <p><strong>Error Handling:</strong></p>
- * <p>The Topic provides graceful error handling for UI integration while ensuring
- * core message delivery continues even if visualization updates fail.</p>
+ * <p><strong>Publish Listeners:</strong></p>
+ * <p>Topics created by the {@link TopicManagerSingleton.TopicManager} report
+ * every publication to the manager's {@link PublishListener}s through a
+ * lock-free ring, off the publishing thread. Listener failures never affect
+ * message delivery, and with no listener registered publishing costs nothing
+ * beyond the subscriber calls.</p>
  * 
  * @author Ariella Noy
  * @version 1.0
@@ -44,7 +50,7 @@ import servlets.TopicDisplayer;
  * @see Agent
  * @see Message
  * @see TopicManagerSingleton
- * @see servlets.TopicDisplayer
+ * @see PublishListener
  */
 public class Topic {
 	
@@ -57,6 +63,24 @@ public class Topic {
 	/** Thread-safe list of agents registered as publishers to this topic */
 	public final List<Agent> pubs;
 	
+	/** Dispatcher of the owning topic manager, or null for standalone topics */
+	private final PublishDispatcher dispatcher;
+	
+	/** Recent publications, or null if history is disabled */
+	private volatile TopicHistory history;
+	
+	/** Bits of a NaN that {@link Double#doubleToLongBits(double)} never returns */
+	private static final long NO_VALUE = 0x7ff0000000000001L;
+	
+	/** Whether numbers equal to the previous one are dropped */
+	private volatile boolean incremental;
+	
+	/** Bits of the previous number while incremental, or {@link #NO_VALUE} */
+	private final AtomicLong lastBits = new AtomicLong(NO_VALUE);
+	
+	/** Number of publications dropped as unchanged */
+	private final AtomicLong suppressed = new AtomicLong();
+	
 	/**
 	 * Creates a new Topic with the specified name.
 	 * 
@@ -91,7 +115,19 @@ public class Topic {
 	 * @see CopyOnWriteArrayList
 	 */
 	public Topic(String name) {
+		this(name, null);
+	}
+	
+	/**
+	 * Creates a topic that reports publications to the given dispatcher.
+	 * Used by {@link TopicManagerSingleton.TopicManager}.
+	 * 
+	 * @param name the unique identifier for this topic
+	 * @param dispatcher the publish listener dispatcher, or null for none
+	 */
+	Topic(String name, PublishDispatcher dispatcher) {
 		this.name = name;
+		this.dispatcher = dispatcher;
 		subs = new CopyOnWriteArrayList<>();
 		pubs = new CopyOnWriteArrayList<>();
 	}
@@ -122,7 +158,7 @@ public class Topic {
 	 *             to handle callback invocations. Cannot be null.
 	 * 
 	 * @throws NullPointerException if agent is null (from List.contains/add)
-	 *
+	 * 
 	 * 
 	 * @see #unsubscribe(Agent)
 	 * @see #publish(Message)
@@ -201,8 +237,7 @@ public class Topic {
 	 * 
 	 * <p><strong>Message Delivery Process:</strong></p>
 	 * <ol>
-	 *   <li>Update the topic displayer for UI visualization</li>
-	 *   <li>Log the message publication for debugging</li>
+	 *   <li>Hand the message to the publish listeners, if any are registered</li>
 	 *   <li>Iterate through all current subscribers</li>
 	 *   <li>Call each subscriber's callback method with topic name and message</li>
 	 *   <li>Continue delivery even if individual callbacks fail</li>
@@ -218,7 +253,7 @@ public class Topic {
 	 * 
 	 * <p><strong>Error Handling:</strong></p>
 	 * <ul>
-	 *   <li><strong>UI Update Failures:</strong> Logged but don't prevent message delivery</li>
+	 *   <li><strong>Listener Failures:</strong> Logged on the listener thread; never affect delivery</li>
 	 *   <li><strong>Subscriber Exceptions:</strong> Currently propagate to caller (implementation detail)</li>
 	 *   <li><strong>Null Messages:</strong> Passed through to subscribers (subscribers must handle)</li>
 	 * </ul>
@@ -231,11 +266,11 @@ public class Topic {
 	 *   <li><strong>Thread Safe:</strong> Can be called from multiple threads concurrently</li>
 	 * </ul>
 	 * 
-	 * <p><strong>Integration with Visualization:</strong></p>
-	 * <p>The method automatically updates the {@link servlets.TopicDisplayer}
-	 * to maintain current topic values for web-based monitoring and debugging.
-	 * This enables real-time visualization of data flowing through the 
-	 * computational graph.</p>
+	 * <p><strong>Publish Listeners:</strong></p>
+	 * <p>When listeners are registered with the topic manager, the message is
+	 * recorded in their ring before delivery (buffer messages are retained
+	 * until the listeners have seen them). Monitoring such as the web
+	 * interface's last-value cache is implemented this way.</p>
 	 * 
 	 * @param msg the message to publish to all subscribers. While null messages
 	 *           are technically allowed, subscribers should be prepared to handle
@@ -260,7 +295,7 @@ public class Topic {
 	 * sensorTopic.publish(tempReading);
 	 * 
 	 * // This results in:
-	 * // 1. UI updated with latest temperature value
+	 * // 1. Publish listeners (if any) notified asynchronously
 	 * // 2. display.callback("Temperature", tempReading) 
 	 * // 3. logger.callback("Temperature", tempReading)
 	 * // 4. alerter.callback("Temperature", tempReading)
@@ -271,20 +306,280 @@ public class Topic {
 	 * }</pre>
 	 * 
 	 * @see Agent#callback(String, Message)
-	 * @see servlets.TopicDisplayer#updateLastMessage(String, Message)
+	 * @see PublishListener
 	 * @see Message
 	 */
 	public void publish(Message msg) {
-		try {
-            TopicDisplayer.updateLastMessage(name, msg);
-            System.out.println("Updated topic displayer for topic '" + name + "' with value: " + msg.asText);
-        } catch (Exception e) {
-            System.err.println("Error updating topic displayer: " + e.getMessage());
-        }
+		if (incremental && !msg.isCorrelated() && !Double.isNaN(msg.asDouble()) && isRepeat(msg.asDouble())) {
+			return;
+		}
+		if (dispatcher != null && dispatcher.isActive()) {
+			dispatcher.offer(name, msg);
+		}
+		TopicHistory h = history;
+		if (h != null) {
+			h.record(msg);
+		}
 		for(Agent agent : subs) {
 			agent.callback(name, msg);
 		}
-	}	
+	}
+
+	/**
+	 * Publishes several messages to all subscribed agents in one pass.
+	 * 
+	 * <p>Subscribers implementing {@link BatchAgent} receive the whole list
+	 * through a single {@link BatchAgent#callbackBatch(String, List)} call; a
+	 * {@link ParallelAgent} subscriber enqueues it under one lock acquisition.
+	 * Any other subscriber receives the messages one by one, in order.</p>
+	 * 
+	 * <p>Unlike calling {@link #publish(Message)} in a loop, each subscriber
+	 * sees the complete batch before the next subscriber sees any of it.
+	 * Publish listeners see every message individually.</p>
+	 * 
+	 * @param msgs the messages to publish, in order; not null, elements not null
+	 * 
+	 * @example
+	 * <pre>{@code
+	 * List<Message> readings = new ArrayList<>();
+	 * for (double v : samples) {
+	 *     readings.add(new Message(v));
+	 * }
+	 * tm.getTopic("Samples").publishBatch(readings);
+	 * }</pre>
+	 * 
+	 * @see BatchAgent
+	 * @see #publish(Message)
+	 */
+	public void publishBatch(List<Message> msgs) {
+		if (msgs.isEmpty()) {
+			return;
+		}
+		if (dispatcher != null && dispatcher.isActive()) {
+			for (Message msg : msgs) {
+				dispatcher.offer(name, msg);
+			}
+		}
+		TopicHistory h = history;
+		if (h != null) {
+			for (Message msg : msgs) {
+				h.record(msg);
+			}
+		}
+		for(Agent agent : subs) {
+			if (agent instanceof BatchAgent) {
+				((BatchAgent) agent).callbackBatch(name, msgs);
+			} else {
+				for (Message msg : msgs) {
+					agent.callback(name, msg);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Publishes a numeric value to all subscribed agents.
+	 * 
+	 * <p>This is the primitive fast lane for topics that carry doubles.
+	 * Subscribers implementing {@link NumericAgent} receive the value through
+	 * {@link NumericAgent#callbackDouble(String, double, long)} without any
+	 * {@link Message} being allocated for them. Any other subscriber receives
+	 * a regular message carrying the value, created at most once per call and
+	 * shared between those subscribers.</p>
+	 * 
+	 * <p>Delivery order, snapshot semantics and listener handling are the same as
+	 * for {@link #publish(Message)}. The value is treated as a new input to the
+	 * graph: its origin stamp is the current {@link System#nanoTime()}.</p>
+	 * 
+	 * @param value the value to publish to all subscribers
+	 * 
+	 * @example
+	 * <pre>{@code
+	 * Topic sum = tm.getTopic("Sum");
+	 * sum.publishDouble(8.0); // NumericAgent subscribers get 8.0 as a primitive
+	 * }</pre>
+	 * 
+	 * @see NumericAgent
+	 * @see #publish(Message)
+	 */
+	public void publishDouble(double value) {
+		publishDouble(value, System.nanoTime());
+	}
+
+	/**
+	 * Publishes a numeric value derived from an earlier input.
+	 * 
+	 * <p>Same as {@link #publishDouble(double)}, but propagates the given
+	 * origin stamp so end-to-end latency stays measurable across hops.</p>
+	 * 
+	 * @param value the value to publish to all subscribers
+	 * @param originNanos the origin stamp of the input the value derives from
+	 * 
+	 * @see Message#getOriginNanos()
+	 */
+	public void publishDouble(double value, long originNanos) {
+		if (incremental && isRepeat(value)) {
+			return;
+		}
+		if (dispatcher != null && dispatcher.isActive()) {
+			dispatcher.offerDouble(name, value, originNanos);
+		}
+		TopicHistory h = history;
+		if (h != null) {
+			h.recordDouble(value);
+		}
+		Message msg = null;
+		for(Agent agent : subs) {
+			if (agent instanceof NumericAgent) {
+				((NumericAgent) agent).callbackDouble(name, value, originNanos);
+			} else {
+				if (msg == null) {
+					msg = new Message(value, originNanos);
+				}
+				agent.callback(name, msg);
+			}
+		}
+	}
+
+	/**
+	 * Publishes a numeric value that belongs to one evaluation.
+	 * 
+	 * <p>Uncorrelated values take the primitive lane of
+	 * {@link #publishDouble(double, long)}. Correlated values are published as
+	 * a {@link Message} carrying the id, so it survives mailboxes and reaches
+	 * every subscriber through {@link Agent#callback(String, Message)}.</p>
+	 * 
+	 * @param value the value to publish to all subscribers
+	 * @param originNanos the origin stamp of the input the value derives from
+	 * @param correlationId the evaluation the value belongs to, or
+	 *                      {@link Message#NO_CORRELATION}
+	 * 
+	 * @see Message#getCorrelationId()
+	 */
+	public void publishDouble(double value, long originNanos, long correlationId) {
+		if (correlationId == Message.NO_CORRELATION) {
+			publishDouble(value, originNanos);
+		} else {
+			publish(new Message(value, originNanos, correlationId));
+		}
+	}
+
+	/**
+	 * Records a number and tells whether it equals the previous one.
+	 * 
+	 * @param value the number being published
+	 * @return true if the publication should be dropped
+	 */
+	private boolean isRepeat(double value) {
+		long bits = Double.doubleToLongBits(value);
+		if (lastBits.getAndSet(bits) != bits) {
+			return false;
+		}
+		suppressed.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Makes this topic drop numbers equal to the previous number published
+	 * to it.
+	 * 
+	 * <p>While incremental, a number published through
+	 * {@link #publishDouble(double, long)} or {@link #publish(Message)} that
+	 * is identical to the previous one reaches no subscriber, listener or
+	 * history, so an unchanged input or result stops at this topic instead
+	 * of re-triggering everything downstream. The first number after this
+	 * call is always delivered. Non-numeric and correlated messages, and
+	 * batches, are always delivered.</p>
+	 * 
+	 * @param incremental true to drop unchanged numbers, false to deliver
+	 *                    every publication
+	 * 
+	 * @see #getSuppressedCount()
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+		lastBits.set(NO_VALUE);
+	}
+	
+	/**
+	 * Returns whether this topic drops numbers equal to the previous one.
+	 * 
+	 * @return true if incremental
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+	
+	/**
+	 * Returns the number of publications dropped as unchanged.
+	 * 
+	 * @return the count since the topic was created
+	 */
+	public long getSuppressedCount() {
+		return suppressed.get();
+	}
+
+	/**
+	 * Starts keeping the most recent publications of this topic.
+	 * 
+	 * <p>Replaces any existing history; sequence numbers restart at 0.
+	 * Recording is lock-free and, for numbers, allocation-free; see
+	 * {@link TopicHistory}.</p>
+	 * 
+	 * @param capacity the number of publications to keep (rounded up to a
+	 *                 power of two), or 0 to disable history
+	 * @throws IllegalArgumentException if capacity is negative or too large
+	 * 
+	 * @see #getHistory()
+	 */
+	public void enableHistory(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("History capacity cannot be negative, got: " + capacity);
+		}
+		history = capacity == 0 ? null : new TopicHistory(capacity);
+	}
+	
+	/**
+	 * Returns the recent publications of this topic.
+	 * 
+	 * @return the history, or null if history is disabled
+	 * 
+	 * @see #enableHistory(int)
+	 */
+	public TopicHistory getHistory() {
+		return history;
+	}
+
+	/**
+	 * Returns whether anything would see a publication to this topic.
+	 * 
+	 * <p>Lets an engine that computes a topic's values internally skip
+	 * publishing them while nobody looks: the topic is observed if it has a
+	 * subscriber, keeps a history, or belongs to a topic manager with a
+	 * {@link PublishListener} registered.</p>
+	 * 
+	 * @return true if a publication would reach a subscriber, the history or
+	 *         a listener
+	 */
+	public boolean isObserved() {
+		return !subs.isEmpty() || history != null || (dispatcher != null && dispatcher.isActive());
+	}
+
+	/**
+	 * Returns whether anything other than the given agent would see a
+	 * publication to this topic.
+	 * 
+	 * <p>Like {@link #isObserved()}, for an engine that subscribes to a topic
+	 * it also computes, and so must not count itself.</p>
+	 * 
+	 * @param self the subscriber to leave out
+	 * @return true if a publication would reach another subscriber, the
+	 *         history or a listener
+	 */
+	public boolean isObservedBesides(Agent self) {
+		int others = subs.size() - (subs.contains(self) ? 1 : 0);
+		return others > 0 || history != null || (dispatcher != null && dispatcher.isActive());
+	}
 
 	/**
 	 * Registers an agent as a publisher for this topic.
@@ -0,0 +1,290 @@
+package graph;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-capacity ring of the most recent values published to a {@link Topic}.
+ * 
+ * <p>Every publication gets a sequence number, starting at 0. The ring keeps the
+ * last {@link #getCapacity()} of them, so a dashboard can ask for "the last N
+ * values" or, on every poll, for "everything since the sequence I saw last"
+ * and receive only what is new.</p>
+ * 
+ * <p><strong>Storage:</strong></p>
+ * <p>All slots are preallocated. Numeric values (double and long messages,
+ * text that parses as a number, and everything published through
+ * {@link Topic#publishDouble(double, long)}) are kept in a primitive
+ * {@code double[]} with no per-value allocation; other messages keep a
+ * reference in a parallel array. Buffer messages are recorded
+ * as a short text summary, since their buffer is recycled once released.</p>
+ * 
+ * <p><strong>Thread Safety:</strong></p>
+ * <p>Recording never takes a lock. A publisher claims a sequence with an atomic
+ * increment and writes its slot under a per-slot stamp (a seqlock): the stamp is
+ * invalidated before and set to the sequence after the write. Readers check the
+ * stamp before and after copying a slot and skip entries that were overwritten
+ * in the meantime, so a reader never sees a torn entry and never blocks
+ * publishers. A read stops at a slot whose write has not completed yet.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see Topic#enableHistory(int)
+ */
+public class TopicHistory {
+
+    /**
+     * One recorded publication.
+     */
+    public static final class Entry {
+
+        /** The publication's sequence number */
+        private final long sequence;
+
+        /** {@link System#nanoTime()} when the value was recorded */
+        private final long recordedNanos;
+
+        /** The numeric value, NaN for non-numeric entries */
+        private final double value;
+
+        /** The message of a non-numeric entry, null for numeric entries */
+        private final Message message;
+
+        /**
+         * Creates an entry.
+         * 
+         * @param sequence the sequence number
+         * @param recordedNanos the monotonic record time
+         * @param value the numeric value
+         * @param message the message, or null for a numeric entry
+         */
+        Entry(long sequence, long recordedNanos, double value, Message message) {
+            this.sequence = sequence;
+            this.recordedNanos = recordedNanos;
+            this.value = value;
+            this.message = message;
+        }
+
+        /**
+         * Returns the sequence number of this publication.
+         * 
+         * @return the sequence, starting at 0 for a topic's first publication
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Returns the wall-clock time at which the value was recorded.
+         * 
+         * @return epoch milliseconds
+         */
+        public long getTimeMillis() {
+            return Message.toWallMillis(recordedNanos);
+        }
+
+        /**
+         * Returns whether this entry holds a number.
+         * 
+         * @return true for numeric entries
+         */
+        public boolean isNumeric() {
+            return message == null;
+        }
+
+        /**
+         * Returns the numeric value.
+         * 
+         * @return the value, or NaN for non-numeric entries
+         */
+        public double getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the value as text.
+         * 
+         * @return the message text, or the number formatted as by {@link Double#toString(double)}
+         */
+        public String asText() {
+            return message == null ? Double.toString(value) : message.asText();
+        }
+    }
+
+    /** Slot index mask, capacity - 1 */
+    private final int mask;
+
+    /** Per-slot stamp: the sequence stored in the slot, or -1 while it is written */
+    private final AtomicLongArray stamps;
+
+    /** Record time of each slot */
+    private final long[] times;
+
+    /** Numeric value of each slot */
+    private final double[] values;
+
+    /** Message of each non-numeric slot, null for numeric slots */
+    private final Message[] messages;
+
+    /** Next sequence to hand out */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * Creates an empty history.
+     * 
+     * @param capacity the number of values to keep; rounded up to a power of two
+     * @throws IllegalArgumentException if capacity is not positive or too large
+     */
+    public TopicHistory(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("History capacity out of range: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.stamps = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            stamps.set(i, -1L);
+        }
+        this.times = new long[size];
+        this.values = new double[size];
+        this.messages = new Message[size];
+    }
+
+    /**
+     * Returns the number of values kept.
+     * 
+     * @return the ring size
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the sequence number of the latest publication.
+     * 
+     * @return the latest sequence, or -1 if nothing was recorded yet
+     */
+    public long getLastSequence() {
+        return next.get() - 1;
+    }
+
+    /**
+     * Records a published message.
+     * 
+     * @param msg the message, not null
+     */
+    void record(Message msg) {
+        switch (msg.getKind()) {
+            case DOUBLE:
+            case LONG:
+                write(msg.asDouble(), null);
+                break;
+            case BUFFER:
+                write(Double.NaN, new Message("<" + msg.byteSize() + " byte buffer>", msg.getOriginNanos()));
+                break;
+            default:
+                double value = msg.asDouble();
+                if (Double.isNaN(value)) {
+                    write(Double.NaN, msg);
+                } else {
+                    write(value, null);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Records a published number without allocating.
+     * 
+     * @param value the value
+     */
+    void recordDouble(double value) {
+        write(value, null);
+    }
+
+    /**
+     * Claims the next sequence and writes its slot under the slot stamp.
+     * 
+     * @param value the numeric value
+     * @param msg the message of a non-numeric entry, or null
+     */
+    private void write(double value, Message msg) {
+        long seq = next.getAndIncrement();
+        int slot = (int) seq & mask;
+        stamps.set(slot, -1L);
+        VarHandle.storeStoreFence();
+        times[slot] = System.nanoTime();
+        values[slot] = value;
+        messages[slot] = msg;
+        stamps.set(slot, seq);
+    }
+
+    /**
+     * Returns the last {@code n} recorded publications, oldest first.
+     * 
+     * @param n the maximum number of entries
+     * @return up to n entries; fewer if fewer are retained
+     */
+    public List<Entry> last(int n) {
+        long end = next.get();
+        long from = Math.max(0L, end - Math.max(0, Math.min(n, getCapacity())));
+        return read(from, end);
+    }
+
+    /**
+     * Returns every retained publication with a sequence greater than {@code seq}.
+     * 
+     * <p>Pass -1 to read the whole ring, and afterwards the sequence of the
+     * last entry received; entries that already dropped out of the ring are
+     * silently skipped. A sequence at or beyond the newest one, up to
+     * {@link Long#MAX_VALUE}, returns nothing.</p>
+     * 
+     * @param seq the last sequence the caller has seen
+     * @return the newer entries, oldest first
+     */
+    public List<Entry> since(long seq) {
+        long end = next.get();
+        // Clamp first, so seq + 1 cannot overflow
+        long from = Math.max(Math.min(seq, end - 1) + 1, end - getCapacity());
+        return read(Math.max(0L, from), end);
+    }
+
+    /**
+     * Copies a sequence range. Slots overwritten by newer publications are
+     * skipped; the copy stops at the first slot that is still being written,
+     * so a caller resuming from the last returned sequence never misses it.
+     * 
+     * @param from the first sequence, inclusive
+     * @param end the last sequence, exclusive
+     * @return the consistent entries of the range
+     */
+    private List<Entry> read(long from, long end) {
+        List<Entry> result = new ArrayList<>((int) Math.max(0L, end - from));
+        for (long seq = from; seq < end; seq++) {
+            int slot = (int) seq & mask;
+            long stamp = stamps.get(slot);
+            if (stamp < seq) {
+                break;
+            }
+            if (stamp > seq) {
+                continue;
+            }
+            long time = times[slot];
+            double value = values[slot];
+            Message msg = messages[slot];
+            VarHandle.loadLoadFence();
+            if (stamps.get(slot) == seq) {
+                result.add(new Entry(seq, time, value, msg));
+            }
+        }
+        return result;
+    }
+}
@@ -46,6 +46,12 @@ public class TopicManagerSingleton {
 		/** Thread-safe map storing all topics by name */
 		private final ConcurrentHashMap<String, Topic> topics;
 		
+		/** Delivers publish events of all managed topics to the registered listeners */
+		private final PublishDispatcher dispatcher = new PublishDispatcher(PublishDispatcher.DEFAULT_CAPACITY);
+		
+		/** History capacity applied to every topic, 0 if history is disabled */
+		private volatile int historyCapacity;
+		
 		/** The singleton instance of TopicManager */
 		private static final TopicManager instance = new TopicManager();
 
@@ -75,7 +81,31 @@ public class TopicManagerSingleton {
 		 * }</pre>
 		 */
 		public Topic getTopic(String name) {
-			return topics.computeIfAbsent(name, Topic::new);
+			return topics.computeIfAbsent(name, this::newTopic);
+		}
+		
+		/**
+		 * Looks up an existing topic without creating it.
+		 * 
+		 * @param name the topic name
+		 * @return the topic, or null if no topic has that name
+		 */
+		public Topic findTopic(String name) {
+			return topics.get(name);
+		}
+		
+		/**
+		 * Creates a managed topic with the current history setting.
+		 * 
+		 * @param name the topic name
+		 * @return the new topic
+		 */
+		private Topic newTopic(String name) {
+			Topic topic = new Topic(name, dispatcher);
+			if (historyCapacity > 0) {
+				topic.enableHistory(historyCapacity);
+			}
+			return topic;
 		}
 		
 		/**
@@ -95,7 +125,73 @@ public class TopicManagerSingleton {
 		 */
 		public void clear(){
 			topics.clear();
-		}		
+		}
+		
+		/**
+		 * Sets the history capacity of every current and future topic.
+		 * 
+		 * <p>Existing histories are replaced (and restart at sequence 0).</p>
+		 * 
+		 * @param capacity the number of publications each topic keeps, or 0
+		 *                 to disable history
+		 * @throws IllegalArgumentException if capacity is negative or too large
+		 * 
+		 * @see Topic#enableHistory(int)
+		 */
+		public void setHistoryCapacity(int capacity) {
+			if (capacity < 0) {
+				throw new IllegalArgumentException("History capacity cannot be negative, got: " + capacity);
+			}
+			historyCapacity = capacity;
+			for (Topic topic : topics.values()) {
+				topic.enableHistory(capacity);
+			}
+		}
+		
+		/**
+		 * Returns the history capacity applied to topics.
+		 * 
+		 * @return the capacity, 0 if history is disabled
+		 */
+		public int getHistoryCapacity() {
+			return historyCapacity;
+		}
+		
+		/**
+		 * Registers a listener for publications on all topics of this manager.
+		 * 
+		 * <p>Listeners are called asynchronously on a single background thread,
+		 * in publish order; see {@link PublishListener}. They survive
+		 * {@link #clear()}, so they are typically registered once at startup.
+		 * Registering the same listener twice has no effect.</p>
+		 * 
+		 * @param listener the listener to add, not null
+		 * @throws NullPointerException if listener is null
+		 */
+		public void addPublishListener(PublishListener listener) {
+			dispatcher.addListener(listener);
+		}
+		
+		/**
+		 * Removes a publish listener. Once the last listener is removed,
+		 * publishing no longer records events.
+		 * 
+		 * @param listener the listener to remove
+		 */
+		public void removePublishListener(PublishListener listener) {
+			dispatcher.removeListener(listener);
+		}
+		
+		/**
+		 * Returns the number of publish events dropped because the listeners
+		 * fell a full ring behind and a newer event of the same topic
+		 * replaced them.
+		 * 
+		 * @return the drop count since startup
+		 */
+		public long getDroppedPublishEvents() {
+			return dispatcher.getDroppedCount();
+		}
 	}
 		
 	/**
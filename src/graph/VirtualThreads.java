@@ -0,0 +1,99 @@
+package graph;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads on runtimes that have them.
+ * 
+ * <p>Virtual threads are final in Java 21, while this project still builds
+ * for Java 17. They are therefore looked up reflectively once: on Java 21 and
+ * later {@link #isAvailable()} is true and the factories below create virtual
+ * threads; on older runtimes the callers fall back to platform threads.</p>
+ * 
+ * <p>Blocking code running on a virtual thread (a {@link ParallelAgent} waiting
+ * on its mailbox, an HTTP handler waiting on a socket) parks cheaply instead of
+ * holding an OS thread, so agents and connections can scale to the tens of
+ * thousands without being rewritten as asynchronous code.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see ParallelAgent.Mode#VIRTUAL
+ * @see server.MyHTTPServer
+ */
+public final class VirtualThreads {
+
+    /** Virtual thread factory, or null if the runtime has no virtual threads */
+    private static final ThreadFactory FACTORY = lookupFactory();
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private VirtualThreads() {
+    }
+
+    /**
+     * Looks up {@code Thread.ofVirtual().factory()}.
+     * 
+     * @return the factory, or null if unavailable
+     */
+    private static ThreadFactory lookupFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether the runtime supports virtual threads.
+     * 
+     * @return true on Java 21 and later
+     */
+    public static boolean isAvailable() {
+        return FACTORY != null;
+    }
+
+    /**
+     * Creates an unstarted thread, virtual if available and platform otherwise.
+     * 
+     * @param name the thread name
+     * @param task the task to run
+     * @return the new thread; platform threads are daemons
+     */
+    public static Thread newThread(String name, Runnable task) {
+        Thread thread;
+        if (FACTORY != null) {
+            thread = FACTORY.newThread(task);
+        } else {
+            thread = new Thread(task);
+            thread.setDaemon(true);
+        }
+        thread.setName(name);
+        return thread;
+    }
+
+    /**
+     * Creates an executor that runs every task on a new virtual thread.
+     * 
+     * @return a thread-per-task executor, or null if virtual threads are unavailable
+     */
+    public static ExecutorService newThreadPerTaskExecutor() {
+        if (FACTORY == null) {
+            return null;
+        }
+        try {
+            Method create = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) create.invoke(null, FACTORY);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual thread executor unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package graph;
+
+/**
+ * How the processing thread of a {@link ParallelAgent} with a lock-free ring
+ * mailbox waits for deliveries while the mailbox is empty.
+ * 
+ * <p>Choosing a strategy that wakes up sooner lowers handoff latency but costs
+ * CPU while the agent is idle. Producers only pay for a wake-up when the
+ * consumer has actually parked.</p>
+ * 
+ * <p><strong>Choosing a Strategy:</strong></p>
+ * <ul>
+ *   <li><strong>Many mostly idle agents:</strong> {@link #PARK}</li>
+ *   <li><strong>General purpose:</strong> {@link #SPIN_THEN_PARK}</li>
+ *   <li><strong>Latency-sensitive, cores to spare:</strong> {@link #YIELD}</li>
+ *   <li><strong>Latency-critical, one dedicated core per agent:</strong> {@link #BUSY_SPIN}</li>
+ * </ul>
+ * 
+ * <p>Strategies only apply to agents with their own thread; scheduled agents
+ * never wait on their mailbox.</p>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see ParallelAgent#create(Agent, int, OverflowPolicy, long, ParallelAgent.Mode, WaitStrategy)
+ */
+public enum WaitStrategy {
+
+    /** Park immediately and let the next producer unpark the thread */
+    PARK,
+
+    /** Call {@link Thread#yield()} in a loop; never parks */
+    YIELD,
+
+    /** Spin briefly, then yield a few times, then park */
+    SPIN_THEN_PARK,
+
+    /** Spin with {@link Thread#onSpinWait()}; never yields or parks */
+    BUSY_SPIN
+}
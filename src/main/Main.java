@@ -1,10 +1,15 @@
 package main;
 
+import graph.PublishLogger;
+import graph.TopicManagerSingleton;
+import graph.TopicManagerSingleton.TopicManager;
 import server.HTTPServer;
 import server.MyHTTPServer;
+import servlets.BatchServlet;
 import servlets.ConfLoader;
 import servlets.HtmlLoader;
 import servlets.TopicDisplayer;
+import servlets.TopicHistoryServlet;
 
 
 import java.io.FileWriter;
@@ -20,12 +25,23 @@ public class Main {
         System.out.println("Server will be available at: http://localhost:8080/app/index.html");
         System.out.println("Press Enter to stop the server.");
         
+        // Keep the web view's last values and recent history; log publications on request
+        TopicManager tm = TopicManagerSingleton.get();
+        tm.addPublishListener(TopicDisplayer::updateLastMessage);
+        if (Boolean.getBoolean("graph.publish.log")) {
+            tm.addPublishListener(new PublishLogger(System.out));
+        }
+        tm.setHistoryCapacity(Integer.getInteger("graph.history.capacity", 256));
+        
         // Create HTTP server
-        HTTPServer server = new MyHTTPServer(8080, 5);
+        HTTPServer server = new MyHTTPServer(8080, 5, Boolean.getBoolean("graph.http.virtual"));
         
         //Add servlets
         server.addServlet("GET", "/publish", new TopicDisplayer());
-        server.addServlet("POST", "/upload", new ConfLoader());
+        server.addServlet("GET", "/history", new TopicHistoryServlet());
+        ConfLoader loader = new ConfLoader();
+        server.addServlet("POST", "/upload", loader);
+        server.addServlet("POST", "/batch", new BatchServlet(loader));
         server.addServlet("GET", "/app/", new HtmlLoader("html_files"));
         
         // Start server
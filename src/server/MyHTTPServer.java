@@ -1,6 +1,7 @@
 package server;
 
 import server.RequestParser.RequestInfo;
+import graph.VirtualThreads;
 import servlets.Servlet;
 
 import java.io.*;
@@ -14,6 +15,11 @@ import java.util.concurrent.*;
  * based on HTTP method (GET, POST, DELETE) and URI patterns. It uses a thread pool to
  * handle multiple concurrent connections.</p>
  * 
+ * <p>With {@code virtualThreads} enabled, each connection gets its own virtual
+ * thread instead of waiting for a pool slot, so slow clients and blocking
+ * servlets no longer cap concurrency at {@code nThreads}. On runtimes without
+ * virtual threads the fixed pool is used.</p>
+ * 
  * <p><strong>Usage Example:</strong></p>
  * <pre>{@code
  * MyHTTPServer server = new MyHTTPServer(8080, 10);
@@ -39,6 +45,9 @@ public class MyHTTPServer extends Thread implements HTTPServer{
     /** The number of threads in the thread pool for handling requests */
     private final int nThreads;
     
+    /** Whether to handle each connection on its own virtual thread */
+    private final boolean virtualThreads;
+    
     /** The server socket that accepts incoming connections */
     private ServerSocket serverSocket;
     
@@ -64,8 +73,22 @@ public class MyHTTPServer extends Thread implements HTTPServer{
      * @param nThreads the max number of threads in the pool for handling requests
      */
     public MyHTTPServer(int port, int nThreads){
+        this(port, nThreads, false);
+    }
+
+    /**
+     * Creates a new HTTP server, optionally handling connections on virtual threads.
+     * 
+     * @param port the port number to listen on
+     * @param nThreads the max number of threads in the pool for handling requests;
+     *                 unused when virtual threads are in effect
+     * @param virtualThreads whether to run each connection on a virtual thread
+     *                       if the runtime supports them
+     */
+    public MyHTTPServer(int port, int nThreads, boolean virtualThreads){
         this.port = port;
         this.nThreads = nThreads;
+        this.virtualThreads = virtualThreads;
         this.getServlets = new ConcurrentHashMap<>();
         this.postServlets = new ConcurrentHashMap<>();
         this.deleteServlets = new ConcurrentHashMap<>();
@@ -119,16 +142,20 @@ public class MyHTTPServer extends Thread implements HTTPServer{
     /**
      * Main server loop that accepts and processes client connections.
      * 
-     * <p>Creates a server socket, thread pool, and continuously accepts
+     * <p>Creates a server socket, thread pool (or virtual-thread executor), and continuously accepts
      * incoming connections until the server is stopped.</p>
      */
     public void run(){
         try {
             serverSocket = new ServerSocket(port);
-            threadPool = Executors.newFixedThreadPool(nThreads);
+            threadPool = virtualThreads ? VirtualThreads.newThreadPerTaskExecutor() : null;
+            if (threadPool == null) {
+                threadPool = Executors.newFixedThreadPool(nThreads);
+            }
             running = true;
             
-            System.out.println("Server listening on port " + port);
+            System.out.println("Server listening on port " + port
+                               + (virtualThreads && VirtualThreads.isAvailable() ? " (virtual threads)" : ""));
             
             while(running) {
                 try {
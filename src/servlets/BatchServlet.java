@@ -0,0 +1,132 @@
+package servlets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import configs.BatchEvaluator;
+import configs.Config;
+import configs.GenericConfig;
+import server.RequestParser.RequestInfo;
+
+/**
+ * Servlet that evaluates the loaded graph over a CSV table of inputs.
+ * 
+ * <p>The request body is a CSV table whose header names the graph's input
+ * topics; every row is evaluated with a {@link BatchEvaluator} over the
+ * agents of the configuration last loaded through {@link ConfLoader}, column
+ * by column, without publishing anything to the topics. The response is a
+ * CSV table with one line per input row.</p>
+ * 
+ * <p>URL Parameters:
+ * <ul>
+ *   <li>outputs - the computed topics to return, comma-separated (default:
+ *       the computed topics no agent consumes)</li>
+ * </ul>
+ * 
+ * <p>Example: {@code curl --data-binary @pairs.csv "http://localhost:8080/batch?outputs=Sum"}
+ * with a body of
+ * <pre>
+ * A,B
+ * 1,2
+ * 3,4
+ * </pre>
+ * returns
+ * <pre>
+ * Sum
+ * 3.0
+ * 7.0
+ * </pre>
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see BatchEvaluator
+ */
+public class BatchServlet implements Servlet {
+
+    /** The servlet loading configurations */
+    private final ConfLoader loader;
+
+    /**
+     * Creates the servlet.
+     * 
+     * @param loader the servlet whose current configuration is evaluated
+     * @throws NullPointerException if loader is null
+     */
+    public BatchServlet(ConfLoader loader) {
+        if (loader == null) {
+            throw new NullPointerException("Loader cannot be null");
+        }
+        this.loader = loader;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>Responds with 409 if no configuration is loaded and with 400 if the
+     * graph cannot be evaluated in batch or the table does not match it.</p>
+     */
+    @Override
+    public void handle(RequestInfo ri, OutputStream toClient) throws IOException {
+        Config config = loader.getCurrentConfig();
+        if (!(config instanceof GenericConfig)) {
+            send(toClient, 409, "text/plain", "No configuration loaded\n");
+            return;
+        }
+        String outputs = ri.getParameters().get("outputs");
+        List<String> outputTopics = outputs == null || outputs.trim().isEmpty()
+                ? null : Arrays.asList(outputs.trim().split("\\s*,\\s*"));
+        byte[] content = ri.getContent() != null ? ri.getContent() : new byte[0];
+
+        // Buffered, so a bad row still yields an error response
+        ByteArrayOutputStream result = new ByteArrayOutputStream(content.length);
+        try (Reader in = new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8);
+             Writer out = new OutputStreamWriter(result, StandardCharsets.UTF_8)) {
+            BatchEvaluator batch = new BatchEvaluator(((GenericConfig) config).getDeclaredAgents());
+            batch.evaluate(in, out, outputTopics);
+        } catch (RuntimeException e) {
+            send(toClient, 400, "text/plain", "Batch evaluation failed: " + e.getMessage() + "\n");
+            return;
+        }
+        send(toClient, 200, "text/csv", result.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a response.
+     * 
+     * @param toClient the output stream to send the response to
+     * @param status the HTTP status code
+     * @param type the content type
+     * @param text the response body
+     * @throws IOException if writing the response fails
+     */
+    private void send(OutputStream toClient, int status, String type, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        String statusText = status == 200 ? "OK" : status == 409 ? "Conflict" : "Bad Request";
+        String headers = "HTTP/1.1 " + status + " " + statusText + "\r\n" +
+                         "Content-Type: " + type + "; charset=utf-8\r\n" +
+                         "Content-Length: " + body.length + "\r\n" +
+                         "Connection: close\r\n" +
+                         "\r\n";
+        toClient.write(headers.getBytes(StandardCharsets.UTF_8));
+        toClient.write(body);
+        toClient.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+    }
+}
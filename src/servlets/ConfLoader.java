@@ -52,7 +52,17 @@ import views.HtmlGraphWriter;
  */
 public class ConfLoader implements Servlet {
     
-    private Config currentConfig;
+    /** The configuration loaded last, read by other servlets' threads */
+    private volatile Config currentConfig;
+    
+    /**
+     * Returns the configuration loaded last.
+     * 
+     * @return the current configuration, or null if none has loaded successfully
+     */
+    public Config getCurrentConfig() {
+        return currentConfig;
+    }
     
     /**
      * {@inheritDoc}
@@ -205,6 +215,7 @@ public class ConfLoader implements Servlet {
             if (currentConfig != null) {
                 System.out.println("Closing previous configuration");
                 currentConfig.close();
+                currentConfig = null;
             }
             
             // Clear existing topics and message history
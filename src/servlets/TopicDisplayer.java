@@ -2,10 +2,13 @@ package servlets;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import graph.Message;
+import graph.Quiescence;
 import graph.Topic;
 import graph.TopicManagerSingleton;
 import graph.TopicManagerSingleton.TopicManager;
@@ -29,9 +32,24 @@ import server.RequestParser.RequestInfo;
  * <ul>
  *   <li>topic - the name of the topic to publish to</li>
  *   <li>message - the message value to publish</li>
+ *   <li>messages - several values separated by ';', published as one batch</li>
+ *   <li>id - a positive correlation id for {@code message}, so multi-input
+ *       agents join it only with values of the same id (see
+ *       {@link Message#getCorrelationId()}); clients publishing pairs
+ *       concurrently should each use their own ids</li>
+ *   <li>await - respond only once the graph has settled (see {@link Quiescence}),
+ *       waiting at most the given number of milliseconds, or
+ *       {@value #DEFAULT_AWAIT_MILLIS} ms if the value is not a number</li>
  * </ul>
  * 
+ * <p>With {@code await}, the response carries the headers
+ * {@code X-Graph-Settled} ({@code true}, or {@code false} on timeout) and
+ * {@code X-Graph-Settle-Millis}, so clients need no sleep-and-poll loop.</p>
+ * 
  * <p>Example URL: /publish?topic=temperature&message=25.5
+ * or /publish?topic=temperature&messages=25.5;25.7;26.0
+ * or /publish?topic=temperature&message=25.5&await=2000
+ * or /publish?topic=A&message=2&id=17
  * 
  * @author Ariella Noy
  * @version 1.0
@@ -39,6 +57,9 @@ import server.RequestParser.RequestInfo;
  */
 public class TopicDisplayer implements Servlet {
     
+    /** Wait limit of {@code await} when no number is given */
+    private static final long DEFAULT_AWAIT_MILLIS = 5000;
+    
     /** Static map to store the last message for each topic */
     private static final ConcurrentHashMap<String, Message> lastMessages = new ConcurrentHashMap<>();
     
@@ -46,11 +67,20 @@ public class TopicDisplayer implements Servlet {
      * Updates the stored last message for a topic. This method is static
      * to allow other components to update topic values.
      * 
+     * <p>Its signature matches {@link graph.PublishListener}, so the cache is
+     * kept current by registering it at startup:
+     * {@code tm.addPublishListener(TopicDisplayer::updateLastMessage)}.
+     * Buffer messages are stored as a short text summary, since their shared
+     * buffer is recycled once released.</p>
+     * 
      * @param topicName the name of the topic, not null
      * @param message the new message for the topic, not null
      */
     public static void updateLastMessage(String topicName, Message message) {
         if (topicName != null && message != null) {
+            if (message.getKind() == Message.Kind.BUFFER) {
+                message = new Message("<" + message.byteSize() + " byte buffer>", message.getOriginNanos());
+            }
             lastMessages.put(topicName, message);
         }
     }
@@ -87,6 +117,7 @@ public class TopicDisplayer implements Servlet {
             Map<String, String> params = ri.getParameters();
             String topicName = params.get("topic");
             String messageValue = params.get("message");
+            String batchValues = params.get("messages");
             
             TopicManager tm = TopicManagerSingleton.get();
             
@@ -95,7 +126,8 @@ public class TopicDisplayer implements Servlet {
                 !topicName.trim().isEmpty() && !messageValue.trim().isEmpty()) {
                 try {
                     Topic topic = tm.getTopic(topicName.trim());
-                    Message msg = new Message(messageValue.trim());
+                    Message msg = new Message(messageValue.trim(), System.nanoTime(),
+                                              parseCorrelationId(params.get("id")));
                     
                     // Store the message before publishing
                     updateLastMessage(topicName.trim(), msg);
@@ -109,12 +141,43 @@ public class TopicDisplayer implements Servlet {
                 }
             }
             
+            // Bulk ingestion: publish all values as one batch
+            if (topicName != null && batchValues != null && !topicName.trim().isEmpty()) {
+                try {
+                    List<Message> batch = new ArrayList<>();
+                    for (String value : batchValues.split(";")) {
+                        if (!value.trim().isEmpty()) {
+                            batch.add(new Message(value.trim()));
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        updateLastMessage(topicName.trim(), batch.get(batch.size() - 1));
+                        tm.getTopic(topicName.trim()).publishBatch(batch);
+                        System.out.println("Published " + batch.size() + " messages to topic '" + topicName + "'");
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error publishing messages: " + e.getMessage());
+                }
+            }
+            
+            // Wait for the published values to propagate, if requested
+            String settleHeaders = "";
+            String awaitValue = params.get("await");
+            if (awaitValue != null) {
+                long start = System.nanoTime();
+                boolean settled = Quiescence.awaitQuiescent(parseAwaitMillis(awaitValue));
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                settleHeaders = "X-Graph-Settled: " + settled + "\r\n" +
+                                "X-Graph-Settle-Millis: " + elapsedMillis + "\r\n";
+            }
+            
             // Generate HTML response with topics table
             String htmlResponse = generateTopicsTable(tm);
             
             // Send HTTP response
             String httpResponse = "HTTP/1.1 200 OK\r\n" +
                                 "Content-Type: text/html\r\n" +
+                                settleHeaders +
                                 "Content-Length: " + htmlResponse.length() + "\r\n" +
                                 "Connection: close\r\n" +
                                 "\r\n" + htmlResponse;
@@ -128,6 +191,38 @@ public class TopicDisplayer implements Servlet {
         }
     }
     
+    /**
+     * Parses the {@code id} parameter.
+     * 
+     * @param value the parameter value, or null
+     * @return the correlation id, or {@link Message#NO_CORRELATION} if absent
+     * @throws IllegalArgumentException if the value is not a positive number
+     */
+    private static long parseCorrelationId(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Message.NO_CORRELATION;
+        }
+        long id = Long.parseLong(value.trim());
+        if (id <= 0) {
+            throw new IllegalArgumentException("Correlation id must be positive, got: " + value);
+        }
+        return id;
+    }
+    
+    /**
+     * Parses the {@code await} parameter.
+     * 
+     * @param value the parameter value
+     * @return the wait limit in milliseconds
+     */
+    private static long parseAwaitMillis(String value) {
+        try {
+            return Math.max(0L, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_AWAIT_MILLIS;
+        }
+    }
+    
     /**
      * Generates an HTML table displaying all topics and their current values.
      * 
@@ -213,9 +308,9 @@ public class TopicDisplayer implements Servlet {
             return "<span class=\"no-value\">No messages yet</span>";
         }
         
-        String value = lastMessage.asText;
-        if (!Double.isNaN(lastMessage.asDouble)) {
-            value = String.valueOf(lastMessage.asDouble);
+        String value = lastMessage.asText();
+        if (!Double.isNaN(lastMessage.asDouble())) {
+            value = String.valueOf(lastMessage.asDouble());
         }
         
         return "<span class=\"topic-value\">" + escapeHtml(value) + "</span>";
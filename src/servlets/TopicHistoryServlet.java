@@ -0,0 +1,201 @@
+package servlets;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import graph.Topic;
+import graph.TopicHistory;
+import graph.TopicManagerSingleton;
+import server.RequestParser.RequestInfo;
+
+/**
+ * Servlet that serves the recent values of a topic as JSON.
+ * 
+ * <p>Reads the topic's {@link TopicHistory}, so dashboards can fetch a window of
+ * values once and then poll incrementally for only what is new, instead of
+ * re-reading the whole topics table.</p>
+ * 
+ * <p>URL Parameters:
+ * <ul>
+ *   <li>topic - the name of the topic (required)</li>
+ *   <li>last - return the last N values</li>
+ *   <li>since - return every retained value with a sequence greater than S;
+ *       pass the previous response's {@code lastSequence} to poll incrementally</li>
+ * </ul>
+ * Without {@code last} or {@code since} the whole retained history is returned.
+ * 
+ * <p>Example URL: /history?topic=temperature&since=41 returns
+ * <pre>
+ * {"topic":"temperature","capacity":256,"lastSequence":43,"entries":[
+ *   {"seq":42,"time":1718000000000,"value":25.5},
+ *   {"seq":43,"time":1718000000500,"value":25.7}]}
+ * </pre>
+ * Non-numeric values are reported as {@code "text"} instead of {@code "value"}.
+ * 
+ * @author Ariella Noy
+ * @version 1.0
+ * @since 1.0
+ * 
+ * @see TopicHistory
+ */
+public class TopicHistoryServlet implements Servlet {
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>Responds with 400 for missing or malformed parameters and 404 for
+     * topics that do not exist or keep no history.</p>
+     */
+    @Override
+    public void handle(RequestInfo ri, OutputStream toClient) throws IOException {
+        Map<String, String> params = ri.getParameters();
+        String topicName = params.get("topic");
+        if (topicName == null || topicName.trim().isEmpty()) {
+            sendJson(toClient, 400, "{\"error\":\"missing topic parameter\"}");
+            return;
+        }
+        topicName = topicName.trim();
+        
+        TopicHistory history = findHistory(topicName);
+        if (history == null) {
+            sendJson(toClient, 404, "{\"error\":\"no history for topic " + escapeJson(topicName) + "\"}");
+            return;
+        }
+        
+        List<TopicHistory.Entry> entries;
+        try {
+            if (params.get("since") != null) {
+                entries = history.since(Long.parseLong(params.get("since").trim()));
+            } else if (params.get("last") != null) {
+                entries = history.last(Integer.parseInt(params.get("last").trim()));
+            } else {
+                entries = history.last(history.getCapacity());
+            }
+        } catch (NumberFormatException e) {
+            sendJson(toClient, 400, "{\"error\":\"invalid number: " + escapeJson(e.getMessage()) + "\"}");
+            return;
+        }
+        
+        long lastSequence = entries.isEmpty()
+            ? Math.min(history.getLastSequence(), parseSince(params))
+            : entries.get(entries.size() - 1).getSequence();
+        
+        StringBuilder json = new StringBuilder(64 + entries.size() * 48);
+        json.append("{\"topic\":\"").append(escapeJson(topicName)).append('"')
+            .append(",\"capacity\":").append(history.getCapacity())
+            .append(",\"lastSequence\":").append(lastSequence)
+            .append(",\"entries\":[");
+        for (int i = 0; i < entries.size(); i++) {
+            TopicHistory.Entry entry = entries.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"seq\":").append(entry.getSequence())
+                .append(",\"time\":").append(entry.getTimeMillis());
+            if (entry.isNumeric()) {
+                double value = entry.getValue();
+                json.append(",\"value\":");
+                if (Double.isNaN(value) || Double.isInfinite(value)) {
+                    json.append("null");
+                } else {
+                    json.append(value);
+                }
+            } else {
+                json.append(",\"text\":\"").append(escapeJson(entry.asText())).append('"');
+            }
+            json.append('}');
+        }
+        json.append("]}");
+        sendJson(toClient, 200, json.toString());
+    }
+
+    /**
+     * Looks up the history of an existing topic without creating the topic.
+     * 
+     * @param topicName the topic name
+     * @return the history, or null if the topic does not exist or keeps none
+     */
+    private TopicHistory findHistory(String topicName) {
+        Topic topic = TopicManagerSingleton.get().findTopic(topicName);
+        return topic == null ? null : topic.getHistory();
+    }
+
+    /**
+     * Returns the since parameter so an empty poll echoes it back.
+     * 
+     * @param params the request parameters
+     * @return the parsed since value, or Long.MAX_VALUE if absent
+     */
+    private long parseSince(Map<String, String> params) {
+        String since = params.get("since");
+        return since == null ? Long.MAX_VALUE : Long.parseLong(since.trim());
+    }
+
+    /**
+     * Escapes a string for inclusion in a JSON string literal.
+     * 
+     * @param text the text to escape
+     * @return the escaped text
+     */
+    private static String escapeJson(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Sends a JSON response.
+     * 
+     * @param toClient the output stream to send the response to
+     * @param status the HTTP status code
+     * @param json the response body
+     * @throws IOException if writing the response fails
+     */
+    private void sendJson(OutputStream toClient, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        String statusText = status == 200 ? "OK" : status == 404 ? "Not Found" : "Bad Request";
+        String headers = "HTTP/1.1 " + status + " " + statusText + "\r\n" +
+                         "Content-Type: application/json; charset=utf-8\r\n" +
+                         "Content-Length: " + body.length + "\r\n" +
+                         "Connection: close\r\n" +
+                         "\r\n";
+        toClient.write(headers.getBytes(StandardCharsets.UTF_8));
+        toClient.write(body);
+        toClient.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+    }
+}
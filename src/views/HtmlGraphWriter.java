@@ -157,7 +157,7 @@ public class HtmlGraphWriter {
         String valueDisplay = "";
         if (isTopic && node.getmessage() != null) {
             valueDisplay = "<div class=\"value-display\">" + 
-                          escapeHtml(node.getmessage().asText) + "</div>";
+                          escapeHtml(node.getmessage().asText()) + "</div>";
         }
         
         return String.format(